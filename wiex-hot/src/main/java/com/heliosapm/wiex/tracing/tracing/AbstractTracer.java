@@ -1,10 +1,5 @@
 package com.heliosapm.wiex.tracing.tracing;
 
-import gnu.trove.map.hash.TObjectIntHashMap;
-import gnu.trove.map.hash.TObjectLongHashMap;
-import gnu.trove.procedure.TObjectIntProcedure;
-import gnu.trove.procedure.TObjectLongProcedure;
-
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.util.Arrays;
@@ -21,6 +16,7 @@ import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperationParameter;
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
 import com.heliosapm.wiex.tracing.tracing.thread.ThreadStats;
 import com.heliosapm.wiex.tracing.tracing.user.UserIdLocator;
 import com.heliosapm.wiex.tracing.tracing.util.Utils;
@@ -30,14 +26,18 @@ import com.heliosapm.wiex.tracing.tracing.util.Utils;
 /**
  * <p>Title: AbstractTracer</p>
  * <p>Description: Helper class from which concrete tracers can extend.</p>
- * <p>For delta state tuning: The default initial capacity and load factor for longs and ints is 100 and 0.5F repsoectively.
- * These can be tuned using environmental variables or system properties (referenced in that order) using the following names:
+ * <p>For delta state tuning: The default initial segment capacity for longs and ints is 100, and delta keys that have not been
+ * updated for an hour are evicted. These can be tuned using environmental variables or system properties (referenced in that order) using the following names:
  * <ul>
  * <li><b>Int Deltas Initial Capacity</b>:<code>wiex.tracing.deltas.int.initialcapacity</code></li> 
- * <li><b>Int Deltas Load Factor</b>:<code>wiex.tracing.deltas.int.loadfactor</code></li>
  * <li><b>Long Deltas Initial Capacity</b>:<code>wiex.tracing.deltas.long.initialcapacity</code></li> 
- * <li><b>Long Deltas Load Factor</b>:<code>wiex.tracing.deltas.long.loadfactor</code></li>
+ * <li><b>Delta Key Expiry (s.)</b>:<code>wiex.tracing.deltas.expiry</code> (0 disables eviction)</li>
  * </ul>
+ * <p>The maximum number of interned trace key handles (see {@link #getTraceKey(String)}) defaults to 50000 and can be set
+ * with the system property or environmental variable <code>wiex.tracing.tracekeys.max</code>.</p>
+ * <p>Latency histograms (see {@link #recordHistogram(String, String, long)}) are traced every 15 seconds, and at most 1024
+ * histograms are kept. These can be set with the system properties or environmental variables <code>wiex.tracing.histogram.period</code>
+ * (in seconds) and <code>wiex.tracing.histograms.max</code>.</p>
  * <p>Copyright: Copyright (c) 2006</p>
  * <p>Organization: Helios Development Group</p>
  * @author Whitehead
@@ -60,6 +60,8 @@ public abstract class AbstractTracer implements ITracer {
 	protected UserIdLocator userIdLocator = null;
 	/** Pattern for parsing trace statements */
 	protected Pattern pattern = null;
+	/** The registry of pre-split trace key handles */
+	protected TraceKeyRegistry traceKeys = null;
 	
 	/** Tracer task scheduler for scheduling things like reconnection to a remote service  */
 	protected final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, new ThreadFactory() {
@@ -74,14 +76,30 @@ public abstract class AbstractTracer implements ITracer {
 	});
 	
 	/** Delta Tracker for ints */
-	protected static TObjectIntHashMap<java.lang.String> intDeltas = null;
+	protected final DeltaStore intDeltas;
 	/** Delta Tracker for longs */
-	protected static TObjectLongHashMap<java.lang.String> longDeltas = null;
+	protected final DeltaStore longDeltas;
+	/** The per interval latency histograms */
+	protected final HistogramStore histograms;
+	/** The period in seconds at which latency histograms are traced */
+	protected final int histogramPeriod;
+	/** The number of idle eviction sweeps after which a delta key is evicted */
+	protected static final int DELTA_EXPIRY_SWEEPS = 4;
 	
 	protected static final String INT_DELTA_CAPACITY = "wiex.tracing.deltas.int.initialcapacity";
-	protected static final String INT_LOAD_FACTOR = "wiex.tracing.deltas.int.loadfactor"; 
 	protected static final String LONG_DELTA_CAPACITY = "wiex.tracing.deltas.long.initialcapacity";
-	protected static final String LONG_LOAD_FACTOR = "wiex.tracing.deltas.long.loadfactor"; 
+	/** The number of seconds after which an idle delta key is evicted */
+	public static final String DELTA_EXPIRY_PROP = "wiex.tracing.deltas.expiry";
+	/** The default number of seconds after which an idle delta key is evicted */
+	public static final int DEFAULT_DELTA_EXPIRY = 3600;
+	/** The maximum number of registered trace key handles */
+	public static final String TRACE_KEYS_MAX_PROP = "wiex.tracing.tracekeys.max";
+	/** The period in seconds at which latency histograms are traced */
+	public static final String HISTOGRAM_PERIOD_PROP = "wiex.tracing.histogram.period";
+	/** The default period in seconds at which latency histograms are traced */
+	public static final int DEFAULT_HISTOGRAM_PERIOD = 15;
+	/** The maximum number of latency histograms */
+	public static final String HISTOGRAMS_MAX_PROP = "wiex.tracing.histograms.max";
 
 	
 	/**
@@ -91,19 +109,32 @@ public abstract class AbstractTracer implements ITracer {
 	public AbstractTracer () {
 		log = Logger.getLogger(getClass());
 		pattern = Pattern.compile(getEscapedSegmentDelimeter());
+		traceKeys = new TraceKeyRegistry(pattern, ConfigurationHelper.getIntSystemThenEnvProperty(TRACE_KEYS_MAX_PROP, TraceKeyRegistry.DEFAULT_MAX_KEYS));
 		int initialIntDeltaCapacity = 100;
 		int initialLongDeltaCapacity = 100;
-		float initialIntDeltaLoadFactor = 0.5F;
-		float initialLongDeltaLoadFactor = 0.5F;
+		int deltaExpiry = DEFAULT_DELTA_EXPIRY;
 		try { initialIntDeltaCapacity = Integer.parseInt(Utils.getEnvThenSystemProperty(INT_DELTA_CAPACITY)); } catch (Exception e) {}
-		try { initialIntDeltaLoadFactor = Float.parseFloat(Utils.getEnvThenSystemProperty(INT_LOAD_FACTOR)); } catch (Exception e) {}
 		try { initialLongDeltaCapacity = Integer.parseInt(Utils.getEnvThenSystemProperty(LONG_DELTA_CAPACITY)); } catch (Exception e) {}		
-		try { initialLongDeltaLoadFactor = Float.parseFloat(Utils.getEnvThenSystemProperty(LONG_LOAD_FACTOR)); } catch (Exception e) {}
-		
+		try { deltaExpiry = Integer.parseInt(Utils.getEnvThenSystemProperty(DELTA_EXPIRY_PROP)); } catch (Exception e) {}
 		
-		longDeltas = new TObjectLongHashMap<java.lang.String>(initialLongDeltaCapacity, initialLongDeltaLoadFactor);
-		intDeltas = new TObjectIntHashMap<java.lang.String>(initialIntDeltaCapacity, initialIntDeltaLoadFactor);
 		
+		longDeltas = new DeltaStore(initialLongDeltaCapacity);
+		intDeltas = new DeltaStore(initialIntDeltaCapacity);
+		if(deltaExpiry>0) {
+			long sweepPeriod = Math.max(1000L, deltaExpiry * 1000L / DELTA_EXPIRY_SWEEPS);
+			scheduler.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					evictDeltas();
+				}
+			}, sweepPeriod, sweepPeriod, TimeUnit.MILLISECONDS);
+		}
+		histograms = new HistogramStore(ConfigurationHelper.getIntSystemThenEnvProperty(HISTOGRAMS_MAX_PROP, HistogramStore.DEFAULT_MAX_HISTOGRAMS));
+		histogramPeriod = Math.max(1, ConfigurationHelper.getIntSystemThenEnvProperty(HISTOGRAM_PERIOD_PROP, DEFAULT_HISTOGRAM_PERIOD));
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				harvestHistograms();
+			}
+		}, histogramPeriod, histogramPeriod, TimeUnit.SECONDS);
 		
 	}
 	
@@ -340,20 +371,41 @@ public abstract class AbstractTracer implements ITracer {
 	 * @param key The full resource segment name of a metric.
 	 */
 	public void trace(String key) {
-		if(!TracerFactory.isTraceEnabled(key)) return;
-		String[] segments = pattern.split(key);
-		if(segments.length==0) return;
-		else if(segments.length==1) _trace(segments[0]);
-		else if(segments.length==2) _trace(segments[0], segments[1]);
-		else if(segments.length==3) _trace(segments[0], segments[1], segments[2]);
-		else if(segments.length==4) _trace(segments[0], segments[1], segments[2], segments[3]);
-		else if(segments.length==5) _trace(segments[0], segments[1], segments[2], segments[3], segments[4]);
-		else if(segments.length==6) _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5]);
-		else if(segments.length==7) _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6]);
-		else if(segments.length==8) _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7]);
-		else if(segments.length==9) _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7], segments[8]);
-		else if(segments.length==10) _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7], segments[8], segments[9]);
-		else if(segments.length==11) _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7], segments[8], segments[9], segments[10]);
+		if(key==null) return;
+		trace(traceKeys.get(key));
+	}
+	
+	/**
+	 * A no-op to instrument externally, using a pre-split handle.
+	 * @param key The trace key handle.
+	 */
+	public void trace(TraceKey key) {
+		if(key==null || !key.isEnabled()) return;
+		final String[] segments = key.segments;
+		switch(segments.length) {
+			case 0: return;
+			case 1: _trace(segments[0]); return;
+			case 2: _trace(segments[0], segments[1]); return;
+			case 3: _trace(segments[0], segments[1], segments[2]); return;
+			case 4: _trace(segments[0], segments[1], segments[2], segments[3]); return;
+			case 5: _trace(segments[0], segments[1], segments[2], segments[3], segments[4]); return;
+			case 6: _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5]); return;
+			case 7: _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6]); return;
+			case 8: _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7]); return;
+			case 9: _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7], segments[8]); return;
+			case 10: _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7], segments[8], segments[9]); return;
+			case 11: _trace(segments[0], segments[1], segments[2], segments[3], segments[4], segments[5], segments[6], segments[7], segments[8], segments[9], segments[10]); return;
+			default: return;
+		}
+	}
+	
+	/**
+	 * Returns the interned, pre-split handle for the passed trace key.
+	 * @param key The full resource segment name of a metric.
+	 * @return The trace key handle.
+	 */
+	public TraceKey getTraceKey(String key) {
+		return traceKeys.get(key);
 	}
 	
 	protected void _trace(String a) {}
@@ -659,6 +711,45 @@ public abstract class AbstractTracer implements ITracer {
 		}				
 	}
 			
+	/**
+	 * Resolves the delta state handle of the passed metric.
+	 * @param segment The segment name.
+	 * @param metricName The metric name
+	 * @return the delta key handle.
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#getDeltaKey(java.lang.String, java.lang.String)
+	 */
+	public DeltaStore.DeltaKey getDeltaKey(String segment, String metricName) {
+		return longDeltas.resolve(segment, metricName);
+	}
+	
+	/**
+	 * Records the delta of the passed value and the value previously recorded through the passed handle as a "sticky" counter.
+	 * If there is no previous value, the value is stored in state, but no trace is recorded.
+	 * @param key The delta key handle.
+	 * @param value The new value to calculate the delta from.
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordCounterMetricDelta(com.heliosapm.wiex.tracing.tracing.DeltaStore.DeltaKey, long)
+	 */
+	public void recordCounterMetricDelta(DeltaStore.DeltaKey key, long value) {
+		long d = longDeltas.delta(key, value);
+		if(d>=0) {
+			recordCounterMetric(key.getSegment(), key.getMetric(), d);
+		}
+	}
+	
+	/**
+	 * Records the delta of the passed value and the value previously recorded through the passed handle as an interval averaged counter.
+	 * If there is no previous value, the value is stored in state, but no trace is recorded.
+	 * @param key The delta key handle.
+	 * @param value The new value to calculate the delta from.
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordMetricDelta(com.heliosapm.wiex.tracing.tracing.DeltaStore.DeltaKey, long)
+	 */
+	public void recordMetricDelta(DeltaStore.DeltaKey key, long value) {
+		long d = longDeltas.delta(key, value);
+		if(d>=0) {
+			recordMetric(key.getSegment(), key.getMetric(), d);
+		}
+	}
+			
 	/**
 	 * Determines the delta of the passed value for the passed keys against the value in state and stores the passed value in state.
 	 * If no value is held in state, returns -Integer.MAX_VALUE.
@@ -668,20 +759,13 @@ public abstract class AbstractTracer implements ITracer {
 	 * @return The delta of the passed value against the value in state, or -Integer.MAX_VALUE.
 	 */
 	@JMXOperation(description="Determines the delta of the passed value for the passed keys against the value in state and stores the passed value in state.", name="Delta int Value")
-	public synchronized int deltaInt(
+	public int deltaInt(
 			@JMXOperationParameter(description="The segment name", name="SegmentName") String segment, 
 			@JMXOperationParameter(description="The metric name", name="MetricName") String metric, 
 			@JMXOperationParameter(description="The new int value", name="NewInt") int value
 			) {
-		String key = new StringBuilder(segment).append(":").append(metric).toString();
-		if(intDeltas.containsKey(key)) {
-			int d = value-intDeltas.get(key);
-			intDeltas.put(key, value);
-			return d;
-		} else {
-			intDeltas.put(key, value);
-			return -Integer.MAX_VALUE;
-		}
+		long d = intDeltas.delta(segment, metric, value);
+		return d==DeltaStore.NO_DELTA ? -Integer.MAX_VALUE : (int)d;
 	}
 	
 	/**
@@ -693,22 +777,114 @@ public abstract class AbstractTracer implements ITracer {
 	 * @return The delta of the passed value against the value in state, or -Long.MAX_VALUE.
 	 */
 	@JMXOperation(description="Determines the delta of the passed value for the passed keys against the value in state and stores the passed value in state.", name="Delta long Value")
-	public synchronized long deltaLong(
+	public long deltaLong(
 			@JMXOperationParameter(description="The segment name", name="SegmentName") String segment, 
 			@JMXOperationParameter(description="The metric name", name="MetricName") String metric, 
 			@JMXOperationParameter(description="The new long value", name="NewLong") long value			
 			) {
-		String key = new StringBuilder(segment).append(":").append(metric).toString();
-		if(longDeltas.containsKey(key)) {
-			long d = value-longDeltas.get(key);
-			longDeltas.put(key, value);
-			return d;
-		} else {
-			longDeltas.put(key, value);
-			return -Long.MAX_VALUE;
+		return longDeltas.delta(segment, metric, value);
+	}
+	
+	/**
+	 * Evicts delta keys that have not been updated within the configured expiry.
+	 */
+	protected void evictDeltas() {
+		try {
+			int evicted = intDeltas.evict(DELTA_EXPIRY_SWEEPS) + longDeltas.evict(DELTA_EXPIRY_SWEEPS);
+			if(evicted>0 && log.isDebugEnabled()) log.debug("Evicted [" + evicted + "] stale delta keys");
+		} catch (Exception e) {
+			log.warn("Failed to evict stale delta keys", e);
 		}
 	}
 	
+	/**
+	 * Records a value in the metric's latency histogram if tracing is enabled for the segment.
+	 * @param segment The resource segments of the full metric name.
+	 * @param metric The metric name.
+	 * @param value The value to record.
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordHistogram(java.lang.String, java.lang.String, long)
+	 */
+	public void recordHistogram(String segment, String metric, long value) {
+		if(!TracerFactory.isTraceEnabled(segment)) return;
+		histograms.record(segment, metric, value);
+	}
+	
+	/**
+	 * Ends the current histogram interval and traces the snapshot of each histogram that recorded values.
+	 */
+	protected void harvestHistograms() {
+		try {
+			histograms.harvest(new HistogramStore.HarvestListener() {
+				public void onHarvest(String segment, String metric, LatencyHistogram.Snapshot snapshot) {
+					traceHistogram(segment, metric, snapshot);
+				}
+			});
+		} catch (Exception e) {
+			log.warn("Failed to harvest latency histograms", e);
+		}
+	}
+	
+	/**
+	 * Traces the interval snapshot of a latency histogram.
+	 * The default traces each percentile and the maximum as a long metric named for the histogram metric and the percentile suffix.
+	 * Tracers that can render a histogram natively should override this method.
+	 * @param segment The resource segments of the full metric name.
+	 * @param metric The histogram metric name.
+	 * @param snapshot The interval snapshot.
+	 */
+	protected void traceHistogram(String segment, String metric, LatencyHistogram.Snapshot snapshot) {
+		recordMetric(segment, metric + " " + HISTOGRAM_P50, snapshot.getP50());
+		recordMetric(segment, metric + " " + HISTOGRAM_P90, snapshot.getP90());
+		recordMetric(segment, metric + " " + HISTOGRAM_P99, snapshot.getP99());
+		recordMetric(segment, metric + " " + HISTOGRAM_P999, snapshot.getP999());
+		recordMetric(segment, metric + " " + HISTOGRAM_MAX, snapshot.getMax());
+	}
+	
+	/**
+	 * Returns the number of latency histograms.
+	 * @return the number of latency histograms.
+	 */
+	@JMXAttribute(description="The number of latency histograms.", name="HistogramCount")
+	public int getHistogramCount() {
+		return histograms.size();
+	}
+	
+	/**
+	 * Returns the number of histogram values dropped because the maximum number of histograms was reached.
+	 * @return the number of dropped histogram values.
+	 */
+	@JMXAttribute(description="The number of histogram values dropped because the maximum number of histograms was reached.", name="HistogramOverflows")
+	public long getHistogramOverflows() {
+		return histograms.getOverflows();
+	}
+	
+	/**
+	 * Returns the period in seconds at which latency histograms are traced.
+	 * @return the histogram period in seconds.
+	 */
+	@JMXAttribute(description="The period in seconds at which latency histograms are traced.", name="HistogramPeriod")
+	public int getHistogramPeriod() {
+		return histogramPeriod;
+	}
+	
+	/**
+	 * Returns the number of interned trace key handles.
+	 * @return the number of trace key handles.
+	 */
+	@JMXAttribute(description="The number of interned trace key handles.", name="TraceKeyCount")
+	public int getTraceKeyCount() {
+		return traceKeys.getKeyCount();
+	}
+	
+	/**
+	 * Returns the number of uncached trace key handles issued because the registry was full.
+	 * @return the number of trace key registry overflows.
+	 */
+	@JMXAttribute(description="The number of uncached trace key handles issued because the registry was full.", name="TraceKeyOverflows")
+	public long getTraceKeyOverflows() {
+		return traceKeys.getOverflows();
+	}
+	
 	/**
 	 * Returns the number of ints held in state for deltas.
 	 * @return The size of the intDeltas.
@@ -727,6 +903,24 @@ public abstract class AbstractTracer implements ITracer {
 		return longDeltas.size();
 	}
 	
+	/**
+	 * Returns the number of contended delta state updates.
+	 * @return the number of CAS retries and lost creation races for int and long deltas.
+	 */
+	@JMXAttribute(description="The number of contended delta state updates.", name="DeltaContention")
+	public long getDeltaContention() {
+		return intDeltas.getContention() + longDeltas.getContention();
+	}
+	
+	/**
+	 * Returns the number of stale delta keys evicted.
+	 * @return the number of int and long delta keys evicted.
+	 */
+	@JMXAttribute(description="The number of stale delta keys evicted.", name="DeltaEvictions")
+	public long getDeltaEvictions() {
+		return intDeltas.getEvictions() + longDeltas.getEvictions();
+	}
+	
 	
 	
 	/**
@@ -736,11 +930,9 @@ public abstract class AbstractTracer implements ITracer {
 	@JMXOperation(description="Returns a string representation of the delta maps.", name="printDeltas")
 	public String printDeltas() {
 		StringBuilder buff = new StringBuilder("Delta Report\n\tInt Deltas");
-		IntDeltaSummarizer iSummary = new IntDeltaSummarizer(buff);
-		intDeltas.forEachEntry(iSummary);
+		intDeltas.print(buff);
 		buff.append("\n\tLong Deltas");
-		LongDeltaSummarizer lSummary = new LongDeltaSummarizer(buff);
-		longDeltas.forEachEntry(lSummary);
+		longDeltas.print(buff);
 		return buff.toString(); 
 	}
 	
@@ -755,12 +947,11 @@ public abstract class AbstractTracer implements ITracer {
 	}
 
 	/**
-	 * Compacts the Deltas
+	 * Compacts the Deltas by running a stale key eviction sweep.
 	 */
 	@JMXOperation(description="Compacts the Deltas State.", name="compactDeltas")
 	public void compactDeltas() {
-		longDeltas.compact();
-		intDeltas.compact();
+		evictDeltas();
 	}
 	
 	/**
@@ -794,78 +985,4 @@ public abstract class AbstractTracer implements ITracer {
 	
 	
 
-}
-
-/**
- * <p>Title: IntDeltaSummarizer</p>
- * <p>Description: Helper to create a Delta Summary Report for Ints</p> 
- * <p>Copyright: Copyright (c) 2007</p>
- * <p>Organization: Helios Development Group</p>
- * @author Whitehead
- * @version $Revision: 1.18 $
- */
-class IntDeltaSummarizer implements TObjectIntProcedure<String> {
-	private StringBuilder buffer = null; 
-
-	/**
-	 * Constructs a new IntDeltaSummarizer
-	 * @param buffer
-	 */
-	public IntDeltaSummarizer(StringBuilder buffer) {
-		this.buffer = buffer;
-	}
-	/**
-	 * @return the buffer
-	 */
-	public StringBuilder getBuffer() {
-		return buffer;
-	}
-	/**
-	 * Executes this procedure. A false return value indicates that the application executing this procedure should not invoke this procedure again.
-	 * @param key
-	 * @param value
-	 * @return
-	 */
-	public boolean execute(String key, int value) {
-		buffer.append("\n\t\t").append(key).append("\t:\t").append(value);
-		return true;
-	}
-	
-}
-
-/**
- * <p>Title: LongDeltaSummarizer</p>
- * <p>Description: Helper to create a Delta Summary Report for Longs</p> 
- * <p>Copyright: Copyright (c) 2007</p>
- * <p>Organization: Helios Development Group</p>
- * @author Whitehead
- * @version $Revision: 1.18 $
- */
-class LongDeltaSummarizer implements TObjectLongProcedure<String> {
-	private StringBuilder buffer = null; 
-
-	/**
-	 * Constructs a new LongDeltaSummarizer
-	 * @param buffer
-	 */
-	public LongDeltaSummarizer(StringBuilder buffer) {
-		this.buffer = buffer;
-	}
-	/**
-	 * @return the buffer
-	 */
-	public StringBuilder getBuffer() {
-		return buffer;
-	}
-	/**
-	 * Executes this procedure. A false return value indicates that the application executing this procedure should not invoke this procedure again.
-	 * @param key
-	 * @param value
-	 * @return
-	 */
-	public boolean execute(String key, long value) {
-		buffer.append("\n\t\t").append(key).append("\t:\t").append(value);
-		return true;
-	}
-	
 }
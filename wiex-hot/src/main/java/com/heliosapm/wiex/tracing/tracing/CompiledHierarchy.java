@@ -0,0 +1,200 @@
+package com.heliosapm.wiex.tracing.tracing;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * <p>Title: CompiledHierarchy</p>
+ * <p>Description: An immutable, compiled snapshot of an {@link ObjectHierarchyTree}.
+ * Each node holds its children in an open addressed table keyed by the segment's hash code, so a lookup walks the
+ * characters of the name once, hashing each segment in place and comparing it with <code>regionMatches</code>,
+ * without splitting or allocating. The lookup semantics, including wild card and sparse node resolution, are
+ * the same as {@link ObjectHierarchyTree#getValue(String)}.</p>
+ * <p>Instances are never modified. A changed tree is recompiled and the new snapshot published in place of the old.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.CompiledHierarchy</code></p>
+ * @param <K> The type of the node values
+ */
+public final class CompiledHierarchy<K> {
+	/** The root node, which has no value */
+	protected final Node<K> root;
+	/** The default value for lookups that match no node */
+	protected final K defaultValue;
+	/** The number of nodes in the hierarchy */
+	protected final int size;
+
+	/**
+	 * Compiles a snapshot of the passed hierarchy
+	 * @param hierarchy The top level nodes of the hierarchy keyed by segment name
+	 * @param wildCard The name space segment wild card
+	 * @param defaultValue The default value for lookups that match no node
+	 */
+	CompiledHierarchy(Map<String, HierarchyNode<K>> hierarchy, String wildCard, K defaultValue) {
+		this.defaultValue = defaultValue;
+		final int[] count = new int[1];
+		root = compile(null, hierarchy, wildCard, count);
+		size = count[0];
+	}
+
+	/**
+	 * Recursively compiles a node and its children
+	 * @param member The node value
+	 * @param children The node's children keyed by segment name
+	 * @param wildCard The name space segment wild card
+	 * @param count A one slot array accumulating the number of compiled nodes
+	 * @return the compiled node
+	 */
+	private static <K> Node<K> compile(K member, Map<String, HierarchyNode<K>> children, String wildCard, int[] count) {
+		final Node<K> node = new Node<K>(member, children.size());
+		for(Entry<String, HierarchyNode<K>> entry: children.entrySet()) {
+			final HierarchyNode<K> child = entry.getValue();
+			count[0]++;
+			final Node<K> compiled = compile(child.getMember(), child.getChildren(), wildCard, count);
+			node.add(entry.getKey(), compiled);
+			if(entry.getKey().equals(wildCard)) node.wild = compiled;
+		}
+		return node;
+	}
+
+	/**
+	 * Gets the value navigated to by the passed name space.
+	 * Any of the passed separator characters delimit the name's segments, and trailing separators are ignored.
+	 * If the first segment does not exist, the default value is returned. Otherwise the value of the deepest
+	 * matching node is returned.
+	 * @param name The name space
+	 * @param separators The segment separator characters
+	 * @return the located value
+	 */
+	public K getValue(String name, char[] separators) {
+		final int len = name.length();
+		int end = len;
+		while(end > 0 && isSeparator(name.charAt(end-1), separators)) end--;
+		if(end==0 && len>0) return defaultValue;
+		Node<K> node = root;
+		int start = 0;
+		while(true) {
+			int hash = 0;
+			int i = start;
+			for(; i < end; i++) {
+				final char c = name.charAt(i);
+				if(isSeparator(c, separators)) break;
+				hash = 31 * hash + c;
+			}
+			final Node<K> child = node.find(name, start, i - start, hash);
+			if(child==null) return node==root ? defaultValue : node.member;
+			node = child;
+			if(i >= end) return node.member;
+			start = i + 1;
+		}
+	}
+
+	/**
+	 * Determines if the passed character is one of the separators
+	 * @param c The character to test
+	 * @param separators The separator characters
+	 * @return true if the character is a separator
+	 */
+	private static boolean isSeparator(char c, char[] separators) {
+		for(int i = 0; i < separators.length; i++) {
+			if(separators[i]==c) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of nodes in the hierarchy
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * <p>Title: Node</p>
+	 * <p>Description: A compiled hierarchy node with an open addressed child table</p>
+	 * @param <K> The type of the node value
+	 */
+	static final class Node<K> {
+		/** The node value */
+		final K member;
+		/** The child segment names */
+		final String[] names;
+		/** The child segment name hash codes */
+		final int[] hashes;
+		/** The child nodes */
+		final Node<K>[] children;
+		/** The table index mask */
+		final int mask;
+		/** The wild card child, or null */
+		Node<K> wild = null;
+
+		/**
+		 * Creates a new Node
+		 * @param member The node value
+		 * @param childCount The number of children
+		 */
+		Node(K member, int childCount) {
+			this.member = member;
+			int cap = 2;
+			while(cap < childCount * 2) cap <<= 1;
+			names = new String[cap];
+			hashes = new int[cap];
+			children = newTable(cap);
+			mask = cap - 1;
+		}
+
+		/**
+		 * Creates a child node table
+		 * @param cap The table capacity
+		 * @return the child node table
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static <K> Node<K>[] newTable(int cap) {
+			return new Node[cap];
+		}
+
+		/**
+		 * Adds a child during compilation
+		 * @param name The child segment name
+		 * @param child The child node
+		 */
+		void add(String name, Node<K> child) {
+			final int hash = name.hashCode();
+			int index = spread(hash) & mask;
+			while(names[index]!=null) index = (index + 1) & mask;
+			names[index] = name;
+			hashes[index] = hash;
+			children[index] = child;
+		}
+
+		/**
+		 * Finds the child matching the passed region of a name, falling back to the wild card child
+		 * @param name The name being looked up
+		 * @param offset The offset of the segment in the name
+		 * @param length The length of the segment
+		 * @param hash The hash code of the segment
+		 * @return the matching child or null
+		 */
+		Node<K> find(String name, int offset, int length, int hash) {
+			int index = spread(hash) & mask;
+			String candidate;
+			while((candidate = names[index])!=null) {
+				if(hashes[index]==hash && candidate.length()==length && name.regionMatches(offset, candidate, 0, length)) {
+					return children[index];
+				}
+				index = (index + 1) & mask;
+			}
+			return wild;
+		}
+
+		/**
+		 * Spreads the bits of a hash code
+		 * @param hash The hash code
+		 * @return the spread hash code
+		 */
+		private static int spread(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.heliosapm.wiex.tracing.tracing;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+/**
+ * <p>Title: DeltaStore</p>
+ * <p>Description: A non-blocking store of the last value recorded for each metric, used to compute deltas.
+ * Keys are resolved through a two level map of segment and metric name into a {@link DeltaKey} handle without
+ * building a composite key, and each handle is updated with its own CAS, so callers tracking different metrics
+ * never contend. A key first seen is seeded with the passed value and returns no delta.
+ * Callers that update the same metrics repeatedly can resolve a handle once with {@link #resolve(String, String)} and
+ * update it directly with {@link #delta(DeltaKey, long)}, skipping the map lookups.</p>
+ * <p>Each handle records the eviction epoch in which it was last updated. {@link #evict(int)} advances the epoch
+ * and removes keys that have been idle for more than the passed number of epochs. A key evicted concurrently with
+ * an update is reseeded by its next update. An evicted handle held by a caller keeps its value and is put back in the
+ * store by its next update.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.DeltaStore</code></p>
+ */
+public class DeltaStore {
+	/** The delta keys keyed by segment, then metric name */
+	protected final NonBlockingHashMap<String, NonBlockingHashMap<String, DeltaKey>> keys;
+	/** The number of delta keys */
+	protected final AtomicInteger size = new AtomicInteger(0);
+	/** The number of CAS retries and lost creation races by contending updaters */
+	protected final AtomicLong contention = new AtomicLong(0);
+	/** The number of keys evicted */
+	protected final AtomicLong evictions = new AtomicLong(0);
+	/** The current eviction epoch */
+	protected volatile int epoch = 0;
+
+	/** The delta returned when a key is seeded and there is no previous value */
+	public static final long NO_DELTA = -Long.MAX_VALUE;
+
+	/**
+	 * Creates a new DeltaStore
+	 * @param initialCapacity The initial segment capacity
+	 */
+	public DeltaStore(int initialCapacity) {
+		keys = new NonBlockingHashMap<String, NonBlockingHashMap<String, DeltaKey>>(initialCapacity);
+	}
+
+	/**
+	 * Returns the delta key handle for the passed segment and metric, or null if the key has not been seeded.
+	 * @param segment The segment name
+	 * @param metric The metric name
+	 * @return the delta key or null
+	 */
+	public DeltaKey getKey(String segment, String metric) {
+		final NonBlockingHashMap<String, DeltaKey> metrics = keys.get(segment);
+		return metrics==null ? null : metrics.get(metric);
+	}
+
+	/**
+	 * Returns the delta key handle for the passed segment and metric, creating an unseeded key if there is none.
+	 * The first update of an unseeded key seeds it and returns {@link #NO_DELTA}.
+	 * @param segment The segment name
+	 * @param metric The metric name
+	 * @return the delta key
+	 */
+	public DeltaKey resolve(String segment, String metric) {
+		final NonBlockingHashMap<String, DeltaKey> metrics = segment(segment);
+		DeltaKey key = metrics.get(metric);
+		if(key==null) {
+			key = new DeltaKey(segment, metric, NO_DELTA, epoch);
+			final DeltaKey prior = metrics.putIfAbsent(metric, key);
+			if(prior==null) {
+				size.incrementAndGet();
+			} else {
+				key = prior;
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the metric map of the passed segment, creating it if it does not exist
+	 * @param segment The segment name
+	 * @return the segment's metric map
+	 */
+	protected NonBlockingHashMap<String, DeltaKey> segment(String segment) {
+		NonBlockingHashMap<String, DeltaKey> metrics = keys.get(segment);
+		if(metrics==null) {
+			metrics = new NonBlockingHashMap<String, DeltaKey>();
+			final NonBlockingHashMap<String, DeltaKey> prior = keys.putIfAbsent(segment, metrics);
+			if(prior!=null) metrics = prior;
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stores the passed value for the passed segment and metric and returns its delta against the previously stored value.
+	 * If no value was stored, the key is seeded with the passed value and {@link #NO_DELTA} is returned.
+	 * @param segment The segment name
+	 * @param metric The metric name
+	 * @param value The new value
+	 * @return the delta or {@link #NO_DELTA}
+	 */
+	public long delta(String segment, String metric, long value) {
+		final NonBlockingHashMap<String, DeltaKey> metrics = segment(segment);
+		DeltaKey key = metrics.get(metric);
+		if(key==null) {
+			key = new DeltaKey(segment, metric, value, epoch);
+			DeltaKey prior = metrics.putIfAbsent(metric, key);
+			if(prior==null) {
+				size.incrementAndGet();
+				return NO_DELTA;
+			}
+			contention.incrementAndGet();
+			key = prior;
+		}
+		return delta(key, value);
+	}
+
+	/**
+	 * Stores the passed value in the passed handle and returns its delta against the previously stored value.
+	 * If the handle has not been seeded, it is seeded with the passed value and {@link #NO_DELTA} is returned.
+	 * @param key The delta key handle
+	 * @param value The new value
+	 * @return the delta or {@link #NO_DELTA}
+	 */
+	public long delta(DeltaKey key, long value) {
+		final int e = epoch;
+		if(key.epoch!=e) key.epoch = e;
+		if(key.evicted) reinstate(key);
+		while(true) {
+			final long prior = key.value.get();
+			if(key.value.compareAndSet(prior, value)) return prior==NO_DELTA ? NO_DELTA : value - prior;
+			contention.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Puts an evicted handle back in the store, unless the metric has been keyed again since it was evicted
+	 * @param key The evicted delta key
+	 */
+	protected void reinstate(DeltaKey key) {
+		key.evicted = false;
+		if(segment(key.segment).putIfAbsent(key.metric, key)==null) {
+			size.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Advances the eviction epoch and removes keys that have not been updated for more than the passed number of epochs.
+	 * Must only be called by one thread at a time.
+	 * @param maxIdleEpochs The number of epochs a key may be idle before it is evicted
+	 * @return the number of keys evicted
+	 */
+	public int evict(int maxIdleEpochs) {
+		final int current = epoch + 1;
+		epoch = current;
+		int evicted = 0;
+		for(Iterator<NonBlockingHashMap<String, DeltaKey>> siter = keys.values().iterator(); siter.hasNext();) {
+			for(Iterator<DeltaKey> kiter = siter.next().values().iterator(); kiter.hasNext();) {
+				final DeltaKey key = kiter.next();
+				if(current - key.epoch > maxIdleEpochs) {
+					key.evicted = true;
+					kiter.remove();
+					evicted++;
+				}
+			}
+		}
+		if(evicted>0) {
+			size.addAndGet(-evicted);
+			evictions.addAndGet(evicted);
+		}
+		return evicted;
+	}
+
+	/**
+	 * Removes all keys
+	 */
+	public void clear() {
+		keys.clear();
+		size.set(0);
+	}
+
+	/**
+	 * Appends a report of the stored values to the passed buffer
+	 * @param buff The buffer to append to
+	 * @return the buffer
+	 */
+	public StringBuilder print(StringBuilder buff) {
+		for(Map.Entry<String, NonBlockingHashMap<String, DeltaKey>> segment: keys.entrySet()) {
+			for(DeltaKey key: segment.getValue().values()) {
+				buff.append("\n\t\t").append(key.segment).append(":").append(key.metric).append("\t:\t").append(key.value.get());
+			}
+		}
+		return buff;
+	}
+
+	/**
+	 * Returns the number of keys in the store
+	 * @return the number of keys
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Returns the number of CAS retries and lost creation races by contending updaters
+	 * @return the contention count
+	 */
+	public long getContention() {
+		return contention.get();
+	}
+
+	/**
+	 * Returns the number of keys evicted
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * <p>Title: DeltaKey</p>
+	 * <p>Description: A pre-resolved handle to the stored value of one metric</p>
+	 */
+	public static class DeltaKey {
+		/** The segment name */
+		protected final String segment;
+		/** The metric name */
+		protected final String metric;
+		/** The last stored value */
+		protected final AtomicLong value;
+		/** The eviction epoch in which the key was last updated */
+		protected volatile int epoch;
+		/** Indicates if the key has been evicted from its store */
+		protected volatile boolean evicted = false;
+
+		/**
+		 * Creates a new DeltaKey
+		 * @param segment The segment name
+		 * @param metric The metric name
+		 * @param value The seed value
+		 * @param epoch The current eviction epoch
+		 */
+		DeltaKey(String segment, String metric, long value, int epoch) {
+			this.segment = segment;
+			this.metric = metric;
+			this.value = new AtomicLong(value);
+			this.epoch = epoch;
+		}
+
+		/**
+		 * Returns the segment name
+		 * @return the segment name
+		 */
+		public String getSegment() {
+			return segment;
+		}
+
+		/**
+		 * Returns the metric name
+		 * @return the metric name
+		 */
+		public String getMetric() {
+			return metric;
+		}
+
+		/**
+		 * Returns the last stored value
+		 * @return the last stored value
+		 */
+		public long getValue() {
+			return value.get();
+		}
+	}
+}
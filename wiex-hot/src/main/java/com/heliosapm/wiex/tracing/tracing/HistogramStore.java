@@ -0,0 +1,239 @@
+package com.heliosapm.wiex.tracing.tracing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+/**
+ * <p>Title: HistogramStore</p>
+ * <p>Description: A non-blocking registry of {@link LatencyHistogram}s resolved through a two level map of segment and
+ * metric name. The number of histograms is bounded, so memory use is fixed. Values for new keys recorded once the store
+ * is full are dropped and counted.</p>
+ * <p>{@link #harvest(HarvestListener)} is called at the end of each interval and delivers a snapshot for each histogram
+ * that recorded values. Histograms idle for more than {@link #MAX_IDLE_INTERVALS} intervals are evicted, and a segment is
+ * removed once it has no histograms.</p>
+ * <p>An evicted histogram is marked retired, so recording threads that find it create a replacement, and is drained once more
+ * at the next harvest into its replacement, so values recorded by threads that found it just before the eviction are not lost.
+ * Histograms created in a segment map that was concurrently removed are drained the same way.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.HistogramStore</code></p>
+ */
+public class HistogramStore {
+	/** The histograms keyed by segment, then metric name */
+	protected final NonBlockingHashMap<String, NonBlockingHashMap<String, LatencyHistogram>> histograms = new NonBlockingHashMap<String, NonBlockingHashMap<String, LatencyHistogram>>();
+	/** The maximum number of histograms */
+	protected final int maxHistograms;
+	/** The number of histograms */
+	protected final AtomicInteger size = new AtomicInteger(0);
+	/** The number of values dropped because the store was full */
+	protected final AtomicLong overflows = new AtomicLong(0);
+	/** The number of histograms evicted */
+	protected final AtomicLong evictions = new AtomicLong(0);
+	/** The scratch bucket count array used by harvests */
+	protected final long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+	/** The histograms evicted by the last harvest, drained by the next harvest */
+	protected List<Evicted> retired = new ArrayList<Evicted>();
+	/** The segment maps removed by the last harvest, drained by the next harvest */
+	protected Map<String, NonBlockingHashMap<String, LatencyHistogram>> removed = new HashMap<String, NonBlockingHashMap<String, LatencyHistogram>>();
+
+	/** The number of idle intervals after which a histogram is evicted */
+	public static final int MAX_IDLE_INTERVALS = 20;
+	/** The default maximum number of histograms */
+	public static final int DEFAULT_MAX_HISTOGRAMS = 1024;
+
+	/**
+	 * <p>Title: HarvestListener</p>
+	 * <p>Description: Receives the snapshot of each histogram that recorded values at the end of an interval</p>
+	 */
+	public static interface HarvestListener {
+		/**
+		 * Called for each histogram that recorded values in the interval
+		 * @param segment The segment name
+		 * @param metric The metric name
+		 * @param snapshot The interval snapshot
+		 */
+		public void onHarvest(String segment, String metric, LatencyHistogram.Snapshot snapshot);
+	}
+
+	/**
+	 * Creates a new HistogramStore
+	 * @param maxHistograms The maximum number of histograms
+	 */
+	public HistogramStore(int maxHistograms) {
+		this.maxHistograms = maxHistograms;
+	}
+
+	/**
+	 * Records a value in the histogram for the passed segment and metric, creating the histogram if it does not exist
+	 * @param segment The segment name
+	 * @param metric The metric name
+	 * @param value The value to record
+	 * @return true if the value was recorded, false if the store is full
+	 */
+	public boolean record(String segment, String metric, long value) {
+		for(;;) {
+			NonBlockingHashMap<String, LatencyHistogram> metrics = histograms.get(segment);
+			if(metrics==null) {
+				if(size.get()>=maxHistograms) {
+					overflows.incrementAndGet();
+					return false;
+				}
+				metrics = new NonBlockingHashMap<String, LatencyHistogram>();
+				NonBlockingHashMap<String, LatencyHistogram> prior = histograms.putIfAbsent(segment, metrics);
+				if(prior!=null) metrics = prior;
+			}
+			LatencyHistogram histogram = metrics.get(metric);
+			if(histogram==null) {
+				if(size.get()>=maxHistograms) {
+					overflows.incrementAndGet();
+					return false;
+				}
+				histogram = new LatencyHistogram();
+				LatencyHistogram prior = metrics.putIfAbsent(metric, histogram);
+				if(prior==null) size.incrementAndGet();
+				else histogram = prior;
+			}
+			// retry if a concurrent harvest evicted the histogram or removed its segment map
+			if(histogram.retired || histograms.get(segment)!=metrics) continue;
+			histogram.record(value);
+			return true;
+		}
+	}
+
+	/**
+	 * Drains each histogram and delivers the interval snapshot of each histogram that recorded values to the passed listener,
+	 * evicting histograms that have been idle too long. Must only be called by one thread at a time.
+	 * @param listener The harvest listener
+	 * @return the number of snapshots delivered
+	 */
+	public int harvest(HarvestListener listener) {
+		int count = 0;
+		int evicted = 0;
+		final List<Evicted> drained = retired;
+		retired = new ArrayList<Evicted>();
+		if(!removed.isEmpty()) {
+			for(Map.Entry<String, NonBlockingHashMap<String, LatencyHistogram>> segment: removed.entrySet()) {
+				for(Map.Entry<String, LatencyHistogram> entry: segment.getValue().entrySet()) {
+					entry.getValue().retired = true;
+					size.decrementAndGet();
+					drained.add(new Evicted(segment.getKey(), entry.getKey(), entry.getValue()));
+				}
+			}
+			removed.clear();
+		}
+		for(Evicted e: drained) {
+			final NonBlockingHashMap<String, LatencyHistogram> metrics = histograms.get(e.segment);
+			final LatencyHistogram replacement = metrics==null ? null : metrics.get(e.metric);
+			if(replacement!=null && !replacement.retired) {
+				replacement.merge(e.histogram);
+			} else {
+				final LatencyHistogram.Snapshot snapshot = e.histogram.harvest(counts);
+				if(snapshot!=null) {
+					listener.onHarvest(e.segment, e.metric, snapshot);
+					count++;
+				}
+			}
+		}
+		for(Map.Entry<String, NonBlockingHashMap<String, LatencyHistogram>> segment: histograms.entrySet()) {
+			final NonBlockingHashMap<String, LatencyHistogram> metrics = segment.getValue();
+			for(Iterator<Map.Entry<String, LatencyHistogram>> iter = metrics.entrySet().iterator(); iter.hasNext();) {
+				final Map.Entry<String, LatencyHistogram> entry = iter.next();
+				final LatencyHistogram histogram = entry.getValue();
+				final LatencyHistogram.Snapshot snapshot = histogram.harvest(counts);
+				if(snapshot!=null) {
+					listener.onHarvest(segment.getKey(), entry.getKey(), snapshot);
+					count++;
+				} else if(histogram.getIdleIntervals() > MAX_IDLE_INTERVALS) {
+					histogram.retired = true;
+					iter.remove();
+					retired.add(new Evicted(segment.getKey(), entry.getKey(), histogram));
+					evicted++;
+				}
+			}
+			// only removes the map if no recording thread replaced it, and keeps it for the next harvest in case a
+			// recording thread added a histogram to it after the emptiness check
+			if(metrics.isEmpty() && histograms.remove(segment.getKey(), metrics)) {
+				removed.put(segment.getKey(), metrics);
+			}
+		}
+		if(evicted>0) {
+			size.addAndGet(-evicted);
+			evictions.addAndGet(evicted);
+		}
+		return count;
+	}
+
+	/**
+	 * Removes all histograms
+	 */
+	public void clear() {
+		histograms.clear();
+		retired.clear();
+		removed.clear();
+		size.set(0);
+	}
+
+	/**
+	 * Returns the number of histograms
+	 * @return the number of histograms
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Returns the maximum number of histograms
+	 * @return the maximum number of histograms
+	 */
+	public int getMaxHistograms() {
+		return maxHistograms;
+	}
+
+	/**
+	 * Returns the number of values dropped because the store was full
+	 * @return the number of dropped values
+	 */
+	public long getOverflows() {
+		return overflows.get();
+	}
+
+	/**
+	 * Returns the number of histograms evicted
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * <p>Title: Evicted</p>
+	 * <p>Description: A retired histogram and its keys, drained into its replacement at the next harvest</p>
+	 */
+	protected static class Evicted {
+		/** The segment name */
+		protected final String segment;
+		/** The metric name */
+		protected final String metric;
+		/** The retired histogram */
+		protected final LatencyHistogram histogram;
+
+		/**
+		 * Creates a new Evicted
+		 * @param segment The segment name
+		 * @param metric The metric name
+		 * @param histogram The retired histogram
+		 */
+		protected Evicted(String segment, String metric, LatencyHistogram histogram) {
+			this.segment = segment;
+			this.metric = metric;
+			this.histogram = histogram;
+		}
+	}
+}
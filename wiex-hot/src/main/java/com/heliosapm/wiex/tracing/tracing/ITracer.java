@@ -32,6 +32,13 @@ public interface ITracer {
 	public static final String POOL_SIZE = "Current Pool Size";
 	public static final String MAX_POOL_SIZE = "Maximum Pool Size";
 	public static final String AGENT_ELAPSED = "Monitoring Overhead";
+	public static final String ELAPSED_NANOS = "Elapsed Time (ns.)";
+	/** The metric name suffixes of the percentiles and maximum traced for each histogram */
+	public static final String HISTOGRAM_P50 = "p50";
+	public static final String HISTOGRAM_P90 = "p90";
+	public static final String HISTOGRAM_P99 = "p99";
+	public static final String HISTOGRAM_P999 = "p999";
+	public static final String HISTOGRAM_MAX = "max";
 	public static final String ANONYMOUS = "Anonymous";
 	public static final String SYSTEM = "System";
 //	public static final String RSEG_DELIM = "|";
@@ -181,6 +188,15 @@ public interface ITracer {
 	 */
 	public void recordMetric(String segment, ThreadStats ts);
 	
+	/**
+	 * Records a value, typically a <code>System.nanoTime()</code> elapsed time, in the metric's latency histogram.
+	 * The 50th, 90th, 99th and 99.9th percentiles and the maximum of the values recorded in each interval are traced at the end of the interval.
+	 * @param segment The resource segments of the full metric name. e.g. <code>EJB|Session|OrderBean|saveOrder</code>
+	 * @param metric The metric name. e.g. <code>Elapsed Time (ns.)</code>
+	 * @param value The value to record.
+	 */
+	public void recordHistogram(String segment, String metric, long value);
+	
 	/**
 	 * Records a single incident of a metric for the current sampling interval.
 	 * @param fullMetricName The full metric name to record the incident for.
@@ -283,6 +299,31 @@ public interface ITracer {
 	 * @param value The new valoue to calculate the delta from.
 	 */		
 	public void recordMetricDelta(String segment, String metricName, long value);
+	
+	/**
+	 * Resolves the delta state handle of the passed metric, so callers that record the same delta metric repeatedly
+	 * can skip the segment and metric lookups. The handle is unseeded until its first delta is recorded.
+	 * @param segment The segment name.
+	 * @param metricName The metric name
+	 * @return the delta key handle.
+	 */
+	public DeltaStore.DeltaKey getDeltaKey(String segment, String metricName);
+	
+	/**
+	 * Records the delta of the passed value and the value previously recorded through the passed handle as a "sticky" counter.
+	 * If there is no previous value, the value is stored in state, but no trace is recorded.
+	 * @param key The delta key handle returned by {@link #getDeltaKey(String, String)}.
+	 * @param value The new value to calculate the delta from.
+	 */
+	public void recordCounterMetricDelta(DeltaStore.DeltaKey key, long value);
+	
+	/**
+	 * Records the delta of the passed value and the value previously recorded through the passed handle as an interval averaged counter.
+	 * If there is no previous value, the value is stored in state, but no trace is recorded.
+	 * @param key The delta key handle returned by {@link #getDeltaKey(String, String)}.
+	 * @param value The new value to calculate the delta from.
+	 */
+	public void recordMetricDelta(DeltaStore.DeltaKey key, long value);
 		
 
 	
@@ -337,6 +378,21 @@ public interface ITracer {
 	 */
 	public void trace(String key);
 	
+	/**
+	 * No Op trace command for external instrumentation, using a pre-split handle
+	 * acquired from {@link #getTraceKey(String)}.
+	 * @param key The trace key handle
+	 */
+	public void trace(TraceKey key);
+	
+	/**
+	 * Returns the interned, pre-split trace key handle for the passed key.
+	 * Instrumentation can hold the handle to avoid re-splitting and re-resolving the key on each trace.
+	 * @param key The full resource segment name of a metric
+	 * @return The trace key handle
+	 */
+	public TraceKey getTraceKey(String key);
+	
 	/**
 	 * Resets a counter to zero for a long counter
 	 * @param category The metric's resource segment.
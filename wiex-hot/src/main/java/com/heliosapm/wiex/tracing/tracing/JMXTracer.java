@@ -3,17 +3,24 @@
  */
 package com.heliosapm.wiex.tracing.tracing;
 
-import javax.management.InstanceNotFoundException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
 import com.heliosapm.wiex.jmx.dynamic.ManagedObjectDynamicMBean;
-import com.heliosapm.wiex.jmx.dynamic.OperationNotFoundException;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperationParameter;
 import com.heliosapm.wiex.jmx.util.MBeanServerHelper;
 import com.heliosapm.wiex.tracing.tracing.jmx.TracingMetricType;
 import com.heliosapm.wiex.tracing.tracing.jmx.metrics.AbstractMetric;
+import com.heliosapm.wiex.tracing.tracing.jmx.metrics.HistogramMetric;
 import com.heliosapm.wiex.tracing.tracing.jmx.metrics.IntCounterMetric;
 import com.heliosapm.wiex.tracing.tracing.jmx.metrics.IntMetric;
 import com.heliosapm.wiex.tracing.tracing.jmx.metrics.LongCounterMetric;
@@ -23,7 +30,10 @@ import com.heliosapm.wiex.tracing.tracing.thread.ThreadStats;
 
 /**
  * <p>Title: JMXTracer</p>
- * <p>Description: </p> 
+ * <p>Description: A concrete tracer that publishes metrics as attributes of one MBean per segment.
+ * Each segment and metric name resolves once to its metric object, which is updated directly on every sample.
+ * The MBean for a segment is registered, and each metric object is added to it, once, asynchronously, on a
+ * single registrar thread when the metric is first seen.</p> 
  * <p>Copyright: Copyright (c) 2006</p>
  * <p>Organization: Helios Development Group</p>
  * @author Whitehead
@@ -33,6 +43,20 @@ import com.heliosapm.wiex.tracing.tracing.thread.ThreadStats;
 public class JMXTracer extends AbstractTracer implements ITracer {
 	
 	protected MBeanServer mbeanServer = null;
+	/** The metric segments keyed by segment name */
+	protected final NonBlockingHashMap<String, MetricSegment> segments = new NonBlockingHashMap<String, MetricSegment>();
+	/** The number of metric objects */
+	protected final AtomicLong metricCount = new AtomicLong(0);
+	/** The number of failed MBean registrations */
+	protected final AtomicLong registrationFailures = new AtomicLong(0);
+	/** Registers segment MBeans and adds metric objects to them in the order the metrics are first seen */
+	protected final ExecutorService registrar = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "JMXTracerRegistrarThread");
+			t.setDaemon(true);
+			return t;
+		}
+	});
 	
 	public static final String MBEAN_KEY_PROPERTY = "type=WIEXTracingMetric";
 	public static final String JMX_DOMAIN_KEY = "wiex.tracing.jmx.domain";
@@ -100,7 +124,8 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 	 */
 	public void recordCounterMetric(String segment, String metric, long value) {
 		if(!TracerFactory.isTraceEnabled(segment)) return;
-		update(segment + ":" + MBEAN_KEY_PROPERTY, metric, value, TracingMetricType.LONG_COUNTER);
+		final AbstractMetric m = getMetric(segment, metric, TracingMetricType.LONG_COUNTER);
+		if(m instanceof LongMetric) ((LongMetric)m).update(value);
 
 	}
 
@@ -112,7 +137,8 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 	 */
 	public void recordCounterMetric(String segment, String metric, int value) {
 		if(!TracerFactory.isTraceEnabled(segment)) return;
-		update(segment + ":" + MBEAN_KEY_PROPERTY, metric, value, TracingMetricType.INT_COUNTER);
+		final AbstractMetric m = getMetric(segment, metric, TracingMetricType.INT_COUNTER);
+		if(m instanceof IntMetric) ((IntMetric)m).update(value);
 
 	}
 
@@ -169,7 +195,8 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 	 */
 	public void recordMetric(String segment, String metric, long value) {
 		if(!TracerFactory.isTraceEnabled(segment)) return;
-		update(segment + ":" + MBEAN_KEY_PROPERTY, metric, value, TracingMetricType.LONG);
+		final AbstractMetric m = getMetric(segment, metric, TracingMetricType.LONG);
+		if(m instanceof LongMetric) ((LongMetric)m).update(value);
 
 	}
 
@@ -181,7 +208,8 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 	 */
 	public void recordMetric(String segment, String metric, int value) {
 		if(!TracerFactory.isTraceEnabled(segment)) return;
-		update(segment + ":" + MBEAN_KEY_PROPERTY, metric, value, TracingMetricType.INT);
+		final AbstractMetric m = getMetric(segment, metric, TracingMetricType.INT);
+		if(m instanceof IntMetric) ((IntMetric)m).update(value);
 
 	}
 
@@ -193,7 +221,8 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 	 */
 	public void recordMetric(String segment, String metric, String value) {
 		if(!TracerFactory.isTraceEnabled(segment)) return;
-		update(segment + ":" + MBEAN_KEY_PROPERTY, metric, value, TracingMetricType.STRING);
+		final AbstractMetric m = getMetric(segment, metric, TracingMetricType.STRING);
+		if(m instanceof StringMetric) ((StringMetric)m).update(value);
 
 	}
 
@@ -233,6 +262,20 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 	}
 
 
+	/**
+	 * Publishes the interval snapshot of a latency histogram as the percentile attributes of a histogram metric.
+	 * @param segment The resource segments of the full metric name.
+	 * @param metric The histogram metric name.
+	 * @param snapshot The interval snapshot.
+	 * @see com.heliosapm.wiex.tracing.tracing.AbstractTracer#traceHistogram(java.lang.String, java.lang.String, com.heliosapm.wiex.tracing.tracing.LatencyHistogram.Snapshot)
+	 */
+	@Override
+	protected void traceHistogram(String segment, String metric, LatencyHistogram.Snapshot snapshot) {
+		final AbstractMetric m = getMetric(segment, metric, TracingMetricType.HISTOGRAM);
+		if(m instanceof HistogramMetric) ((HistogramMetric)m).update(snapshot);
+	}
+
+
 	/**
 	 * @param segment
 	 * @param metric
@@ -353,31 +396,77 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 
 	
 	
-	protected void update(String objectName, String attributeName, Object value, TracingMetricType metricType) {
-		Object managedObject = null;
-		try {
-			ObjectName on = new ObjectName(objectName);
-			//Attribute attribute = new Attribute(attributeName, value);
-			try {
-				//mbeanServer.setAttribute(on, attribute);
-				mbeanServer.invoke(on, "Update " + attributeName, new Object[]{value}, new String[]{"java.lang.Object"});
-			} catch (InstanceNotFoundException ine) {
-				// MBean was not registered
-				managedObject = createMetric(metricType, attributeName); 
-				ManagedObjectDynamicMBean mbean = new ManagedObjectDynamicMBean(managedObject); 
-				mbeanServer.registerMBean(mbean, on);
-				//mbeanServer.setAttribute(on, attribute);
-				mbeanServer.invoke(on, "Update " + attributeName, new Object[]{value}, new String[]{"java.lang.Object"});
-			} catch (OperationNotFoundException ane) {				
-				// Managed Object was not registered
-				managedObject = createMetric(metricType, attributeName);
-				mbeanServer.invoke(on, "addManagedObject", new Object[]{managedObject}, new String[]{"java.lang.Object"});
-				//mbeanServer.setAttribute(on, attribute);
-				mbeanServer.invoke(on, "Update " + attributeName, new Object[]{value}, new String[]{"java.lang.Object"});
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+	/**
+	 * Returns the metric object for the passed segment and metric name, creating it and scheduling its registration if it does not exist.
+	 * The type of a metric is fixed by its first sample, so callers must check the type of the returned object.
+	 * @param segment The segment name
+	 * @param metric The metric name
+	 * @param metricType The metric type
+	 * @return the metric object
+	 */
+	protected AbstractMetric getMetric(String segment, String metric, TracingMetricType metricType) {
+		MetricSegment seg = segments.get(segment);
+		if(seg==null) {
+			seg = new MetricSegment(segment);
+			MetricSegment prior = segments.putIfAbsent(segment, seg);
+			if(prior!=null) seg = prior;
+		}
+		AbstractMetric m = seg.metrics.get(metric);
+		if(m==null) {
+			m = createMetric(metricType, metric);
+			AbstractMetric prior = seg.metrics.putIfAbsent(metric, m);
+			if(prior!=null) return prior;
+			metricCount.incrementAndGet();
+			register(seg, m);
 		}
+		return m;
+	}
+	
+	/**
+	 * Schedules the registration of a new metric object. The segment's MBean is registered with the first metric object,
+	 * and later metric objects are added to it.
+	 * @param seg The metric segment
+	 * @param metric The new metric object
+	 */
+	protected void register(final MetricSegment seg, final AbstractMetric metric) {
+		registrar.execute(new Runnable() {
+			public void run() {
+				try {
+					if(seg.objectName==null) {
+						ObjectName on = new ObjectName(seg.segment + ":" + MBEAN_KEY_PROPERTY);
+						if(mbeanServer.isRegistered(on)) {
+							mbeanServer.invoke(on, "addManagedObject", new Object[]{metric}, new String[]{"java.lang.Object"});
+						} else {
+							mbeanServer.registerMBean(new ManagedObjectDynamicMBean(metric), on);
+						}
+						seg.objectName = on;
+					} else {
+						mbeanServer.invoke(seg.objectName, "addManagedObject", new Object[]{metric}, new String[]{"java.lang.Object"});
+					}
+				} catch (Exception e) {
+					registrationFailures.incrementAndGet();
+					if(log.isDebugEnabled()) log.debug("Failed to register metric [" + seg.segment + ":" + metric.getMetricName() + "]", e);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Returns the number of metric objects.
+	 * @return the number of metric objects
+	 */
+	@JMXAttribute(description="The number of metric objects.", name="MetricCount")
+	public long getMetricCount() {
+		return metricCount.get();
+	}
+	
+	/**
+	 * Returns the number of failed metric MBean registrations.
+	 * @return the number of registration failures
+	 */
+	@JMXAttribute(description="The number of failed metric MBean registrations.", name="RegistrationFailures")
+	public long getRegistrationFailures() {
+		return registrationFailures.get();
 	}
 	
 	
@@ -393,10 +482,33 @@ public class JMXTracer extends AbstractTracer implements ITracer {
 			return new LongMetric(attributeName);
 		}  else if(metricType.equals(TracingMetricType.STRING)) {
 			return new StringMetric(attributeName);
+		}  else if(metricType.equals(TracingMetricType.HISTOGRAM)) {
+			return new HistogramMetric(attributeName);
 		}
 		return metric;
 		
 	}
 	
+	/**
+	 * <p>Title: MetricSegment</p>
+	 * <p>Description: The metric objects of one segment and the object name of their MBean</p>
+	 */
+	protected static class MetricSegment {
+		/** The segment name */
+		protected final String segment;
+		/** The metric objects keyed by metric name */
+		protected final NonBlockingHashMap<String, AbstractMetric> metrics = new NonBlockingHashMap<String, AbstractMetric>();
+		/** The object name of the segment's MBean, set by the registrar thread once registered */
+		protected ObjectName objectName = null;
+		
+		/**
+		 * Creates a new MetricSegment
+		 * @param segment The segment name
+		 */
+		protected MetricSegment(String segment) {
+			this.segment = segment;
+		}
+	}
+	
 
 }
@@ -0,0 +1,239 @@
+package com.heliosapm.wiex.tracing.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Title: LatencyHistogram</p>
+ * <p>Description: A lock-free, fixed memory latency histogram with log-linear buckets in the style of an HDR histogram.
+ * Values below {@link #SUB_BUCKET_COUNT} each have their own bucket, and each power of 2 above that is split into
+ * {@link #SUB_BUCKET_COUNT}/2 linear buckets, so a reported percentile is within one part in 32 (about 3%) of the
+ * true value. Values above {@link #MAX_TRACKABLE} (about 73 minutes in nanoseconds) are clamped.</p>
+ * <p>Recording a value is one atomic increment of its bucket plus a CAS when it is a new maximum. {@link #harvest(long[])}
+ * drains and resets the buckets at the end of each interval, so values recorded concurrently with a harvest fall into one
+ * interval or the next.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.LatencyHistogram</code></p>
+ */
+public class LatencyHistogram {
+	/** The bucket counts */
+	protected final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	/** The maximum value recorded in the current interval */
+	protected final AtomicLong max = new AtomicLong(0);
+	/** The number of consecutive intervals with no recordings */
+	protected int idleIntervals = 0;
+	/** Set when the histogram is evicted from its store, so recording threads create a replacement */
+	protected volatile boolean retired = false;
+
+	/** The number of bits of linear resolution per power of 2 */
+	public static final int SUB_BUCKET_BITS = 6;
+	/** The number of linear buckets below the first power of 2 split */
+	public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	/** The number of bits of the highest trackable value */
+	public static final int MAX_VALUE_BITS = 42;
+	/** The highest trackable value. Larger values are clamped to this value. */
+	public static final long MAX_TRACKABLE = (1L << MAX_VALUE_BITS) - 1;
+	/** The number of buckets */
+	public static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE) + 1;
+
+	/** The exported percentiles */
+	private static final double[] PERCENTILES = new double[]{50D, 90D, 99D, 99.9D};
+
+	/**
+	 * Records a value
+	 * @param value The value to record. Negative values are recorded as zero.
+	 */
+	public void record(long value) {
+		final long v = value < 0 ? 0 : value > MAX_TRACKABLE ? MAX_TRACKABLE : value;
+		buckets.getAndIncrement(indexOf(v));
+		long current;
+		while(v > (current = max.get()) && !max.compareAndSet(current, v)) {/* retry */}
+	}
+
+	/**
+	 * Drains and resets the buckets and computes the interval's snapshot. Must only be called by one thread at a time.
+	 * @param counts A scratch array of at least {@link #BUCKET_COUNT} longs which receives the drained bucket counts
+	 * @return the snapshot, or null if no values were recorded in the interval
+	 */
+	public Snapshot harvest(long[] counts) {
+		long count = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			final long c = buckets.get(i)==0 ? 0 : buckets.getAndSet(i, 0);
+			counts[i] = c;
+			count += c;
+		}
+		final long mx = max.getAndSet(0);
+		if(count==0) {
+			idleIntervals++;
+			return null;
+		}
+		idleIntervals = 0;
+		final long[] values = new long[PERCENTILES.length];
+		int p = 0;
+		long threshold = countAt(PERCENTILES[p], count);
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT && p < values.length; i++) {
+			seen += counts[i];
+			while(p < values.length && seen >= threshold) {
+				values[p] = Math.min(highestEquivalentValue(i), mx);
+				if(++p < values.length) threshold = countAt(PERCENTILES[p], count);
+			}
+		}
+		return new Snapshot(count, values[0], values[1], values[2], values[3], mx);
+	}
+
+	/**
+	 * Drains and resets the buckets of the passed histogram into this histogram's buckets
+	 * @param histogram The histogram to drain
+	 */
+	public void merge(LatencyHistogram histogram) {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			final long c = histogram.buckets.get(i)==0 ? 0 : histogram.buckets.getAndSet(i, 0);
+			if(c!=0) buckets.addAndGet(i, c);
+		}
+		final long v = histogram.max.getAndSet(0);
+		long current;
+		while(v > (current = max.get()) && !max.compareAndSet(current, v)) {/* retry */}
+	}
+
+	/**
+	 * Returns the number of values at or below the passed percentile, rounded up and at least one
+	 * @param percentile The percentile
+	 * @param count The total number of values
+	 * @return the number of values
+	 */
+	private static long countAt(double percentile, long count) {
+		return Math.max(1L, (long)Math.ceil(percentile / 100D * count));
+	}
+
+	/**
+	 * Returns the bucket index of the passed value
+	 * @param value A value between 0 and {@link #MAX_TRACKABLE}
+	 * @return the bucket index
+	 */
+	static int indexOf(long value) {
+		if(value < SUB_BUCKET_COUNT) return (int)value;
+		final int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift << (SUB_BUCKET_BITS - 1)) + (int)(value >>> shift);
+	}
+
+	/**
+	 * Returns the highest value that falls into the passed bucket
+	 * @param index The bucket index
+	 * @return the highest value of the bucket
+	 */
+	static long highestEquivalentValue(int index) {
+		if(index < SUB_BUCKET_COUNT) return index;
+		final int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+		final long sub = index - (shift << (SUB_BUCKET_BITS - 1));
+		return ((sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * Returns the number of consecutive harvested intervals with no recordings
+	 * @return the number of idle intervals
+	 */
+	public int getIdleIntervals() {
+		return idleIntervals;
+	}
+
+	/**
+	 * <p>Title: Snapshot</p>
+	 * <p>Description: The count, percentiles and maximum of the values recorded in one interval</p>
+	 */
+	public static class Snapshot {
+		/** The number of recorded values */
+		protected final long count;
+		/** The 50th percentile */
+		protected final long p50;
+		/** The 90th percentile */
+		protected final long p90;
+		/** The 99th percentile */
+		protected final long p99;
+		/** The 99.9th percentile */
+		protected final long p999;
+		/** The maximum value */
+		protected final long max;
+
+		/**
+		 * Creates a new Snapshot
+		 * @param count The number of recorded values
+		 * @param p50 The 50th percentile
+		 * @param p90 The 90th percentile
+		 * @param p99 The 99th percentile
+		 * @param p999 The 99.9th percentile
+		 * @param max The maximum value
+		 */
+		public Snapshot(long count, long p50, long p90, long p99, long p999, long max) {
+			this.count = count;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+			this.max = max;
+		}
+
+		/**
+		 * Returns the number of recorded values
+		 * @return the count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the 50th percentile
+		 * @return the median
+		 */
+		public long getP50() {
+			return p50;
+		}
+
+		/**
+		 * Returns the 90th percentile
+		 * @return the 90th percentile
+		 */
+		public long getP90() {
+			return p90;
+		}
+
+		/**
+		 * Returns the 99th percentile
+		 * @return the 99th percentile
+		 */
+		public long getP99() {
+			return p99;
+		}
+
+		/**
+		 * Returns the 99.9th percentile
+		 * @return the 99.9th percentile
+		 */
+		public long getP999() {
+			return p999;
+		}
+
+		/**
+		 * Returns the maximum value
+		 * @return the maximum
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return new StringBuilder("count=").append(count)
+				.append(",p50=").append(p50)
+				.append(",p90=").append(p90)
+				.append(",p99=").append(p99)
+				.append(",p999=").append(p999)
+				.append(",max=").append(max).toString();
+		}
+	}
+}
@@ -18,6 +18,7 @@ public class LoggingTracer extends AbstractTracer {
 	protected static final String COUNTER = "[Counter]";
 	protected static final String COUNTER_ADD = "[CounterAdd]";
 	protected static final String INCIDENTS = "[Incidents]";
+	protected static final String HISTOGRAM = "[Histogram]";
 	
 	/**
 	 * {@inheritDoc}
@@ -114,6 +115,18 @@ public class LoggingTracer extends AbstractTracer {
 
 	}
 
+	/**
+	 * Logs the count, percentiles and maximum of a latency histogram's interval snapshot on one line.
+	 * @param segment The resource segments of the full metric name.
+	 * @param metric The histogram metric name.
+	 * @param snapshot The interval snapshot.
+	 * @see com.heliosapm.wiex.tracing.tracing.AbstractTracer#traceHistogram(java.lang.String, java.lang.String, com.heliosapm.wiex.tracing.tracing.LatencyHistogram.Snapshot)
+	 */
+	@Override
+	protected void traceHistogram(String segment, String metric, LatencyHistogram.Snapshot snapshot) {
+		log.info(getStringBuilder().append(HISTOGRAM).append(segment).append(getSegmentDelimeter()).append(metric).append(VALUE_DELIM).append(snapshot));
+	}
+
 	/* (non-Javadoc)
 	 * @see com.heliosapm.wiex.tracing.tracing.ITrace#recordTimeStamp(java.lang.String, java.lang.String, long)
 	 */
@@ -90,6 +90,14 @@ public class NullTracer extends AbstractTracer {
 	public void recordMetric(String segment, ThreadStats ts) {
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.AbstractTracer#recordHistogram(java.lang.String, java.lang.String, long)
+	 */
+	@Override
+	public void recordHistogram(String segment, String metric, long value) {
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordMetricIncidents(java.lang.String, java.lang.String, int)
@@ -27,10 +27,15 @@ public class ObjectHierarchyTree<K> {
 	protected K defaultValue = null;
 	/** The sparse value for incidental nodes */
 	protected K sparseValue = null;
-	/** Average Lookup Time */
+	/** Average Lookup Time in ns., sampled every {@link #LOOKUP_SAMPLE_RATE} lookups */
 	protected AtomicLong averageLookupTime = new AtomicLong(0L);
 	/** one reading taken */
 	protected boolean oneReading = false;
+	/** A racy lookup counter used only to select lookups to sample */
+	protected int lookups = 0;
+	
+	/** The number of lookups per timed sample (a power of 2) */
+	public static final int LOOKUP_SAMPLE_RATE = 1024;
 	
 	
 	
@@ -122,7 +127,8 @@ public class ObjectHierarchyTree<K> {
 	 * @return The located node's value or null.
 	 */
 	public K getValue(String name) {
-		long start = System.currentTimeMillis();
+		final boolean sample = ((lookups++) & (LOOKUP_SAMPLE_RATE-1))==0;
+		final long start = sample ? System.nanoTime() : 0L;
 		String[] segments = name.split(delimeter);
 		HierarchyNode<K> node = null;
 		HierarchyNode<K> node2 = null;
@@ -142,21 +148,27 @@ public class ObjectHierarchyTree<K> {
 				node2 = node;
 			}
 		}
-		long elapsed = System.currentTimeMillis()-start;
-		if(!oneReading) {
-			oneReading = true;
-			averageLookupTime.set(elapsed);
-		} else {
-			long currentAvg = averageLookupTime.get();
-			if((currentAvg + elapsed)==0L) {
-				averageLookupTime.set(0L);
+		if(sample) {
+			long elapsed = System.nanoTime()-start;
+			if(!oneReading) {
+				oneReading = true;
+				averageLookupTime.set(elapsed);
 			} else {
-				averageLookupTime.set((currentAvg + elapsed)/2);
-			}									
+				averageLookupTime.set((averageLookupTime.get() + elapsed)/2);
+			}
 		}
 		return node.getMember();
 	}
 	
+	/**
+	 * Compiles an immutable snapshot of the tree for allocation free lookups.
+	 * The tree must not be modified while it is being compiled.
+	 * @return the compiled hierarchy
+	 */
+	public CompiledHierarchy<K> compile() {
+		return new CompiledHierarchy<K>(hierarchy, wildCard, defaultValue);
+	}
+	
 	/**
 	 * Returns the node navigated to by the name space passed.
 	 * @param name The name space to retrieve the node from.
@@ -233,7 +245,7 @@ public class ObjectHierarchyTree<K> {
 	}
 	
 	/**
-	 * Returns the average lookup time for the hierarchy tree in milliseconds.
+	 * Returns the sampled average lookup time for the hierarchy tree in nanoseconds.
 	 * @return The average lookup time.
 	 */
 	public long getAverageLookupTime() {
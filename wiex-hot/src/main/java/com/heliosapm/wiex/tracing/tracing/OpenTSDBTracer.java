@@ -5,11 +5,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.util.Arrays;
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -17,8 +15,6 @@ import java.util.concurrent.atomic.AtomicLong;
 import javax.management.ObjectName;
 
 import org.apache.log4j.BasicConfigurator;
-import org.cliffc.high_scale_lib.Counter;
-import org.cliffc.high_scale_lib.NonBlockingHashMap;
 
 import com.heliosapm.wiex.jmx.JMXHelper;
 import com.heliosapm.wiex.jmx.dynamic.ManagedObjectDynamicMBean;
@@ -27,6 +23,17 @@ import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.util.MBeanServerHelper;
 import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
 import com.heliosapm.wiex.tracing.tracing.thread.ThreadStats;
+import com.heliosapm.wiex.tracing.tracing.tsdb.BlockingPutQueue;
+import com.heliosapm.wiex.tracing.tracing.tsdb.DirectBufferPool;
+import com.heliosapm.wiex.tracing.tracing.tsdb.IntervalCounters;
+import com.heliosapm.wiex.tracing.tracing.tsdb.PutAggregator;
+import com.heliosapm.wiex.tracing.tracing.tsdb.PutBatchHandler;
+import com.heliosapm.wiex.tracing.tracing.tsdb.PutEncoder;
+import com.heliosapm.wiex.tracing.tracing.tsdb.PutJournal;
+import com.heliosapm.wiex.tracing.tracing.tsdb.PutKey;
+import com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue;
+import com.heliosapm.wiex.tracing.tracing.tsdb.PutRingBuffer;
+import com.heliosapm.wiex.tracing.tracing.tsdb.RingWaitStrategy;
 
 /**
  * <p>Title: OpenTSDBTracer</p>
@@ -34,7 +41,22 @@ import com.heliosapm.wiex.tracing.tracing.thread.ThreadStats;
  * <p>Configure with these system properties: <ul>
  * 	<li><b>wiex.tsdb.host</b>: The OpenTSDB host or IP address. Default is <b>localhost</b></li>
  *  <li><b>wiex.tsdb.port</b>: The OpenTSDB telnet TCP listening port. Default is <b>4242</b></li>
+ *  <li><b>wiex.tsdb.buffer.size</b>: The size of the pooled direct buffers puts are encoded into. Default is <b>512</b></li>
+ *  <li><b>wiex.tsdb.buffer.pool.max</b>: The maximum number of idle pooled buffers. Default is <b>4096</b></li>
+ *  <li><b>wiex.tsdb.flush.batch</b>: The maximum number of puts written in one gathering write. Default is <b>128</b></li>
+ *  <li><b>wiex.tsdb.flushq.mode</b>: The flush queue implementation, <b>QUEUE</b> (a blocking queue) or <b>RING</b> (a lock-free ring buffer). Default is <b>QUEUE</b></li>
+ *  <li><b>wiex.tsdb.ring.wait</b>: The ring buffer consumer wait strategy, <b>BLOCKING</b>, <b>SLEEPING</b>, <b>YIELDING</b> or <b>BUSYSPIN</b>. Default is <b>BLOCKING</b></li>
+ *  <li><b>wiex.tsdb.journal.enabled</b>: Enables spilling puts to a disk journal while OpenTSDB is unavailable. Default is <b>true</b></li>
+ *  <li><b>wiex.tsdb.tmpfile</b>: The journal base file name. Default is <b>[java.io.tmpdir]/wiex-opentsdb-metrics.journal</b></li>
+ *  <li><b>wiex.tsdb.journal.segment.size</b>: The size of each journal segment file in bytes. Default is <b>8388608</b></li>
+ *  <li><b>wiex.tsdb.journal.segments.max</b>: The maximum number of journal segment files. Default is <b>16</b></li>
+ *  <li><b>wiex.tsdb.journal.replay.rate</b>: The maximum number of journaled puts replayed per second after reconnecting. Default is <b>5000</b></li>
+ *  <li><b>wiex.tsdb.aggregation.window</b>: The client side aggregation window in seconds. When greater than zero, interval averaged metrics 
+ *  are folded per metric and tags into count, sum, min and max rollups (tagged <b>agg=count|sum|min|max</b>) which are traced once per window. Default is <b>0</b> (disabled)</li>
+ *  <li><b>wiex.tsdb.aggregation.stripes</b>: The maximum number of accumulator stripes per aggregated metric. Default is <b>8</b></li>
+ *  <li><b>wiex.tsdb.counter.period</b>: The period in seconds at which per interval incident counts are merged and traced. Default is <b>15</b></li>
  * </ul></p>
+ * <p>Latency histogram percentiles are traced under the histogram's metric name, tagged <b>pct=p50|p90|p99|p999|max</b>.</p>
  * <p>Format of submission is: <pre>
  * 	put $metric $now $value host=$HOST key1=value1 key2=value2 ..... keyN=valueN 
  * </pre></p>
@@ -47,8 +69,8 @@ import com.heliosapm.wiex.tracing.tracing.thread.ThreadStats;
  */
 @JMXManagedObject(annotated=true)
 public class OpenTSDBTracer extends AbstractTracer implements Runnable {
-	/** The socket to transmit to OpenTSDB */
-	protected volatile Socket socket = null;
+	/** The socket channel to transmit to OpenTSDB */
+	protected volatile SocketChannel channel = null;
 	/** The OpenTSDB host name or IP address */
 	protected final String tsdbHost;
 	/** The OpenTSDB telnet TCP listening port */
@@ -59,6 +81,24 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	protected File metricFile = null;	
 	/** The size of the flush queue */
 	protected final int queueSizeConfig;
+	/** The maximum number of puts written in one gathering write */
+	protected final int flushBatchSize;
+	/** The pool of direct buffers puts are encoded into */
+	protected final DirectBufferPool bufferPool;
+	/** The put request encoder */
+	protected final PutEncoder encoder;
+	/** The journal puts are spilled to while disconnected, or null if journaling is disabled */
+	protected final PutJournal journal;
+	/** The maximum number of journaled puts replayed per second */
+	protected final int replayRate;
+	/** The client side aggregation window in seconds, or zero if aggregation is disabled */
+	protected final int aggregationWindow;
+	/** The client side aggregator, or null if aggregation is disabled */
+	protected final PutAggregator aggregator;
+	/** The period in seconds at which interval incident counts are traced */
+	protected final int counterPeriod;
+	/** The per interval incident counters */
+	protected final IntervalCounters intervalCounters;
 
 	
 	/** Indicates if we're tracing the timestamp using seconds or milliseconds */
@@ -66,7 +106,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	
 	
 	/** The flush queue */
-	protected final BlockingQueue<byte[]> flushQueue;
+	protected final PutQueue flushQueue;
 	/** The flush thread */
 	protected final Thread flushThread;
 	/** The flush thread run indicator */
@@ -85,11 +125,6 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 
 	
 	
-	/** Incident counter */
-	protected final NonBlockingHashMap<String, Counter> incidentCounters = new NonBlockingHashMap<String, Counter>(1024); 
-	/** Period counters, reset every xxx in a while */
-	protected final NonBlockingHashMap<String, Counter> periodCounters = new NonBlockingHashMap<String, Counter>(1024); 
-	
 	/** The JVM's temp file directory */
 	public static final String TMP_DIR = System.getProperty("java.io.tmpdir");
 	
@@ -106,11 +141,45 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	public static final String TSDB_PORT_PROP = "wiex.tsdb.port";
 	/** The opentsdb opentsdb flush queue size prop name */
 	public static final String TSDB_FLUSHQ_SIZE_PROP = "wiex.tsdb.flushq.size";
+	/** The pooled put buffer size prop name */
+	public static final String TSDB_BUFFER_SIZE_PROP = "wiex.tsdb.buffer.size";
+	/** The maximum number of idle pooled put buffers prop name */
+	public static final String TSDB_BUFFER_POOL_MAX_PROP = "wiex.tsdb.buffer.pool.max";
+	/** The flush batch size prop name */
+	public static final String TSDB_FLUSH_BATCH_PROP = "wiex.tsdb.flush.batch";
+	/** The default flush batch size */
+	public static final int DEFAULT_TSDB_FLUSH_BATCH = 128;
+	/** The flush queue mode prop name */
+	public static final String TSDB_FLUSHQ_MODE_PROP = "wiex.tsdb.flushq.mode";
+	/** The ring buffer flush queue mode */
+	public static final String FLUSHQ_MODE_RING = "RING";
+	/** The blocking queue flush queue mode */
+	public static final String FLUSHQ_MODE_QUEUE = "QUEUE";
+	/** The ring buffer consumer wait strategy prop name */
+	public static final String TSDB_RING_WAIT_PROP = "wiex.tsdb.ring.wait";
 	
 	/** The default opentsdb offline metric persistence file name */
-	public static final String DEFAULT_TSDB_PERSIST_FILE = TMP_DIR + (TMP_DIR.endsWith(File.pathSeparator) ? "" : File.pathSeparator) + "wiex-opentsdb-metrics.gzip";
+	public static final String DEFAULT_TSDB_PERSIST_FILE = TMP_DIR + (TMP_DIR.endsWith(File.separator) ? "" : File.separator) + "wiex-opentsdb-metrics.journal";
 	/** The opentsdb offline metric persistence file name property */
 	public static final String TSDB_PERSIST_FILE_PROP = "wiex.tsdb.tmpfile"; 	
+	/** The opentsdb offline metric journal enabled property */
+	public static final String TSDB_JOURNAL_ENABLED_PROP = "wiex.tsdb.journal.enabled";
+	/** The opentsdb offline metric journal segment size property */
+	public static final String TSDB_JOURNAL_SEGMENT_SIZE_PROP = "wiex.tsdb.journal.segment.size";
+	/** The opentsdb offline metric journal maximum segments property */
+	public static final String TSDB_JOURNAL_MAX_SEGMENTS_PROP = "wiex.tsdb.journal.segments.max";
+	/** The opentsdb offline metric journal replay rate property */
+	public static final String TSDB_JOURNAL_REPLAY_RATE_PROP = "wiex.tsdb.journal.replay.rate";
+	/** The default opentsdb offline metric journal replay rate */
+	public static final int DEFAULT_TSDB_JOURNAL_REPLAY_RATE = 5000;
+	/** The client side aggregation window property */
+	public static final String TSDB_AGGREGATION_WINDOW_PROP = "wiex.tsdb.aggregation.window";
+	/** The client side aggregation stripes property */
+	public static final String TSDB_AGGREGATION_STRIPES_PROP = "wiex.tsdb.aggregation.stripes";
+	/** The interval incident counter period property */
+	public static final String TSDB_COUNTER_PERIOD_PROP = "wiex.tsdb.counter.period";
+	/** The default interval incident counter period in seconds */
+	public static final int DEFAULT_TSDB_COUNTER_PERIOD = 15;
 	/** The opentsdb trace in millis property */
 	public static final String TSDB_TRACE_IN_MS_PROP = "wiex.tsdb.trace.ms";
 	
@@ -133,12 +202,23 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	
 	/** Metric name and tags only format */
 	public static final String KEY_FORMAT = "%s %s";
+	/** The tag key of traced histogram percentiles */
+	public static final String PCT_TAG = "pct";
 	
 	private OpenTSDBTracer(int i) {
 		tsdbHost = null;
 		tsdbPort = -1;
 		traceUsingMillis = false;
 		queueSizeConfig = -1;		
+		flushBatchSize = -1;
+		bufferPool = null;
+		encoder = null;
+		journal = null;
+		replayRate = -1;
+		aggregationWindow = 0;
+		aggregator = null;
+		counterPeriod = 0;
+		intervalCounters = null;
 		flushQueue = null;
 		flushThread = null;
 	}
@@ -151,7 +231,37 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 		tsdbPort = ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_PORT_PROP, DEFAULT_TSDB_PORT);
 		traceUsingMillis = ConfigurationHelper.getBooleanSystemThenEnvProperty(TSDB_TRACE_IN_MS_PROP, false);
 		queueSizeConfig = ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_FLUSHQ_SIZE_PROP, DEFAULT_TSDB_FLUSHQ_SIZE);		
-		flushQueue = new ArrayBlockingQueue<byte[]>(queueSizeConfig, false);
+		flushBatchSize = ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_FLUSH_BATCH_PROP, DEFAULT_TSDB_FLUSH_BATCH);
+		bufferPool = new DirectBufferPool(
+				ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_BUFFER_SIZE_PROP, DirectBufferPool.DEFAULT_BUFFER_SIZE),
+				ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_BUFFER_POOL_MAX_PROP, DirectBufferPool.DEFAULT_MAX_POOLED),
+				queueSizeConfig);
+		encoder = new PutEncoder(bufferPool, PutEncoder.DEFAULT_MAX_KEYS);
+		if(FLUSHQ_MODE_RING.equalsIgnoreCase(ConfigurationHelper.getSystemThenEnvProperty(TSDB_FLUSHQ_MODE_PROP, FLUSHQ_MODE_QUEUE).trim())) {
+			flushQueue = new PutRingBuffer(queueSizeConfig, RingWaitStrategy.decode(ConfigurationHelper.getSystemThenEnvProperty(TSDB_RING_WAIT_PROP, RingWaitStrategy.BLOCKING.name())));
+		} else {
+			flushQueue = new BlockingPutQueue(queueSizeConfig);
+		}
+		replayRate = Math.max(1, ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_JOURNAL_REPLAY_RATE_PROP, DEFAULT_TSDB_JOURNAL_REPLAY_RATE));
+		journal = initJournal();
+		aggregationWindow = ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_AGGREGATION_WINDOW_PROP, 0);
+		if(aggregationWindow>0) {
+			aggregator = new PutAggregator(ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_AGGREGATION_STRIPES_PROP, PutAggregator.DEFAULT_MAX_STRIPES));
+			scheduler.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					rollAggregates();
+				}
+			}, aggregationWindow, aggregationWindow, TimeUnit.SECONDS);
+		} else {
+			aggregator = null;
+		}
+		counterPeriod = Math.max(1, ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_COUNTER_PERIOD_PROP, DEFAULT_TSDB_COUNTER_PERIOD));
+		intervalCounters = new IntervalCounters(IntervalCounters.DEFAULT_MAX_STRIPES);
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				harvestCounters();
+			}
+		}, counterPeriod, counterPeriod, TimeUnit.SECONDS);
 		flushThread = new Thread(this, "OpenTSDBTracerFlushThread");
 		flushThread.setDaemon(true);
 		flushThread.start();
@@ -165,44 +275,208 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 		log.info(String.format("\n\t======================================================\n\tInitialized OpenTSDB Tracer\n\tHost: %s\n\tPort: %s\n\t======================================================\n", tsdbHost, tsdbPort));
 	}
 	
+	/**
+	 * Ends the current aggregation window and traces the rollups
+	 */
+	protected void rollAggregates() {
+		try {
+			final long now = time();
+			aggregator.roll(new PutAggregator.RollupListener() {
+				public void onRollup(PutAggregator.Aggregate aggregate, long count, long sum, long min, long max) {
+					enqueue(encoder.encode(aggregate.getCountKey(), now, count));
+					enqueue(encoder.encode(aggregate.getSumKey(), now, sum));
+					enqueue(encoder.encode(aggregate.getMinKey(), now, min));
+					enqueue(encoder.encode(aggregate.getMaxKey(), now, max));
+				}
+			});
+		} catch (Exception ex) {
+			log.warn("Failed to roll aggregates", ex);
+		}
+	}
+	
+	/**
+	 * Ends the current counter interval and traces the merged incident counts
+	 */
+	protected void harvestCounters() {
+		try {
+			final long now = time();
+			intervalCounters.harvest(new IntervalCounters.HarvestListener() {
+				public void onHarvest(IntervalCounters.IntervalCounter counter, long count) {
+					enqueue(encoder.encode(counter.getKey(), now, count));
+				}
+			});
+		} catch (Exception ex) {
+			log.warn("Failed to harvest interval counters", ex);
+		}
+	}
+	
+	/**
+	 * Creates the offline metric journal if enabled
+	 * @return the journal or null if journaling is disabled or the journal could not be created
+	 */
+	protected PutJournal initJournal() {
+		if(!ConfigurationHelper.getBooleanSystemThenEnvProperty(TSDB_JOURNAL_ENABLED_PROP, true)) return null;
+		metricFileName = ConfigurationHelper.getSystemThenEnvProperty(TSDB_PERSIST_FILE_PROP, DEFAULT_TSDB_PERSIST_FILE);
+		metricFile = new File(metricFileName);
+		try {
+			return new PutJournal(metricFile,
+					ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_JOURNAL_SEGMENT_SIZE_PROP, PutJournal.DEFAULT_SEGMENT_SIZE),
+					ConfigurationHelper.getIntSystemThenEnvProperty(TSDB_JOURNAL_MAX_SEGMENTS_PROP, PutJournal.DEFAULT_MAX_SEGMENTS));
+		} catch (Exception ex) {
+			log.warn("Failed to create OpenTSDB journal [" + metricFileName + "]. Metrics will be dropped while disconnected.", ex);
+			return null;
+		}
+	}
+	
 	public void run() {
 		log.info("Flush Thread Started");
-		final Set<byte[]> traces = new LinkedHashSet<byte[]>(128);
+		final FlushBatch batch = new FlushBatch(flushBatchSize);
+		final PutBatchHandler spiller = new PutBatchHandler() {
+			public void onPut(ByteBuffer put, long sequence, boolean endOfBatch) throws Exception {
+				try {
+					journal.spill(put);
+				} finally {
+					bufferPool.release(put);
+				}
+			}
+		};
+		long lastReplay = System.currentTimeMillis();
 		while(keepRunning) {
 			if(!connected.get()) {
-				try { Thread.currentThread().join(5000); } catch (Exception ex) {}
+				if(journal==null) {
+					try { Thread.currentThread().join(5000); } catch (Exception ex) {}
+				} else {
+					try {
+						flushQueue.drain(spiller, flushBatchSize, 1000);
+					} catch (InterruptedException iex) {
+						if(!keepRunning) break;
+					} catch (Exception ex) {
+						log.warn("Failed to spill to OpenTSDB journal", ex);
+						try { Thread.currentThread().join(1000); } catch (Exception x) {}
+					}
+				}
+				lastReplay = System.currentTimeMillis();
+				continue;
 			}
 			try {
-				byte[] trace = flushQueue.poll(2000, TimeUnit.MILLISECONDS);
-				if(trace!=null) {
-					traces.add(trace);
-					flushQueue.drainTo(traces, 127);
-					for(byte[] b: traces) {
-						socket.getOutputStream().write(b);
+				long drainTimeout = 2000;
+				if(journal!=null && journal.hasPending()) {
+					final long now = System.currentTimeMillis();
+					final int quota = (int)Math.min(Math.max(1, replayRate/10), (now - lastReplay) * replayRate / 1000);
+					if(quota>0) {
+						lastReplay = now;
+						try {
+							journal.replay(batch, bufferPool, quota);
+						} catch (IOException ix) {
+							// the replayed puts remain in the journal
+							batch.release();
+							forceSocketClosed(true);
+							continue;
+						}
 					}
-					metricsFlushed.addAndGet(traces.size());
-					traces.clear();
+					drainTimeout = 100;
+				} else {
+					lastReplay = System.currentTimeMillis();
 				}
+				flushQueue.drain(batch, flushBatchSize, drainTimeout);
 			} catch (IOException ix) {
+				batch.spill();
 				forceSocketClosed(true);
 			} catch (InterruptedException iex) {
 				if(!keepRunning) break;
 				if(Thread.interrupted()) Thread.interrupted();				
 			} catch (Exception ex) {
 				if(!keepRunning) break;
+			} finally {
+				batch.release();
 			}
 		}
 	}
 	
+	/**
+	 * <p>Title: FlushBatch</p>
+	 * <p>Description: Accumulates drained puts and writes them to the socket channel at the end of each batch</p>
+	 */
+	protected class FlushBatch implements PutBatchHandler {
+		/** The accumulated puts */
+		private final ByteBuffer[] traces;
+		/** The number of accumulated puts */
+		private int count = 0;
+		
+		/**
+		 * Creates a new FlushBatch
+		 * @param size The maximum batch size
+		 */
+		FlushBatch(int size) {
+			traces = new ByteBuffer[size];
+		}
+
+		public void onPut(ByteBuffer put, long sequence, boolean endOfBatch) throws Exception {
+			traces[count++] = put;
+			if(endOfBatch || count==traces.length) {
+				write(traces, count);
+				metricsFlushed.addAndGet(count);
+				release();
+			}
+		}
+		
+		/**
+		 * Spills the accumulated puts to the journal, if enabled, and returns them to the buffer pool
+		 */
+		void spill() {
+			if(journal!=null) {
+				try {
+					for(int i = 0; i < count; i++) {
+						traces[i].rewind();
+						journal.spill(traces[i]);
+					}
+				} catch (Exception ex) {
+					log.warn("Failed to spill to OpenTSDB journal", ex);
+				}
+			}
+			release();
+		}
+		
+		/**
+		 * Returns the accumulated puts to the buffer pool
+		 */
+		void release() {
+			for(int i = 0; i < count; i++) {
+				bufferPool.release(traces[i]);
+				traces[i] = null;
+			}
+			count = 0;
+		}
+	}
 	
-	protected Counter getIncidentCounter(String segments, String metric) {
-		final String key = String.format(KEY_FORMAT, metric, segments);
-		return incidentCounters.putIfAbsent(key, new Counter());
+	/**
+	 * Writes the passed buffers to the OpenTSDB socket channel in one or more gathering writes
+	 * @param buffers The buffers to write
+	 * @param count The number of buffers in the array to write
+	 * @throws IOException thrown on any IO error or if the channel is not connected
+	 */
+	protected void write(ByteBuffer[] buffers, int count) throws IOException {
+		final SocketChannel ch = channel;
+		if(ch==null) throw new IOException("OpenTSDB channel is not connected");
+		long remaining = 0;
+		for(int i = 0; i < count; i++) {
+			remaining += buffers[i].remaining();
+		}
+		while(remaining>0) {
+			remaining -= ch.write(buffers, 0, count);
+		}
 	}
 	
-	protected Counter getPeriodCounter(String segments, String metric) {
-		final String key = String.format(KEY_FORMAT, metric, segments);
-		return periodCounters.putIfAbsent(key, new Counter());
+	
+	/**
+	 * Returns the per interval incident counter for the passed segment and metric.
+	 * The counter is a long-lived handle which callers may retain to count incidents without any further lookup.
+	 * @param segments The tags segment
+	 * @param metric The metric name
+	 * @return the counter, or null if the put key cache is full and incidents should be traced directly
+	 */
+	public IntervalCounters.IntervalCounter getPeriodCounter(String segments, String metric) {
+		return intervalCounters.getCounter(encoder.getKey(metric, segments));
 	}
 	
 	
@@ -244,9 +518,9 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	protected void forceSocketClosed(boolean scheduleReconnect) {
 		connected.set(false);
 		try {
-			socket.close();
+			channel.close();
 		} catch (Exception x) {/* No Op */}
-		socket = null;
+		channel = null;
 		if(scheduleReconnect) {
 			scheduleReconnect();
 		}
@@ -257,35 +531,38 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 * @return true if the socket is now connected, false otherwise
 	 */
 	protected boolean connectSocket() {
-		if(socket!=null) {
-			if(socket.isConnected()) {
+		if(channel!=null) {
+			if(channel.isConnected()) {
 				connected.set(true);
 				return true;
 			}
 			connected.set(false);
 			try {
-				socket.close();
-				socket = null;
+				channel.close();
+				channel = null;
 				return connectSocket();
 			} catch (Exception x) {
 				connected.set(false);
 				return false;
 			}
 		}
-		socket = new Socket();
+		SocketChannel ch = null;
 		try {
+			ch = SocketChannel.open();
+			Socket socket = ch.socket();
 			socket.setKeepAlive(true);
 			socket.setReuseAddress(true);
 			socket.setSendBufferSize(8192 * 10);
 			socket.setSoLinger(false, 1);
-			socket.setSoTimeout(1000);
 			socket.setTcpNoDelay(false);
-			socket.connect(new InetSocketAddress(tsdbHost, tsdbPort));
+			ch.connect(new InetSocketAddress(tsdbHost, tsdbPort));
+			channel = ch;
 			connected.set(true);
 			return true;
 		} catch (Exception ex) {
 			log.error("Failed to connect OpenTSDBTracer to [" + tsdbHost + ":" + tsdbPort + "]", ex);
-			socket = null;
+			if(ch!=null) try { ch.close(); } catch (Exception x) {/* No Op */}
+			channel = null;
 			connected.set(false);
 			return false;
 		}
@@ -368,10 +645,43 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 * @param putExpr an OpenTSDB put request
 	 */
 	public void record(String putExpr) {
-		log.info(putExpr);
+		if(log.isDebugEnabled()) log.debug(putExpr);
+		enqueue(encoder.encode(putExpr));
+	}
+	
+	/**
+	 * Encodes a put request for the passed metric, segment and value and offers it to the flush queue
+	 * @param segment The tags segment
+	 * @param metric The metric name
+	 * @param value The value to trace
+	 */
+	protected void record(String segment, String metric, long value) {
+		enqueue(encoder.encode(encoder.getKey(metric, segment), time(), value));
+	}
+	
+	/**
+	 * Folds the passed value into the aggregate for the passed metric and segment if aggregation is enabled, 
+	 * otherwise encodes a put request and offers it to the flush queue
+	 * @param segment The tags segment
+	 * @param metric The metric name
+	 * @param value The value to trace
+	 */
+	protected void aggregate(String segment, String metric, long value) {
+		final PutKey key = encoder.getKey(metric, segment);
+		if(aggregator==null || !aggregator.record(key, value)) {
+			enqueue(encoder.encode(key, time(), value));
+		}
+	}
+	
+	/**
+	 * Offers an encoded put request to the flush queue, returning the buffer to the pool if it is dropped
+	 * @param buff The encoded put request
+	 */
+	protected void enqueue(ByteBuffer buff) {
 		metricsTraced.incrementAndGet();
-		if(flushQueue.offer(putExpr.trim().getBytes())) {
+		if(!flushQueue.offer(buff)) {
 			metricDrops.incrementAndGet();
+			bufferPool.release(buff);
 		}
 	}
 
@@ -381,7 +691,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordMetric(String segment, String metric, long value) {
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
+		aggregate(segment, metric, value);
 	}
 	
 
@@ -391,7 +701,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordMetric(String segment, String metric, int value) {
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
+		aggregate(segment, metric, value);
 	}
 
 	/**
@@ -409,11 +719,12 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordMetric(String segment, String metric) {
-		Counter ctr = getPeriodCounter(segment, metric);
-		ctr.increment();
-		final long value = ctr.get(); 
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
-
+		final IntervalCounters.IntervalCounter ctr = getPeriodCounter(segment, metric);
+		if(ctr!=null) {
+			ctr.increment();
+		} else {
+			record(segment, metric, 1);
+		}
 	}
 
 	/**
@@ -422,10 +733,12 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordMetricIncidents(String segment, String metric, int incidents) {
-		Counter ctr = getPeriodCounter(segment, metric);
-		ctr.add(incidents);
-		final long value = ctr.get(); 
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
+		final IntervalCounters.IntervalCounter ctr = getPeriodCounter(segment, metric);
+		if(ctr!=null) {
+			ctr.add(incidents);
+		} else {
+			record(segment, metric, incidents);
+		}
 	}
 
 	/**
@@ -434,7 +747,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordTimeStamp(String segment, String metric, long timestamp) {
-		record(String.format(PUT_FORMAT, metric, time(), timestamp, segment));
+		record(segment, metric, timestamp);
 
 	}
 
@@ -444,7 +757,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordCounterMetric(String segment, String metric, long value) {
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
+		record(segment, metric, value);
 	}
 
 	/**
@@ -453,7 +766,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordCounterMetric(String segment, String metric, int value) {
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
+		record(segment, metric, value);
 
 	}
 
@@ -463,7 +776,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordCounterMetricAdd(String segment, String metric, long value) {
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
+		record(segment, metric, value);
 	}
 
 	/**
@@ -472,7 +785,7 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 	 */
 	@Override
 	public void recordCounterMetricAdd(String segment, String metric, int value) {
-		record(String.format(PUT_FORMAT, metric, time(), value, segment));
+		record(segment, metric, value);
 
 	}
 
@@ -495,6 +808,22 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>Each percentile and the maximum is traced under the histogram metric name, tagged with <b>pct</b>.</p>
+	 * @see com.heliosapm.wiex.tracing.tracing.AbstractTracer#traceHistogram(java.lang.String, java.lang.String, com.heliosapm.wiex.tracing.tracing.LatencyHistogram.Snapshot)
+	 */
+	@Override
+	protected void traceHistogram(String segment, String metric, LatencyHistogram.Snapshot snapshot) {
+		final long now = time();
+		final String seg = (segment==null ? "" : segment) + " " + PCT_TAG + "=";
+		enqueue(encoder.encode(encoder.getKey(metric, seg + HISTOGRAM_P50), now, snapshot.getP50()));
+		enqueue(encoder.encode(encoder.getKey(metric, seg + HISTOGRAM_P90), now, snapshot.getP90()));
+		enqueue(encoder.encode(encoder.getKey(metric, seg + HISTOGRAM_P99), now, snapshot.getP99()));
+		enqueue(encoder.encode(encoder.getKey(metric, seg + HISTOGRAM_P999), now, snapshot.getP999()));
+		enqueue(encoder.encode(encoder.getKey(metric, seg + HISTOGRAM_MAX), now, snapshot.getMax()));
+	}
+
 	/**
 	 * Returns the metric file name where metrics are persisted if OpenTSDB goes off line
 	 * @return the metric file name
@@ -558,5 +887,212 @@ public class OpenTSDBTracer extends AbstractTracer implements Runnable {
 		return metricsFlushed.get();
 	}
 	
+	/**
+	 * Returns the flush queue implementation
+	 * @return the flush queue implementation
+	 */
+	@JMXAttribute(name="FlushQueueMode", description="The flush queue implementation")
+	public final String getFlushQueueMode() {
+		return flushQueue instanceof PutRingBuffer ? FLUSHQ_MODE_RING + "/" + ((PutRingBuffer)flushQueue).getWaitStrategy().name() : FLUSHQ_MODE_QUEUE;
+	}
+	
+	/**
+	 * Returns the percentage occupancy of the flush queue
+	 * @return the percentage occupancy of the flush queue
+	 */
+	@JMXAttribute(name="QueueOccupancy", description="The percentage occupancy of the flush queue")
+	public final int getQueueOccupancy() {
+		return (int)(flushQueue.size() * 100L / flushQueue.capacity());
+	}
+	
+	/**
+	 * Returns the number of times a recording thread could not immediately enqueue a put
+	 * @return the number of producer stalls
+	 */
+	@JMXAttribute(name="ProducerStalls", description="The number of times a recording thread could not immediately enqueue a put")
+	public final long getProducerStalls() {
+		return flushQueue.getProducerStalls();
+	}
+	
+	/**
+	 * Returns the client side aggregation window in seconds
+	 * @return the aggregation window in seconds, or zero if aggregation is disabled
+	 */
+	@JMXAttribute(name="AggregationWindow", description="The client side aggregation window in seconds, or zero if aggregation is disabled")
+	public final int getAggregationWindow() {
+		return aggregationWindow;
+	}
+	
+	/**
+	 * Returns the number of active client side aggregates
+	 * @return the number of active aggregates
+	 */
+	@JMXAttribute(name="AggregateCount", description="The number of active client side aggregates")
+	public final int getAggregateCount() {
+		return aggregator==null ? 0 : aggregator.getAggregateCount();
+	}
+	
+	/**
+	 * Returns the total number of samples folded into client side aggregates
+	 * @return the total number of aggregated samples
+	 */
+	@JMXAttribute(name="AggregatedSamples", description="The total number of samples folded into client side aggregates")
+	public final long getAggregatedSamples() {
+		return aggregator==null ? 0 : aggregator.getSamples();
+	}
+	
+	/**
+	 * Returns the total number of aggregate rollups traced
+	 * @return the total number of rollups
+	 */
+	@JMXAttribute(name="AggregateRollups", description="The total number of aggregate rollups traced")
+	public final long getAggregateRollups() {
+		return aggregator==null ? 0 : aggregator.getRollups();
+	}
+	
+	/**
+	 * Returns the period at which interval incident counts are traced
+	 * @return the counter period in seconds
+	 */
+	@JMXAttribute(name="CounterPeriod", description="The period in seconds at which interval incident counts are traced")
+	public final int getCounterPeriod() {
+		return counterPeriod;
+	}
+	
+	/**
+	 * Returns the number of registered interval incident counters
+	 * @return the number of interval counters
+	 */
+	@JMXAttribute(name="IntervalCounterCount", description="The number of registered interval incident counters")
+	public final int getIntervalCounterCount() {
+		return intervalCounters.getCounterCount();
+	}
+	
+	/**
+	 * Returns the total number of incidents counted and traced by the interval counters
+	 * @return the total number of counted incidents
+	 */
+	@JMXAttribute(name="CountedIncidents", description="The total number of incidents counted and traced by the interval counters")
+	public final long getCountedIncidents() {
+		return intervalCounters.getIncidents();
+	}
+	
+	/**
+	 * Indicates if puts are journaled to disk while OpenTSDB is unavailable
+	 * @return true if journaling is enabled
+	 */
+	@JMXAttribute(name="JournalEnabled", description="Indicates if puts are journaled to disk while OpenTSDB is unavailable")
+	public final boolean isJournalEnabled() {
+		return journal!=null;
+	}
+	
+	/**
+	 * Returns the number of pending bytes in the journal
+	 * @return the number of pending journal bytes
+	 */
+	@JMXAttribute(name="JournalBytes", description="The number of pending bytes in the journal")
+	public final long getJournalBytes() {
+		return journal==null ? 0 : journal.getPendingBytes();
+	}
+	
+	/**
+	 * Returns the maximum disk footprint of the journal in bytes
+	 * @return the maximum journal disk footprint
+	 */
+	@JMXAttribute(name="JournalCapacity", description="The maximum disk footprint of the journal in bytes")
+	public final long getJournalCapacity() {
+		return journal==null ? 0 : journal.getCapacity();
+	}
+	
+	/**
+	 * Returns the total number of puts spilled to the journal
+	 * @return the total number of puts spilled to the journal
+	 */
+	@JMXAttribute(name="JournalSpilled", description="The total number of puts spilled to the journal")
+	public final long getJournalSpilled() {
+		return journal==null ? 0 : journal.getSpilled();
+	}
+	
+	/**
+	 * Returns the total number of puts replayed from the journal
+	 * @return the total number of puts replayed from the journal
+	 */
+	@JMXAttribute(name="JournalReplayed", description="The total number of puts replayed from the journal")
+	public final long getJournalReplayed() {
+		return journal==null ? 0 : journal.getReplayed();
+	}
+	
+	/**
+	 * Returns the total number of puts discarded by the journal
+	 * @return the total number of puts discarded by the journal
+	 */
+	@JMXAttribute(name="JournalDropped", description="The total number of puts discarded by the journal")
+	public final long getJournalDropped() {
+		return journal==null ? 0 : journal.getDropped();
+	}
+	
+	/**
+	 * Returns the maximum number of journaled puts replayed per second
+	 * @return the journal replay rate
+	 */
+	@JMXAttribute(name="JournalReplayRate", description="The maximum number of journaled puts replayed per second")
+	public final int getJournalReplayRate() {
+		return replayRate;
+	}
+	
+	/**
+	 * Returns the time the oldest pending journaled put was spilled
+	 * @return the oldest pending journal timestamp in ms, or -1 if there are none
+	 */
+	@JMXAttribute(name="JournalOldestTimestamp", description="The time the oldest pending journaled put was spilled, or -1 if there are none")
+	public final long getJournalOldestTimestamp() {
+		return journal==null ? -1L : journal.getOldestTimestamp();
+	}
+	
+	/**
+	 * Returns the size of the pooled put buffers
+	 * @return the size of the pooled put buffers
+	 */
+	@JMXAttribute(name="BufferSize", description="The size of the pooled put buffers")
+	public final int getBufferSize() {
+		return bufferPool.getBufferSize();
+	}
+	
+	/**
+	 * Returns the number of idle buffers in the put buffer pool
+	 * @return the number of idle pooled buffers
+	 */
+	@JMXAttribute(name="PooledBuffers", description="The number of idle buffers in the put buffer pool")
+	public final int getPooledBuffers() {
+		return bufferPool.getPooled();
+	}
+	
+	/**
+	 * Returns the total number of direct put buffers allocated
+	 * @return the total number of direct put buffers allocated
+	 */
+	@JMXAttribute(name="BufferAllocations", description="The total number of direct put buffers allocated")
+	public final long getBufferAllocations() {
+		return bufferPool.getAllocations();
+	}
+	
+	/**
+	 * Returns the number of puts that were too large for a pooled buffer
+	 * @return the number of oversized puts
+	 */
+	@JMXAttribute(name="OversizedPuts", description="The number of puts that were too large for a pooled buffer")
+	public final long getOversizedPuts() {
+		return encoder.getOversized();
+	}
+	
+	/**
+	 * Returns the number of cached pre-encoded metric keys
+	 * @return the number of cached put keys
+	 */
+	@JMXAttribute(name="CachedPutKeys", description="The number of cached pre-encoded metric keys")
+	public final int getCachedPutKeys() {
+		return encoder.getKeyCount();
+	}
+	
 
 }
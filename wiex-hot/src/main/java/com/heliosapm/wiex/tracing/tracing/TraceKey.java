@@ -0,0 +1,122 @@
+package com.heliosapm.wiex.tracing.tracing;
+
+/**
+ * <p>Title: TraceKey</p>
+ * <p>Description: An immutable, pre-split handle for a full trace key. The segments are split once when the
+ * handle is created, and the enabled state is resolved against the {@link TracerFactory} tracing hierarchy once
+ * per change of the tracing verbosity, so instrumentation holding a handle pays neither a split nor a hierarchy
+ * lookup per call. The handle also carries the per-key invocation sampling state used by instrumentation.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.TraceKey</code></p>
+ */
+public final class TraceKey {
+	/** The full trace key */
+	protected final String key;
+	/** The pre-split key segments */
+	protected final String[] segments;
+	/** Indicates if this is the canonical, registered instance for the key */
+	protected final boolean cached;
+	/** The resolved enabled state, packed as <code>(verbosityVersion &lt;&lt; 1) | enabled</code>. -1 when unresolved. */
+	private volatile long resolved = -1L;
+	/** A racy count of invocations since the last sampled invocation, used by instrumentation sampling */
+	private int sampleCount = 0;
+	/** Indicates that the next invocation should be sampled */
+	private boolean forceSample = false;
+
+	/**
+	 * Creates a new TraceKey
+	 * @param key The full trace key
+	 * @param segments The pre-split key segments
+	 * @param cached true if this is the canonical, registered instance for the key
+	 */
+	TraceKey(String key, String[] segments, boolean cached) {
+		this.key = key;
+		this.segments = segments;
+		this.cached = cached;
+	}
+
+	/**
+	 * Determines if tracing is enabled for this key.
+	 * The state is resolved from the tracing hierarchy only when the tracing verbosity has changed since the last resolution.
+	 * @return true if tracing is enabled for this key
+	 */
+	public boolean isEnabled() {
+		final long version = TracerFactory.getVerbosityVersion();
+		final long r = resolved;
+		if(r!=-1L && (r >>> 1)==version) return (r & 1L)==1L;
+		final boolean enabled = TracerFactory.isTraceEnabled(key);
+		resolved = (version << 1) | (enabled ? 1L : 0L);
+		return enabled;
+	}
+
+	/**
+	 * Determines if the current invocation against this key should be sampled, which is every <code>rate</code>
+	 * invocations or the next invocation after {@link #forceSample()}. The sampling state is updated without
+	 * synchronization, so concurrent invocations may occasionally sample more or less often than the rate.
+	 * @param rate The sampling rate, where 1 samples every invocation
+	 * @return true if the invocation should be sampled
+	 */
+	public boolean sample(int rate) {
+		if(forceSample) {
+			forceSample = false;
+			sampleCount = 0;
+			return true;
+		}
+		if(++sampleCount >= rate) {
+			sampleCount = 0;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Requests that the next invocation against this key is sampled
+	 */
+	public void forceSample() {
+		forceSample = true;
+	}
+
+	/**
+	 * Returns the full trace key
+	 * @return the full trace key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the number of segments in the key
+	 * @return the number of segments
+	 */
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	/**
+	 * Returns the segment at the passed index
+	 * @param index The segment index
+	 * @return the segment
+	 */
+	public String getSegment(int index) {
+		return segments[index];
+	}
+
+	/**
+	 * Indicates if this is the canonical, registered instance for the key.
+	 * Uncached handles are issued once the registry is full and should not be retained.
+	 * @return true if this handle is registered
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TraceKey [" + key + "]";
+	}
+}
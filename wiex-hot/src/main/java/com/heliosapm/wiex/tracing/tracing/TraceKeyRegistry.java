@@ -0,0 +1,93 @@
+package com.heliosapm.wiex.tracing.tracing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+/**
+ * <p>Title: TraceKeyRegistry</p>
+ * <p>Description: An interning registry of {@link TraceKey} handles for one tracer's segment delimiter.
+ * Each distinct key is split once and the same handle is returned for every subsequent lookup.
+ * Once the registry reaches its maximum size, new keys are issued uncached handles.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.TraceKeyRegistry</code></p>
+ */
+public class TraceKeyRegistry {
+	/** The registered handles keyed by the full trace key */
+	protected final NonBlockingHashMap<String, TraceKey> keys = new NonBlockingHashMap<String, TraceKey>(1024);
+	/** The pattern the keys are split with */
+	protected final Pattern pattern;
+	/** The maximum number of registered handles */
+	protected final int maxKeys;
+	/** The number of registered handles */
+	protected final AtomicInteger keyCount = new AtomicInteger(0);
+	/** The number of uncached handles issued because the registry was full */
+	protected final AtomicLong overflows = new AtomicLong(0);
+
+	/** The default maximum number of registered handles */
+	public static final int DEFAULT_MAX_KEYS = 50000;
+
+	/**
+	 * Creates a new TraceKeyRegistry
+	 * @param pattern The pattern the keys are split with
+	 * @param maxKeys The maximum number of registered handles
+	 */
+	public TraceKeyRegistry(Pattern pattern, int maxKeys) {
+		this.pattern = pattern;
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * Returns the handle for the passed key, registering it if it has not been seen before.
+	 * @param key The full trace key
+	 * @return the trace key handle
+	 */
+	public TraceKey get(String key) {
+		TraceKey traceKey = keys.get(key);
+		if(traceKey!=null) return traceKey;
+		if(keyCount.get()>=maxKeys) {
+			overflows.incrementAndGet();
+			return new TraceKey(key, pattern.split(key), false);
+		}
+		traceKey = new TraceKey(key, pattern.split(key), true);
+		TraceKey prior = keys.putIfAbsent(key, traceKey);
+		if(prior!=null) return prior;
+		keyCount.incrementAndGet();
+		return traceKey;
+	}
+
+	/**
+	 * Removes all registered handles. Handles already held by instrumentation remain valid.
+	 */
+	public void clear() {
+		keys.clear();
+		keyCount.set(0);
+	}
+
+	/**
+	 * Returns the number of registered handles
+	 * @return the number of registered handles
+	 */
+	public int getKeyCount() {
+		return keyCount.get();
+	}
+
+	/**
+	 * Returns the maximum number of registered handles
+	 * @return the maximum number of registered handles
+	 */
+	public int getMaxKeys() {
+		return maxKeys;
+	}
+
+	/**
+	 * Returns the number of uncached handles issued because the registry was full
+	 * @return the number of overflows
+	 */
+	public long getOverflows() {
+		return overflows.get();
+	}
+}
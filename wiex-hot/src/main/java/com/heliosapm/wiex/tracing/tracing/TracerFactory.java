@@ -81,8 +81,19 @@ public class TracerFactory   {
 	
 	
 	public static ObjectHierarchyTree<Boolean> tracingState = null;
-	
-	/** Average Lookup Time */
+	/** The compiled snapshot of the tracing state, republished whenever the tracing state changes */
+	protected static volatile CompiledHierarchy<Boolean> compiledState = null;
+	/** The characters delimiting tracing category segments, or null if the tracer's delimiters cannot be walked as single characters */
+	protected static char[] categorySeparators = null;
+	/** Serializes changes to the tracing state */
+	protected static final Object stateLock = new Object();
+	/** A racy counter used only to select verbosity lookups to sample */
+	protected static int verbosityLookups = 0;
+	
+	/** The tracing verbosity version, incremented whenever the tracing hierarchy changes */
+	protected static final AtomicLong verbosityVersion = new AtomicLong(0L);
+	
+	/** Average Lookup Time in ns., sampled every {@link ObjectHierarchyTree#LOOKUP_SAMPLE_RATE} lookups */
 	protected static AtomicLong averageLookupTime = new AtomicLong(0L);
 	/** one reading taken */
 	protected static boolean oneReading = false;
@@ -229,12 +240,13 @@ public class TracerFactory   {
 	protected static synchronized void initTracer() {
 		if(tracer!=null) return;
 		ClassLoader currentThreadClassLoader = null;
+		tracingState = new ObjectHierarchyTree<Boolean>("\\.", "*", Boolean.TRUE, Boolean.FALSE);
+		compiledState = tracingState.compile();
 		try {
 			currentThreadClassLoader = Thread.currentThread().getContextClassLoader();
 			Thread.currentThread().setContextClassLoader(ITracer.class.getClassLoader());
 			try {
 				tracer = (ITracer)Class.forName(tracerClassName).newInstance();
-				tracingState = new ObjectHierarchyTree<Boolean>("\\.", "*", Boolean.TRUE, Boolean.FALSE);
 				try {
 					userIdLocator = (UserIdLocator)Class.forName(userIdLocatorClassName).newInstance();
 				} catch (Throwable e) {
@@ -247,6 +259,7 @@ public class TracerFactory   {
 				tracer = new NullTracer();
 				tracer.setUserIdLocator(new NullUserIdLocator());
 			}
+			categorySeparators = categorySeparators(tracer);
 			if(!jmxDomain.equalsIgnoreCase("None")) {
 				registerMBean();
 			}
@@ -258,6 +271,19 @@ public class TracerFactory   {
 	
 	
 	
+	/**
+	 * Determines the characters that delimit the segments of a tracing category for the passed tracer.
+	 * These are the period and the tracer's segment and metric delimiters, which {@link #getTracerLogger(String)} replaces with periods.
+	 * @param tracer The tracer
+	 * @return the separator characters, or null if either of the tracer's delimiters is not a single character
+	 */
+	protected static char[] categorySeparators(ITracer tracer) {
+		String segmentDelimeter = tracer.getSegmentDelimeter();
+		String metricDelimeter = tracer.getMetricDelimeter();
+		if(segmentDelimeter==null || segmentDelimeter.length()!=1 || metricDelimeter==null || metricDelimeter.length()!=1) return null;
+		return new char[]{'.', segmentDelimeter.charAt(0), metricDelimeter.charAt(0)};
+	}
+	
 	/**
 	 * Registers the TracerFactoryMBean with the configured MBeanServer. 
 	 */
@@ -280,7 +306,7 @@ public class TracerFactory   {
 	 */
 	@JMXAttribute(description="The size of the tracing logger cache.", name="Tracing Logger Count")
 	public static int getTracingLoggerCount() {
-		return tracingState.getTreeSize();
+		return compiledState.size();
 	}
 	
 	/**
@@ -294,7 +320,11 @@ public class TracerFactory   {
 	
 	@JMXOperation(description="Resets the tracing verbosity back to boostrap levels", name="Tracing Verbosity Reset")
 	public static void resetVerbosity() {
-		tracingState.clear();
+		synchronized(stateLock) {
+			tracingState.clear();
+			compiledState = tracingState.compile();
+			verbosityVersion.incrementAndGet();
+		}
 		bootStrapVerbosity();
 	}
 	
@@ -315,32 +345,51 @@ public class TracerFactory   {
 			@JMXOperationParameter(description="True for enabled, False for disabled", name="Enabled")boolean enabled) {
 		
 		String s = getTracerLogger(category);
-		tracingState.setMember(s, Boolean.valueOf(enabled));
+		synchronized(stateLock) {
+			tracingState.setMember(s, Boolean.valueOf(enabled));
+			compiledState = tracingState.compile();
+			verbosityVersion.incrementAndGet();
+		}
 		return s + ":" + enabled;
 		
 	}
 	
+	/**
+	 * Returns the tracing verbosity version, which is incremented whenever the tracing hierarchy changes.
+	 * Used by {@link TraceKey} handles to detect when their resolved enabled state is stale.
+	 * @return the tracing verbosity version
+	 */
+	public static long getVerbosityVersion() {
+		return verbosityVersion.get();
+	}
+	
 	/**
 	 * Determines if trace is enabled for the passed category.
+	 * The category is walked directly against the compiled tracing state without being split or rewritten.
+	 * Lookup times are sampled every {@link ObjectHierarchyTree#LOOKUP_SAMPLE_RATE} calls.
 	 * @param tracerCategory
 	 * @return true if trace is enabled.
 	 */
 	@JMXOperation(description="Determines if a tracing category is enabled.", name="TraceEnabled")
 	public static boolean isTraceEnabled(@JMXOperationParameter(description="The full metric name", name="FullMetricName") String tracerCategory) {
-		long start = System.currentTimeMillis();		
-		boolean b = tracingState.getValue(getTracerLogger(tracerCategory));
-		long elapsed = System.currentTimeMillis()-start;
-		if(!oneReading) {
-			oneReading = true;
-			averageLookupTime.set(elapsed);
+		final boolean sample = ((verbosityLookups++) & (ObjectHierarchyTree.LOOKUP_SAMPLE_RATE-1))==0;
+		final long start = sample ? System.nanoTime() : 0L;
+		final char[] separators = categorySeparators;
+		final boolean b;
+		if(separators!=null) {
+			b = compiledState.getValue(tracerCategory, separators);
 		} else {
-			long currentAvg = averageLookupTime.get();			
-			if((currentAvg + elapsed)==0L) {
-				averageLookupTime.set(0L);
+			b = tracingState.getValue(getTracerLogger(tracerCategory));
+		}
+		if(sample) {
+			long elapsed = System.nanoTime()-start;
+			if(!oneReading) {
+				oneReading = true;
+				averageLookupTime.set(elapsed);
 			} else {
-				averageLookupTime.set((currentAvg + elapsed)/2);
-			}						
-		}		
+				averageLookupTime.set((averageLookupTime.get() + elapsed)/2);
+			}
+		}
 		return b;
 	}
 	
@@ -444,19 +493,19 @@ public class TracerFactory   {
 	}
 	
 	/**
-	 * Returns the average lookup time for verbosity enabled inquiries.
+	 * Returns the sampled average lookup time for verbosity enabled inquiries in nanoseconds.
 	 * @return The average verbosity inquiry lookup time.
 	 */
-	@JMXAttribute(description="The average verbosity inquiry lookup time.", name="Verbosity Average Lookup Time")
+	@JMXAttribute(description="The sampled average verbosity inquiry lookup time (ns).", name="Verbosity Average Lookup Time")
 	public long getAverageVerbosityLookupTime() {
 		return averageLookupTime.get();
 	}
 	
 	/**
-	 * Returns the average lookup time for the hierarchy tree in milliseconds.
+	 * Returns the sampled average lookup time for the uncompiled hierarchy tree in nanoseconds.
 	 * @return The average lookup time.
 	 */
-	@JMXAttribute(description="The average lookup time for hierarchy lookups.", name="Hierarchy Average Lookup Time")
+	@JMXAttribute(description="The sampled average lookup time for uncompiled hierarchy lookups (ns).", name="Hierarchy Average Lookup Time")
 	public long getHierarchyLookupTime() {
 		return tracingState.getAverageLookupTime();
 	}
@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.Filter;
@@ -25,8 +27,10 @@ import org.jboss.metadata.EnvEntryMetaData;
 import org.jboss.metadata.MetaData;
 
 import com.heliosapm.wiex.tracing.tracing.ITracer;
+import com.heliosapm.wiex.tracing.tracing.TraceKey;
 import com.heliosapm.wiex.tracing.tracing.TracerFactory;
 import com.heliosapm.wiex.tracing.tracing.thread.ThreadStats;
+import com.heliosapm.wiex.tracing.tracing.thread.ThreadStatsSampler;
 
 /**
  * <p>Title: MultiInterceptor</p>
@@ -71,6 +75,12 @@ public class MultiInterceptor implements Interceptor, Filter {
 	protected String EJB_PREFIX_AGGR = null;
 	/** The ejb TYPE */
 	protected String ejbType = null;
+	/** The trace key handles for the bean's methods, keyed by invocation type, then method */
+	protected final ConcurrentHashMap<String, ConcurrentHashMap<Method, TraceKey>> methodKeys = new ConcurrentHashMap<String, ConcurrentHashMap<Method, TraceKey>>(4);
+	/** The invocation rate metric name, also recorded by the tracers with full thread stats */
+	protected static final String INVOCATIONS = "Invocations per ms.";
+	/** Selects the invocations that capture full thread stats and recycles the ThreadStats */
+	protected final ThreadStatsSampler sampler = new ThreadStatsSampler();
 	
 	
 	/**
@@ -103,6 +113,7 @@ public class MultiInterceptor implements Interceptor, Filter {
 			ejbType = ejbType(bmd);
 			EJB_PREFIX = EJB_PREFIX + ejbType + RSEG_DELIM;			
 			ejbShortKey = new StringBuilder(EJB_PREFIX).append(beanName).toString();
+			methodKeys.clear();
 			if(LOG.isDebugEnabled()) LOG.debug("Bean Name:" + beanName);
 		}					
 		StringBuilder buff = new StringBuilder("Bean MetaData\n");
@@ -252,62 +263,115 @@ public class MultiInterceptor implements Interceptor, Filter {
 	 * @throws Exception
 	 */
 	protected Object invokeGeneric(Invocation mi, boolean isHome, String type) throws Exception {			
-		long start = System.currentTimeMillis();
+		long start = System.nanoTime();
 		long invokeElapsed = 0L;		
 		Object returnObject = null;
 		long concurT = 0L;
 		String key = null;
+		TraceKey traceKey = null;
 		String userKey =  null;
 		String methodName = null;
 		String userName = tracer.getUserId();
 		ThreadStats ts = null;
+		boolean full = true;
 		try {
 			//if(LOG.isTraceEnabled()) LOG.trace("invoking:" + beanName + "." + mi.getMethod().getName());
 			concurT = ejbConcurrent.incrementAndGet();
-			ts = tracer.getThreadStatsInstance();
-			methodName = new String(beanName);
 			if (mi.getMethod() != null) {
-				methodName = mi.getMethod().getName();
+				traceKey = getMethodKey(type, mi.getMethod());
+				key = traceKey.getKey();
+			} else {
+				methodName = new String(beanName);
+				key = tracer.getStringBuilder().append(ejbShortKey).append(tracer.getSegmentDelimeter()).append(type).append(RSEG_DELIM).append(methodName).toString();
+				traceKey = tracer.getTraceKey(key);
 			}
-			
-			key = tracer.getStringBuilder().append(ejbShortKey).append(tracer.getSegmentDelimeter()).append(type).append(RSEG_DELIM).append(methodName).toString();
+			full = sampler.sample(traceKey);
+			ts = sampler.start(full);
 			userKey =  tracer.getStringBuilder().append(USER_NAME_PREFIX).append(userName).append(RSEG_DELIM).append(key).toString();
 		} catch (Throwable t) {}
+		long start2 = System.nanoTime();
 		try {
-			long start2 = System.currentTimeMillis();
 			if(isHome) {
 				returnObject = getNext().invokeHome(mi);
 			} else {
 				returnObject = getNext().invoke(mi);
 			}
 			try {
-				invokeElapsed = System.currentTimeMillis()-start2;
-				tracer.deltaThreadStats(ts);
-				try { tracer.recordMetric(key,ts); } catch (Throwable e) {}
-				try { tracer.recordMetric(userKey,ts); } catch (Throwable e) {}
+				invokeElapsed = System.nanoTime()-start2;
+				sampler.stop(ts, full);
+				recordThreadStats(key, userKey, ts, full);
 				try { tracer.recordMetric(ejbShortKey, ITracer.CONCURRENT_COUNT, concurT); } catch (Throwable e) {}
 				//if(instancePoolContainer!=null) {
 				//	try { tracer.recordCounterMetric(ejbShortKey, ITracer.POOL_SIZE, instancePoolContainer.getInstancePool().getCurrentSize()); } catch (Throwable e) {}
 				//	try { tracer.recordCounterMetric(ejbShortKey, ITracer.MAX_POOL_SIZE, instancePoolContainer.getInstancePool().getMaxSize()); } catch (Throwable e) {}					
 				//}							
-				long elapsed = System.currentTimeMillis()-start;
-				long overhead = System.currentTimeMillis()-(start+invokeElapsed);
+				long elapsed = System.nanoTime()-start;
+				long overhead = TimeUnit.NANOSECONDS.toMillis(elapsed-invokeElapsed);
 				
-				try { tracer.recordMetric(EJB_PREFIX_AGGR, "Elapsed (ms.)", elapsed); } catch (Throwable e) {}
+				try { tracer.recordHistogram(key, ITracer.ELAPSED_NANOS, invokeElapsed); } catch (Throwable e) {}
+				try { tracer.recordHistogram(EJB_PREFIX_AGGR, ITracer.ELAPSED_NANOS, invokeElapsed); } catch (Throwable e) {}
+				try { tracer.recordMetric(EJB_PREFIX_AGGR, "Elapsed (ms.)", TimeUnit.NANOSECONDS.toMillis(elapsed)); } catch (Throwable e) {}
 				try { tracer.recordMetric(key, ITracer.AGENT_ELAPSED, overhead); } catch (Throwable e) {}
 				try { tracer.recordMetric(EJB_PREFIX_AGGR, ITracer.AGENT_ELAPSED, overhead); } catch (Throwable e) {}
 				
 			} catch (Throwable t) {}
 			return returnObject;
 		} catch (Exception e) {			
+			// a slow failing call still counts towards the latency threshold of the sampler
+			if(invokeElapsed==0L) invokeElapsed = System.nanoTime()-start2;
 			try {tracer.recordMetric(key, ITracer.ERROR_COUNT);} catch (Throwable t) {}
 			throw e;
 		} finally {
 			try { ejbConcurrent.decrementAndGet(); } catch (Throwable t) {}
-			tracer.trace(key);
+			sampler.complete(traceKey, TimeUnit.NANOSECONDS.toMillis(invokeElapsed));
+			sampler.release(ts);
+			if(traceKey!=null) tracer.trace(traceKey);
+			else tracer.trace(key);
 			tracer.trace(userKey);
 		}		
 	}
+	
+	/**
+	 * Records the thread stats of an invocation against the invocation key and the user key.
+	 * Invocations that did not capture full thread stats record the elapsed time and the invocation count only, 
+	 * so the invocation rate is not reduced by the sampling rate.
+	 * @param key The invocation key
+	 * @param userKey The user key
+	 * @param ts The diffed thread stats
+	 * @param full true if full thread stats were captured
+	 */
+	protected void recordThreadStats(String key, String userKey, ThreadStats ts, boolean full) {
+		if(full) {
+			try { tracer.recordMetric(key,ts); } catch (Throwable e) {}
+			try { tracer.recordMetric(userKey,ts); } catch (Throwable e) {}
+		} else {
+			try { tracer.recordMetric(key, ThreadStats.ELAPSED, ts.getElapsedTime()); } catch (Throwable e) {}
+			try { tracer.recordMetric(key, INVOCATIONS); } catch (Throwable e) {}
+			try { tracer.recordMetric(userKey, ThreadStats.ELAPSED, ts.getElapsedTime()); } catch (Throwable e) {}
+			try { tracer.recordMetric(userKey, INVOCATIONS); } catch (Throwable e) {}
+		}
+	}
+	
+	/**
+	 * Returns the trace key handle for the passed invocation type and method, creating it on the first invocation.
+	 * @param type The invocation type
+	 * @param method The invoked method
+	 * @return The trace key handle
+	 */
+	protected TraceKey getMethodKey(String type, Method method) {
+		ConcurrentHashMap<Method, TraceKey> keys = methodKeys.get(type);
+		if(keys==null) {
+			keys = new ConcurrentHashMap<Method, TraceKey>();
+			ConcurrentHashMap<Method, TraceKey> prior = methodKeys.putIfAbsent(type, keys);
+			if(prior!=null) keys = prior;
+		}
+		TraceKey traceKey = keys.get(method);
+		if(traceKey==null) {
+			traceKey = tracer.getTraceKey(new StringBuilder(ejbShortKey).append(RSEG_DELIM).append(type).append(RSEG_DELIM).append(method.getName()).toString());
+			if(traceKey.isCached()) keys.put(method, traceKey);
+		}
+		return traceKey;
+	}
 	   
 
 	
@@ -321,18 +385,19 @@ public class MultiInterceptor implements Interceptor, Filter {
 	 */
 	public void doFilter(ServletRequest req, ServletResponse resp,
 			FilterChain filterChain) throws IOException, ServletException {
-		long start = System.currentTimeMillis();
+		long start = System.nanoTime();
 		long invokeElapsed = 0L;
 		long concurT = 0L;
 		String methodName = "Undefined";
 		String type = "Undefined";
 		String httpShortKey = null;
 		String key = null;
+		TraceKey traceKey = null;
 		String userKey =  null;
 		String userName = tracer.getUserId();
 		ThreadStats ts = null;
+		boolean full = true;
 		try {
-			ts = tracer.getThreadStatsInstance();
 			concurT = httpConcurrent.incrementAndGet();
 			try {
 				methodName = ((HttpServletRequest)req).getRequestURI();
@@ -342,19 +407,23 @@ public class MultiInterceptor implements Interceptor, Filter {
 				// NOOP
 			}
 			key = tracer.getStringBuilder().append(httpShortKey).append(RSEG_DELIM).append(type).toString();
+			traceKey = tracer.getTraceKey(key);
+			full = sampler.sample(traceKey);
+			ts = sampler.start(full);
 			userKey =  tracer.getStringBuilder().append(USER_NAME_PREFIX).append(userName).append(RSEG_DELIM).append(key).toString();
 		} catch (Throwable t) {}
+		long start2 = System.nanoTime();
 		try {
-			long start2 = System.currentTimeMillis();
 			filterChain.doFilter(req, resp);
-			invokeElapsed = System.currentTimeMillis()-start2;
-			long elapsed = System.currentTimeMillis()-start;
-			long overhead = System.currentTimeMillis()-(start+invokeElapsed);
+			invokeElapsed = System.nanoTime()-start2;
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start);
+			long overhead = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start-invokeElapsed);
 			
-			try { tracer.deltaThreadStats(ts); } catch (Throwable e) {}
-			try { tracer.recordMetric(key,ts); } catch (Throwable e) {}
-			try { tracer.recordMetric(userKey,ts); } catch (Throwable e) {}
+			try { sampler.stop(ts, full); } catch (Throwable e) {}
+			recordThreadStats(key, userKey, ts, full);
 			try { tracer.recordMetric(httpShortKey, ITracer.CONCURRENT_COUNT, concurT); } catch (Throwable e) {}			
+			try { tracer.recordHistogram(key, ITracer.ELAPSED_NANOS, invokeElapsed); } catch (Throwable e) {}
+			try { tracer.recordHistogram(HTTP_PREFIX_AGGR, ITracer.ELAPSED_NANOS, invokeElapsed); } catch (Throwable e) {}
 			try { tracer.recordMetric(HTTP_PREFIX_AGGR, "Elapsed (ms.)", elapsed); } catch (Throwable e) {}
 			try { tracer.recordMetric(key, ITracer.AGENT_ELAPSED, overhead); } catch (Throwable e) {}
 			try { tracer.recordMetric(HTTP_PREFIX_AGGR, ITracer.AGENT_ELAPSED, overhead); } catch (Throwable e) {}
@@ -364,11 +433,16 @@ public class MultiInterceptor implements Interceptor, Filter {
 			
 			
 		} catch (Exception e) {
+			// a slow failing request still counts towards the latency threshold of the sampler
+			if(invokeElapsed==0L) invokeElapsed = System.nanoTime()-start2;
 			try { tracer.recordMetric(key, ITracer.ERROR_COUNT); } catch (Throwable t) {}
 			throw new ServletException(e);
 		} finally {
 			try { httpConcurrent.decrementAndGet(); } catch (Throwable e) {}
-			tracer.trace(key);
+			sampler.complete(traceKey, TimeUnit.NANOSECONDS.toMillis(invokeElapsed));
+			sampler.release(ts);
+			if(traceKey!=null) tracer.trace(traceKey);
+			else tracer.trace(key);
 			tracer.trace(userKey);
 		}		
 		
@@ -32,6 +32,10 @@ public enum TracingMetricType {
 	 * 
 	 */
 	STRING, 
+	/**
+	 * A latency histogram's interval percentiles.
+	 */
+	HISTOGRAM,
 	/**
 	 * 
 	 */
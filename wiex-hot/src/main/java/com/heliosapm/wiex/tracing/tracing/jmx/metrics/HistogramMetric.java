@@ -0,0 +1,159 @@
+package com.heliosapm.wiex.tracing.tracing.jmx.metrics;
+
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperationParameter;
+import com.heliosapm.wiex.tracing.tracing.ITracer;
+import com.heliosapm.wiex.tracing.tracing.LatencyHistogram;
+
+/**
+ * <p>Title: HistogramMetric</p>
+ * <p>Description: JMX Managed Object for the interval percentiles of a latency histogram. The value attribute is the
+ * number of values recorded in the last interval, and the percentile and maximum attributes are named for the metric
+ * and the percentile suffix. All attributes read zero once the last snapshot is more than two intervals old.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.jmx.metrics.HistogramMetric</code></p>
+ */
+@JMXManagedObject(annotated=true)
+public class HistogramMetric extends AbstractMetric {
+	/** The last interval snapshot */
+	protected volatile LatencyHistogram.Snapshot snapshot = EMPTY;
+	/** The timestamp that the snapshot was last set at */
+	protected volatile long timestamp = 0L;
+
+	/** The snapshot reported when no current snapshot is available */
+	protected static final LatencyHistogram.Snapshot EMPTY = new LatencyHistogram.Snapshot(0, 0, 0, 0, 0, 0);
+
+	/**
+	 * Instantiates a new HistogramMetric with the passed name.
+	 * @param name The name of the metric.
+	 */
+	public HistogramMetric(String name) {
+		super(name);
+	}
+
+	/**
+	 * Returns the last snapshot, or an empty snapshot if it is stale
+	 * @return the current snapshot
+	 */
+	protected LatencyHistogram.Snapshot current() {
+		return System.currentTimeMillis()-timestamp >= INTERVAL*2 ? EMPTY : snapshot;
+	}
+
+	/**
+	 * @return the number of values recorded in the last interval
+	 */
+	@JMXAttribute(expose=true, name="getMetricName", description="getDescription", introspect=true )
+	public long getCount() {
+		return current().getCount();
+	}
+
+	/**
+	 * @return the 50th percentile of the last interval
+	 */
+	@JMXAttribute(expose=true, name="getP50MetricName", description="getP50Description", introspect=true )
+	public long getP50() {
+		return current().getP50();
+	}
+
+	/**
+	 * @return the 90th percentile of the last interval
+	 */
+	@JMXAttribute(expose=true, name="getP90MetricName", description="getP90Description", introspect=true )
+	public long getP90() {
+		return current().getP90();
+	}
+
+	/**
+	 * @return the 99th percentile of the last interval
+	 */
+	@JMXAttribute(expose=true, name="getP99MetricName", description="getP99Description", introspect=true )
+	public long getP99() {
+		return current().getP99();
+	}
+
+	/**
+	 * @return the 99.9th percentile of the last interval
+	 */
+	@JMXAttribute(expose=true, name="getP999MetricName", description="getP999Description", introspect=true )
+	public long getP999() {
+		return current().getP999();
+	}
+
+	/**
+	 * @return the maximum value of the last interval
+	 */
+	@JMXAttribute(expose=true, name="getMaxMetricName", description="getMaxDescription", introspect=true )
+	public long getMax() {
+		return current().getMax();
+	}
+
+	/**
+	 * @return The description of the metric.
+	 * @see com.heliosapm.wiex.tracing.tracing.jmx.metrics.AbstractMetric#getDescription()
+	 */
+	@Override
+	public String getDescription() {
+		return "The Number Of Values In The Interval for " + metricName;
+	}
+
+	public String getP50MetricName() {
+		return metricName + " " + ITracer.HISTOGRAM_P50;
+	}
+
+	public String getP90MetricName() {
+		return metricName + " " + ITracer.HISTOGRAM_P90;
+	}
+
+	public String getP99MetricName() {
+		return metricName + " " + ITracer.HISTOGRAM_P99;
+	}
+
+	public String getP999MetricName() {
+		return metricName + " " + ITracer.HISTOGRAM_P999;
+	}
+
+	public String getMaxMetricName() {
+		return metricName + " " + ITracer.HISTOGRAM_MAX;
+	}
+
+	public String getP50Description() {
+		return "The 50th Percentile In The Interval for " + metricName;
+	}
+
+	public String getP90Description() {
+		return "The 90th Percentile In The Interval for " + metricName;
+	}
+
+	public String getP99Description() {
+		return "The 99th Percentile In The Interval for " + metricName;
+	}
+
+	public String getP999Description() {
+		return "The 99.9th Percentile In The Interval for " + metricName;
+	}
+
+	public String getMaxDescription() {
+		return "The Maximum Value In The Interval for " + metricName;
+	}
+
+	/**
+	 * @param value the interval snapshot to set
+	 */
+	@JMXOperation(expose=true, name="getOperName", description="getOperDesc", introspect=true)
+	public void updateValue(@JMXOperationParameter(name="MetricValue", description="The new interval snapshot for the metric") Object value) {
+		update((LatencyHistogram.Snapshot)value);
+	}
+
+	/**
+	 * Updates the metric with a new interval snapshot.
+	 * @param newSnapshot the interval snapshot to set
+	 */
+	public void update(LatencyHistogram.Snapshot newSnapshot) {
+		snapshot = newSnapshot;
+		timestamp = System.currentTimeMillis();
+		readings.incrementAndGet();
+	}
+}
@@ -48,7 +48,15 @@ public class IntMetric  extends AbstractMetric {
 	 */
 	@JMXOperation(expose=true, name="getOperName", description="getOperDesc", introspect=true)
 	public void updateValue(@JMXOperationParameter(name="MetricValue", description="The new Integer value for the metric")Object value) {
-		this.value = ((Integer)value).intValue();
+		update(((Integer)value).intValue());
+	}
+	
+	/**
+	 * Updates the metric with a new reading.
+	 * @param newValue the value to set
+	 */
+	public void update(int newValue) {
+		this.value = newValue;
 		this.timestamp = System.currentTimeMillis();
 	}
 
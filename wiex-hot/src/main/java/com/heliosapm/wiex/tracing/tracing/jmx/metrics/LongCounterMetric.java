@@ -41,7 +41,17 @@ public class LongCounterMetric extends LongMetric {
 	
 	@JMXOperation(expose=true, name="getOperName", description="getOperDesc", introspect=true)
 	public void updateValue(@JMXOperationParameter(name="MetricValue", description="The new Long value for the metric") Object value) {
-		value = ((Long)value).longValue();
+		update(((Long)value).longValue());
+	}
+	
+	/**
+	 * Sets the counter to a new value.
+	 * @param newValue the value to set
+	 * @see com.heliosapm.wiex.tracing.tracing.jmx.metrics.LongMetric#update(long)
+	 */
+	@Override
+	public void update(long newValue) {
+		this.value = newValue;
 		readings.incrementAndGet();
 		this.timestamp.set(System.currentTimeMillis());
 	}
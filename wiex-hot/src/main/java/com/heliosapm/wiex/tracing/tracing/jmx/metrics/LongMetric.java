@@ -88,7 +88,14 @@ public class LongMetric  extends AbstractMetric {
 	
 	@JMXOperation(expose=true, name="getOperName", description="getOperDesc", introspect=true)
 	public void updateValue(@JMXOperationParameter(name="MetricValue", description="The new Long value for the metric") Object value) {
-		long newValue = ((Long)value).longValue();
+		update(((Long)value).longValue());
+	}
+	
+	/**
+	 * Updates the metric with a new reading.
+	 * @param newValue the value to set
+	 */
+	public void update(long newValue) {
 		long localReadings = readings.incrementAndGet();
 		if(localReadings==1) {
 			average.set(newValue);
@@ -100,7 +107,7 @@ public class LongMetric  extends AbstractMetric {
 			if(newValue < low.get()) low.set(newValue);
 			if(newValue > high.get()) high.set(newValue);
 		}
-		this.value = ((Long)value).longValue();
+		this.value = newValue;
 		this.timestamp.set(System.currentTimeMillis());
 	}
 
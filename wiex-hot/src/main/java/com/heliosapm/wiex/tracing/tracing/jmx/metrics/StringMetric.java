@@ -51,7 +51,15 @@ public class StringMetric extends AbstractMetric {
 	 */
 	@JMXOperation(expose=true, name="getOperName", description="getOperDesc", introspect=true)
 	public void updateValue(@JMXOperationParameter(name="MetricValue", description="The new String value for the metric")Object value) {
-		this.value = (String)value;
+		update((String)value);
+	}
+	
+	/**
+	 * Updates the metric with a new value.
+	 * @param newValue the value to set
+	 */
+	public void update(String newValue) {
+		this.value = newValue;
 	}	
 
 }
@@ -0,0 +1,174 @@
+package com.heliosapm.wiex.tracing.tracing.thread;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
+import com.heliosapm.wiex.tracing.tracing.TraceKey;
+
+/**
+ * <p>Title: ThreadStatsSampler</p>
+ * <p>Description: Decides which invocations capture full {@link ThreadStats} from the ThreadMXBean and which only
+ * capture elapsed time, and recycles ThreadStats instances from a per-thread pool.
+ * Full stats are captured for one in every <code>rate</code> invocations of each trace key, and for the next
+ * invocation of a key after one of its invocations exceeds the latency threshold.</p>
+ * <p>Configure with these system properties or environmental variables: <ul>
+ *  <li><b>wiex.threadstats.sample.rate</b>: Capture full thread stats for 1 in N invocations per key. Default is <b>1</b> (every invocation)</li>
+ *  <li><b>wiex.threadstats.sample.threshold</b>: The elapsed time in ms. above which the next invocation of the same key captures full thread stats. Default is <b>0</b> (disabled)</li>
+ * </ul></p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.thread.ThreadStatsSampler</code></p>
+ */
+public class ThreadStatsSampler {
+	/** The number of invocations per key for each one that captures full thread stats */
+	protected final int sampleRate;
+	/** The elapsed time in ms. above which the next invocation of the same key is sampled, or zero if disabled */
+	protected final long latencyThreshold;
+	/** The number of invocations that captured full thread stats */
+	protected final AtomicLong sampled = new AtomicLong(0);
+	/** The number of invocations that captured elapsed time only */
+	protected final AtomicLong unsampled = new AtomicLong(0);
+
+	/** The ThreadMXBean full thread stats are read from */
+	protected static final ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+	/** The per-thread pool of recycled ThreadStats */
+	protected static final ThreadLocal<ArrayDeque<ThreadStats>> pool = new ThreadLocal<ArrayDeque<ThreadStats>>() {
+		@Override
+		protected ArrayDeque<ThreadStats> initialValue() {
+			return new ArrayDeque<ThreadStats>(MAX_POOLED);
+		}
+	};
+
+	/** The sample rate property */
+	public static final String SAMPLE_RATE_PROP = "wiex.threadstats.sample.rate";
+	/** The latency threshold property */
+	public static final String SAMPLE_THRESHOLD_PROP = "wiex.threadstats.sample.threshold";
+	/** The maximum number of pooled ThreadStats per thread */
+	public static final int MAX_POOLED = 16;
+
+	/**
+	 * Creates a new ThreadStatsSampler configured from system properties or environmental variables
+	 */
+	public ThreadStatsSampler() {
+		this(ConfigurationHelper.getIntSystemThenEnvProperty(SAMPLE_RATE_PROP, 1),
+				ConfigurationHelper.getIntSystemThenEnvProperty(SAMPLE_THRESHOLD_PROP, 0));
+	}
+
+	/**
+	 * Creates a new ThreadStatsSampler
+	 * @param sampleRate The number of invocations per key for each one that captures full thread stats
+	 * @param latencyThreshold The elapsed time in ms. above which the next invocation of the same key is sampled, or zero to disable
+	 */
+	public ThreadStatsSampler(int sampleRate, long latencyThreshold) {
+		this.sampleRate = Math.max(1, sampleRate);
+		this.latencyThreshold = Math.max(0, latencyThreshold);
+	}
+
+	/**
+	 * Determines if the current invocation of the passed key should capture full thread stats
+	 * @param key The trace key of the invocation, or null if not known
+	 * @return true if full thread stats should be captured
+	 */
+	public boolean sample(TraceKey key) {
+		final boolean sample = sampleRate==1 || key==null || key.sample(sampleRate);
+		if(sample) sampled.incrementAndGet();
+		else unsampled.incrementAndGet();
+		return sample;
+	}
+
+	/**
+	 * Acquires a ThreadStats from the calling thread's pool and takes the starting readings
+	 * @param full true to read full thread stats, false to read the elapsed time only
+	 * @return the undiffed ThreadStats
+	 */
+	public ThreadStats start(boolean full) {
+		final ThreadStats ts = acquire();
+		if(full) {
+			ts.update(tmx);
+		} else {
+			ts.setElapsedTime(System.currentTimeMillis());
+			ts.setDiffed(false);
+		}
+		return ts;
+	}
+
+	/**
+	 * Takes the ending readings and updates the passed ThreadStats to the delta
+	 * @param ts The ThreadStats returned from {@link #start(boolean)}
+	 * @param full The value passed to {@link #start(boolean)}
+	 */
+	public void stop(ThreadStats ts, boolean full) {
+		if(full) {
+			final ThreadStats end = acquire();
+			end.update(tmx);
+			ts.delta(end);
+			release(end);
+		} else {
+			ts.setElapsedTime(System.currentTimeMillis() - ts.getElapsedTime());
+			ts.setDiffed(true);
+		}
+	}
+
+	/**
+	 * Requests full thread stats for the next invocation of the passed key if the elapsed time exceeded the latency threshold
+	 * @param key The trace key of the invocation
+	 * @param elapsed The elapsed time of the invocation in ms.
+	 */
+	public void complete(TraceKey key, long elapsed) {
+		if(latencyThreshold>0 && elapsed>=latencyThreshold && key!=null) key.forceSample();
+	}
+
+	/**
+	 * Returns a ThreadStats to the calling thread's pool
+	 * @param ts The ThreadStats to recycle
+	 */
+	public void release(ThreadStats ts) {
+		if(ts==null) return;
+		final ArrayDeque<ThreadStats> stack = pool.get();
+		if(stack.size() < MAX_POOLED) stack.push(ts);
+	}
+
+	/**
+	 * Acquires a ThreadStats from the calling thread's pool, or creates one if the pool is empty
+	 * @return a ThreadStats
+	 */
+	protected ThreadStats acquire() {
+		final ThreadStats ts = pool.get().poll();
+		return ts==null ? new ThreadStats() : ts;
+	}
+
+	/**
+	 * Returns the number of invocations per key for each one that captures full thread stats
+	 * @return the sample rate
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Returns the elapsed time in ms. above which the next invocation of the same key is sampled
+	 * @return the latency threshold, or zero if disabled
+	 */
+	public long getLatencyThreshold() {
+		return latencyThreshold;
+	}
+
+	/**
+	 * Returns the number of invocations that captured full thread stats
+	 * @return the number of sampled invocations
+	 */
+	public long getSampled() {
+		return sampled.get();
+	}
+
+	/**
+	 * Returns the number of invocations that captured elapsed time only
+	 * @return the number of unsampled invocations
+	 */
+	public long getUnsampled() {
+		return unsampled.get();
+	}
+}
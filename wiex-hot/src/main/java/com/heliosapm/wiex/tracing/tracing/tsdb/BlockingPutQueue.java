@@ -0,0 +1,81 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: BlockingPutQueue</p>
+ * <p>Description: A {@link PutQueue} backed by an {@link ArrayBlockingQueue}.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.BlockingPutQueue</code></p>
+ */
+public class BlockingPutQueue implements PutQueue {
+	/** The backing queue */
+	protected final ArrayBlockingQueue<ByteBuffer> queue;
+	/** The queue capacity */
+	protected final int capacity;
+	/** The number of rejected offers */
+	protected final AtomicLong stalls = new AtomicLong(0);
+
+	/**
+	 * Creates a new BlockingPutQueue
+	 * @param capacity The queue capacity
+	 */
+	public BlockingPutQueue(int capacity) {
+		this.capacity = capacity;
+		queue = new ArrayBlockingQueue<ByteBuffer>(capacity, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#offer(java.nio.ByteBuffer)
+	 */
+	public boolean offer(ByteBuffer put) {
+		if(queue.offer(put)) return true;
+		stalls.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#drain(com.heliosapm.wiex.tracing.tracing.tsdb.PutBatchHandler, int, long)
+	 */
+	public int drain(PutBatchHandler handler, int max, long timeoutMs) throws Exception {
+		ByteBuffer put = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+		int count = 0;
+		while(put!=null) {
+			// peek rather than poll so a put is only dequeued once the handler has taken the previous one
+			boolean endOfBatch = ++count >= max || queue.peek()==null;
+			handler.onPut(put, count, endOfBatch);
+			put = endOfBatch ? null : queue.poll();
+		}
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#size()
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#capacity()
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#getProducerStalls()
+	 */
+	public long getProducerStalls() {
+		return stalls.get();
+	}
+}
@@ -0,0 +1,127 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: DirectBufferPool</p>
+ * <p>Description: A bounded pool of fixed capacity direct {@link ByteBuffer}s used to encode OpenTSDB put requests
+ * without allocating on the heap. Buffers are acquired by the recording thread, filled, handed to the flush thread
+ * and released back into the pool once written to the wire.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.DirectBufferPool</code></p>
+ */
+public class DirectBufferPool {
+	/** The idle pooled buffers */
+	protected final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+	/** The number of idle buffers in the pool (the queue's size() is not constant time) */
+	protected final AtomicInteger pooled = new AtomicInteger(0);
+	/** The capacity of each pooled buffer */
+	protected final int bufferSize;
+	/** The maximum number of idle buffers retained in the pool */
+	protected final int maxPooled;
+	/** The total number of direct buffers allocated */
+	protected final AtomicLong allocations = new AtomicLong(0);
+	/** The total number of buffers discarded because the pool was full */
+	protected final AtomicLong discards = new AtomicLong(0);
+
+	/** The default pooled buffer size */
+	public static final int DEFAULT_BUFFER_SIZE = 512;
+	/** The default maximum number of idle pooled buffers */
+	public static final int DEFAULT_MAX_POOLED = 4096;
+
+	/**
+	 * Creates a new DirectBufferPool
+	 * @param bufferSize The capacity of each pooled buffer
+	 * @param maxPooled The maximum number of idle buffers retained in the pool
+	 * @param preallocate The number of buffers to allocate up front
+	 */
+	public DirectBufferPool(int bufferSize, int maxPooled, int preallocate) {
+		if(bufferSize<1) throw new IllegalArgumentException("Invalid buffer size [" + bufferSize + "]");
+		if(maxPooled<1) throw new IllegalArgumentException("Invalid max pooled [" + maxPooled + "]");
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+		for(int i = 0; i < Math.min(preallocate, maxPooled); i++) {
+			pool.add(allocate());
+			pooled.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Allocates a new direct buffer
+	 * @return a new direct buffer
+	 */
+	protected ByteBuffer allocate() {
+		allocations.incrementAndGet();
+		return ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Acquires a cleared buffer from the pool, allocating a new one if the pool is empty
+	 * @return a cleared buffer ready for writing
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buff = pool.poll();
+		if(buff==null) return allocate();
+		pooled.decrementAndGet();
+		return buff;
+	}
+
+	/**
+	 * Returns a buffer to the pool. Buffers not allocated by this pool are ignored.
+	 * @param buff The buffer to return
+	 */
+	public void release(ByteBuffer buff) {
+		if(buff==null || !buff.isDirect() || buff.capacity()!=bufferSize) return;
+		buff.clear();
+		if(pooled.incrementAndGet()>maxPooled) {
+			pooled.decrementAndGet();
+			discards.incrementAndGet();
+			return;
+		}
+		pool.offer(buff);
+	}
+
+	/**
+	 * Returns the capacity of each pooled buffer
+	 * @return the capacity of each pooled buffer
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Returns the maximum number of idle buffers retained in the pool
+	 * @return the maximum number of idle buffers
+	 */
+	public int getMaxPooled() {
+		return maxPooled;
+	}
+
+	/**
+	 * Returns the number of idle buffers in the pool
+	 * @return the number of idle buffers
+	 */
+	public int getPooled() {
+		return pooled.get();
+	}
+
+	/**
+	 * Returns the total number of direct buffers allocated
+	 * @return the total number of direct buffers allocated
+	 */
+	public long getAllocations() {
+		return allocations.get();
+	}
+
+	/**
+	 * Returns the total number of buffers discarded because the pool was full
+	 * @return the total number of discarded buffers
+	 */
+	public long getDiscards() {
+		return discards.get();
+	}
+}
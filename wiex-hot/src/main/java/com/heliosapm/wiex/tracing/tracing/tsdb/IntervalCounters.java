@@ -0,0 +1,205 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+/**
+ * <p>Title: IntervalCounters</p>
+ * <p>Description: A registry of per-interval incident counters. Each metric and tag set resolves once to a
+ * long-lived {@link IntervalCounter} handle, which callers may retain. Incidents are added to the stripe selected
+ * by the recording thread's id, so counting an incident is one uncontended add, and the stripes are merged and
+ * reset when {@link #harvest(HarvestListener)} is called at the end of each interval.</p>
+ * <p>Counters are keyed by identity on cached {@link PutKey}s, so the registry is bounded by the put key cache.
+ * Counters are never evicted, but a counter idle for more than {@link #MAX_IDLE_INTERVALS} intervals is no longer harvested
+ * until it counts again.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.IntervalCounters</code></p>
+ */
+public class IntervalCounters {
+	/** The counters keyed by the canonical put key */
+	protected final NonBlockingHashMap<PutKey, IntervalCounter> counters = new NonBlockingHashMap<PutKey, IntervalCounter>(1024);
+	/** The number of counter stripes (a power of 2) */
+	protected final int stripes;
+	/** The stripe index mask */
+	protected final int stripeMask;
+	/** The total number of incidents harvested */
+	protected final AtomicLong incidents = new AtomicLong(0);
+	/** The total number of harvests */
+	protected final AtomicLong harvests = new AtomicLong(0);
+
+	/** The number of longs per stripe, padded to a 64 byte cache line */
+	protected static final int STRIDE = 8;
+	/** The number of idle intervals after which a counter is no longer harvested */
+	public static final int MAX_IDLE_INTERVALS = 60;
+	/** The default maximum number of stripes */
+	public static final int DEFAULT_MAX_STRIPES = 8;
+
+	/**
+	 * <p>Title: HarvestListener</p>
+	 * <p>Description: Receives the merged count of each active counter at the end of an interval</p>
+	 */
+	public static interface HarvestListener {
+		/**
+		 * Called for each active counter at the end of an interval
+		 * @param counter The counter
+		 * @param count The number of incidents counted in the interval
+		 */
+		public void onHarvest(IntervalCounter counter, long count);
+	}
+
+	/**
+	 * Creates a new IntervalCounters
+	 * @param maxStripes The maximum number of stripes per counter. The actual number is the lesser of this and the number of processors, rounded up to a power of 2.
+	 */
+	public IntervalCounters(int maxStripes) {
+		int n = Math.max(1, Math.min(maxStripes, Runtime.getRuntime().availableProcessors()));
+		stripes = Integer.highestOneBit(n)==n ? n : Integer.highestOneBit(n) << 1;
+		stripeMask = stripes-1;
+	}
+
+	/**
+	 * Returns the counter for the passed put key, creating it if it does not exist
+	 * @param key The put key
+	 * @return the counter, or null if the key is not cached and the incidents should be traced directly
+	 */
+	public IntervalCounter getCounter(PutKey key) {
+		if(!key.isCached()) return null;
+		IntervalCounter counter = counters.get(key);
+		if(counter==null) {
+			counter = new IntervalCounter(key);
+			IntervalCounter prior = counters.putIfAbsent(key, counter);
+			if(prior!=null) counter = prior;
+		}
+		return counter;
+	}
+
+	/**
+	 * Merges and resets the stripes of each counter, delivering the interval count of each active counter to the passed listener.
+	 * Must only be called by one thread at a time.
+	 * @param listener The harvest listener
+	 * @return the number of counters harvested
+	 */
+	public int harvest(HarvestListener listener) {
+		int count = 0;
+		long total = 0;
+		for(IntervalCounter counter: counters.values()) {
+			final long c = counter.drain();
+			if(c==0) {
+				if(counter.idleIntervals > MAX_IDLE_INTERVALS) continue;
+				counter.idleIntervals++;
+			} else {
+				counter.idleIntervals = 0;
+				total += c;
+			}
+			listener.onHarvest(counter, c);
+			count++;
+		}
+		incidents.addAndGet(total);
+		harvests.incrementAndGet();
+		return count;
+	}
+
+	/**
+	 * Returns the number of registered counters
+	 * @return the number of counters
+	 */
+	public int getCounterCount() {
+		return counters.size();
+	}
+
+	/**
+	 * Returns the total number of incidents harvested
+	 * @return the number of incidents
+	 */
+	public long getIncidents() {
+		return incidents.get();
+	}
+
+	/**
+	 * Returns the total number of harvests
+	 * @return the number of harvests
+	 */
+	public long getHarvests() {
+		return harvests.get();
+	}
+
+	/**
+	 * Returns the number of stripes per counter
+	 * @return the number of stripes
+	 */
+	public int getStripes() {
+		return stripes;
+	}
+
+	/**
+	 * <p>Title: IntervalCounter</p>
+	 * <p>Description: The striped incident count for one metric and tag set</p>
+	 */
+	public class IntervalCounter {
+		/** The put key the interval count is traced with */
+		protected final PutKey key;
+		/** The striped counts */
+		protected final AtomicLongArray cells = new AtomicLongArray(stripes * STRIDE);
+		/** The number of consecutive intervals with no incidents */
+		protected int idleIntervals = 0;
+
+		/**
+		 * Creates a new IntervalCounter
+		 * @param key The put key the interval count is traced with
+		 */
+		IntervalCounter(PutKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * Counts one incident
+		 */
+		public void increment() {
+			cells.getAndIncrement(((int)Thread.currentThread().getId() & stripeMask) * STRIDE);
+		}
+
+		/**
+		 * Counts the passed number of incidents
+		 * @param incidents The number of incidents
+		 */
+		public void add(long incidents) {
+			cells.getAndAdd(((int)Thread.currentThread().getId() & stripeMask) * STRIDE, incidents);
+		}
+
+		/**
+		 * Returns the number of incidents counted so far in the current interval
+		 * @return the current interval count
+		 */
+		public long get() {
+			long count = 0;
+			for(int s = 0; s < stripes; s++) {
+				count += cells.get(s * STRIDE);
+			}
+			return count;
+		}
+
+		/**
+		 * Merges and resets the stripes
+		 * @return the merged count
+		 */
+		long drain() {
+			long count = 0;
+			for(int s = 0; s < stripes; s++) {
+				final int index = s * STRIDE;
+				if(cells.get(index)!=0) count += cells.getAndSet(index, 0);
+			}
+			return count;
+		}
+
+		/**
+		 * Returns the put key the interval count is traced with
+		 * @return the put key
+		 */
+		public PutKey getKey() {
+			return key;
+		}
+	}
+}
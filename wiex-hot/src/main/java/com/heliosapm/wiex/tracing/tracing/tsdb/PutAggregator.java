@@ -0,0 +1,338 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+/**
+ * <p>Title: PutAggregator</p>
+ * <p>Description: Folds samples recorded against the same metric and tags within an aggregation window into a
+ * count, sum, minimum and maximum, so that only the rollups are transmitted at the end of each window.</p>
+ * <p>Each aggregate holds two generations of striped primitive accumulators. Recording threads update the stripe
+ * selected by their thread id in the current generation without locking, while {@link #roll(RollupListener)}
+ * flips the generation and harvests the previous one. Part of a sample that races with a roll may be
+ * attributed to a following window. Aggregates that stay idle for {@link #MAX_IDLE_WINDOWS} windows are evicted.
+ * An evicted aggregate is marked retired, so recording threads that find it create a replacement, and is harvested once more
+ * at the end of the following window to collect samples from threads that were already recording into it. Those samples
+ * are merged into the replacement's rollup if there is one.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.PutAggregator</code></p>
+ */
+public class PutAggregator {
+	/** The aggregates keyed by the canonical put key */
+	protected final NonBlockingHashMap<PutKey, Aggregate> aggregates = new NonBlockingHashMap<PutKey, Aggregate>(1024);
+	/** The number of accumulator stripes per aggregate (a power of 2) */
+	protected final int stripes;
+	/** The stripe index mask */
+	protected final int stripeMask;
+	/** The current generation */
+	protected volatile int generation = 0;
+	/** The total number of samples folded into harvested aggregates */
+	protected final AtomicLong samples = new AtomicLong(0);
+	/** The total number of rollups emitted */
+	protected final AtomicLong rollups = new AtomicLong(0);
+	/** The aggregates evicted in the last window, harvested once more in the next one. Only accessed by the rolling thread. */
+	protected List<Aggregate> retired = new ArrayList<Aggregate>();
+
+	/** The number of longs per stripe, padded to a 64 byte cache line */
+	protected static final int STRIDE = 8;
+	/** The count offset in a stripe */
+	protected static final int COUNT = 0;
+	/** The sum offset in a stripe */
+	protected static final int SUM = 1;
+	/** The min offset in a stripe */
+	protected static final int MIN = 2;
+	/** The max offset in a stripe */
+	protected static final int MAX = 3;
+	/** The number of idle windows after which an aggregate is evicted */
+	public static final int MAX_IDLE_WINDOWS = 60;
+	/** The default maximum number of stripes */
+	public static final int DEFAULT_MAX_STRIPES = 8;
+
+	/** The aggregation tag key */
+	public static final String AGG_TAG = "agg";
+
+	/**
+	 * <p>Title: RollupListener</p>
+	 * <p>Description: Receives the harvested rollups of each aggregate at the end of a window</p>
+	 */
+	public static interface RollupListener {
+		/**
+		 * Called for each aggregate that recorded samples in the window
+		 * @param aggregate The aggregate
+		 * @param count The number of samples
+		 * @param sum The sum of the samples
+		 * @param min The minimum sample
+		 * @param max The maximum sample
+		 */
+		public void onRollup(Aggregate aggregate, long count, long sum, long min, long max);
+	}
+
+	/**
+	 * Creates a new PutAggregator
+	 * @param maxStripes The maximum number of accumulator stripes per aggregate. The actual number is the lesser of this and the number of processors, rounded up to a power of 2.
+	 */
+	public PutAggregator(int maxStripes) {
+		int n = Math.max(1, Math.min(maxStripes, Runtime.getRuntime().availableProcessors()));
+		stripes = Integer.highestOneBit(n)==n ? n : Integer.highestOneBit(n) << 1;
+		stripeMask = stripes-1;
+	}
+
+	/**
+	 * Folds a sample into the aggregate for the passed key
+	 * @param key The put key
+	 * @param value The sample value
+	 * @return true if the sample was aggregated, false if the key is not cached and the sample should be traced directly
+	 */
+	public boolean record(PutKey key, long value) {
+		if(!key.isCached()) return false;
+		Aggregate agg = aggregates.get(key);
+		while(agg==null || agg.retired) {
+			agg = new Aggregate(key);
+			Aggregate prior = aggregates.putIfAbsent(key, agg);
+			if(prior!=null) agg = prior;
+		}
+		agg.record(value);
+		return true;
+	}
+
+	/**
+	 * Ends the current window, delivering the rollups of each aggregate that recorded samples to the passed listener
+	 * and evicting aggregates that have been idle too long. Must only be called by one thread at a time.
+	 * @param listener The rollup listener
+	 * @return the number of rollups delivered
+	 */
+	public int roll(RollupListener listener) {
+		final int harvest = generation;
+		generation = harvest + 1;
+		int count = 0;
+		final List<Aggregate> evicted = retired;
+		retired = new ArrayList<Aggregate>();
+		for(Aggregate agg: evicted) {
+			if(!agg.drain()) continue;
+			Aggregate replacement = aggregates.get(agg.key);
+			if(replacement!=null && !replacement.retired) {
+				replacement.merge(agg);
+			} else if(agg.emit(listener)) {
+				count++;
+			}
+		}
+		for(Iterator<Aggregate> iter = aggregates.values().iterator(); iter.hasNext();) {
+			final Aggregate agg = iter.next();
+			if(agg.harvest(harvest & 1, listener)) {
+				count++;
+			} else if(agg.idleWindows > MAX_IDLE_WINDOWS) {
+				agg.retired = true;
+				iter.remove();
+				retired.add(agg);
+			}
+		}
+		rollups.addAndGet(count);
+		return count;
+	}
+
+	/**
+	 * Returns the number of active aggregates
+	 * @return the number of active aggregates
+	 */
+	public int getAggregateCount() {
+		return aggregates.size();
+	}
+
+	/**
+	 * Returns the total number of samples folded into aggregates
+	 * @return the total number of samples aggregated
+	 */
+	public long getSamples() {
+		return samples.get();
+	}
+
+	/**
+	 * Returns the total number of rollups emitted
+	 * @return the total number of rollups
+	 */
+	public long getRollups() {
+		return rollups.get();
+	}
+
+	/**
+	 * Returns the number of accumulator stripes per aggregate
+	 * @return the number of stripes
+	 */
+	public int getStripes() {
+		return stripes;
+	}
+
+	/**
+	 * <p>Title: Aggregate</p>
+	 * <p>Description: The striped accumulators and pre-encoded rollup keys for one metric and tag set</p>
+	 */
+	public class Aggregate {
+		/** The source put key */
+		protected final PutKey key;
+		/** The count rollup key */
+		protected final PutKey countKey;
+		/** The sum rollup key */
+		protected final PutKey sumKey;
+		/** The min rollup key */
+		protected final PutKey minKey;
+		/** The max rollup key */
+		protected final PutKey maxKey;
+		/** The two generations of striped accumulators */
+		protected final AtomicLongArray[] cells = new AtomicLongArray[2];
+		/** The number of consecutive windows with no samples */
+		protected int idleWindows = 0;
+		/** Indicates if the aggregate has been evicted, so samples must be recorded into a replacement */
+		protected volatile boolean retired = false;
+		/** The count, sum, min and max pending delivery in the current roll. Only accessed by the rolling thread. */
+		protected final long[] pending = new long[]{0, 0, Long.MAX_VALUE, Long.MIN_VALUE};
+
+		/**
+		 * Creates a new Aggregate
+		 * @param key The source put key
+		 */
+		Aggregate(PutKey key) {
+			this.key = key;
+			final String seg = key.getSegment()==null ? "" : key.getSegment().trim();
+			countKey = new PutKey(key.getMetric(), seg + " " + AGG_TAG + "=count", false);
+			sumKey = new PutKey(key.getMetric(), seg + " " + AGG_TAG + "=sum", false);
+			minKey = new PutKey(key.getMetric(), seg + " " + AGG_TAG + "=min", false);
+			maxKey = new PutKey(key.getMetric(), seg + " " + AGG_TAG + "=max", false);
+			for(int g = 0; g < 2; g++) {
+				cells[g] = new AtomicLongArray(stripes * STRIDE);
+				for(int s = 0; s < stripes; s++) {
+					cells[g].set(s * STRIDE + MIN, Long.MAX_VALUE);
+					cells[g].set(s * STRIDE + MAX, Long.MIN_VALUE);
+				}
+			}
+		}
+
+		/**
+		 * Folds a sample into the calling thread's stripe of the current generation
+		 * @param value The sample value
+		 */
+		void record(long value) {
+			final AtomicLongArray c = cells[generation & 1];
+			final int base = ((int)Thread.currentThread().getId() & stripeMask) * STRIDE;
+			c.getAndIncrement(base + COUNT);
+			c.getAndAdd(base + SUM, value);
+			long current;
+			while(value < (current = c.get(base + MIN)) && !c.compareAndSet(base + MIN, current, value)) {/* retry */}
+			while(value > (current = c.get(base + MAX)) && !c.compareAndSet(base + MAX, current, value)) {/* retry */}
+		}
+
+		/**
+		 * Harvests and resets the passed generation
+		 * @param gen The generation index to harvest
+		 * @param listener The rollup listener
+		 * @return true if the generation recorded any samples
+		 */
+		boolean harvest(int gen, RollupListener listener) {
+			collect(cells[gen]);
+			if(emit(listener)) {
+				idleWindows = 0;
+				return true;
+			}
+			idleWindows++;
+			return false;
+		}
+
+		/**
+		 * Collects and resets both generations of a retired aggregate
+		 * @return true if either generation recorded any samples
+		 */
+		boolean drain() {
+			collect(cells[0]);
+			collect(cells[1]);
+			return pending[COUNT] > 0;
+		}
+
+		/**
+		 * Adds the pending samples of a drained retired aggregate to this aggregate's pending samples
+		 * @param agg The drained retired aggregate
+		 */
+		void merge(Aggregate agg) {
+			pending[COUNT] += agg.pending[COUNT];
+			pending[SUM] += agg.pending[SUM];
+			pending[MIN] = Math.min(pending[MIN], agg.pending[MIN]);
+			pending[MAX] = Math.max(pending[MAX], agg.pending[MAX]);
+		}
+
+		/**
+		 * Adds the samples of a generation to the pending samples and resets the generation
+		 * @param c The generation's accumulators
+		 */
+		protected void collect(AtomicLongArray c) {
+			for(int s = 0; s < stripes; s++) {
+				final int base = s * STRIDE;
+				if(c.get(base + COUNT)==0) continue;
+				pending[COUNT] += c.getAndSet(base + COUNT, 0);
+				pending[SUM] += c.getAndSet(base + SUM, 0);
+				pending[MIN] = Math.min(pending[MIN], c.getAndSet(base + MIN, Long.MAX_VALUE));
+				pending[MAX] = Math.max(pending[MAX], c.getAndSet(base + MAX, Long.MIN_VALUE));
+			}
+		}
+
+		/**
+		 * Delivers and clears the pending samples
+		 * @param listener The rollup listener
+		 * @return true if there were pending samples
+		 */
+		protected boolean emit(RollupListener listener) {
+			final long count = pending[COUNT];
+			if(count==0) return false;
+			samples.addAndGet(count);
+			listener.onRollup(this, count, pending[SUM], pending[MIN], pending[MAX]);
+			pending[COUNT] = 0;
+			pending[SUM] = 0;
+			pending[MIN] = Long.MAX_VALUE;
+			pending[MAX] = Long.MIN_VALUE;
+			return true;
+		}
+
+		/**
+		 * Returns the source put key
+		 * @return the source put key
+		 */
+		public PutKey getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the count rollup key
+		 * @return the count rollup key
+		 */
+		public PutKey getCountKey() {
+			return countKey;
+		}
+
+		/**
+		 * Returns the sum rollup key
+		 * @return the sum rollup key
+		 */
+		public PutKey getSumKey() {
+			return sumKey;
+		}
+
+		/**
+		 * Returns the min rollup key
+		 * @return the min rollup key
+		 */
+		public PutKey getMinKey() {
+			return minKey;
+		}
+
+		/**
+		 * Returns the max rollup key
+		 * @return the max rollup key
+		 */
+		public PutKey getMaxKey() {
+			return maxKey;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Title: PutBatchHandler</p>
+ * <p>Description: Callback invoked by a {@link PutQueue} for each encoded put drained by the consumer.
+ * Puts are delivered in batches and the last put of each batch is flagged so the handler can
+ * defer expensive work (such as a socket write) until the batch is complete.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.PutBatchHandler</code></p>
+ */
+public interface PutBatchHandler {
+	/**
+	 * Called for each drained put
+	 * @param put The encoded put request
+	 * @param sequence The sequence of the put in the queue
+	 * @param endOfBatch true if this is the last put in the current batch
+	 * @throws Exception thrown if the put cannot be handled
+	 */
+	public void onPut(ByteBuffer put, long sequence, boolean endOfBatch) throws Exception;
+}
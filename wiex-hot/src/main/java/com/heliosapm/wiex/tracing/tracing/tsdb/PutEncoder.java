@@ -0,0 +1,187 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+/**
+ * <p>Title: PutEncoder</p>
+ * <p>Description: Encodes OpenTSDB telnet put requests directly into pooled buffers.
+ * Metric names and tags are pre-encoded once into a cached {@link PutKey} and the timestamp and value
+ * are rendered with a hand rolled long-to-ASCII conversion, so encoding a sample allocates nothing
+ * once the key has been seen.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.PutEncoder</code></p>
+ */
+public class PutEncoder {
+	/** The buffer pool encoded puts are written into */
+	protected final DirectBufferPool bufferPool;
+	/** The maximum number of cached put keys */
+	protected final int maxKeys;
+	/** The put key cache, keyed by metric name, then segment */
+	protected final NonBlockingHashMap<String, NonBlockingHashMap<String, PutKey>> keys = new NonBlockingHashMap<String, NonBlockingHashMap<String, PutKey>>(256);
+	/** The number of cached put keys */
+	protected final AtomicInteger keyCount = new AtomicInteger(0);
+	/** The number of puts that did not fit in a pooled buffer */
+	protected final AtomicLong oversized = new AtomicLong(0);
+
+	/** The character set put requests are encoded in */
+	public static final Charset CHARSET = Charset.forName("UTF-8");
+	/** The default maximum number of cached put keys */
+	public static final int DEFAULT_MAX_KEYS = 100000;
+
+	/** The ASCII digits of Long.MIN_VALUE, which cannot be negated */
+	private static final byte[] MIN_LONG = "-9223372036854775808".getBytes(CHARSET);
+
+	/**
+	 * Creates a new PutEncoder
+	 * @param bufferPool The buffer pool encoded puts are written into
+	 * @param maxKeys The maximum number of cached put keys
+	 */
+	public PutEncoder(DirectBufferPool bufferPool, int maxKeys) {
+		this.bufferPool = bufferPool;
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * Returns the cached put key for the passed metric and segment, creating it if it does not exist.
+	 * Once the key cache is full, new uncached keys are returned.
+	 * @param metric The metric name
+	 * @param segment The tags segment
+	 * @return the put key
+	 */
+	public PutKey getKey(String metric, String segment) {
+		final String seg = segment==null ? "" : segment;
+		NonBlockingHashMap<String, PutKey> segments = keys.get(metric);
+		if(segments==null) {
+			segments = new NonBlockingHashMap<String, PutKey>();
+			NonBlockingHashMap<String, PutKey> prior = keys.putIfAbsent(metric, segments);
+			if(prior!=null) segments = prior;
+		}
+		PutKey key = segments.get(seg);
+		if(key==null) {
+			if(keyCount.get()>=maxKeys) return new PutKey(metric, seg, false);
+			key = new PutKey(metric, seg, true);
+			PutKey prior = segments.putIfAbsent(seg, key);
+			if(prior!=null) return prior;
+			keyCount.incrementAndGet();
+		}
+		return key;
+	}
+
+	/**
+	 * Encodes a put request for the passed key, timestamp and value
+	 * @param key The put key
+	 * @param timestamp The timestamp
+	 * @param value The value
+	 * @return a flipped buffer containing the encoded put request
+	 */
+	public ByteBuffer encode(PutKey key, long timestamp, long value) {
+		final int len = key.getFixedLength() + longLength(timestamp) + longLength(value);
+		final ByteBuffer buff = acquire(len);
+		buff.put(key.prefix);
+		putLong(buff, timestamp);
+		buff.put((byte)' ');
+		putLong(buff, value);
+		buff.put(key.suffix);
+		buff.flip();
+		return buff;
+	}
+
+	/**
+	 * Encodes a pre-formatted put request, appending the line terminator
+	 * @param putExpr The put request
+	 * @return a flipped buffer containing the encoded put request
+	 */
+	public ByteBuffer encode(String putExpr) {
+		final byte[] bytes = putExpr.trim().getBytes(CHARSET);
+		final ByteBuffer buff = acquire(bytes.length + 1);
+		buff.put(bytes).put((byte)'\n');
+		buff.flip();
+		return buff;
+	}
+
+	/**
+	 * Acquires a buffer of at least the passed size, from the pool if it fits
+	 * @param len The required buffer size
+	 * @return a cleared buffer
+	 */
+	protected ByteBuffer acquire(int len) {
+		if(len>bufferPool.getBufferSize()) {
+			oversized.incrementAndGet();
+			return ByteBuffer.allocate(len);
+		}
+		return bufferPool.acquire();
+	}
+
+	/**
+	 * Returns the number of ASCII characters required to render the passed long
+	 * @param value The value
+	 * @return the rendered length
+	 */
+	public static int longLength(long value) {
+		if(value==Long.MIN_VALUE) return MIN_LONG.length;
+		int len = 1;
+		if(value<0) {
+			len++;
+			value = -value;
+		}
+		while(value>9) {
+			value /= 10;
+			len++;
+		}
+		return len;
+	}
+
+	/**
+	 * Writes the ASCII rendering of the passed long into the buffer at its current position
+	 * @param buff The buffer to write into
+	 * @param value The value to write
+	 */
+	public static void putLong(ByteBuffer buff, long value) {
+		if(value==Long.MIN_VALUE) {
+			buff.put(MIN_LONG);
+			return;
+		}
+		final int len = longLength(value);
+		final int start = buff.position();
+		int pos = start + len - 1;
+		if(value<0) {
+			buff.put(start, (byte)'-');
+			value = -value;
+		}
+		do {
+			buff.put(pos--, (byte)('0' + (value % 10)));
+			value /= 10;
+		} while(value!=0);
+		buff.position(start + len);
+	}
+
+	/**
+	 * Returns the number of cached put keys
+	 * @return the number of cached put keys
+	 */
+	public int getKeyCount() {
+		return keyCount.get();
+	}
+
+	/**
+	 * Returns the number of puts that did not fit in a pooled buffer
+	 * @return the number of oversized puts
+	 */
+	public long getOversized() {
+		return oversized.get();
+	}
+
+	/**
+	 * Returns the buffer pool encoded puts are written into
+	 * @return the buffer pool
+	 */
+	public DirectBufferPool getBufferPool() {
+		return bufferPool;
+	}
+}
@@ -0,0 +1,469 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>Title: PutJournal</p>
+ * <p>Description: A memory mapped, segment rolling journal that encoded put requests are spilled to while
+ * the OpenTSDB endpoint is unavailable, and replayed from once it reconnects.</p>
+ * <p>Each segment is a fixed size file named <code>[base file].[segment sequence]</code> holding records of
+ * <code>[int length][long spill time][put bytes]</code>. A zero length marks the end of the written records, and the
+ * length of each record is written last so a partially written record is never read back. Once a record has been replayed its
+ * length is negated, so a recovered segment resumes replay after the last record the handler accepted. A put the handler accepted
+ * but whose record was not yet marked when the process stopped is replayed again, so replay is at-least-once.
+ * Disk usage is bounded to <code>segmentSize x maxSegments</code>: when a new segment is required and the limit is reached,
+ * the oldest segment and its unreplayed puts are discarded. Segments left over from a previous run are recovered
+ * and replayed.</p>
+ * <p>A journal is not thread safe and should only be accessed by the flush thread, with the exception of the statistics accessors.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.PutJournal</code></p>
+ */
+public class PutJournal {
+	/** The journal base file */
+	protected final File baseFile;
+	/** The size of each segment in bytes */
+	protected final int segmentSize;
+	/** The maximum number of segments */
+	protected final int maxSegments;
+	/** The journal segments, oldest first */
+	protected final LinkedList<Segment> segments = new LinkedList<Segment>();
+	/** The segment currently being written to */
+	protected Segment current = null;
+	/** The next segment sequence */
+	protected long nextSequence = 0;
+	/** The number of pending (unreplayed) journal bytes */
+	protected final AtomicLong pendingBytes = new AtomicLong(0);
+	/** The total number of puts spilled to the journal */
+	protected final AtomicLong spilled = new AtomicLong(0);
+	/** The total number of puts replayed from the journal */
+	protected final AtomicLong replayed = new AtomicLong(0);
+	/** The total number of puts discarded because the journal was full or the put did not fit in a segment */
+	protected final AtomicLong dropped = new AtomicLong(0);
+	/** The spill time of the oldest pending put, or -1 if there are none */
+	protected volatile long oldestTimestamp = -1L;
+	/** Instance logger */
+	protected final Logger log = Logger.getLogger(getClass());
+
+	/** The size of a record header */
+	public static final int HEADER_SIZE = 12;
+	/** The default segment size */
+	public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+	/** The default maximum number of segments */
+	public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+	/**
+	 * Creates a new PutJournal, recovering any segments left by a prior run
+	 * @param baseFile The journal base file
+	 * @param segmentSize The size of each segment in bytes
+	 * @param maxSegments The maximum number of segments
+	 */
+	public PutJournal(File baseFile, int segmentSize, int maxSegments) {
+		if(segmentSize<=HEADER_SIZE) throw new IllegalArgumentException("Invalid segment size [" + segmentSize + "]");
+		if(maxSegments<1) throw new IllegalArgumentException("Invalid max segments [" + maxSegments + "]");
+		this.baseFile = baseFile.getAbsoluteFile();
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+		recover();
+	}
+
+	/**
+	 * Maps any segments left by a prior run
+	 */
+	protected void recover() {
+		final File dir = baseFile.getParentFile();
+		final String prefix = baseFile.getName() + ".";
+		final File[] files = dir==null ? null : dir.listFiles(new FilenameFilter() {
+			public boolean accept(File d, String name) {
+				return name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d+");
+			}
+		});
+		if(files==null || files.length==0) return;
+		final long[] seqs = new long[files.length];
+		for(int i = 0; i < files.length; i++) {
+			seqs[i] = Long.parseLong(files[i].getName().substring(prefix.length()));
+		}
+		Arrays.sort(seqs);
+		for(long seq: seqs) {
+			File f = segmentFile(seq);
+			try {
+				if(f.length()!=segmentSize) {
+					log.warn("Discarding journal segment [" + f + "] with unexpected size [" + f.length() + "]");
+					f.delete();
+					continue;
+				}
+				Segment seg = new Segment(seq, f);
+				seg.recover();
+				if(seg.records==seg.readRecords) {
+					seg.destroy();
+					continue;
+				}
+				segments.add(seg);
+				pendingBytes.addAndGet(seg.writePos - seg.readPos);
+			} catch (Exception ex) {
+				log.warn("Failed to recover journal segment [" + f + "]", ex);
+			}
+			nextSequence = seq+1;
+		}
+		while(segments.size()>maxSegments) {
+			discard(segments.removeFirst());
+		}
+		updateOldest();
+		if(!segments.isEmpty()) {
+			log.info("Recovered [" + segments.size() + "] journal segments with [" + pendingBytes.get() + "] pending bytes");
+		}
+	}
+
+	/**
+	 * Returns the file for the passed segment sequence
+	 * @param seq The segment sequence
+	 * @return the segment file
+	 */
+	protected File segmentFile(long seq) {
+		return new File(baseFile.getPath() + "." + seq);
+	}
+
+	/**
+	 * Spills an encoded put to the journal. The put's position is not changed.
+	 * @param put The encoded put
+	 * @throws IOException thrown if a new segment cannot be created
+	 */
+	public void spill(ByteBuffer put) throws IOException {
+		final int len = put.remaining();
+		if(len + HEADER_SIZE > segmentSize) {
+			dropped.incrementAndGet();
+			return;
+		}
+		if(current==null || current.writePos + len + HEADER_SIZE > segmentSize) {
+			roll();
+		}
+		current.append(put, System.currentTimeMillis());
+		pendingBytes.addAndGet(len + HEADER_SIZE);
+		spilled.incrementAndGet();
+		if(oldestTimestamp==-1L) updateOldest();
+	}
+
+	/**
+	 * Seals the current segment and starts a new one, discarding the oldest segment if the journal is full
+	 * @throws IOException thrown if the new segment cannot be created
+	 */
+	protected void roll() throws IOException {
+		while(segments.size()>=maxSegments) {
+			discard(segments.removeFirst());
+			updateOldest();
+		}
+		current = new Segment(nextSequence++, null);
+		segments.add(current);
+	}
+
+	/**
+	 * Discards a segment and its unreplayed puts
+	 * @param seg The segment to discard
+	 */
+	protected void discard(Segment seg) {
+		final long lost = seg.records - seg.readRecords;
+		if(lost>0) {
+			dropped.addAndGet(lost);
+			log.warn("Journal full. Discarded [" + lost + "] pending puts");
+		}
+		pendingBytes.addAndGet(-(seg.writePos - seg.readPos));
+		if(seg==current) current = null;
+		seg.destroy();
+	}
+
+	/**
+	 * Indicates if there are pending puts in the journal
+	 * @return true if there are pending puts
+	 */
+	public boolean hasPending() {
+		return pendingBytes.get()>0;
+	}
+
+	/**
+	 * Replays up to <code>max</code> pending puts from the oldest segment to the passed handler, copying each into a buffer
+	 * acquired from the passed pool. The replayed puts are only removed from the journal if the handler completes without exception.
+	 * @param handler The handler to replay the puts to
+	 * @param pool The pool to acquire buffers from
+	 * @param max The maximum number of puts to replay
+	 * @return the number of puts replayed
+	 * @throws Exception thrown if the handler throws
+	 */
+	public int replay(PutBatchHandler handler, DirectBufferPool pool, int max) throws Exception {
+		final Segment seg = segments.isEmpty() ? null : segments.getFirst();
+		if(seg==null || max<1) return 0;
+		final ByteBuffer src = seg.buffer.duplicate();
+		int pos = seg.readPos;
+		int count = 0;
+		int len = seg.lengthAt(pos);
+		while(count<max && len>0) {
+			final ByteBuffer put = len > pool.getBufferSize() ? ByteBuffer.allocate(len) : pool.acquire();
+			src.limit(pos + HEADER_SIZE + len).position(pos + HEADER_SIZE);
+			put.put(src).flip();
+			src.limit(src.capacity());
+			pos += HEADER_SIZE + len;
+			count++;
+			len = seg.lengthAt(pos);
+			handler.onPut(put, seg.readRecords + count, count==max || len<=0);
+		}
+		pendingBytes.addAndGet(-(pos - seg.readPos));
+		seg.consume(pos);
+		seg.readRecords += count;
+		replayed.addAndGet(count);
+		if(seg.readPos==seg.writePos) {
+			if(seg==current) {
+				seg.reset();
+			} else {
+				segments.removeFirst();
+				seg.destroy();
+			}
+		}
+		updateOldest();
+		return count;
+	}
+
+	/**
+	 * Updates the spill time of the oldest pending put
+	 */
+	protected void updateOldest() {
+		for(Segment seg: segments) {
+			if(seg.lengthAt(seg.readPos)>0) {
+				oldestTimestamp = seg.buffer.getLong(seg.readPos + 4);
+				return;
+			}
+		}
+		oldestTimestamp = -1L;
+	}
+
+	/**
+	 * Closes the journal, leaving any pending segments on disk to be recovered
+	 */
+	public void close() {
+		for(Segment seg: segments) {
+			if(seg.readPos==seg.writePos) seg.destroy();
+			else seg.close();
+		}
+		segments.clear();
+		current = null;
+	}
+
+	/**
+	 * Returns the number of pending (unreplayed) journal bytes
+	 * @return the number of pending journal bytes
+	 */
+	public long getPendingBytes() {
+		return pendingBytes.get();
+	}
+
+	/**
+	 * Returns the total number of puts spilled to the journal
+	 * @return the total number of puts spilled
+	 */
+	public long getSpilled() {
+		return spilled.get();
+	}
+
+	/**
+	 * Returns the total number of puts replayed from the journal
+	 * @return the total number of puts replayed
+	 */
+	public long getReplayed() {
+		return replayed.get();
+	}
+
+	/**
+	 * Returns the total number of puts discarded by the journal
+	 * @return the total number of puts discarded
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the spill time of the oldest pending put
+	 * @return the spill time of the oldest pending put in ms, or -1 if there are none
+	 */
+	public long getOldestTimestamp() {
+		return oldestTimestamp;
+	}
+
+	/**
+	 * Returns the journal base file
+	 * @return the journal base file
+	 */
+	public File getBaseFile() {
+		return baseFile;
+	}
+
+	/**
+	 * Returns the maximum disk footprint of the journal in bytes
+	 * @return the maximum disk footprint
+	 */
+	public long getCapacity() {
+		return (long)segmentSize * maxSegments;
+	}
+
+	/**
+	 * Unmaps a mapped buffer immediately rather than when it is garbage collected, so the disk blocks of a deleted segment
+	 * are released at once. The buffer must not be accessed afterwards. If the JVM does not expose the buffer's cleaner,
+	 * the mapping is left to be released by the garbage collector.
+	 * @param buffer The buffer to unmap
+	 */
+	protected static void unmap(MappedByteBuffer buffer) {
+		try {
+			final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			final Object cleaner = cleanerMethod.invoke(buffer);
+			if(cleaner!=null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch (Throwable t) {
+			try {
+				// Java 9+ hides the cleaner but exposes it through Unsafe
+				final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+			} catch (Throwable tx) {/* No Op */}
+		}
+	}
+
+	/**
+	 * <p>Title: Segment</p>
+	 * <p>Description: A single memory mapped journal segment file</p>
+	 */
+	protected class Segment {
+		/** The segment sequence */
+		final long sequence;
+		/** The segment file */
+		final File file;
+		/** The segment file */
+		final RandomAccessFile raf;
+		/** The mapped segment */
+		final MappedByteBuffer buffer;
+		/** The next write position */
+		int writePos = 0;
+		/** The next read position */
+		int readPos = 0;
+		/** The number of records written */
+		long records = 0;
+		/** The number of records read */
+		long readRecords = 0;
+
+		/**
+		 * Creates a new segment, or maps an existing one
+		 * @param sequence The segment sequence
+		 * @param existing The existing segment file, or null to create a new one
+		 * @throws IOException thrown if the segment cannot be mapped
+		 */
+		Segment(long sequence, File existing) throws IOException {
+			this.sequence = sequence;
+			file = existing==null ? segmentFile(sequence) : existing;
+			if(existing==null && file.exists()) file.delete();
+			raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(segmentSize);
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			} catch (IOException ex) {
+				try { raf.close(); } catch (Exception x) {/* No Op */}
+				file.delete();
+				throw ex;
+			}
+		}
+
+		/**
+		 * Scans a recovered segment for its records, skipping those already replayed
+		 */
+		void recover() {
+			int len;
+			while(writePos + HEADER_SIZE <= segmentSize && (len = buffer.getInt(writePos))<0 && writePos + HEADER_SIZE - len <= segmentSize) {
+				writePos += HEADER_SIZE - len;
+				records++;
+			}
+			readPos = writePos;
+			readRecords = records;
+			while((len = lengthAt(writePos))>0) {
+				writePos += HEADER_SIZE + len;
+				records++;
+			}
+		}
+
+		/**
+		 * Marks the records from the read position up to the passed position as replayed
+		 * @param pos The position after the last replayed record
+		 */
+		void consume(int pos) {
+			while(readPos < pos) {
+				final int len = buffer.getInt(readPos);
+				buffer.putInt(readPos, -len);
+				readPos += HEADER_SIZE + len;
+			}
+		}
+
+		/**
+		 * Returns the length of the record at the passed position
+		 * @param pos The position
+		 * @return the record length, or zero if there is no record at the position
+		 */
+		int lengthAt(int pos) {
+			if(pos + HEADER_SIZE > segmentSize) return 0;
+			final int len = buffer.getInt(pos);
+			return (len<0 || pos + HEADER_SIZE + len > segmentSize) ? 0 : len;
+		}
+
+		/**
+		 * Appends a record
+		 * @param put The put bytes
+		 * @param timestamp The spill timestamp
+		 */
+		void append(ByteBuffer put, long timestamp) {
+			final int len = put.remaining();
+			final int pos = writePos;
+			buffer.position(pos + 4);
+			buffer.putLong(timestamp);
+			buffer.put(put.duplicate());
+			final int next = pos + HEADER_SIZE + len;
+			if(next + 4 <= segmentSize) buffer.putInt(next, 0);
+			buffer.putInt(pos, len);
+			writePos = next;
+			records++;
+		}
+
+		/**
+		 * Resets a fully replayed segment for reuse
+		 */
+		void reset() {
+			buffer.putInt(0, 0);
+			writePos = 0;
+			readPos = 0;
+			records = 0;
+			readRecords = 0;
+		}
+
+		/**
+		 * Unmaps and closes the segment file
+		 */
+		void close() {
+			unmap(buffer);
+			try { raf.close(); } catch (Exception x) {/* No Op */}
+		}
+
+		/**
+		 * Closes and deletes the segment file
+		 */
+		void destroy() {
+			close();
+			if(!file.delete()) file.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+/**
+ * <p>Title: PutKey</p>
+ * <p>Description: An immutable, pre-encoded OpenTSDB metric name and tag set. The put request prefix
+ * (<code>put $metric </code>) and suffix (<code> $tags\n</code>) are encoded once so that each traced
+ * sample only has to render the timestamp and value.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.PutKey</code></p>
+ */
+public class PutKey {
+	/** The metric name */
+	protected final String metric;
+	/** The tags segment */
+	protected final String segment;
+	/** The encoded <code>put $metric </code> prefix */
+	protected final byte[] prefix;
+	/** The encoded <code> $tags\n</code> suffix */
+	protected final byte[] suffix;
+	/** Indicates if this is the canonical, cached instance for the metric and segment */
+	protected final boolean cached;
+
+	/** The put command bytes */
+	private static final byte[] PUT = "put ".getBytes(PutEncoder.CHARSET);
+
+	/**
+	 * Creates a new PutKey
+	 * @param metric The metric name
+	 * @param segment The tags segment
+	 * @param cached true if this is the canonical, cached instance for the metric and segment
+	 */
+	public PutKey(String metric, String segment, boolean cached) {
+		this.metric = metric;
+		this.cached = cached;
+		this.segment = segment;
+		final byte[] m = metric.trim().getBytes(PutEncoder.CHARSET);
+		prefix = new byte[PUT.length + m.length + 1];
+		System.arraycopy(PUT, 0, prefix, 0, PUT.length);
+		System.arraycopy(m, 0, prefix, PUT.length, m.length);
+		prefix[prefix.length-1] = ' ';
+		final String tags = segment==null ? "" : segment.trim();
+		if(tags.length()==0) {
+			suffix = new byte[]{'\n'};
+		} else {
+			final byte[] t = tags.getBytes(PutEncoder.CHARSET);
+			suffix = new byte[t.length + 2];
+			suffix[0] = ' ';
+			System.arraycopy(t, 0, suffix, 1, t.length);
+			suffix[suffix.length-1] = '\n';
+		}
+	}
+
+	/**
+	 * Returns the metric name
+	 * @return the metric name
+	 */
+	public String getMetric() {
+		return metric;
+	}
+
+	/**
+	 * Returns the tags segment
+	 * @return the tags segment
+	 */
+	public String getSegment() {
+		return segment;
+	}
+
+	/**
+	 * Indicates if this is the canonical, cached instance for the metric and segment.
+	 * Only cached keys can be used as identity keys for per-metric state.
+	 * @return true if this key is cached
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * Returns the number of bytes required to encode a put for this key, excluding the timestamp and value
+	 * @return the fixed encoded length
+	 */
+	public int getFixedLength() {
+		return prefix.length + suffix.length + 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PutKey [" + metric + " " + (segment==null ? "" : segment.trim()) + "]";
+	}
+}
@@ -0,0 +1,50 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Title: PutQueue</p>
+ * <p>Description: Defines the handoff of encoded put requests between the instrumented (producer) threads
+ * and the single OpenTSDB flush (consumer) thread.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue</code></p>
+ */
+public interface PutQueue {
+	/**
+	 * Offers an encoded put to the queue without blocking
+	 * @param put The encoded put request
+	 * @return true if the put was accepted, false if the queue was full
+	 */
+	public boolean offer(ByteBuffer put);
+	
+	/**
+	 * Waits up to the passed timeout for puts to become available, then delivers up to <code>max</code> puts to the handler.
+	 * Must only be called by the single consumer thread.
+	 * @param handler The handler to deliver the puts to
+	 * @param max The maximum number of puts to deliver
+	 * @param timeoutMs The maximum time to wait for puts in ms.
+	 * @return the number of puts delivered
+	 * @throws InterruptedException thrown if the consumer thread is interrupted while waiting
+	 * @throws Exception thrown if the handler throws
+	 */
+	public int drain(PutBatchHandler handler, int max, long timeoutMs) throws Exception;
+	
+	/**
+	 * Returns the number of puts currently in the queue
+	 * @return the number of puts currently in the queue
+	 */
+	public int size();
+	
+	/**
+	 * Returns the capacity of the queue
+	 * @return the capacity of the queue
+	 */
+	public int capacity();
+	
+	/**
+	 * Returns the number of times a producer could not immediately enqueue a put
+	 * @return the number of producer stalls
+	 */
+	public long getProducerStalls();
+}
@@ -0,0 +1,163 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Title: PutRingBuffer</p>
+ * <p>Description: A bounded, lock-free multi-producer / single-consumer ring buffer {@link PutQueue}.
+ * Producers claim a slot with a single CAS on the tail sequence and publish it by advancing the slot's
+ * sequence. The consumer reads published slots in order without taking any locks, and waits for puts
+ * using a configurable {@link RingWaitStrategy}.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.PutRingBuffer</code></p>
+ */
+public class PutRingBuffer implements PutQueue {
+	/** The ring slots */
+	protected final AtomicReferenceArray<ByteBuffer> slots;
+	/** The per slot sequences. A slot is writable for sequence <code>s</code> when its sequence is <code>s</code> and readable when it is <code>s+1</code>. */
+	protected final AtomicLongArray sequences;
+	/** The ring capacity (a power of 2) */
+	protected final int capacity;
+	/** The slot index mask */
+	protected final int mask;
+	/** The next sequence to be claimed by a producer */
+	protected final AtomicLong tail = new AtomicLong(0);
+	/** The next sequence to be read by the consumer */
+	protected volatile long head = 0;
+	/** The consumer wait strategy */
+	protected final RingWaitStrategy waitStrategy;
+	/** The consumer waiter */
+	protected final RingWaitStrategy.Waiter waiter;
+	/** The number of offers rejected because the ring was full */
+	protected final AtomicLong fullStalls = new AtomicLong(0);
+	/** The number of CAS retries by contending producers */
+	protected final AtomicLong contentionStalls = new AtomicLong(0);
+
+	/**
+	 * Creates a new PutRingBuffer
+	 * @param requestedCapacity The requested capacity, which will be rounded up to the next power of 2
+	 * @param waitStrategy The consumer wait strategy
+	 */
+	public PutRingBuffer(int requestedCapacity, RingWaitStrategy waitStrategy) {
+		if(requestedCapacity<2) throw new IllegalArgumentException("Invalid ring capacity [" + requestedCapacity + "]");
+		capacity = Integer.highestOneBit(requestedCapacity)==requestedCapacity ? requestedCapacity : Integer.highestOneBit(requestedCapacity) << 1;
+		mask = capacity-1;
+		slots = new AtomicReferenceArray<ByteBuffer>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+		this.waitStrategy = waitStrategy==null ? RingWaitStrategy.BLOCKING : waitStrategy;
+		waiter = this.waitStrategy.waiter();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#offer(java.nio.ByteBuffer)
+	 */
+	public boolean offer(ByteBuffer put) {
+		while(true) {
+			final long seq = tail.get();
+			final int index = (int)seq & mask;
+			final long diff = sequences.get(index) - seq;
+			if(diff==0) {
+				if(tail.compareAndSet(seq, seq+1)) {
+					slots.lazySet(index, put);
+					sequences.set(index, seq+1);
+					waiter.signal();
+					return true;
+				}
+				contentionStalls.incrementAndGet();
+			} else if(diff<0) {
+				fullStalls.incrementAndGet();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Indicates if the next put is published and readable by the consumer
+	 * @return true if a put is available
+	 */
+	public boolean available() {
+		final long h = head;
+		return sequences.get((int)h & mask)==h+1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#drain(com.heliosapm.wiex.tracing.tracing.tsdb.PutBatchHandler, int, long)
+	 */
+	public int drain(PutBatchHandler handler, int max, long timeoutMs) throws Exception {
+		if(!waiter.waitFor(this, TimeUnit.MILLISECONDS.toNanos(timeoutMs))) return 0;
+		final long start = head;
+		long end = start;
+		final long limit = start + max;
+		while(end < limit && sequences.get((int)end & mask)==end+1) {
+			end++;
+		}
+		for(long seq = start; seq < end; seq++) {
+			final int index = (int)seq & mask;
+			final ByteBuffer put = slots.get(index);
+			slots.lazySet(index, null);
+			sequences.set(index, seq + capacity);
+			head = seq + 1;
+			handler.onPut(put, seq, seq==end-1);
+		}
+		return (int)(end-start);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#size()
+	 */
+	public int size() {
+		final long size = tail.get() - head;
+		return size<0 ? 0 : (int)Math.min(size, capacity);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#capacity()
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see com.heliosapm.wiex.tracing.tracing.tsdb.PutQueue#getProducerStalls()
+	 */
+	public long getProducerStalls() {
+		return fullStalls.get() + contentionStalls.get();
+	}
+
+	/**
+	 * Returns the number of offers rejected because the ring was full
+	 * @return the number of full ring stalls
+	 */
+	public long getFullStalls() {
+		return fullStalls.get();
+	}
+
+	/**
+	 * Returns the number of CAS retries by contending producers
+	 * @return the number of contention stalls
+	 */
+	public long getContentionStalls() {
+		return contentionStalls.get();
+	}
+
+	/**
+	 * Returns the consumer wait strategy
+	 * @return the wait strategy
+	 */
+	public RingWaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+}
@@ -0,0 +1,182 @@
+package com.heliosapm.wiex.tracing.tracing.tsdb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Title: RingWaitStrategy</p>
+ * <p>Description: Enumerates the strategies the {@link PutRingBuffer} consumer can use to wait for puts to be published.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.tracing.tracing.tsdb.RingWaitStrategy</code></p>
+ */
+public enum RingWaitStrategy {
+	/** Parks the consumer on a condition. Lowest CPU, highest latency. Producers only take the lock when the consumer is parked. */
+	BLOCKING,
+	/** Spins, then yields, then parks the consumer for short periods. A good compromise between CPU and latency. */
+	SLEEPING,
+	/** Spins, then yields the consumer thread. Low latency but burns a core while idle. */
+	YIELDING,
+	/** Busy spins the consumer thread. Lowest latency, burns a core while idle. */
+	BUSYSPIN;
+
+	/**
+	 * Decodes the passed name to a RingWaitStrategy, defaulting to {@link #BLOCKING}
+	 * @param name The name to decode
+	 * @return the decoded RingWaitStrategy
+	 */
+	public static RingWaitStrategy decode(String name) {
+		if(name==null) return BLOCKING;
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (Exception ex) {
+			return BLOCKING;
+		}
+	}
+
+	/**
+	 * Creates a new waiter implementing this strategy
+	 * @return a new waiter
+	 */
+	public Waiter waiter() {
+		switch(this) {
+			case SLEEPING:
+				return new SleepingWaiter();
+			case YIELDING:
+				return new YieldingWaiter();
+			case BUSYSPIN:
+				return new BusySpinWaiter();
+			default:
+				return new BlockingWaiter();
+		}
+	}
+
+	/**
+	 * <p>Title: Waiter</p>
+	 * <p>Description: The consumer side wait and producer side signal of a wait strategy.</p>
+	 */
+	public static abstract class Waiter {
+		/** The number of spins before yielding */
+		protected static final int SPIN_TRIES = 100;
+
+		/**
+		 * Called by the consumer to wait until the ring reports available puts, or the timeout elapses
+		 * @param ring The ring to wait on
+		 * @param timeoutNanos The maximum time to wait in ns.
+		 * @return true if puts are available
+		 * @throws InterruptedException thrown if the consumer thread is interrupted
+		 */
+		public abstract boolean waitFor(PutRingBuffer ring, long timeoutNanos) throws InterruptedException;
+
+		/**
+		 * Called by producers after publishing a put
+		 */
+		public void signal() {
+			/* No Op */
+		}
+
+		/**
+		 * Throws an InterruptedException if the current thread has been interrupted
+		 * @throws InterruptedException thrown if the current thread has been interrupted
+		 */
+		protected static void checkInterrupt() throws InterruptedException {
+			if(Thread.interrupted()) throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * <p>Title: BlockingWaiter</p>
+	 * <p>Description: Parks the consumer on a condition.</p>
+	 */
+	static class BlockingWaiter extends Waiter {
+		/** The consumer lock */
+		private final ReentrantLock lock = new ReentrantLock();
+		/** The publish condition */
+		private final Condition published = lock.newCondition();
+		/** Indicates if the consumer is parked */
+		private final AtomicBoolean parked = new AtomicBoolean(false);
+
+		public boolean waitFor(PutRingBuffer ring, long timeoutNanos) throws InterruptedException {
+			if(ring.available()) return true;
+			lock.lock();
+			try {
+				parked.set(true);
+				long remaining = timeoutNanos;
+				while(!ring.available()) {
+					if(remaining<=0) return false;
+					remaining = published.awaitNanos(remaining);
+				}
+				return true;
+			} finally {
+				parked.set(false);
+				lock.unlock();
+			}
+		}
+
+		public void signal() {
+			if(parked.get()) {
+				lock.lock();
+				try {
+					published.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>Title: SleepingWaiter</p>
+	 * <p>Description: Spins, yields, then parks for 100 us at a time.</p>
+	 */
+	static class SleepingWaiter extends Waiter {
+		public boolean waitFor(PutRingBuffer ring, long timeoutNanos) throws InterruptedException {
+			final long deadline = System.nanoTime() + timeoutNanos;
+			int tries = SPIN_TRIES * 2;
+			while(!ring.available()) {
+				checkInterrupt();
+				if(System.nanoTime()>=deadline) return false;
+				if(tries>SPIN_TRIES) tries--;
+				else if(tries>0) { tries--; Thread.yield(); }
+				else LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * <p>Title: YieldingWaiter</p>
+	 * <p>Description: Spins, then yields.</p>
+	 */
+	static class YieldingWaiter extends Waiter {
+		public boolean waitFor(PutRingBuffer ring, long timeoutNanos) throws InterruptedException {
+			final long deadline = System.nanoTime() + timeoutNanos;
+			int tries = SPIN_TRIES;
+			while(!ring.available()) {
+				checkInterrupt();
+				if(System.nanoTime()>=deadline) return false;
+				if(tries>0) tries--;
+				else Thread.yield();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * <p>Title: BusySpinWaiter</p>
+	 * <p>Description: Busy spins.</p>
+	 */
+	static class BusySpinWaiter extends Waiter {
+		public boolean waitFor(PutRingBuffer ring, long timeoutNanos) throws InterruptedException {
+			final long deadline = System.nanoTime() + timeoutNanos;
+			while(!ring.available()) {
+				checkInterrupt();
+				if(System.nanoTime()>=deadline) return false;
+			}
+			return true;
+		}
+	}
+}
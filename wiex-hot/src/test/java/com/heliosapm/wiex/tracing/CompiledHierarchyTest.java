@@ -0,0 +1,124 @@
+/**
+ * 
+ */
+package com.heliosapm.wiex.tracing;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.heliosapm.wiex.tracing.tracing.CompiledHierarchy;
+import com.heliosapm.wiex.tracing.tracing.ObjectHierarchyTree;
+
+/**
+ * <p>Title: CompiledHierarchyTest</p>
+ * <p>Description: Checks that lookups in a compiled hierarchy return the same values as the tree it was compiled from.</p> 
+ * <p>Copyright: Copyright (c) 2007</p>
+ * <p>Organization: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+
+public class CompiledHierarchyTest {
+	
+	char[] separators = new char[]{'.', '/', ':'};
+	
+	ObjectHierarchyTree<Boolean> tree = null;
+	CompiledHierarchy<Boolean> compiled = null;
+	
+	String[] names = new String[]{
+			"", "unknown", "unknown.a", "com", "com.", "com..", "com.foo", "com.foo.bar", "com.foo.bar.baz",
+			"com.off", "com.off.x", "com.off.on", "com.off.on.deep", "org.any", "org.any.on", "org.x.on", "org.x.y",
+			"org.foo", "org.foo.bar", "net.a", "net.a.b.c"
+	};
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		tree = new ObjectHierarchyTree<Boolean>("\\.", "*", Boolean.TRUE, Boolean.FALSE);
+		tree.setMember("com", Boolean.TRUE);
+		tree.setMember("com.off", Boolean.FALSE);
+		tree.setMember("com.off.on", Boolean.TRUE);
+		tree.setMember("org.*", Boolean.FALSE);
+		tree.setMember("org.*.on", Boolean.TRUE);
+		tree.setMember("org.foo", Boolean.TRUE);
+		tree.setMember("net.a.b", Boolean.TRUE);
+		compiled = tree.compile();
+	}
+	
+	@Test
+	public void testSize() {
+		assertEquals(tree.getTreeSize(), compiled.size());
+	}
+	
+	@Test
+	public void testMatchesTree() {
+		for(String name: names) {
+			if(name.length()==0 || name.endsWith(".")) continue;
+			assertEquals(name, tree.getValue(name), compiled.getValue(name, separators));
+		}
+	}
+	
+	@Test
+	public void testExactMatch() {
+		assertEquals(Boolean.TRUE, compiled.getValue("com", separators));
+		assertEquals(Boolean.FALSE, compiled.getValue("com.off", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("com.off.on", separators));
+	}
+	
+	@Test
+	public void testDeepestMatch() {
+		assertEquals(Boolean.TRUE, compiled.getValue("com.foo.bar", separators));
+		assertEquals(Boolean.FALSE, compiled.getValue("com.off.x", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("com.off.on.deep", separators));
+	}
+	
+	@Test
+	public void testUnknownFirstSegment() {
+		assertEquals(Boolean.TRUE, compiled.getValue("unknown", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("unknown.a", separators));
+	}
+	
+	@Test
+	public void testWildCard() {
+		assertEquals(Boolean.FALSE, compiled.getValue("org.any", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("org.any.on", separators));
+		assertEquals(Boolean.FALSE, compiled.getValue("org.x.y", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("org.foo", separators));
+	}
+	
+	@Test
+	public void testSparseNode() {
+		assertEquals(Boolean.FALSE, compiled.getValue("net.a", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("net.a.b.c", separators));
+	}
+	
+	@Test
+	public void testSeparators() {
+		assertEquals(Boolean.TRUE, compiled.getValue("com/off:on", separators));
+		assertEquals(Boolean.FALSE, compiled.getValue("com:off/x", separators));
+	}
+	
+	@Test
+	public void testTrailingSeparators() {
+		assertEquals(Boolean.FALSE, compiled.getValue("com.off.", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("com..", separators));
+		assertEquals(Boolean.TRUE, compiled.getValue("...", separators));
+	}
+	
+	@Test
+	public void testManyChildren() {
+		ObjectHierarchyTree<Boolean> wide = new ObjectHierarchyTree<Boolean>("\\.", "*", Boolean.TRUE, Boolean.FALSE);
+		for(int i = 0; i < 500; i++) {
+			wide.setMember("root.child" + i, (i % 2)==0);
+		}
+		CompiledHierarchy<Boolean> c = wide.compile();
+		for(int i = 0; i < 500; i++) {
+			assertEquals(Boolean.valueOf((i % 2)==0), c.getValue("root.child" + i, separators));
+		}
+		assertEquals(Boolean.FALSE, c.getValue("root.child500", separators));
+	}
+}
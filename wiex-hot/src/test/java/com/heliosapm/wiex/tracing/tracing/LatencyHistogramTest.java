@@ -0,0 +1,141 @@
+/**
+ * 
+ */
+package com.heliosapm.wiex.tracing.tracing;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Title: LatencyHistogramTest</p>
+ * <p>Description: Checks the bucket boundaries and percentile math of the latency histogram.</p> 
+ * <p>Copyright: Copyright (c) 2007</p>
+ * <p>Organization: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+
+public class LatencyHistogramTest {
+	
+	LatencyHistogram histogram = null;
+	long[] counts = null;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		histogram = new LatencyHistogram();
+		counts = new long[LatencyHistogram.BUCKET_COUNT];
+	}
+	
+	@Test
+	public void testBucketCount() {
+		assertEquals(1216, LatencyHistogram.BUCKET_COUNT);
+		assertEquals(LatencyHistogram.BUCKET_COUNT-1, LatencyHistogram.indexOf(LatencyHistogram.MAX_TRACKABLE));
+		assertEquals(LatencyHistogram.MAX_TRACKABLE, LatencyHistogram.highestEquivalentValue(LatencyHistogram.BUCKET_COUNT-1));
+	}
+	
+	@Test
+	public void testContiguousBuckets() {
+		assertEquals(0, LatencyHistogram.indexOf(0));
+		for(int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+			long highest = LatencyHistogram.highestEquivalentValue(i);
+			assertEquals("Highest value of bucket " + i, i, LatencyHistogram.indexOf(highest));
+			if(i < LatencyHistogram.BUCKET_COUNT-1) {
+				assertEquals("Value after bucket " + i, i+1, LatencyHistogram.indexOf(highest+1));
+			}
+		}
+	}
+	
+	@Test
+	public void testExactBelowSubBucketCount() {
+		for(int i = 0; i < LatencyHistogram.SUB_BUCKET_COUNT; i++) {
+			assertEquals(i, LatencyHistogram.indexOf(i));
+			assertEquals(i, LatencyHistogram.highestEquivalentValue(i));
+		}
+	}
+	
+	@Test
+	public void testResolution() {
+		for(long v = LatencyHistogram.SUB_BUCKET_COUNT; v < LatencyHistogram.MAX_TRACKABLE; v = v * 3 / 2 + 7) {
+			long highest = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(v));
+			assertTrue("Bucket of " + v + " ends below it", highest >= v);
+			assertTrue("Bucket of " + v + " ends at " + highest, highest - v <= v / 32);
+		}
+	}
+	
+	@Test
+	public void testSmallValuePercentiles() {
+		for(int i = 1; i <= 50; i++) {
+			histogram.record(i);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.harvest(counts);
+		assertEquals(50, snapshot.getCount());
+		assertEquals(25, snapshot.getP50());
+		assertEquals(45, snapshot.getP90());
+		assertEquals(50, snapshot.getP99());
+		assertEquals(50, snapshot.getP999());
+		assertEquals(50, snapshot.getMax());
+	}
+	
+	@Test
+	public void testKnownPercentiles() {
+		for(int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.harvest(counts);
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(503, snapshot.getP50());
+		assertEquals(911, snapshot.getP90());
+		assertEquals(991, snapshot.getP99());
+		assertEquals(1000, snapshot.getP999());
+		assertEquals(1000, snapshot.getMax());
+	}
+	
+	@Test
+	public void testSkewedPercentiles() {
+		for(int i = 0; i < 990; i++) {
+			histogram.record(100);
+		}
+		for(int i = 0; i < 10; i++) {
+			histogram.record(1000000);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.harvest(counts);
+		assertEquals(101, snapshot.getP50());
+		assertEquals(101, snapshot.getP90());
+		assertEquals(101, snapshot.getP99());
+		assertEquals(1000000, snapshot.getP999());
+		assertEquals(1000000, snapshot.getMax());
+	}
+	
+	@Test
+	public void testClamping() {
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		LatencyHistogram.Snapshot snapshot = histogram.harvest(counts);
+		assertEquals(2, snapshot.getCount());
+		assertEquals(1, counts[0]);
+		assertEquals(1, counts[LatencyHistogram.BUCKET_COUNT-1]);
+		assertEquals(LatencyHistogram.MAX_TRACKABLE, snapshot.getMax());
+	}
+	
+	@Test
+	public void testHarvestResets() {
+		histogram.record(10);
+		assertNotNull(histogram.harvest(counts));
+		assertEquals(0, histogram.getIdleIntervals());
+		assertNull(histogram.harvest(counts));
+		assertEquals(1, histogram.getIdleIntervals());
+		for(long c: counts) {
+			assertEquals(0, c);
+		}
+		histogram.record(20);
+		LatencyHistogram.Snapshot snapshot = histogram.harvest(counts);
+		assertEquals(1, snapshot.getCount());
+		assertEquals(20, snapshot.getMax());
+		assertEquals(0, histogram.getIdleIntervals());
+	}
+}
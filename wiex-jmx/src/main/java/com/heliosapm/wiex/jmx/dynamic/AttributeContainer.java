@@ -1,6 +1,7 @@
 package com.heliosapm.wiex.jmx.dynamic;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import javax.management.MBeanAttributeInfo;
 
@@ -23,6 +24,20 @@ public class AttributeContainer {
 	protected Method targetSetterMethod = null;
 	/**	 The method for getting the attribute in the managed object. */
 	protected Method targetGetterMethod = null;
+	/**	The generated accessor of the managed object's class */
+	protected ManagedObjectAccessorFactory.ClassAccessor classAccessor = ManagedObjectAccessorFactory.NONE;
+	/**	The accessor index of the getter method, or -1 if it is invoked reflectively */
+	protected int getterIndex = -1;
+	/**	The accessor index of the setter method, or -1 if it is invoked reflectively */
+	protected int setterIndex = -1;
+	/**	Indicates if the getter method is static */
+	protected boolean getterStatic = false;
+	/**	Indicates if the setter method is static */
+	protected boolean setterStatic = false;
+	/**	Indicates if bulk reads of the managed object's attributes are synchronized on the managed object */
+	protected boolean snapshot = false;
+	/**	Empty object array */
+	protected static final Object[] NO_ARGS = new Object[]{};
 	
 	/**
 	 * Simple constructor.
@@ -39,11 +54,60 @@ public class AttributeContainer {
 	 * @param targetSetterMethod The method for getting the attribute in the managed object.
 	 */
 	public AttributeContainer(Object targetObject, MBeanAttributeInfo attributeInfo, Method targetGetterMethod, Method targetSetterMethod) {
+		this(targetObject, attributeInfo, targetGetterMethod, targetSetterMethod, ManagedObjectAccessorFactory.NONE);
+	}
+	
+	/**
+	 * Creates a new attribute container for the specified managed object's attribute, accessed through a generated accessor. 
+	 * @param targetObject The managed object.
+	 * @param attributeInfo The JMX Attribute information.
+	 * @param targetGetterMethod The method for setting the attribute in the managed object.
+	 * @param targetSetterMethod The method for getting the attribute in the managed object.
+	 * @param classAccessor The generated accessor of the managed object's class.
+	 */
+	public AttributeContainer(Object targetObject, MBeanAttributeInfo attributeInfo, Method targetGetterMethod, Method targetSetterMethod, ManagedObjectAccessorFactory.ClassAccessor classAccessor) {
 		super();
 		this.targetObject = targetObject;
 		this.attributeInfo = attributeInfo;
-		this.targetSetterMethod = targetSetterMethod;
-		this.targetGetterMethod = targetGetterMethod;
+		this.classAccessor = classAccessor==null ? ManagedObjectAccessorFactory.NONE : classAccessor;
+		setTargetSetterMethod(targetSetterMethod);
+		setTargetGetterMethod(targetGetterMethod);
+	}
+	
+	/**
+	 * Reads the attribute value from the managed object.
+	 * @return the attribute value.
+	 * @throws Exception Any exception thrown reading the attribute.
+	 */
+	public Object getValue() throws Exception {
+		Object target = getterStatic ? null : targetObject;
+		if(getterIndex!=-1) return classAccessor.getAccessor().invoke(target, getterIndex, NO_ARGS);
+		return targetGetterMethod.invoke(target, NO_ARGS);
+	}
+	
+	/**
+	 * Writes the attribute value to the managed object.
+	 * @param value The attribute value.
+	 * @throws Exception Any exception thrown writing the attribute.
+	 */
+	public void setValue(Object value) throws Exception {
+		Object target = setterStatic ? null : targetObject;
+		if(setterIndex!=-1) classAccessor.getAccessor().invoke(target, setterIndex, new Object[]{value});
+		else targetSetterMethod.invoke(target, new Object[]{value});
+	}
+
+	/**
+	 * @return true if bulk reads of the managed object's attributes are synchronized on the managed object
+	 */
+	public boolean isSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @param snapshot true if bulk reads of the managed object's attributes are synchronized on the managed object
+	 */
+	public void setSnapshot(boolean snapshot) {
+		this.snapshot = snapshot;
 	}
 
 	/**
@@ -72,6 +136,8 @@ public class AttributeContainer {
 	 */
 	public void setTargetGetterMethod(Method targetGetterMethod) {
 		this.targetGetterMethod = targetGetterMethod;
+		this.getterStatic = targetGetterMethod!=null && Modifier.isStatic(targetGetterMethod.getModifiers());
+		this.getterIndex = classAccessor.indexOf(targetGetterMethod);
 	}
 
 	/**
@@ -100,6 +166,8 @@ public class AttributeContainer {
 	 */
 	public void setTargetSetterMethod(Method targetSetterMethod) {
 		this.targetSetterMethod = targetSetterMethod;
+		this.setterStatic = targetSetterMethod!=null && Modifier.isStatic(targetSetterMethod.getModifiers());
+		this.setterIndex = classAccessor.indexOf(targetSetterMethod);
 	}
 	
 }
@@ -0,0 +1,90 @@
+package com.heliosapm.wiex.jmx.dynamic;
+
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
+
+/**
+ * <p>Title: DynamicMBeanReadInstrumentation</p>
+ * <p>Description: Managed object for exposing a ManagedObjectDynamicMBean's attribute read counters and latency.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.jmx.dynamic.DynamicMBeanReadInstrumentation</code></p>
+ */
+@JMXManagedObject(declared=true, annotated=true)
+public class DynamicMBeanReadInstrumentation {
+
+	/**The instance of the ManagedObjectDynamicMBean that this object will expose read instrumentation for.*/
+	protected ManagedObjectDynamicMBean mbean = null;
+
+	/**
+	 * Internal constructor.
+	 * @param mbean The ManagedObjectDynamicMBean to expose read instrumentation for.
+	 */
+	protected DynamicMBeanReadInstrumentation(ManagedObjectDynamicMBean mbean) {
+		this.mbean = mbean;
+	}
+
+	/**
+	 * The number of getAttribute and getAttributes calls.
+	 * @return The number of read calls.
+	 */
+	@JMXAttribute(description="The Number of Attribute Read Calls", name="ReadCalls")
+	public long getReadCalls() {
+		return mbean.readCalls.get();
+	}
+
+	/**
+	 * The number of getAttributes calls.
+	 * @return The number of bulk read calls.
+	 */
+	@JMXAttribute(description="The Number of Bulk Attribute Read Calls", name="BulkReadCalls")
+	public long getBulkReadCalls() {
+		return mbean.bulkReadCalls.get();
+	}
+
+	/**
+	 * The number of attribute values read.
+	 * @return The number of attribute values read.
+	 */
+	@JMXAttribute(description="The Number of Attribute Values Read", name="AttributeReads")
+	public long getAttributeReads() {
+		return mbean.attributeReads.get();
+	}
+
+	/**
+	 * The number of requested attributes that were not found or failed to read.
+	 * @return The number of failed attribute reads.
+	 */
+	@JMXAttribute(description="The Number of Failed Attribute Reads", name="AttributeReadFailures")
+	public long getAttributeReadFailures() {
+		return mbean.attributeReadFailures.get();
+	}
+
+	/**
+	 * The average elapsed time of a read call in ns.
+	 * @return The average read call time.
+	 */
+	@JMXAttribute(description="The Average Read Call Time (ns.)", name="AverageReadTime")
+	public long getAverageReadTime() {
+		long calls = mbean.readCalls.get();
+		return calls==0 ? 0 : mbean.readNanos.get()/calls;
+	}
+
+	/**
+	 * The maximum elapsed time of a read call in ns.
+	 * @return The maximum read call time.
+	 */
+	@JMXAttribute(description="The Maximum Read Call Time (ns.)", name="MaxReadTime")
+	public long getMaxReadTime() {
+		return mbean.maxReadNanos.get();
+	}
+
+	/**
+	 * Resets the read counters.
+	 */
+	@JMXOperation(description="Resets the Attribute Read Counters", name="resetReadStats")
+	public void resetReadStats() {
+		mbean.resetReadStats();
+	}
+}
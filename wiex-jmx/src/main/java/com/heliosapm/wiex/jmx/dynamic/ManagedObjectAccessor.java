@@ -0,0 +1,23 @@
+package com.heliosapm.wiex.jmx.dynamic;
+
+/**
+ * <p>Title: ManagedObjectAccessor</p>
+ * <p>Description: A generated invoker for the methods of one managed object class. Each eligible method of the class
+ * is assigned an index when the accessor is generated, and {@link #invoke(Object, int, Object[])} dispatches on the
+ * index to a direct call of the method, so attribute reads, attribute writes and operations avoid reflective invocation.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.jmx.dynamic.ManagedObjectAccessor</code></p>
+ */
+public interface ManagedObjectAccessor {
+	/**
+	 * Invokes the method at the passed index against the passed target.
+	 * Primitive arguments are unboxed and primitive return values are boxed. Void methods return null.
+	 * @param target The managed object, or null if the method is static
+	 * @param index The index of the method assigned when the accessor was generated
+	 * @param args The method arguments
+	 * @return the return value of the method
+	 * @throws Exception Any exception thrown by the method, unwrapped
+	 */
+	public Object invoke(Object target, int index, Object[] args) throws Exception;
+}
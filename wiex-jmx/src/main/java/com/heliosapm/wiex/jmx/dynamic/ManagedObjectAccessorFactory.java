@@ -0,0 +1,310 @@
+package com.heliosapm.wiex.jmx.dynamic;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+/**
+ * <p>Title: ManagedObjectAccessorFactory</p>
+ * <p>Description: Generates and caches a {@link ManagedObjectAccessor} for each managed object class using javassist.
+ * The generated accessor calls each public method of the class directly through a switch on the method's index,
+ * boxing and unboxing primitives, so {@link ManagedObjectDynamicMBean} attribute reads and operation invocations
+ * do not go through <code>Method.invoke</code>.</p>
+ * <p>Methods that the generated class cannot link against (non-public methods, non-public declaring classes or
+ * signature types, or types not visible from the defining class loader) are not indexed and are invoked reflectively.
+ * If javassist is not available at runtime or generation fails, the class is not indexed at all and every method
+ * is invoked reflectively.</p>
+ * <p>Generation can be disabled with the system property <b>wiex.jmx.accessors</b>=<b>false</b>.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.jmx.dynamic.ManagedObjectAccessorFactory</code></p>
+ */
+public class ManagedObjectAccessorFactory {
+	/** The class accessors keyed by managed object class. The accessors are weakly referenced too, since a generated accessor is defined
+	 * in its managed class's loader and would otherwise keep the key reachable. Each accessor is held by the MBean containers that use it. */
+	protected static final Map<Class<?>, WeakReference<ClassAccessor>> accessors = Collections.synchronizedMap(new WeakHashMap<Class<?>, WeakReference<ClassAccessor>>());
+	/** The serial number used to name generated classes */
+	protected static final AtomicInteger serial = new AtomicInteger(0);
+	/** The number of managed object classes that could not be generated */
+	protected static final AtomicInteger failures = new AtomicInteger(0);
+
+	/** The accessor generation enablement property */
+	public static final String ACCESSORS_PROP = "wiex.jmx.accessors";
+	/** Indicates if accessor generation is enabled */
+	public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ACCESSORS_PROP, "true"));
+	/** The class accessor for classes with no generated accessor */
+	public static final ClassAccessor NONE = new ClassAccessor(null, Collections.<Method, Integer>emptyMap());
+
+	/**
+	 * <p>Title: ClassAccessor</p>
+	 * <p>Description: The generated accessor of a managed object class and the index of each method it can invoke</p>
+	 */
+	public static class ClassAccessor {
+		/** The generated accessor, or null if none was generated */
+		protected final ManagedObjectAccessor accessor;
+		/** The accessor index of each indexed method */
+		protected final Map<Method, Integer> indexes;
+
+		/**
+		 * Creates a new ClassAccessor
+		 * @param accessor The generated accessor, or null if none was generated
+		 * @param indexes The accessor index of each indexed method
+		 */
+		protected ClassAccessor(ManagedObjectAccessor accessor, Map<Method, Integer> indexes) {
+			this.accessor = accessor;
+			this.indexes = indexes;
+		}
+
+		/**
+		 * Returns the generated accessor
+		 * @return the accessor, or null if none was generated
+		 */
+		public ManagedObjectAccessor getAccessor() {
+			return accessor;
+		}
+
+		/**
+		 * Returns the accessor index of the passed method
+		 * @param method The method
+		 * @return the index, or -1 if the method is not indexed and must be invoked reflectively
+		 */
+		public int indexOf(Method method) {
+			if(method==null) return -1;
+			Integer index = indexes.get(method);
+			return index==null ? -1 : index.intValue();
+		}
+	}
+
+	/**
+	 * Returns the class accessor for the passed managed object class, generating it on the first call for the class,
+	 * or again if the previous accessor is no longer used and has been collected.
+	 * @param clazz The managed object class
+	 * @param methods The methods of the class to index
+	 * @return the class accessor, which is {@link #NONE} if no accessor could be generated
+	 */
+	public static ClassAccessor getAccessor(Class<?> clazz, Method[] methods) {
+		if(!ENABLED) return NONE;
+		synchronized(accessors) {
+			WeakReference<ClassAccessor> ref = accessors.get(clazz);
+			ClassAccessor ca = ref==null ? null : ref.get();
+			if(ca==null) {
+				ca = generate(clazz, methods);
+				accessors.put(clazz, new WeakReference<ClassAccessor>(ca));
+			}
+			return ca;
+		}
+	}
+
+	/**
+	 * Returns the number of managed object classes that could not be generated
+	 * @return the number of failures
+	 */
+	public static int getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Generates the class accessor for the passed managed object class
+	 * @param clazz The managed object class
+	 * @param methods The methods of the class to index
+	 * @return the class accessor, or {@link #NONE}
+	 */
+	protected static ClassAccessor generate(Class<?> clazz, Method[] methods) {
+		try {
+			ClassLoader loader = definingLoader(clazz);
+			if(loader==null) return NONE;
+			List<Method> eligible = new ArrayList<Method>();
+			for(Method method: methods) {
+				if(isEligible(method, loader)) eligible.add(method);
+			}
+			if(eligible.isEmpty()) return NONE;
+			Map<Method, Integer> indexes = new HashMap<Method, Integer>(eligible.size()*2);
+			StringBuilder src = new StringBuilder("public Object invoke(Object target, int index, Object[] args) throws Exception { switch(index) {");
+			for(int i = 0; i < eligible.size(); i++) {
+				Method method = eligible.get(i);
+				indexes.put(method, i);
+				src.append("case ").append(i).append(": ");
+				src.append(invocation(method)).append(" ");
+			}
+			src.append("default: throw new IllegalArgumentException(\"No method at index \" + index); } }");
+
+			String name = ManagedObjectAccessor.class.getName() + "_" + serial.incrementAndGet() + "_" + clazz.getName().replace('.', '_').replace('$', '_');
+			Class<?> generated = AccessorCompiler.compile(name, src.toString(), loader, clazz.getProtectionDomain());
+			return new ClassAccessor((ManagedObjectAccessor)generated.newInstance(), indexes);
+		} catch (Throwable e) {
+			failures.incrementAndGet();
+			return NONE;
+		}
+	}
+
+	/**
+	 * <p>Title: AccessorCompiler</p>
+	 * <p>Description: Holds the javassist references so the factory links when javassist is not on the classpath</p>
+	 */
+	protected static class AccessorCompiler {
+		/**
+		 * Compiles and defines an accessor class
+		 * @param name The class name
+		 * @param src The source of the invoke method
+		 * @param loader The class loader to define the class in
+		 * @param domain The protection domain to define the class in
+		 * @return the defined class
+		 * @throws Exception Thrown if the class cannot be compiled or defined
+		 */
+		protected static Class<?> compile(String name, String src, ClassLoader loader, ProtectionDomain domain) throws Exception {
+			ClassPool pool = new ClassPool(true);
+			pool.appendClassPath(new LoaderClassPath(loader));
+			CtClass ctClass = pool.makeClass(name);
+			ctClass.addInterface(pool.get(ManagedObjectAccessor.class.getName()));
+			ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+			ctClass.addMethod(CtNewMethod.make(src, ctClass));
+			Class<?> generated = ctClass.toClass(loader, domain);
+			ctClass.detach();
+			return generated;
+		}
+	}
+
+	/**
+	 * Renders the source of the switch case body that invokes the passed method
+	 * @param method The method
+	 * @return the case body source
+	 */
+	protected static String invocation(Method method) {
+		StringBuilder call = new StringBuilder();
+		if(Modifier.isStatic(method.getModifiers())) {
+			call.append(typeName(method.getDeclaringClass()));
+		} else {
+			call.append("((").append(typeName(method.getDeclaringClass())).append(")target)");
+		}
+		call.append(".").append(method.getName()).append("(");
+		Class<?>[] params = method.getParameterTypes();
+		for(int i = 0; i < params.length; i++) {
+			if(i>0) call.append(", ");
+			call.append(unbox(params[i], "args[" + i + "]"));
+		}
+		call.append(")");
+		Class<?> ret = method.getReturnType();
+		if(ret==Void.TYPE) return call.append("; return null;").toString();
+		return "return " + box(ret, call.toString()) + ";";
+	}
+
+	/**
+	 * Renders the source that boxes the passed expression if its type is primitive
+	 * @param type The type of the expression
+	 * @param expr The expression
+	 * @return the boxing source
+	 */
+	protected static String box(Class<?> type, String expr) {
+		if(!type.isPrimitive()) return expr;
+		return wrapper(type).getName() + ".valueOf(" + expr + ")";
+	}
+
+	/**
+	 * Renders the source that casts the passed expression to the passed type, unboxing it if the type is primitive
+	 * @param type The target type
+	 * @param expr The expression
+	 * @return the cast source
+	 */
+	protected static String unbox(Class<?> type, String expr) {
+		if(!type.isPrimitive()) return "(" + typeName(type) + ")" + expr;
+		return "((" + wrapper(type).getName() + ")" + expr + ")." + type.getName() + "Value()";
+	}
+
+	/**
+	 * Returns the wrapper class of a primitive type
+	 * @param type The primitive type
+	 * @return the wrapper class
+	 */
+	protected static Class<?> wrapper(Class<?> type) {
+		if(type==Integer.TYPE) return Integer.class;
+		if(type==Long.TYPE) return Long.class;
+		if(type==Boolean.TYPE) return Boolean.class;
+		if(type==Double.TYPE) return Double.class;
+		if(type==Float.TYPE) return Float.class;
+		if(type==Short.TYPE) return Short.class;
+		if(type==Byte.TYPE) return Byte.class;
+		return Character.class;
+	}
+
+	/**
+	 * Returns the source name of the passed type
+	 * @param type The type
+	 * @return the source name
+	 */
+	protected static String typeName(Class<?> type) {
+		if(type.isArray()) return typeName(type.getComponentType()) + "[]";
+		return type.getName();
+	}
+
+	/**
+	 * Determines the class loader the accessor for the passed class is defined in, which must be able to see both the class
+	 * and {@link ManagedObjectAccessor}
+	 * @param clazz The managed object class
+	 * @return the class loader, or null if no suitable loader was found
+	 */
+	protected static ClassLoader definingLoader(Class<?> clazz) {
+		ClassLoader loader = clazz.getClassLoader();
+		if(loader!=null && isVisible(ManagedObjectAccessor.class, loader)) return loader;
+		loader = ManagedObjectAccessor.class.getClassLoader();
+		if(loader!=null && isVisible(clazz, loader)) return loader;
+		return null;
+	}
+
+	/**
+	 * Determines if the generated accessor can call the passed method directly
+	 * @param method The method
+	 * @param loader The class loader the accessor is defined in
+	 * @return true if the method can be indexed
+	 */
+	protected static boolean isEligible(Method method, ClassLoader loader) {
+		if(!Modifier.isPublic(method.getModifiers()) || method.isSynthetic()) return false;
+		if(!isLinkable(method.getDeclaringClass(), loader) || !isLinkable(method.getReturnType(), loader)) return false;
+		for(Class<?> param: method.getParameterTypes()) {
+			if(!isLinkable(param, loader)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Determines if the passed type is public and visible from the passed class loader
+	 * @param type The type
+	 * @param loader The class loader the accessor is defined in
+	 * @return true if the generated accessor can reference the type
+	 */
+	protected static boolean isLinkable(Class<?> type, ClassLoader loader) {
+		if(type.isArray()) return isLinkable(type.getComponentType(), loader);
+		if(type.isPrimitive()) return true;
+		for(Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+			if(!Modifier.isPublic(c.getModifiers())) return false;
+		}
+		return isVisible(type, loader);
+	}
+
+	/**
+	 * Determines if the passed class loader resolves the passed class' name to the same class
+	 * @param type The class
+	 * @param loader The class loader
+	 * @return true if the class is visible from the loader
+	 */
+	protected static boolean isVisible(Class<?> type, ClassLoader loader) {
+		try {
+			return Class.forName(type.getName(), false, loader)==type;
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+}
@@ -12,6 +12,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.Attribute;
 import javax.management.AttributeChangeNotification;
@@ -62,6 +63,8 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 	protected Map<String, AttributeContainer> attributes = new ConcurrentHashMap<String, AttributeContainer>();
 	/**	A map of the current MBean's Operations and target managed objects. */
 	protected Map<String, OperationContainer> operations = new ConcurrentHashMap<String, OperationContainer>();	
+	/**	A map of the current MBean's Operations keyed by operation name, for resolving invocations by signature without building a key. */
+	protected Map<String, OperationContainer[]> operationsByName = new ConcurrentHashMap<String, OperationContainer[]>();
 	/**	A map of the current MBean's Notifications and target managed objects. */
 	protected List<MBeanNotificationInfo> notifications = Collections.synchronizedList(new ArrayList<MBeanNotificationInfo>());		
 	/**	A blockig queue to hold asynch requests to be fed into the thread pool. */
@@ -88,6 +91,18 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 	protected MBeanInfo mbeanInfo = null;
 	/**	Empty object array */
 	protected final static  Object[] NO_ARGS = new Object[]{};
+	/**	The number of getAttribute and getAttributes calls */
+	protected final AtomicLong readCalls = new AtomicLong(0);
+	/**	The number of getAttributes calls */
+	protected final AtomicLong bulkReadCalls = new AtomicLong(0);
+	/**	The number of attribute values read */
+	protected final AtomicLong attributeReads = new AtomicLong(0);
+	/**	The number of requested attributes that were not found or failed to read */
+	protected final AtomicLong attributeReadFailures = new AtomicLong(0);
+	/**	The total elapsed time of read calls in ns. */
+	protected final AtomicLong readNanos = new AtomicLong(0);
+	/**	The maximum elapsed time of a read call in ns. */
+	protected final AtomicLong maxReadNanos = new AtomicLong(0);
 	
 	/**
 	 * Creates a new Managed Object Dynamic MBean with no asynch handler.
@@ -149,6 +164,7 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 			reflectObject(o);
 		}
 		reflectObject(new DynamicMBeanCoreFunctions(this));		
+		reflectObject(new DynamicMBeanReadInstrumentation(this));
 		notifications.add(new MBeanNotificationInfo(null, AttributeChangeNotification.class.getName(), "Attribute Change Notification"));
 		updateMBeanInfo();			
 	}
@@ -187,8 +203,10 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 		boolean annotatedOnly = false;
 		Method[] methods = null;
 		boolean async = false;
+		boolean snapshot = false;
 		if(object.getClass().isAnnotationPresent(JMXManagedObject.class)) {
 			annotatedOnly = object.getClass().getAnnotation(JMXManagedObject.class).annotated();
+			snapshot = object.getClass().getAnnotation(JMXManagedObject.class).snapshot();
 			if(object.getClass().getAnnotation(JMXManagedObject.class).declared()) {
 				methods = object.getClass().getDeclaredMethods();				
 			} else {
@@ -206,6 +224,7 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 		int impact = 0;
 		JMXAttribute jmxAttr = null;
 		JMXOperation jmxOper = null;
+		ManagedObjectAccessorFactory.ClassAccessor classAccessor = ManagedObjectAccessorFactory.getAccessor(object.getClass(), methods);
 		
 		for(Method method: methods) {
 			if((method.getName().startsWith("get")|| method.getName().startsWith("is"))  && method.getParameterTypes().length==0) {
@@ -229,7 +248,9 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 						attrName = generateAttributeName(method);
 					}
 					attrInfo = new MBeanAttributeInfo(attrName, descr, method, setterMethod);					
-					attributes.put(attrName, new AttributeContainer(object, attrInfo, method, setterMethod));
+					AttributeContainer ac = new AttributeContainer(object, attrInfo, method, setterMethod, classAccessor);
+					ac.setSnapshot(snapshot);
+					attributes.put(attrName, ac);
 				} catch (Exception e) {
 				}
 			} else {
@@ -269,7 +290,7 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 							}
 						} // -2116838301  
 						operInfo = new MBeanOperationInfo(operName, descr, paramInfos, method.getReturnType().getName(), impact);					
-						operations.put(hashOperationName(operName, method.getParameterTypes()), new OperationContainer(object, operInfo, method, async));
+						addOperation(new OperationContainer(object, operInfo, method, async, classAccessor));
 					}
 				} catch (Exception e) {
 					
@@ -278,6 +299,57 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 		}
 	}
 	
+	/**
+	 * Adds an operation to the operation maps, replacing any operation with the same key.
+	 * @param op The operation to add.
+	 */
+	protected synchronized void addOperation(OperationContainer op) {
+		OperationContainer prior = operations.put(op.getKey(), op);
+		if(prior!=null) removeByName(prior);
+		String name = op.getOperInfo().getName();
+		OperationContainer[] ops = operationsByName.get(name);
+		if(ops==null) {
+			operationsByName.put(name, new OperationContainer[]{op});
+		} else {
+			OperationContainer[] newOps = new OperationContainer[ops.length+1];
+			System.arraycopy(ops, 0, newOps, 0, ops.length);
+			newOps[ops.length] = op;
+			operationsByName.put(name, newOps);
+		}
+	}
+	
+	/**
+	 * Removes an operation from the operations by name map.
+	 * @param op The operation to remove.
+	 */
+	protected void removeByName(OperationContainer op) {
+		String name = op.getOperInfo().getName();
+		OperationContainer[] ops = operationsByName.get(name);
+		if(ops==null) return;
+		List<OperationContainer> remaining = new ArrayList<OperationContainer>(ops.length);
+		for(OperationContainer o: ops) {
+			if(o!=op) remaining.add(o);
+		}
+		if(remaining.isEmpty()) operationsByName.remove(name);
+		else operationsByName.put(name, remaining.toArray(new OperationContainer[remaining.size()]));
+	}
+	
+	/**
+	 * Resolves the operation for an operation name and signature.
+	 * @param actionName The operation name.
+	 * @param signature The operation signature.
+	 * @return The matching operation or null if one is not found.
+	 */
+	protected OperationContainer getOperation(String actionName, String[] signature) {
+		if(actionName==null) return null;
+		OperationContainer[] ops = operationsByName.get(actionName);
+		if(ops==null) return null;
+		for(OperationContainer op: ops) {
+			if(op.matches(signature)) return op;
+		}
+		return null;
+	}
+	
 	/**
 	 * Extracts a located JMXOperationParameter from an array of annotations.
 	 * @param annotations An array of annotations.
@@ -332,38 +404,113 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 	public Object getAttribute(String attribute)
 			throws AttributeNotFoundException, MBeanException,
 			ReflectionException {
-		AttributeContainer ac = attributes.get(attribute);
-		if(ac==null) throw new AttributeNotFoundException("Attribute " + attribute + " Not Found");
+		long start = System.nanoTime();
+		boolean read = false;
 		try {
-			if(ac.getTargetGetterMethod().toString().contains(" static ")) {
-				return ac.getTargetGetterMethod().invoke(null, NO_ARGS);
-			} else {
-				return ac.getTargetGetterMethod().invoke(ac.getTargetObject(), NO_ARGS);
-			}
-			
-		} catch (Exception e) {
-			throw new ReflectionException(e, "Failed to Invoke " + ac.getTargetGetterMethod().getName());
-		} 
-		
+			AttributeContainer ac = attributes.get(attribute);
+			if(ac==null) throw new AttributeNotFoundException("Attribute " + attribute + " Not Found");
+			try {
+				Object value = ac.getValue();
+				read = true;
+				return value;
+			} catch (Exception e) {
+				throw new ReflectionException(e, "Failed to Invoke " + ac.getTargetGetterMethod().getName());
+			} 
+		} finally {
+			recordRead(start, read ? 1 : 0, read ? 0 : 1);
+		}
 	}
 
 	/**
 	 * Get the values of several attributes of the Dynamic MBean.
+	 * Only the requested attributes are read. The requested attributes of each managed object are read together,
+	 * while holding the object's monitor if the object is annotated as a snapshot object.
+	 * Attributes that are not found or fail to read are omitted from the returned list.
 	 * @param attributes A list of the attributes to be retrieved.
-	 * @return The list of attributes retrieved.
+	 * @return The list of attributes retrieved, in the requested order.
 	 * @see javax.management.DynamicMBean#getAttributes(java.lang.String[])
 	 */
 	public AttributeList getAttributes(String[] attributes) {
-		AttributeList list = new AttributeList();
-		
-		for(String s: this.attributes.keySet()) {
+		long start = System.nanoTime();
+		bulkReadCalls.incrementAndGet();
+		if(attributes==null || attributes.length==0) {
+			recordRead(start, 0, 0);
+			return new AttributeList();
+		}
+		AttributeContainer[] containers = new AttributeContainer[attributes.length];
+		for(int i = 0; i < attributes.length; i++) {
+			containers[i] = this.attributes.get(attributes[i]);
+		}
+		Object[] values = new Object[attributes.length];
+		boolean[] read = new boolean[attributes.length];
+		boolean[] done = new boolean[attributes.length];
+		for(int i = 0; i < attributes.length; i++) {
+			if(done[i] || containers[i]==null) continue;
+			Object target = containers[i].getTargetObject();
+			if(containers[i].isSnapshot()) {
+				synchronized(target) {
+					readGroup(target, i, containers, values, read, done);
+				}
+			} else {
+				readGroup(target, i, containers, values, read, done);
+			}
+		}
+		AttributeList list = new AttributeList(attributes.length);
+		int failures = 0;
+		for(int i = 0; i < attributes.length; i++) {
+			if(read[i]) list.add(new Attribute(attributes[i], values[i]));
+			else failures++;
+		}
+		recordRead(start, list.size(), failures);
+		return list;
+	}
+	
+	/**
+	 * Reads the requested attributes of one managed object, starting from the passed index.
+	 * @param target The managed object.
+	 * @param from The index of the first requested attribute of the managed object.
+	 * @param containers The attribute containers of the requested attributes.
+	 * @param values The attribute values read.
+	 * @param read Flags the attributes that were read.
+	 * @param done Flags the attributes that have been processed.
+	 */
+	protected void readGroup(Object target, int from, AttributeContainer[] containers, Object[] values, boolean[] read, boolean[] done) {
+		for(int i = from; i < containers.length; i++) {
+			if(done[i] || containers[i]==null || containers[i].getTargetObject()!=target) continue;
+			done[i] = true;
 			try {
-				Object o = getAttribute(s);
-				list.add(new Attribute(s, o));
+				values[i] = containers[i].getValue();
+				read[i] = true;
 			} catch (Exception e) {}
-		}		
-		return list;
-		
+		}
+	}
+	
+	/**
+	 * Records a read call in the read counters.
+	 * @param start The nanoTime the read call started at.
+	 * @param reads The number of attribute values read.
+	 * @param failures The number of requested attributes that were not found or failed to read.
+	 */
+	protected void recordRead(long start, int reads, int failures) {
+		long elapsed = System.nanoTime()-start;
+		readCalls.incrementAndGet();
+		readNanos.addAndGet(elapsed);
+		if(reads>0) attributeReads.addAndGet(reads);
+		if(failures>0) attributeReadFailures.addAndGet(failures);
+		long max;
+		while(elapsed > (max = maxReadNanos.get()) && !maxReadNanos.compareAndSet(max, elapsed)) {/* retry */}
+	}
+	
+	/**
+	 * Resets the read counters.
+	 */
+	protected void resetReadStats() {
+		readCalls.set(0);
+		bulkReadCalls.set(0);
+		attributeReads.set(0);
+		attributeReadFailures.set(0);
+		readNanos.set(0);
+		maxReadNanos.set(0);
 	}
 
 	/**
@@ -421,14 +568,14 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 	 */
 	public Object invoke(String actionName, Object[] params, String[] signature)
 			throws MBeanException, ReflectionException {
-		OperationContainer op = operations.get(hashOperationName(actionName, signature));
+		OperationContainer op = getOperation(actionName, signature);
 		if(op==null) throw new OperationNotFoundException(new Exception(), actionName);
 		if(op.isAsynch() && threadPool != null) {
 			long resultHandle = new StringBuilder(actionName).append(objectName.toString()).append(Thread.currentThread().getName()).append(agentId).append(System.nanoTime()).hashCode();
 			threadPool.submit(new InvocationRunnable(this, actionName, params, signature, resultHandle));
 			return null;
 		} else {
-			return internalInvoke(actionName, params, signature);
+			return internalInvoke(op, params);
 		}
 	}
 	
@@ -440,7 +587,7 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 	 */
 	protected static String hashOperationName(String actionName, String[] signature) {
 		StringBuilder buff = new StringBuilder(actionName);
-		for(String s: signature) {
+		if(signature!=null) for(String s: signature) {
 			buff.append(s);
 		}
 		return "" + buff.toString().hashCode();
@@ -470,15 +617,21 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 	 * @throws ReflectionException
 	 */
 	protected Object internalInvoke(String actionName, Object[] params, String[] signature) throws MBeanException, ReflectionException {
-		Object ret = null;
-		OperationContainer op = operations.get(hashOperationName(actionName, signature));
+		OperationContainer op = getOperation(actionName, signature);
+		if(op==null) throw new OperationNotFoundException(new Exception(), actionName);
+		return internalInvoke(op, params);
+	}
+	
+	/**
+	 * Internal invoke of a resolved operation.
+	 * @param op The operation to invoke.
+	 * @param params The operation parameters.
+	 * @return The applicable return object from the invoked method.
+	 * @throws ReflectionException
+	 */
+	protected Object internalInvoke(OperationContainer op, Object[] params) throws ReflectionException {
 		try {
-			if(op.getTargetMethod().toString().contains(" static ")) {
-				ret = op.getTargetMethod().invoke(null, params);
-			} else {
-				ret = op.getTargetMethod().invoke(op.getTargetObject(), params);
-			}
-			return ret;
+			return op.invoke(params);
 		} catch (Exception e) {
 			throw new ReflectionException(e, "Exception Invoking Operation " + op.getTargetMethod().getName());
 		} 				
@@ -499,12 +652,7 @@ public class ManagedObjectDynamicMBean extends javax.management.NotificationBroa
 		AttributeContainer ac = attributes.get(attribute.getName());
 		if(ac==null) throw new AttributeNotFoundException("Attribute Not Found:" + attribute.getName());
 		try {
-			if(ac.getTargetSetterMethod().toString().contains(" static ")) {
-				ac.getTargetSetterMethod().invoke(null, new Object[]{attribute.getValue()});
-			} else {
-				ac.getTargetSetterMethod().invoke(ac.getTargetObject(), new Object[]{attribute.getValue()});
-			}
-			
+			ac.setValue(attribute.getValue());
 		} catch (Exception e) {
 			throw new ReflectionException(e, "Exception Setting Attribute " + attribute.getName());
 		}
@@ -1,6 +1,7 @@
 package com.heliosapm.wiex.jmx.dynamic;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import javax.management.MBeanOperationInfo;
 
@@ -22,6 +23,16 @@ public class OperationContainer {
 	protected Method targetMethod = null;
 	/**	Indicates if the method will be handled by the asynch request thread pool. */
 	protected boolean asynch = false;
+	/**	The generated accessor of the managed object's class */
+	protected ManagedObjectAccessorFactory.ClassAccessor classAccessor = ManagedObjectAccessorFactory.NONE;
+	/**	The accessor index of the method, or -1 if it is invoked reflectively */
+	protected int index = -1;
+	/**	Indicates if the method is static */
+	protected boolean staticMethod = false;
+	/**	The operation signature as parameter type names */
+	protected String[] signature = null;
+	/**	The operation key of the operation name and signature */
+	protected String key = null;
 	
 	/**
 	 * Creates a new OperationContainer for the passed managed object and specified method.
@@ -31,11 +42,64 @@ public class OperationContainer {
 	 * @param async Indicates if the method will be handled by the asynch request thread pool.
 	 */
 	public OperationContainer(Object targetObject, MBeanOperationInfo operInfo, Method targetMethod, boolean async) {
+		this(targetObject, operInfo, targetMethod, async, ManagedObjectAccessorFactory.NONE);
+	}
+	
+	/**
+	 * Creates a new OperationContainer for the passed managed object and specified method, invoked through a generated accessor.
+	 * @param targetObject The managed object where the attribute resides.
+	 * @param operInfo The JMX information on the operation.
+	 * @param targetMethod The actual method that backs the JMX operation.
+	 * @param async Indicates if the method will be handled by the asynch request thread pool.
+	 * @param classAccessor The generated accessor of the managed object's class.
+	 */
+	public OperationContainer(Object targetObject, MBeanOperationInfo operInfo, Method targetMethod, boolean async, ManagedObjectAccessorFactory.ClassAccessor classAccessor) {
 		super();
 		this.targetObject = targetObject;
-		this.operInfo = operInfo;
-		this.targetMethod = targetMethod;
+		this.classAccessor = classAccessor==null ? ManagedObjectAccessorFactory.NONE : classAccessor;
 		this.asynch = async;
+		setTargetMethod(targetMethod);
+		setOperInfo(operInfo);
+	}
+	
+	/**
+	 * Invokes the operation against the managed object.
+	 * @param params The operation parameters.
+	 * @return the operation's return value.
+	 * @throws Exception Any exception thrown by the operation.
+	 */
+	public Object invoke(Object[] params) throws Exception {
+		Object target = staticMethod ? null : targetObject;
+		if(index!=-1) return classAccessor.getAccessor().invoke(target, index, params);
+		return targetMethod.invoke(target, params);
+	}
+	
+	/**
+	 * Determines if this operation matches the passed signature.
+	 * @param sig The operation signature as parameter type names. Null matches an empty signature.
+	 * @return true if the signature matches.
+	 */
+	public boolean matches(String[] sig) {
+		if(sig==null) return signature.length==0;
+		if(sig.length!=signature.length) return false;
+		for(int i = 0; i < sig.length; i++) {
+			if(!signature[i].equals(sig[i])) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the operation signature as parameter type names
+	 */
+	public String[] getSignature() {
+		return signature.clone();
+	}
+
+	/**
+	 * @return the operation key of the operation name and signature
+	 */
+	public String getKey() {
+		return key;
 	}
 
 	/**
@@ -64,6 +128,7 @@ public class OperationContainer {
 	 */
 	public void setOperInfo(MBeanOperationInfo operInfo) {
 		this.operInfo = operInfo;
+		this.key = ManagedObjectDynamicMBean.hashOperationName(operInfo.getName(), signature);
 	}
 
 	/**
@@ -78,6 +143,14 @@ public class OperationContainer {
 	 */
 	public void setTargetMethod(Method targetMethod) {
 		this.targetMethod = targetMethod;
+		this.staticMethod = Modifier.isStatic(targetMethod.getModifiers());
+		this.index = classAccessor.indexOf(targetMethod);
+		Class<?>[] types = targetMethod.getParameterTypes();
+		this.signature = new String[types.length];
+		for(int i = 0; i < types.length; i++) {
+			signature[i] = types[i].getName();
+		}
+		if(operInfo!=null) this.key = ManagedObjectDynamicMBean.hashOperationName(operInfo.getName(), signature);
 	}
 
 	/**
@@ -96,4 +169,4 @@ public class OperationContainer {
 
 	
 	
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -30,5 +30,12 @@ public @interface JMXManagedObject {
 	 */
 	boolean annotated() default false; 
 	
+	/**
+	 * true if the managed object's attributes requested in one bulk read should be read while holding the object's monitor,
+	 * giving a consistent snapshot against mutators that synchronize on the object.
+	 * @return true if bulk reads of the managed object's attributes should be synchronized on the object.
+	 */
+	boolean snapshot() default false;
+	
 
 }
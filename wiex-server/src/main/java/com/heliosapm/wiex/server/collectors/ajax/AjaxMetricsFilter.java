@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -120,10 +121,11 @@ public class AjaxMetricsFilter implements Filter {
 		*/
 		response.setIntHeader("agent-config-version", config.hashCode());
 		response.setIntHeader(config.p(config.pDelta), (int)0);
-		long start = System.currentTimeMillis();		
+		long start = System.nanoTime();		
 		UnCommitableServletResponse usr = new UnCommitableServletResponse(response);
 		filterChain.doFilter(request, usr);		
-		long elapsed = System.currentTimeMillis()-start;
+		long elapsedNanos = System.nanoTime()-start;
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
 		
 			
 		//response.setIntHeader(config.p(config.pDelta), (int)elapsed);
@@ -131,7 +133,7 @@ public class AjaxMetricsFilter implements Filter {
 		log.info("Delta:" + elapsed + " Commited:" + response.isCommitted());
 		usr.process();
 		int contentLength = usr.getContLength();
-		trace(request, contentLength);	
+		trace(request, contentLength, elapsedNanos);	
 		/*
 		StackTraceElement[] stacks = Thread.currentThread().getStackTrace();
 		StringBuilder buff = new StringBuilder(1000);
@@ -146,9 +148,15 @@ public class AjaxMetricsFilter implements Filter {
 	}
 	
 
+	/**
+	 * Traces the client submitted metrics of a request, and the server elapsed time into the latency histograms.
+	 * @param request The servlet request
+	 * @param contentLength The response content length
+	 * @param elapsedNanos The server elapsed time of the request in ns.
+	 */
 	@SuppressWarnings("static-access")
-	protected void trace(HttpServletRequest request, int contentLength) {
-		long start = System.currentTimeMillis();
+	protected void trace(HttpServletRequest request, int contentLength, long elapsedNanos) {
+		long start = System.nanoTime();
 		String metricName = null;
 		String elapsedTimeStr = null;
 		String concurrentStr = null;
@@ -192,6 +200,7 @@ public class AjaxMetricsFilter implements Filter {
 		try { tracer.recordMetric(seg, "Client Rendering Time" , fmatl(timeInterStr));} catch (Exception e) {}
 		try { tracer.recordMetric(seg, "Interactive Callbacks" , fmati(interCallbacksStr));} catch (Exception e) {}
 		try { tracer.recordMetric(seg, "Content Length" , contentLength);} catch (Exception e) {}
+		try { tracer.recordHistogram(seg, ITracer.ELAPSED_NANOS, elapsedNanos);} catch (Exception e) {}
 		try {
 			long transportTime = Long.parseLong(timeToInterStr)-Long.parseLong(hDeltaStr);
 			tracer.recordMetric(seg, "Transport Time" , transportTime);
@@ -210,6 +219,7 @@ public class AjaxMetricsFilter implements Filter {
 		try { tracer.recordMetric(seg, "Client Rendering Time" , fmatl(timeInterStr));} catch (Exception e) {}
 		try { tracer.recordMetric(seg, "Interactive Callbacks" , fmati(interCallbacksStr));} catch (Exception e) {}
 		try { tracer.recordMetric(seg, "Content Length" , contentLength);} catch (Exception e) {}
+		try { tracer.recordHistogram(seg, ITracer.ELAPSED_NANOS, elapsedNanos);} catch (Exception e) {}
 		try {
 			long transportTime = Long.parseLong(timeToInterStr)-Long.parseLong(hDeltaStr);
 			tracer.recordMetric(seg, "Transport Time" , transportTime);
@@ -217,9 +227,10 @@ public class AjaxMetricsFilter implements Filter {
 		
 		try { if(exceptionStr!=null) tracer.recordIntervalIncident(tracer.buildSegment(seg, "Exceptions"), exceptionStr);} catch (Exception e) {}				
 		try { if(hCodeStr!=null) tracer.recordIntervalIncident(tracer.buildSegment(seg, "Http Response Codes"), hCodeStr);} catch (Exception e) {}
-		long elapsed = System.currentTimeMillis()-start;
-		tracer.recordMetric(seg, "Tracing Time" , elapsed);
-		log.info("Completed Tracing in " + elapsed + " ms.");
+		long elapsed = System.nanoTime()-start;
+		tracer.recordMetric(seg, "Tracing Time" , TimeUnit.NANOSECONDS.toMillis(elapsed));
+		tracer.recordHistogram(seg, "Tracing Time (ns.)", elapsed);
+		log.info("Completed Tracing in " + elapsed + " ns.");
 	}
 	
 	protected Long fmatl(String s) {
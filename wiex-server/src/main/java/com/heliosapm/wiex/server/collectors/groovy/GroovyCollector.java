@@ -9,10 +9,27 @@ import groovy.lang.GroovyShell;
 import groovy.lang.Script;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.InitialContext;
 
@@ -25,14 +42,17 @@ import org.w3c.dom.NodeList;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperationParameter;
 import com.heliosapm.wiex.server.collectors.BaseCollector;
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
 
 /**
  * <p>Title: GroovyCollector</p>
  * <p>Description: Collector that invokes an arbitrary groovy script.
  * There are two types of groovy supported in the collector:<ul>
  * <li>A script is compiled and has no return. All tracing should be executed in the the script.</li>
- * <li>An evaluate is a groovy expression which returns a String value to the collector which is then traced using the name and type.</li>
+ * <li>An evaluate is a groovy expression which returns a String value to the collector which is then traced using the name and type.
+ * Evaluations are compiled once and only recompiled when their text changes.</li>
  * </ul></p>
  * <p>The following references are injected into the shell's binding:<ul>
  * <li>The MBeanServer that this collector MBean is registered in.</li>
@@ -42,6 +62,9 @@ import com.heliosapm.wiex.server.collectors.BaseCollector;
  * <li>The provided collector properties</li>
  * </ul>
  * </p> 
+ * <p>In parallel mode, scripts and evaluations run concurrently on an executor shared by all GroovyCollectors, each within the
+ * time budget given by its <code>timeout</code> attribute or the collector's ExecutionTimeout. A script or evaluation can list
+ * the names of others it must follow in a <code>depends</code> attribute.</p>
  * <p>Copyright: Copyright (c) 2007</p>
  * <p>Company: Helios Development Group</p>
  * @author Whitehead
@@ -64,6 +87,24 @@ public class GroovyCollector extends BaseCollector {
 	protected Properties shellProperties = null;
 	/** The groovy shells */
 	protected Map<String, GroovyShell> shells = new HashMap<String, GroovyShell>();
+	/** The configured time budgets in ms. of scripts and evaluations keyed by name */
+	protected Map<String, Long> scriptTimeouts = new HashMap<String, Long>();
+	/** The configured dependencies of scripts and evaluations keyed by name */
+	protected Map<String, Set<String>> scriptDependencies = new HashMap<String, Set<String>>();
+	/** The script tasks, built on the first collection */
+	protected List<ScriptTask> scriptTasks = null;
+	/** Indicates if scripts and evaluations run concurrently */
+	protected boolean parallelExecution = false;
+	/** The default time budget in ms. of a script or evaluation in parallel mode */
+	protected long executionTimeout = 10000L;
+	/** The number of scripts and evaluations that timed out in the last parallel collection */
+	protected int lastTimedOutScripts = 0;
+	/** The executor shared by all GroovyCollectors for parallel execution */
+	protected static ExecutorService scriptExecutor = null;
+	/** The property defining the number of threads in the shared script executor */
+	public static final String SCRIPT_THREADS_PROP = "wiex.groovy.collector.threads";
+	/** The default number of threads in the shared script executor */
+	public static final int DEFAULT_SCRIPT_THREADS = 10;
 	
 
 	
@@ -72,41 +113,415 @@ public class GroovyCollector extends BaseCollector {
 	 */
 	public GroovyCollector() {
 		super();
-		binding = new Binding();
+		// synchronized so scripts running in parallel can share binding variables
+		binding = new Binding(Collections.synchronizedMap(new HashMap<String, Object>()));
 	}
 
 	/**
-	 * 
+	 * Executes the configured scripts and evaluations.
+	 * In parallel mode they run concurrently on a bounded executor, each within its own time budget.
+	 * In either mode, a script or evaluation that declares dependencies only starts once they have finished.
 	 * @see com.heliosapm.wiex.server.collectors.BaseCollector#collect()
 	 */
 	@Override
 	@JMXOperation(description="Executes configured groovy resources.", expose=true, name="collect")
 	public void collect() {
-		// Execute Scripts
-		String scriptName = null;
-		for(String key: groovyScripts.keySet()) {
+		long start = System.currentTimeMillis();
+		List<ScriptTask> tasks = getScriptTasks();
+		if(parallelExecution) {
+			executeParallel(tasks);
+		} else {
+			executeSerial(tasks);
+		}
+		collectTime = System.currentTimeMillis() - start;
+	}
+	
+	/**
+	 * Runs the scripts and evaluations one after the other on the collector thread, in dependency order.
+	 * @param tasks The script tasks
+	 */
+	protected void executeSerial(List<ScriptTask> tasks) {
+		for(ScriptTask task: order(tasks)) {
+			Object result = null;
+			boolean failed = false;
 			try {
-				Script script = groovyScripts.get(key);
-				script.run();
-			} catch (Exception e) {
-				if(logErrors) {
-					log.error("Failure Executing Script[" + scriptName + "]", e);
+				result = task.call();
+			} catch (Throwable e) {
+				failed = true;
+				logFailure(task, e);
+			}
+			traceLatency(task);
+			if(!failed) traceResult(task, result);
+		}
+	}
+	
+	/**
+	 * Orders the tasks so each task follows the tasks it depends on. Tasks in a dependency cycle are appended in their configured order.
+	 * @param tasks The script tasks
+	 * @return the ordered tasks
+	 */
+	protected List<ScriptTask> order(List<ScriptTask> tasks) {
+		List<ScriptTask> ordered = new ArrayList<ScriptTask>(tasks.size());
+		List<ScriptTask> waiting = new ArrayList<ScriptTask>(tasks);
+		Set<String> finished = new HashSet<String>();
+		boolean progress = true;
+		while(!waiting.isEmpty() && progress) {
+			progress = false;
+			for(Iterator<ScriptTask> iter = waiting.iterator(); iter.hasNext();) {
+				ScriptTask task = iter.next();
+				if(finished.containsAll(task.depends)) {
+					iter.remove();
+					ordered.add(task);
+					finished.add(task.key);
+					progress = true;
 				}
-			}			
-		}		
-		// Execute Evaluations
-		for(ScriptEvaluation se: groovyEvaluations.values()) {
+			}
+		}
+		if(!waiting.isEmpty()) {
+			if(logErrors) log.warn("Dependency cycle between groovy resources " + keys(waiting) + ". Running them in configured order.");
+			ordered.addAll(waiting);
+		}
+		return ordered;
+	}
+	
+	/**
+	 * Runs the scripts and evaluations concurrently on the shared script executor.
+	 * Results are traced on the collector thread as each one finishes. A task still running when its time budget
+	 * expires is cancelled and counted as timed out, as is a task whose prior run is still running, which a cancelled script can be
+	 * if it does not respond to the interrupt. 
+	 * Dependent tasks are submitted once the tasks they depend on have finished or timed out.
+	 * @param tasks The script tasks
+	 */
+	protected void executeParallel(List<ScriptTask> tasks) {
+		CompletionService<Object> completion = new ExecutorCompletionService<Object>(getScriptExecutor());
+		List<ScriptTask> waiting = new ArrayList<ScriptTask>(tasks);
+		List<ScriptTask> running = new ArrayList<ScriptTask>();
+		Map<Future<Object>, ScriptTask> submitted = new HashMap<Future<Object>, ScriptTask>();
+		Set<String> finished = new HashSet<String>();
+		int timedOut = submitReady(completion, waiting, running, submitted, finished);
+		try {
+			while(!running.isEmpty()) {
+				long now = System.currentTimeMillis();
+				long nextDeadline = Long.MAX_VALUE;
+				for(ScriptTask task: running) {
+					nextDeadline = Math.min(nextDeadline, task.deadline);
+				}
+				Future<Object> done = nextDeadline > now ? completion.poll(nextDeadline - now, TimeUnit.MILLISECONDS) : null;
+				if(done!=null) {
+					ScriptTask task = submitted.remove(done);
+					if(task==null) continue;
+					running.remove(task);
+					complete(task, done);
+					finished.add(task.key);
+				} else {
+					now = System.currentTimeMillis();
+					for(Iterator<ScriptTask> iter = running.iterator(); iter.hasNext();) {
+						ScriptTask task = iter.next();
+						if(task.deadline > now) continue;
+						iter.remove();
+						submitted.remove(task.future);
+						if(task.future.isDone()) {
+							complete(task, task.future);
+						} else {
+							task.future.cancel(true);
+							timeout(task);
+							timedOut++;
+						}
+						finished.add(task.key);
+					}
+				}
+				timedOut += submitReady(completion, waiting, running, submitted, finished);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for(ScriptTask task: running) {
+				task.future.cancel(true);
+			}
+		}
+		lastTimedOutScripts = timedOut;
+	}
+	
+	/**
+	 * Submits the waiting tasks whose dependencies have finished.
+	 * @param completion The completion service
+	 * @param waiting The tasks waiting to be submitted
+	 * @param running The submitted tasks that have not finished
+	 * @param submitted The submitted tasks keyed by future
+	 * @param finished The keys of the finished tasks
+	 * @return the number of tasks skipped and counted as timed out because their prior run has not finished
+	 */
+	protected int submitReady(CompletionService<Object> completion, List<ScriptTask> waiting, List<ScriptTask> running, Map<Future<Object>, ScriptTask> submitted, Set<String> finished) {
+		int skipped = 0;
+		boolean force = false;
+		boolean progress = true;
+		while(progress && !waiting.isEmpty()) {
+			progress = false;
+			for(Iterator<ScriptTask> iter = waiting.iterator(); iter.hasNext();) {
+				ScriptTask task = iter.next();
+				if(!force && !finished.containsAll(task.depends)) continue;
+				force = false;
+				iter.remove();
+				progress = true;
+				if(task.running.get()) {
+					if(logErrors) log.warn("Skipping groovy resource [" + task.key + "] as its prior run is still running");
+					timeout(task);
+					skipped++;
+					finished.add(task.key);
+					continue;
+				}
+				task.deadline = System.currentTimeMillis() + (task.timeout > 0 ? task.timeout : executionTimeout);
+				task.future = completion.submit(task);
+				submitted.put(task.future, task);
+				running.add(task);
+			}
+			if(!running.isEmpty()) break;
+			if(!progress && !waiting.isEmpty()) {
+				if(logErrors) log.warn("Dependency cycle between groovy resources " + keys(waiting) + ". Running them in configured order.");
+				force = true;
+				progress = true;
+			}
+		}
+		return skipped;
+	}
+	
+	/**
+	 * Traces the latency and result of a finished task
+	 * @param task The task
+	 * @param future The task's future
+	 */
+	protected void complete(ScriptTask task, Future<Object> future) {
+		traceLatency(task);
+		try {
+			traceResult(task, future.get());
+		} catch (ExecutionException e) {
+			logFailure(task, e.getCause());
+		} catch (Exception e) {
+			logFailure(task, e);
+		}
+	}
+	
+	/**
+	 * Counts and traces a timed out task
+	 * @param task The task
+	 */
+	protected void timeout(ScriptTask task) {
+		task.timeouts++;
+		if(traceCollectionTime) {
+			tracer.recordCounterMetric(task.segment, "Timeouts", task.timeouts);
+		}
+		if(logErrors) log.warn("Groovy resource [" + task.key + "] timed out");
+	}
+	
+	/**
+	 * Traces the elapsed time of a task's last run when collection time tracing is enabled
+	 * @param task The task
+	 */
+	protected void traceLatency(ScriptTask task) {
+		if(traceCollectionTime) {
+			tracer.recordCounterMetric(task.segment, "Elapsed Time", task.elapsed);
+			tracer.recordCounterMetric(task.segment, "Timeouts", task.timeouts);
+		}
+	}
+	
+	/**
+	 * Traces the result of an evaluation. Scripts do their own tracing.
+	 * @param task The task
+	 * @param result The value returned by the task
+	 */
+	protected void traceResult(ScriptTask task, Object result) {
+		ScriptEvaluation se = task.evaluation;
+		if(se==null) return;
+		try {
+			String retVal = result.toString();
+			recordTrace(tracer.buildSegment(segmentPrefix, false, se.getSegment()), se.getMetricName(), retVal, se.getMetricType());
+		} catch (Exception e) {
+			logFailure(task, e);
+		}
+	}
+	
+	/**
+	 * Logs the failure of a task
+	 * @param task The task
+	 * @param e The failure
+	 */
+	protected void logFailure(ScriptTask task, Throwable e) {
+		if(logErrors) {
+			if(task.evaluation!=null) {
+				log.error("Failure Executing Evaluation[" + task.evaluation + "]", e);
+			} else {
+				log.error("Failure Executing Script[" + task.key + "]", e);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the keys of a list of tasks
+	 * @param tasks The tasks
+	 * @return the task keys
+	 */
+	protected static List<String> keys(List<ScriptTask> tasks) {
+		List<String> keys = new ArrayList<String>(tasks.size());
+		for(ScriptTask task: tasks) {
+			keys.add(task.key);
+		}
+		return keys;
+	}
+	
+	/**
+	 * Returns the tasks for the configured scripts and evaluations, building them on first use.
+	 * @return the script tasks
+	 */
+	protected synchronized List<ScriptTask> getScriptTasks() {
+		if(scriptTasks==null) {
+			List<ScriptTask> tasks = new ArrayList<ScriptTask>();
+			for(Entry<String, Script> entry: groovyScripts.entrySet()) {
+				tasks.add(new ScriptTask(entry.getKey(), entry.getValue(), null));
+			}
+			for(Entry<String, ScriptEvaluation> entry: groovyEvaluations.entrySet()) {
+				tasks.add(new ScriptTask(entry.getKey(), null, entry.getValue()));
+			}
+			Set<String> keys = new HashSet<String>();
+			for(ScriptTask task: tasks) {
+				keys.add(task.key);
+			}
+			for(ScriptTask task: tasks) {
+				for(Iterator<String> iter = task.depends.iterator(); iter.hasNext();) {
+					String dependency = iter.next();
+					if(!keys.contains(dependency)) {
+						if(logErrors) log.warn("Groovy resource [" + task.key + "] depends on unknown resource [" + dependency + "]");
+						iter.remove();
+					}
+				}
+			}
+			scriptTasks = tasks;
+		}
+		return scriptTasks;
+	}
+	
+	/**
+	 * <p>Title: ScriptTask</p>
+	 * <p>Description: The execution of one configured script or evaluation, with its time budget, dependencies and last run state.</p>
+	 */
+	protected class ScriptTask implements Callable<Object> {
+		/** The script or evaluation key, <code>&lt;collector name&gt;~&lt;name&gt;</code> */
+		protected final String key;
+		/** The compiled script, or null for an evaluation */
+		protected final Script script;
+		/** The evaluation, or null for a script */
+		protected final ScriptEvaluation evaluation;
+		/** The time budget in ms., or 0 to use the collector's execution timeout */
+		protected final long timeout;
+		/** The keys of the scripts and evaluations that must finish before this one starts */
+		protected final Set<String> depends;
+		/** The segment the latency and timeouts are traced under */
+		protected final String segment;
+		/** The future of the last parallel run */
+		protected Future<Object> future = null;
+		/** Indicates if a run is executing, which a cancelled run still can be while its future reports done */
+		protected final AtomicBoolean running = new AtomicBoolean(false);
+		/** The deadline of the current parallel run */
+		protected long deadline = 0L;
+		/** The elapsed time of the last run in ms. */
+		protected volatile long elapsed = 0L;
+		/** The number of timeouts */
+		protected int timeouts = 0;
+		
+		/**
+		 * Creates a new ScriptTask
+		 * @param key The script or evaluation key
+		 * @param script The compiled script, or null for an evaluation
+		 * @param evaluation The evaluation, or null for a script
+		 */
+		protected ScriptTask(String key, Script script, ScriptEvaluation evaluation) {
+			this.key = key;
+			this.script = script;
+			this.evaluation = evaluation;
+			Long t = scriptTimeouts.get(key);
+			timeout = t==null ? 0L : t.longValue();
+			Set<String> d = scriptDependencies.get(key);
+			depends = d==null ? new HashSet<String>() : new HashSet<String>(d);
+			segment = tracer.buildSegment(segmentPrefix, false, "Collection", key.replace('~', '/'));
+		}
+		
+		/**
+		 * Runs the script or evaluation
+		 * @return the value returned
+		 * @throws Exception
+		 */
+		public Object call() throws Exception {
+			running.set(true);
+			long start = System.currentTimeMillis();
 			try {
-				String retVal = se.getShell().evaluate(se.getGroovyText()).toString();
-				recordTrace(tracer.buildSegment(segmentPrefix, false, se.getSegment()), se.getMetricName(), retVal, se.getMetricType());
-			} catch (Exception e) {
-				if(logErrors) {
-					log.error("Failure Executing Evaluation[" + se + "]", e);
-				}				
+				return script!=null ? script.run() : evaluation.evaluate(binding);
+			} finally {
+				elapsed = System.currentTimeMillis() - start;
+				running.set(false);
 			}
 		}
 	}
 	
+	/**
+	 * Returns the executor shared by all GroovyCollectors for parallel execution, creating it on first use.
+	 * The number of threads is read from the <b>wiex.groovy.collector.threads</b> property.
+	 * @return the script executor
+	 */
+	protected static synchronized ExecutorService getScriptExecutor() {
+		if(scriptExecutor==null) {
+			int threads = ConfigurationHelper.getIntSystemThenEnvProperty(SCRIPT_THREADS_PROP, DEFAULT_SCRIPT_THREADS);
+			final AtomicInteger serial = new AtomicInteger(0);
+			scriptExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "GroovyCollectorWorker#" + serial.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return scriptExecutor;
+	}
+	
+	/**
+	 * Indicates if scripts and evaluations run concurrently.
+	 * @return true if scripts and evaluations run concurrently
+	 */
+	@JMXAttribute(description="Indicates if scripts and evaluations run concurrently, each within its own time budget", expose=true, name="ParallelExecution")
+	public boolean getParallelExecution() {
+		return parallelExecution;
+	}
+	
+	/**
+	 * Sets if scripts and evaluations run concurrently.
+	 * @param parallelExecution true to run scripts and evaluations concurrently
+	 */
+	public void setParallelExecution(boolean parallelExecution) {
+		this.parallelExecution = parallelExecution;
+	}
+	
+	/**
+	 * Returns the default time budget of a script or evaluation in parallel mode.
+	 * @return the execution timeout in ms.
+	 */
+	@JMXAttribute(description="The default time budget in ms. of a script or evaluation in parallel mode", expose=true, name="ExecutionTimeout")
+	public long getExecutionTimeout() {
+		return executionTimeout;
+	}
+	
+	/**
+	 * Sets the default time budget of a script or evaluation in parallel mode.
+	 * @param executionTimeout the execution timeout in ms.
+	 */
+	public void setExecutionTimeout(long executionTimeout) {
+		this.executionTimeout = executionTimeout;
+	}
+	
+	/**
+	 * Returns the number of scripts and evaluations that timed out in the last parallel collection.
+	 * @return the number of timed out scripts and evaluations
+	 */
+	@JMXAttribute(description="The number of scripts and evaluations that timed out in the last parallel collection", expose=true, name="LastTimedOutScripts")
+	public int getLastTimedOutScripts() {
+		return lastTimedOutScripts;
+	}
 	
 	/**
 	 * Generates a report of configured Groovy Evaluations
@@ -128,6 +543,59 @@ public class GroovyCollector extends BaseCollector {
 		return buff.toString();
 	}
 	
+	/**
+	 * Generates a report of the compilation and run statistics of the configured Groovy Evaluations
+	 * @return HTML Table Report String
+	 */
+	@JMXOperation(description="Generates a report of the compilation and run statistics of the configured Groovy Evaluations", expose=true, name="ReportGroovyEvalStats")
+	public String reportEvaluationStats() {
+		StringBuilder buff = new StringBuilder("<table border=\"1\">");
+		buff.append("<tr><th>Name</th><th>Compiles</th><th>Compile Time (ms)</th><th>Runs</th><th>Last Run Time (ms)</th><th>Average Run Time (ms)</th><th>Cache Hits</th></tr>");
+		for(Entry<String, ScriptEvaluation> entry: groovyEvaluations.entrySet()) {
+			ScriptEvaluation se = entry.getValue();
+			buff.append("<tr>");
+			buff.append("<td>").append(entry.getKey()).append("</td>");
+			buff.append("<td>").append(se.getCompileCount()).append("</td>");
+			buff.append("<td>").append(se.getCompileTime()).append("</td>");
+			buff.append("<td>").append(se.getRunCount()).append("</td>");
+			buff.append("<td>").append(se.getLastRunTime()).append("</td>");
+			buff.append("<td>").append(se.getAverageRunTime()).append("</td>");
+			buff.append("<td>").append(se.getCacheHits()).append("</td>");
+			buff.append("</tr>");
+		}		
+		buff.append("</table>");		
+		return buff.toString();
+	}
+	
+	/**
+	 * Replaces the groovy text of a configured Groovy Evaluation. The evaluation is recompiled on its next run.
+	 * @param name The evaluation name in the form <code>&lt;collector name&gt;~&lt;evaluation name&gt;</code>
+	 * @param groovyText The new groovy text
+	 * @return true if the evaluation was found
+	 */
+	@JMXOperation(description="Replaces the groovy text of a configured Groovy Evaluation", expose=true, name="UpdateGroovyEval")
+	public boolean updateEvaluation(
+			@JMXOperationParameter(description="The evaluation name as <collector name>~<evaluation name>", name="EvaluationName") String name, 
+			@JMXOperationParameter(description="The new groovy text", name="GroovyText") String groovyText) {
+		ScriptEvaluation se = groovyEvaluations.get(name);
+		if(se==null) return false;
+		se.setGroovyText(groovyText);
+		return true;
+	}
+	
+	/**
+	 * Returns the total number of Groovy Evaluation runs that reused a compiled script class.
+	 * @return the evaluation cache hits
+	 */
+	@JMXAttribute(description="The total number of Groovy Evaluation runs that reused a compiled script class", expose=true, name="EvaluationCacheHits")
+	public long getEvaluationCacheHits() {
+		long hits = 0;
+		for(ScriptEvaluation se: groovyEvaluations.values()) {
+			hits += se.getCacheHits();
+		}
+		return hits;
+	}
+	
 	/**
 	 * Generates a report of configured Groovy Scripts.
 	 * @return HTML Table Report String
@@ -213,6 +681,17 @@ public class GroovyCollector extends BaseCollector {
 			buff.append("\n\t============================================================");
 			
 		}
+		for(Entry<String, ScriptEvaluation> entry: groovyEvaluations.entrySet()) {
+			try {
+				entry.getValue().prepare();
+				log.info("\tCompiled Evaluation " + entry.getKey());
+			} catch (Throwable t) {
+				if(logErrors) {
+					log.error("Failed to compile evaluation: " + entry.getKey(), t);
+				}
+			}
+		}
+		scriptTasks = null;
 		super.start();
 	}
 	
@@ -289,6 +768,7 @@ public class GroovyCollector extends BaseCollector {
 				try {
 					groovyCode = scriptNodes.item(i).getFirstChild().getNodeValue();
 				} catch (Exception e) {groovyCode = null;}
+				readExecutionOptions(scriptNodes.item(i), collectorName, scriptName);
 				if(url==null) {
 					// store URL and name  
 					groovyScriptSource.put(collectorName + "~" + scriptName, groovyCode);
@@ -327,7 +807,8 @@ public class GroovyCollector extends BaseCollector {
 				segmentFragments = new String[]{};
 			}
 			groovyCode = evaluateNodes.item(i).getFirstChild().getNodeValue();
-			ScriptEvaluation se = new ScriptEvaluation(groovyCode, evalName, type, segmentFragments, shell);
+			readExecutionOptions(evaluateNode, collectorName, evalName);
+			ScriptEvaluation se = new ScriptEvaluation(groovyCode, evalName, type, segmentFragments, shell, cc);
 			groovyEvaluations.put(collectorName + "~" + evalName, se);
 		}
 		
@@ -337,6 +818,34 @@ public class GroovyCollector extends BaseCollector {
 	
 	
 
+	/**
+	 * Reads the optional <code>timeout</code> (ms.) and <code>depends</code> (comma separated names of scripts or evaluations
+	 * in the same collector) attributes of a script or evaluate node.
+	 * @param node The script or evaluate node
+	 * @param collectorName The collector name
+	 * @param name The script or evaluation name
+	 */
+	protected void readExecutionOptions(Node node, String collectorName, String name) {
+		String key = collectorName + "~" + name;
+		Node timeoutNode = node.getAttributes().getNamedItem("timeout");
+		if(timeoutNode!=null) {
+			try {
+				scriptTimeouts.put(key, Long.parseLong(timeoutNode.getNodeValue().trim()));
+			} catch (Exception e) {
+				if(logErrors) log.warn("Invalid timeout for groovy resource [" + key + "]:" + timeoutNode.getNodeValue());
+			}
+		}
+		Node dependsNode = node.getAttributes().getNamedItem("depends");
+		if(dependsNode!=null) {
+			Set<String> depends = new HashSet<String>();
+			for(String dependency: dependsNode.getNodeValue().split(",")) {
+				if(dependency.trim().length() > 0) depends.add(collectorName + "~" + dependency.trim());
+			}
+			scriptDependencies.put(key, depends);
+		}
+		scriptTasks = null;
+	}
+	
 	/**
 	 * Initialize module and version.
 	 * @see com.heliosapm.wiex.server.collectors.BaseCollector#init()
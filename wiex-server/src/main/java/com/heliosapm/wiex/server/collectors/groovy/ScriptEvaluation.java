@@ -3,11 +3,24 @@
  */
 package com.heliosapm.wiex.server.collectors.groovy;
 
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyShell;
+import groovy.lang.Script;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 /**
  * <p>Title: ScriptEvaluation</p>
- * <p>Description: A container for a Groovy Script Evaluation.</p> 
+ * <p>Description: A container for a Groovy Script Evaluation.
+ * The groovy text is compiled once into a script class, which is only recompiled when the text changes.
+ * Each thread runs its own instance of the script class against the collector's binding, so variables set by an evaluation are
+ * shared with the collector's other scripts and evaluations.
+ * Each compilation uses its own class loader, configured like the shell, so the classes of replaced text can be unloaded.</p> 
  * <p>Copyright: Copyright (c) 2007</p>
  * <p>Company: Helios Development Group</p>
  * @author Whitehead
@@ -15,24 +28,177 @@ import groovy.lang.GroovyShell;
  */
 
 public class ScriptEvaluation {
-	protected String groovyText = null;
+	protected volatile String groovyText = null;
 	protected String metricName = null;
 	protected String metricType = null;
 	protected GroovyShell shell = null;
+	/** The compiler configuration of the shell */
+	protected CompilerConfiguration compilerConfiguration = null;
 	protected String[] segment = null;
+	/** The compiled script class */
+	protected volatile Class<?> scriptClass = null;
+	/** The groovy text the script class was compiled from */
+	protected volatile String compiledText = null;
+	/** The compilation generation, incremented on each compilation */
+	protected volatile int generation = 0;
+	/** The per thread script instances */
+	protected final ThreadLocal<ScriptInstance> scripts = new ThreadLocal<ScriptInstance>();
+	/** The number of compilations */
+	protected final AtomicInteger compileCount = new AtomicInteger(0);
+	/** The elapsed time of the last compilation in ms. */
+	protected volatile long compileTime = 0L;
+	/** The number of runs */
+	protected final AtomicLong runCount = new AtomicLong(0L);
+	/** The total run time in ms. */
+	protected final AtomicLong totalRunTime = new AtomicLong(0L);
+	/** The elapsed time of the last run in ms. */
+	protected volatile long lastRunTime = 0L;
+	/** The number of runs that reused the compiled script class */
+	protected final AtomicLong cacheHits = new AtomicLong(0L);
+	/** Serial number for compiled script class names */
+	protected static final AtomicInteger serial = new AtomicInteger(0);
 	/**
 	 * @param groovyText
 	 * @param metricName
 	 * @param metricType
 	 * @param shell
+	 * @param compilerConfiguration The compiler configuration of the shell
 	 */
-	public ScriptEvaluation(String groovyText, String metricName, String metricType, String[] segment, GroovyShell shell) {
+	public ScriptEvaluation(String groovyText, String metricName, String metricType, String[] segment, GroovyShell shell, CompilerConfiguration compilerConfiguration) {
 		this.groovyText = groovyText;
 		this.metricName = metricName;
 		this.metricType = metricType;
 		this.segment = segment;
 		this.shell = shell;
+		this.compilerConfiguration = compilerConfiguration;
+	}
+	/**
+	 * Runs the evaluation, compiling the groovy text first if it has not been compiled or has changed since it was compiled.
+	 * @param binding The binding the script runs against
+	 * @return the value returned by the script
+	 */
+	public Object evaluate(Binding binding) {
+		if(!prepare()) cacheHits.incrementAndGet();
+		ScriptInstance instance = scripts.get();
+		if(instance==null || instance.generation!=generation) {
+			synchronized(this) {
+				instance = new ScriptInstance(InvokerHelper.createScript(scriptClass, binding), generation);
+			}
+			scripts.set(instance);
+		} else if(instance.script.getBinding()!=binding) {
+			instance.script.setBinding(binding);
+		}
+		long start = System.currentTimeMillis();
+		try {
+			return instance.script.run();
+		} finally {
+			lastRunTime = System.currentTimeMillis() - start;
+			totalRunTime.addAndGet(lastRunTime);
+			runCount.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Compiles the groovy text if it has not been compiled or has changed since it was compiled.
+	 * @return true if the text was compiled, false if the compiled script class is current
+	 */
+	protected boolean prepare() {
+		if(scriptClass!=null && groovyText==compiledText) return false;
+		synchronized(this) {
+			if(scriptClass!=null && groovyText.equals(compiledText)) {
+				compiledText = groovyText;
+				return false;
+			}
+			compile();
+			return true;
+		}
+	}
+	
+	/**
+	 * Compiles the groovy text into a new script class using a new class loader that delegates to the shell's class loader
+	 * and compiles with the shell's compiler configuration.
+	 */
+	protected synchronized void compile() {
+		String text = groovyText;
+		long start = System.currentTimeMillis();
+		GroovyClassLoader loader = compilerConfiguration==null ? new GroovyClassLoader(shell.getClassLoader()) : new GroovyClassLoader(shell.getClassLoader(), compilerConfiguration);
+		scriptClass = loader.parseClass(text, "ScriptEvaluation" + serial.incrementAndGet() + ".groovy");
+		compiledText = text;
+		generation++;
+		compileTime = System.currentTimeMillis() - start;
+		compileCount.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of compilations
+	 * @return the number of compilations
+	 */
+	public int getCompileCount() {
+		return compileCount.get();
+	}
+	
+	/**
+	 * Returns the elapsed time of the last compilation
+	 * @return the compile time in ms.
+	 */
+	public long getCompileTime() {
+		return compileTime;
+	}
+	
+	/**
+	 * Returns the number of runs
+	 * @return the number of runs
+	 */
+	public long getRunCount() {
+		return runCount.get();
+	}
+	
+	/**
+	 * Returns the elapsed time of the last run
+	 * @return the last run time in ms.
+	 */
+	public long getLastRunTime() {
+		return lastRunTime;
+	}
+	
+	/**
+	 * Returns the average run time
+	 * @return the average run time in ms.
+	 */
+	public long getAverageRunTime() {
+		long runs = runCount.get();
+		return runs==0 ? 0 : totalRunTime.get()/runs;
+	}
+	
+	/**
+	 * Returns the number of runs that reused the compiled script class
+	 * @return the number of cache hits
+	 */
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+	
+	/**
+	 * <p>Title: ScriptInstance</p>
+	 * <p>Description: A thread's script instance and the compilation generation of its class.</p>
+	 */
+	protected static class ScriptInstance {
+		/** The script */
+		protected final Script script;
+		/** The compilation generation */
+		protected final int generation;
+		
+		/**
+		 * Creates a new ScriptInstance
+		 * @param script The script
+		 * @param generation The compilation generation
+		 */
+		protected ScriptInstance(Script script, int generation) {
+			this.script = script;
+			this.generation = generation;
+		}
 	}
+	
 	/**
 	 * @return the groovyText
 	 */
@@ -81,6 +247,18 @@ public class ScriptEvaluation {
 	public void setShell(GroovyShell shell) {
 		this.shell = shell;
 	}
+	/**
+	 * @return the compiler configuration of the shell
+	 */
+	public CompilerConfiguration getCompilerConfiguration() {
+		return compilerConfiguration;
+	}
+	/**
+	 * @param compilerConfiguration the compiler configuration of the shell to set
+	 */
+	public void setCompilerConfiguration(CompilerConfiguration compilerConfiguration) {
+		this.compilerConfiguration = compilerConfiguration;
+	}
 	/**
 	 * Constructs a <code>String</code> with all attributes
 	 * in name = value format.
@@ -95,19 +95,28 @@ public class JDBCCollector extends BaseCollector {
 	 */
 	protected Connection getConnection() throws Exception {
 		try {
-			if(connectionFactoryClass==null) {
-				connectionFactoryClass = Class.forName(connectionFactoryClassName, true, getClass().getClassLoader());
- 			}
-			if(connectionFactory==null) {
-				connectionFactory = (JDBCConnectionFactory)connectionFactoryClass.newInstance();
-				connectionFactory.setProperties(connectionFactoryProperties);
-			}
-			return connectionFactory.getJDBCConnection();
+			return getConnectionFactory().getJDBCConnection();
 		} catch (Exception e) {
 			if(logErrors) log.error("Failed to Acquire JDBC Connection:" , e );
 			throw e;
 		}
 	}	
+	
+	/**
+	 * Returns the JDBCConnectionFactory, creating it on first use.
+	 * @return the JDBCConnectionFactory
+	 * @throws Exception
+	 */
+	protected JDBCConnectionFactory getConnectionFactory() throws Exception {
+		if(connectionFactoryClass==null) {
+			connectionFactoryClass = Class.forName(connectionFactoryClassName, true, getClass().getClassLoader());
+		}
+		if(connectionFactory==null) {
+			connectionFactory = (JDBCConnectionFactory)connectionFactoryClass.newInstance();
+			connectionFactory.setProperties(connectionFactoryProperties);
+		}
+		return connectionFactory;
+	}
 
 	/**
 	 * Collects and traces JDBC Data.
@@ -155,7 +164,7 @@ public class JDBCCollector extends BaseCollector {
 					}
 					for(SQLMapping sqlTrace: sqlTraces) {
 						try {
-							recordTrace(tracer.buildSegment(segmentPrefix, false, sqlTrace.getMetricSegment()), sqlTrace.getMetricName(), results[sqlTrace.getColumn()-1], sqlTrace.getCounterType());
+							recordTrace(sqlTrace, tracer.buildSegment(segmentPrefix, false, sqlTrace.getMetricSegment()), sqlTrace.getMetricName(), results[sqlTrace.getColumn()-1], sqlTrace.getCounterType());
 							if(sqlTrace.isAttributeDefined()) {
 								update(sqlTrace.getAttributeName(), results[sqlTrace.getColumn()-1]);
 							}
@@ -183,6 +192,25 @@ public class JDBCCollector extends BaseCollector {
 		
 	}
 	
+	/**
+	 * Records a mapped trace. Long delta types are recorded through the mapping's delta key handle.
+	 * @param sqlTrace The mapping being traced
+	 * @param category The metric category
+	 * @param name The metric name
+	 * @param value The value to trace
+	 * @param type The metric type
+	 * @throws Exception
+	 */
+	protected void recordTrace(SQLMapping sqlTrace, String category, String name, String value, String type) throws Exception {
+		if(value!=null && METRIC_TYPE_COUNTER_DELTA_LONG.equalsIgnoreCase(type)) {
+			tracer.recordCounterMetricDelta(sqlTrace.getDeltaKey(tracer, category, name), Long.parseLong(value));
+		} else if(value!=null && METRIC_TYPE_DELTA_LONG.equalsIgnoreCase(type)) {
+			tracer.recordMetricDelta(sqlTrace.getDeltaKey(tracer, category, name), Long.parseLong(value));
+		} else {
+			recordTrace(category, name, value, type);
+		}
+	}
+	
 	/**
 	 * The JDBCConnectionFactory class name.
 	 * @return the connectionFactoryClassName
@@ -541,4 +569,4 @@ public class JDBCCollector extends BaseCollector {
 select t.system_n, to_char(max(latestupdate), 'YYYY-MM-DD-HH24.MI.SS') from ds4net.dsservice_center_multi t 
 where t.system_n in ('AS52','AS09','ASE5','AS15','ASED')
 group by t.system_n
-*/
\ No newline at end of file
+*/
@@ -1,10 +1,8 @@
 package com.heliosapm.wiex.server.collectors.jdbc;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.Statement;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,6 +16,7 @@ import javax.management.Attribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
+import com.heliosapm.wiex.server.collectors.jdbc.JDBCConnectionHolder.CachedStatement;
 import com.heliosapm.wiex.server.collectors.jdbc.cache.CachedResultSet;
 
 
@@ -34,6 +33,8 @@ public class JDBCCollector2 extends JDBCCollector {
 	
 	protected Map<String, Object> scopeState = new ConcurrentHashMap<String, Object>();
 	protected Set<String> scopeTracking = new HashSet<String>();
+	/** The holder of the long lived connection and the prepared statement cache */
+	protected JDBCConnectionHolder connectionHolder = null;
 	
 	
 	/**
@@ -62,26 +63,31 @@ public class JDBCCollector2 extends JDBCCollector {
 	 * @return A result code
 	 */
 	public int testAvailability() {
-		int result = 0;
-		Statement st = null;
-		ResultSet rset = null;
-		Connection conn = null;
 		if(availabilitySQL==null) return 2;
+		ResultSet rset = null;
+		JDBCConnectionHolder holder = null;
 		String segment = tracer.buildSegment(availabilitySegment);
 		try {
-			long start = System.currentTimeMillis();
-			conn = getConnection();
-			long elapsed = System.currentTimeMillis() - start;
-			tracer.recordCounterMetric(segment, "Connection Time", elapsed);
-			start = System.currentTimeMillis();
-			st = conn.createStatement();
-			rset = st.executeQuery(availabilitySQL);
-			while(rset.next()) {}
-			elapsed = System.currentTimeMillis() - start;
-			tracer.recordCounterMetric(segment, "Query Time", elapsed);
-			tracer.recordCounterMetric(segment, "Availability", 1);
-			return 1;
+			holder = getConnectionHolder();
+			synchronized(holder) {
+				long start = System.currentTimeMillis();
+				holder.borrow();
+				long elapsed = System.currentTimeMillis() - start;
+				tracer.recordCounterMetric(segment, "Connection Time", elapsed);
+				start = System.currentTimeMillis();
+				rset = holder.prepare(availabilitySQL).statement.executeQuery();
+				while(rset.next()) {}
+				elapsed = System.currentTimeMillis() - start;
+				tracer.recordCounterMetric(segment, "Query Time", elapsed);
+				tracer.recordCounterMetric(segment, "Availability", 1);
+				return 1;
+			}
 		} catch (Exception e) {
+			if(holder!=null) {
+				// a failed query only discards its statement, while a failure to connect discards the connection
+				if(e instanceof SQLException) holder.evict(availabilitySQL);
+				else holder.invalidate();
+			}
 			tracer.recordCounterMetric(segment, "Availability", 0);
 			tracer.recordCounterMetric(segment, "Connection Time", -1L);
 			tracer.recordCounterMetric(segment, "Query Time", -1L);
@@ -89,11 +95,46 @@ public class JDBCCollector2 extends JDBCCollector {
 			return 0;
 		} finally {
 			try { rset.close(); } catch (Exception e){}
-			try { st.close(); } catch (Exception e){}
-			try { conn.close(); } catch (Exception e){}
 		}		
 	}
 	
+	/**
+	 * Returns the holder of this collector's long lived connection and statement cache, creating it on first use.
+	 * @return the connection holder
+	 * @throws Exception Thrown if the connection factory cannot be created
+	 */
+	protected synchronized JDBCConnectionHolder getConnectionHolder() throws Exception {
+		if(connectionHolder==null) {
+			connectionHolder = new JDBCConnectionHolder(getConnectionFactory());
+		}
+		return connectionHolder;
+	}
+	
+	/**
+	 * Cleans a result value for use in metric names and segments by replacing <code>:</code> with <code>;</code>
+	 * and <code>|</code> with <code>/</code>. Values that contain neither are returned as is.
+	 * This is Introscope specific and needs to be replaced with a call to the tracer.
+	 * @param value The result value
+	 * @return the cleaned value
+	 */
+	protected static String cleanValue(String value) {
+		if(value==null) return null;
+		int length = value.length();
+		int i = 0;
+		while(i < length) {
+			char c = value.charAt(i);
+			if(c==':' || c=='|') break;
+			i++;
+		}
+		if(i==length) return value;
+		char[] chars = value.toCharArray();
+		for(; i < length; i++) {
+			if(chars[i]==':') chars[i] = ';';
+			else if(chars[i]=='|') chars[i] = '/';
+		}
+		return new String(chars);
+	}
+	
 	/**
 	 * Iterates the set of SQLMappings and returns true if one is located that requires a cache result.
 	 * @param mappings
@@ -108,7 +149,8 @@ public class JDBCCollector2 extends JDBCCollector {
 	
 	/**
 	 * Collects and traces JDBC Data.
-	 * Currently only supports one row of data.
+	 * Queries run on the collector's long lived connection using cached prepared statements.
+	 * A statement that fails is discarded and prepared again on the next collection.
 	 * @see com.heliosapm.wiex.server.collectors.BaseCollector#collect()
 	 */
 	@Override
@@ -117,177 +159,159 @@ public class JDBCCollector2 extends JDBCCollector {
 		long start = System.currentTimeMillis();
 		testAvailability();
 		scopeTracking.clear();
-		Connection conn = null;
+		JDBCConnectionHolder holder = null;
+		CachedStatement cs = null;
 		PreparedStatement ps = null;
 		ResultSet rset = null;
-		ResultSetMetaData rsmd = null;
 		String sql = null;
 		Set<SQLMapping> sqlTraces = null;
 		String[] results = null;
 		boolean requiresCache = false;
 		Map<SQLMapping, StringBuilder> flattenMap = new HashMap<SQLMapping, StringBuilder>();
 		try {
-			conn = getConnection();
-			for (Entry<String, Set<SQLMapping>> entry : sqlMappings.entrySet()) {
-				try {
-					sql = entry.getKey();
-					sqlTraces = entry.getValue();
-					requiresCache = containsCacheRequest(sqlTraces);
+			holder = getConnectionHolder();
+			synchronized(holder) {
+				holder.borrow();
+				for (Entry<String, Set<SQLMapping>> entry : sqlMappings.entrySet()) {
+					try {
+						sql = entry.getKey();
+						sqlTraces = entry.getValue();
+						requiresCache = containsCacheRequest(sqlTraces);
 					
-					ps = conn.prepareStatement(sql);
+						cs = holder.prepare(sql);
+						ps = cs.statement;
 
-					if (bindVariables.get(sql).size() > 0) {
-						for (BindVariable bind : bindVariables.get(sql)) {
-							try {
+						if (bindVariables.get(sql).size() > 0) {
+							// a bind failure fails the query rather than running it with the previous collection's binds
+							ps.clearParameters();
+							for (BindVariable bind : bindVariables.get(sql)) {
 								bind.bind(ps);
-							} catch (Exception e) {
-								try {
-									ps.close();
-								} catch (Exception e2) {
-								}
-								continue;
 							}
 						}
-					}
-					rset = ps.executeQuery();
-					rsmd = rset.getMetaData();
-					ArrayList<String[]> rowSet = new ArrayList<String[]>();
-					String[][] cachedRowSet = null;
-					String[] header = null;
-					if(requiresCache) {
-						header = new String[rsmd.getColumnCount()];
-						for(int i = 0; i < rsmd.getColumnCount(); i++) {
-							header[i] = rsmd.getColumnName(i+1);
-						}
-						rowSet.add(header);
-					}
-					
-					while (rset.next()) {
-						results = new String[rsmd.getColumnCount()];
-						for (int i = 0; i < rsmd.getColumnCount(); i++) {
-							// the two replaces clean the value for tracing metric names and segments.
-							// this is Introscope specific and needs to be replaced with a call to the tracer.
-							results[i] = rset.getString(i + 1).replace(":", ";").replace("|", "/");							
-						}						
+						rset = ps.executeQuery();
+						String[] columnNames = cs.getColumnNames(rset.getMetaData());
+						int columnCount = columnNames.length;
+						ArrayList<String[]> rowSet = null;
+						String[][] cachedRowSet = null;
+						String[] header = null;
 						if(requiresCache) {
-							rowSet.add(results);
+							header = columnNames.clone();
+							rowSet = new ArrayList<String[]>();
+							rowSet.add(header);
 						}
-						// loop through mappings and pass in results to each
-						for (SQLMapping sqlTrace : sqlTraces) {
-							if(sqlTrace.isFlatten()) {
-								StringBuilder buff = flattenMap.get(sqlTrace);
-								if(buff==null) {
-									buff = new StringBuilder();
-									flattenMap.put(sqlTrace, buff);
-								}
-								buff.append(results[sqlTrace.getColumn()]).append(sqlTrace.getFlatten());
-								//buff.append(sqlTrace.getFlatten()).append(results[sqlTrace.getColumn()]);
-								continue;
+					
+						while (rset.next()) {
+							results = new String[columnCount];
+							for (int i = 0; i < columnCount; i++) {
+								results[i] = cleanValue(rset.getString(i + 1));							
+							}						
+							if(requiresCache) {
+								rowSet.add(results);
 							}
-							try {
-								if(sqlTrace.isTraceDefined()) {
-									String tmpCategory = tracer.buildSegment(segmentPrefix,false,sqlTrace.getMetricSegment(results, header));
-									String tmpMetricName = sqlTrace.getMetricName(results, header);
-									String tmpCounterType = sqlTrace.getCounterType(results, header); 
-									recordTrace(
-											tmpCategory,
-											tmpMetricName,
-											results[sqlTrace.getColumn()], 
-											tmpCounterType
-									);
-									if(sqlTrace.isScoped()) {
-										traceScope(tmpCategory, tmpMetricName, tmpCounterType, sqlTrace.getScopeResetValue());
+							// loop through mappings and pass in results to each
+							for (SQLMapping sqlTrace : sqlTraces) {
+								if(sqlTrace.isFlatten()) {
+									StringBuilder buff = flattenMap.get(sqlTrace);
+									if(buff==null) {
+										buff = new StringBuilder();
+										flattenMap.put(sqlTrace, buff);
 									}
+									buff.append(results[sqlTrace.getColumn()]).append(sqlTrace.getFlatten());
+									//buff.append(sqlTrace.getFlatten()).append(results[sqlTrace.getColumn()]);
+									continue;
+								}
+								try {
+									if(sqlTrace.isTraceDefined()) {
+										String tmpCategory = tracer.buildSegment(segmentPrefix,false,sqlTrace.getMetricSegment(results, header));
+										String tmpMetricName = sqlTrace.getMetricName(results, header);
+										String tmpCounterType = sqlTrace.getCounterType(results, header); 
+										recordTrace(
+												sqlTrace,
+												tmpCategory,
+												tmpMetricName,
+												results[sqlTrace.getColumn()], 
+												tmpCounterType
+										);
+										if(sqlTrace.isScoped()) {
+											traceScope(tmpCategory, tmpMetricName, tmpCounterType, sqlTrace.getScopeResetValue());
+										}
 									
-									if (sqlTrace.isAttributeDefined()) {
-										update(sqlTrace.getAttributeName(results, header),
-												results[sqlTrace.getColumn()]);
+										if (sqlTrace.isAttributeDefined()) {
+											update(sqlTrace.getAttributeName(results, header),
+													results[sqlTrace.getColumn()]);
+										}
 									}
+								} catch (Throwable te) {
+									if(logErrors) log.error("Failed to record trace for:"
+											+ sqlTrace + "\nException was:" + te,
+											te);
 								}
-							} catch (Throwable te) {
-								if(logErrors) log.error("Failed to record trace for:"
-										+ sqlTrace + "\nException was:" + te,
-										te);
 							}
 						}
-					}
-					long loopElapsed = System.currentTimeMillis() - start;
-					// Now we have a full result set, so if we are caching it anywhere,
-					// we loop back through the traces and store the result set where applicable.
-					if(requiresCache) {
-						cachedRowSet = new String[rowSet.size()][];
-						for(int i = 0; i < rowSet.size(); i++) {
-							cachedRowSet[i] = rowSet.get(i);
-						}						
-						for (SQLMapping sqlTrace : sqlTraces) {
-							if(sqlTrace.isCacheResult()) {
-								String attrName = sqlTrace.getCacheResultAttributeName() + "Container";
-								CachedResultSet crs = (CachedResultSet)mbeanServer.getAttribute(sqlTrace.getCacheResultObjectName(), attrName);								
-								if(sqlTrace.getPostProcessorURL() != null) {
-									// this means a post processing URL has been defined.
-									if(sqlTrace.isModified()) {
-										// the groovy source has been modified so we should recompile
-										sqlTrace.compilePostProcessor();
+						long loopElapsed = System.currentTimeMillis() - start;
+						// Now we have a full result set, so if we are caching it anywhere,
+						// we loop back through the traces and store the result set where applicable.
+						if(requiresCache) {
+							cachedRowSet = new String[rowSet.size()][];
+							for(int i = 0; i < rowSet.size(); i++) {
+								cachedRowSet[i] = rowSet.get(i);
+							}						
+							for (SQLMapping sqlTrace : sqlTraces) {
+								if(sqlTrace.isCacheResult()) {
+									String attrName = sqlTrace.getCacheResultAttributeName() + "Container";
+									CachedResultSet crs = (CachedResultSet)mbeanServer.getAttribute(sqlTrace.getCacheResultObjectName(), attrName);								
+									if(sqlTrace.getPostProcessorURL() != null) {
+										// this means a post processing URL has been defined.
+										if(sqlTrace.isModified()) {
+											// the groovy source has been modified so we should recompile
+											sqlTrace.compilePostProcessor();
+										}
+										cachedRowSet = (String[][])sqlTrace.invokePostProcessor(cachedRowSet);  
+										crs.setPostProcessElapsedTime(sqlTrace.getPostProcessorElapsedTime());
 									}
-									cachedRowSet = (String[][])sqlTrace.invokePostProcessor(cachedRowSet);  
-									crs.setPostProcessElapsedTime(sqlTrace.getPostProcessorElapsedTime());
-								}
-								crs.setResultSet(cachedRowSet);
-								loopElapsed = System.currentTimeMillis() - start;
-								crs.setElapsedTime(loopElapsed);
-								mbeanServer.setAttribute(sqlTrace.getCacheResultObjectName(), new Attribute(attrName, crs));
-							}							
+									crs.setResultSet(cachedRowSet);
+									loopElapsed = System.currentTimeMillis() - start;
+									crs.setElapsedTime(loopElapsed);
+									mbeanServer.setAttribute(sqlTrace.getCacheResultObjectName(), new Attribute(attrName, crs));
+								}							
+							}
 						}
-					}
 					
-					// Trace all flattened values
-					for(Entry<SQLMapping, StringBuilder> fentry: flattenMap.entrySet()) {
-						SQLMapping sqlTrace = fentry.getKey();
-						String flattenedValue = fentry.getValue().toString();
-						String tmpCategory = tracer.buildSegment(segmentPrefix,false,sqlTrace.getMetricSegment(results, header));
-						String tmpMetricName = sqlTrace.getMetricName(results, header);
-						recordTrace(
-								tmpCategory,
-								tmpMetricName,
-								flattenedValue, 
-								METRIC_TYPE_STRING
-						);						
-						if(sqlTrace.isScoped()) {
-							traceScope(tmpCategory, tmpMetricName, METRIC_TYPE_STRING, sqlTrace.getScopeResetValue());
-						}
+						// Trace all flattened values
+						for(Entry<SQLMapping, StringBuilder> fentry: flattenMap.entrySet()) {
+							SQLMapping sqlTrace = fentry.getKey();
+							String flattenedValue = fentry.getValue().toString();
+							String tmpCategory = tracer.buildSegment(segmentPrefix,false,sqlTrace.getMetricSegment(results, header));
+							String tmpMetricName = sqlTrace.getMetricName(results, header);
+							recordTrace(
+									tmpCategory,
+									tmpMetricName,
+									flattenedValue, 
+									METRIC_TYPE_STRING
+							);						
+							if(sqlTrace.isScoped()) {
+								traceScope(tmpCategory, tmpMetricName, METRIC_TYPE_STRING, sqlTrace.getScopeResetValue());
+							}
 						
-						if (sqlTrace.isAttributeDefined()) {
-							update(sqlTrace.getAttributeName(results, header), flattenedValue);
-						}						
-					}
-				} catch (Throwable e) {
-					if(logErrors) log.error("Failed to process query:" + sql + ":" + e);
-				} finally {
-					try {
-						rset.close();
-					} catch (Exception e) {
-					}
-					try {
-						ps.close();
-					} catch (Exception e) {
+							if (sqlTrace.isAttributeDefined()) {
+								update(sqlTrace.getAttributeName(results, header), flattenedValue);
+							}						
+						}
+					} catch (Throwable e) {
+						if(logErrors) log.error("Failed to process query:" + sql + ":" + e);
+						if(e instanceof SQLException) holder.evict(sql);
+					} finally {
+						try {
+							rset.close();
+						} catch (Exception e) {
+						}
+						rset = null;
 					}
 				}
 			}
 		} catch (Exception e) {
 			if(logErrors) log.error("JDBC2 Collection Error:" + e);
-		} finally {
-			try {
-				rset.close();
-			} catch (Exception e) {
-			}
-			try {
-				ps.close();
-			} catch (Exception e) {
-			}
-			try {
-				conn.close();
-			} catch (Exception e) {
-			}
+			if(holder!=null) holder.invalidate();
 		}
 		processScope();
 		collectTime = System.currentTimeMillis() - start;
@@ -296,6 +320,83 @@ public class JDBCCollector2 extends JDBCCollector {
 		}
 	}
 	
+	/**
+	 * Stops the collector and closes its connection, cached statements and connection factory.
+	 * A new connection factory is created if the collector is started again.
+	 * @see com.heliosapm.wiex.server.collectors.BaseCollector#stop()
+	 */
+	@Override
+	@JMXOperation(description="Stops The Service", expose=true, name="stop")
+	public void stop() {
+		super.stop();
+		JDBCConnectionHolder holder = null;
+		synchronized(this) {
+			holder = connectionHolder;
+			connectionHolder = null;
+			connectionFactory = null;
+		}
+		if(holder!=null) holder.close();
+	}
+	
+	/**
+	 * Closes the held connection and its cached statements. A new connection is acquired on the next collection.
+	 */
+	@JMXOperation(description="Closes the held connection and its cached statements", expose=true, name="resetConnection")
+	public void resetConnection() {
+		JDBCConnectionHolder holder = connectionHolder;
+		if(holder!=null) holder.invalidate();
+	}
+	
+	/**
+	 * Returns the number of cached prepared statements.
+	 * @return the number of cached prepared statements.
+	 */
+	@JMXAttribute(description="The number of cached prepared statements", name="CachedStatements")
+	public int getCachedStatements() {
+		JDBCConnectionHolder holder = connectionHolder;
+		return holder==null ? 0 : holder.getCachedStatements();
+	}
+	
+	/**
+	 * Returns the number of statements prepared.
+	 * @return the number of statements prepared.
+	 */
+	@JMXAttribute(description="The number of statements prepared", name="StatementsPrepared")
+	public long getStatementsPrepared() {
+		JDBCConnectionHolder holder = connectionHolder;
+		return holder==null ? 0 : holder.getStatementsPrepared();
+	}
+	
+	/**
+	 * Returns the number of prepared statement cache hits.
+	 * @return the number of prepared statement cache hits.
+	 */
+	@JMXAttribute(description="The number of prepared statement cache hits", name="StatementCacheHits")
+	public long getStatementCacheHits() {
+		JDBCConnectionHolder holder = connectionHolder;
+		return holder==null ? 0 : holder.getStatementCacheHits();
+	}
+	
+	/**
+	 * Returns the number of connections opened.
+	 * @return the number of connections opened.
+	 */
+	@JMXAttribute(description="The number of connections opened", name="ConnectionsOpened")
+	public long getConnectionsOpened() {
+		JDBCConnectionHolder holder = connectionHolder;
+		return holder==null ? 0 : holder.getConnectionsOpened();
+	}
+	
+	/**
+	 * Returns the number of held connections found invalid when borrowed.
+	 * @return the number of connection validation failures.
+	 */
+	@JMXAttribute(description="The number of held connections found invalid when borrowed", name="ConnectionValidationFailures")
+	public long getConnectionValidationFailures() {
+		JDBCConnectionHolder holder = connectionHolder;
+		return holder==null ? 0 : holder.getValidationFailures();
+	}
+	
 	/**
 	 * Returns the number of entries in scope management.
 	 * @return The number of managed scopes.
@@ -350,4 +451,4 @@ public class JDBCCollector2 extends JDBCCollector {
 			scopeState.remove(key);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,237 @@
+package com.heliosapm.wiex.server.collectors.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>Title: JDBCConnectionHolder</p>
+ * <p>Description: Holds one long lived JDBC connection for a collector, together with a cache of the
+ * <code>PreparedStatement</code>s prepared on it keyed by SQL. The connection is validated each time it is borrowed
+ * and is replaced, along with all its cached statements, if it is found to be invalid or is invalidated after a failure.
+ * The result set metadata of each statement is resolved once and cached with the statement.</p>
+ * <p>Copyright: Copyright (c) 2006</p>
+ * <p>Company: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+public class JDBCConnectionHolder {
+	/** The logger */
+	protected static final Logger log = Logger.getLogger(JDBCConnectionHolder.class);
+	/** The connection factory */
+	protected final JDBCConnectionFactory connectionFactory;
+	/** The held connection */
+	protected Connection connection = null;
+	/** The cached statements keyed by SQL */
+	protected final Map<String, CachedStatement> statements = new HashMap<String, CachedStatement>();
+	/** The validation timeout in seconds */
+	protected int validationTimeout = 5;
+	/** Indicates if the driver supports <code>Connection.isValid</code> */
+	protected boolean validationSupported = true;
+	/** The number of connections opened */
+	protected long connectionsOpened = 0;
+	/** The number of connections found invalid on borrow */
+	protected long validationFailures = 0;
+	/** The number of statements prepared */
+	protected long statementsPrepared = 0;
+	/** The number of statement cache hits */
+	protected long statementCacheHits = 0;
+
+	/**
+	 * Creates a new JDBCConnectionHolder
+	 * @param connectionFactory The factory to acquire connections from
+	 */
+	public JDBCConnectionHolder(JDBCConnectionFactory connectionFactory) {
+		this.connectionFactory = connectionFactory;
+	}
+
+	/**
+	 * Returns the held connection, validating it first and acquiring a new one if it is invalid or there is none.
+	 * @return a valid connection
+	 * @throws JDBCConnectionFactoryException Thrown if a new connection cannot be acquired
+	 */
+	public synchronized Connection borrow() throws JDBCConnectionFactoryException {
+		if(connection!=null && !isValid()) {
+			validationFailures++;
+			invalidate();
+		}
+		if(connection==null) {
+			connection = connectionFactory.getJDBCConnection();
+			connectionsOpened++;
+		}
+		return connection;
+	}
+
+	/**
+	 * Determines if the held connection is still valid.
+	 * Drivers that do not implement <code>Connection.isValid</code> are only checked for being closed.
+	 * @return true if the connection is valid
+	 */
+	protected boolean isValid() {
+		try {
+			if(validationSupported) {
+				try {
+					return connection.isValid(validationTimeout);
+				} catch (AbstractMethodError ame) {
+					validationSupported = false;
+				} catch (SQLException se) {
+					validationSupported = false;
+				}
+			}
+			return !connection.isClosed();
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the cached statement for the passed SQL, preparing it on the held connection if it is not cached.
+	 * The held connection is not validated again, since callers borrow it once at the start of each collection.
+	 * A connection is only borrowed if none is held.
+	 * @param sql The SQL
+	 * @return the cached statement
+	 * @throws Exception Thrown if a connection cannot be acquired or the statement cannot be prepared
+	 */
+	public synchronized CachedStatement prepare(String sql) throws Exception {
+		CachedStatement cs = statements.get(sql);
+		if(cs!=null) {
+			statementCacheHits++;
+			return cs;
+		}
+		Connection conn = connection!=null ? connection : borrow();
+		cs = new CachedStatement(conn.prepareStatement(sql));
+		statementsPrepared++;
+		statements.put(sql, cs);
+		return cs;
+	}
+
+	/**
+	 * Closes and discards the cached statement for the passed SQL, so it is prepared again on next use.
+	 * @param sql The SQL
+	 */
+	public synchronized void evict(String sql) {
+		CachedStatement cs = statements.remove(sql);
+		if(cs!=null) {
+			try { cs.statement.close(); } catch (Exception e) {}
+		}
+	}
+
+	/**
+	 * Closes the held connection and all its cached statements. A new connection is acquired on the next borrow.
+	 */
+	public synchronized void invalidate() {
+		for(CachedStatement cs: statements.values()) {
+			try { cs.statement.close(); } catch (Exception e) {}
+		}
+		statements.clear();
+		if(connection!=null) {
+			try { connection.close(); } catch (Exception e) {}
+			connection = null;
+		}
+	}
+
+	/**
+	 * Closes the held connection and the connection factory.
+	 */
+	public synchronized void close() {
+		invalidate();
+		try { connectionFactory.close(); } catch (Exception e) {}
+	}
+
+	/**
+	 * Returns the number of cached statements
+	 * @return the number of cached statements
+	 */
+	public synchronized int getCachedStatements() {
+		return statements.size();
+	}
+
+	/**
+	 * Returns the number of connections opened
+	 * @return the number of connections opened
+	 */
+	public synchronized long getConnectionsOpened() {
+		return connectionsOpened;
+	}
+
+	/**
+	 * Returns the number of held connections found invalid on borrow
+	 * @return the number of validation failures
+	 */
+	public synchronized long getValidationFailures() {
+		return validationFailures;
+	}
+
+	/**
+	 * Returns the number of statements prepared
+	 * @return the number of statements prepared
+	 */
+	public synchronized long getStatementsPrepared() {
+		return statementsPrepared;
+	}
+
+	/**
+	 * Returns the number of statement cache hits
+	 * @return the number of statement cache hits
+	 */
+	public synchronized long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	/**
+	 * Returns the validation timeout
+	 * @return the validation timeout in seconds
+	 */
+	public int getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	/**
+	 * Sets the validation timeout
+	 * @param validationTimeout the validation timeout in seconds
+	 */
+	public void setValidationTimeout(int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	/**
+	 * <p>Title: CachedStatement</p>
+	 * <p>Description: A prepared statement and its resolved result set metadata.</p>
+	 */
+	public static class CachedStatement {
+		/** The prepared statement */
+		public final PreparedStatement statement;
+		/** The result column names, or null if not resolved yet */
+		protected String[] columnNames = null;
+
+		/**
+		 * Creates a new CachedStatement
+		 * @param statement The prepared statement
+		 */
+		protected CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+		}
+
+		/**
+		 * Returns the result column names, resolving them from the passed metadata the first time
+		 * @param rsmd The metadata of a result set of the statement
+		 * @return the column names
+		 * @throws SQLException Thrown if the metadata cannot be read
+		 */
+		public String[] getColumnNames(ResultSetMetaData rsmd) throws SQLException {
+			if(columnNames==null) {
+				String[] names = new String[rsmd.getColumnCount()];
+				for(int i = 0; i < names.length; i++) {
+					names[i] = rsmd.getColumnName(i+1);
+				}
+				columnNames = names;
+			}
+			return columnNames;
+		}
+	}
+}
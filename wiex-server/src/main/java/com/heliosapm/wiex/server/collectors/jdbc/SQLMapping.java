@@ -19,6 +19,8 @@ import javax.management.ObjectName;
 import org.apache.log4j.Logger;
 
 import com.heliosapm.wiex.server.collectors.jdbc.cache.CachedResultSetImpl;
+import com.heliosapm.wiex.tracing.tracing.ITracer;
+import com.heliosapm.wiex.tracing.tracing.DeltaStore.DeltaKey;
 
 
 
@@ -98,6 +100,8 @@ public class SQLMapping {
 	
 	/** The delimeter for flattened records */
 	protected String flatten = null;
+	/** The delta key handle last resolved for this mapping's delta typed traces */
+	protected DeltaKey deltaKey = null;
 	
 	
 	static {
@@ -152,6 +156,23 @@ public class SQLMapping {
 		return format(counterType, values, header);
 	}
 	
+	/**
+	 * Returns the delta key handle for the passed segment and metric name. The last resolved handle is kept,
+	 * so a mapping that traces the same metric on every collection resolves it only once.
+	 * @param tracer The tracer to resolve the handle from
+	 * @param segment The formatted metric segment
+	 * @param name The formatted metric name
+	 * @return the delta key handle
+	 */
+	public DeltaKey getDeltaKey(ITracer tracer, String segment, String name) {
+		DeltaKey key = deltaKey;
+		if(key==null || !key.getMetric().equals(name) || !key.getSegment().equals(segment)) {
+			key = tracer.getDeltaKey(segment, name);
+			deltaKey = key;
+		}
+		return key;
+	}
+	
 	/**
 	 * @param counterType the counterType to set
 	 */
@@ -0,0 +1,280 @@
+package com.heliosapm.wiex.server.collectors.jmx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>Title: JMXCollectionPlanner</p>
+ * <p>Description: Groups the configured {@link JMXAttributeTrace}s of a {@link JMXCollector} by resolved MBean ObjectName,
+ * so that each collection issues one <code>getAttributes</code> per MBean rather than one <code>getAttribute</code> per
+ * attribute per MBean.</p>
+ * <p>The <code>queryNames</code> result of each configured ObjectName is cached. The planner listens for MBean registration
+ * and unregistration notifications from the MBeanServer delegate and drops the cached results of the ObjectNames that match
+ * a registered or unregistered MBean, and the plan is rebuilt on the next collection. If the listener cannot be registered,
+ * or the refresh period has elapsed, the plan is rebuilt from fresh queries.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.server.collectors.jmx.JMXCollectionPlanner</code></p>
+ */
+public class JMXCollectionPlanner implements NotificationListener {
+	/** The planner logger */
+	protected final Logger log = Logger.getLogger(getClass());
+	/** The connection the plan was built against */
+	protected MBeanServerConnection connection = null;
+	/** Indicates if the registration listener is registered against the connection */
+	protected boolean listening = false;
+	/** The cached queryNames results keyed by the configured ObjectName */
+	protected final Map<ObjectName, Set<ObjectName>> queryCache = new ConcurrentHashMap<ObjectName, Set<ObjectName>>();
+	/** The collection plan keyed by resolved ObjectName */
+	protected Map<ObjectName, Target> plan = null;
+	/** Indicates that the plan must be rebuilt */
+	protected volatile boolean stale = true;
+	/** The timestamp of the last plan build */
+	protected long planTimestamp = 0L;
+	/** The period in ms. after which the plan is rebuilt from fresh queries */
+	protected long refreshPeriod = DEFAULT_REFRESH_PERIOD;
+	/** The number of plan builds */
+	protected final AtomicLong rebuilds = new AtomicLong(0);
+	/** The number of queryNames calls issued */
+	protected final AtomicLong queries = new AtomicLong(0);
+
+	/** The default refresh period in ms. */
+	public static final long DEFAULT_REFRESH_PERIOD = 300000L;
+
+	/**
+	 * <p>Title: Target</p>
+	 * <p>Description: The attributes to read from one resolved MBean and the traces that consume them</p>
+	 */
+	public static class Target {
+		/** The resolved ObjectName */
+		protected final ObjectName objectName;
+		/** The distinct attribute names */
+		protected final Set<String> names = new LinkedHashSet<String>();
+		/** The traces that consume the MBean's attributes */
+		protected final List<JMXAttributeTrace> traces = new ArrayList<JMXAttributeTrace>();
+		/** The attribute names as an array */
+		protected String[] attributeNames = null;
+
+		/**
+		 * Creates a new Target
+		 * @param objectName The resolved ObjectName
+		 */
+		protected Target(ObjectName objectName) {
+			this.objectName = objectName;
+		}
+
+		/**
+		 * Adds a trace to the target
+		 * @param trace The trace
+		 */
+		protected void add(JMXAttributeTrace trace) {
+			traces.add(trace);
+			names.add(trace.getAttributeName());
+			attributeNames = null;
+		}
+
+		/**
+		 * Returns the resolved ObjectName
+		 * @return the ObjectName
+		 */
+		public ObjectName getObjectName() {
+			return objectName;
+		}
+
+		/**
+		 * Returns the distinct attribute names to read from the MBean
+		 * @return the attribute names
+		 */
+		public String[] getAttributeNames() {
+			if(attributeNames==null) attributeNames = names.toArray(new String[names.size()]);
+			return attributeNames;
+		}
+
+		/**
+		 * Returns the traces that consume the MBean's attributes
+		 * @return the traces
+		 */
+		public List<JMXAttributeTrace> getTraces() {
+			return traces;
+		}
+	}
+
+	/**
+	 * Returns the collection plan for the passed traces, rebuilding it if the connection has changed,
+	 * the plan was invalidated or the refresh period has elapsed.
+	 * @param conn The MBeanServer connection
+	 * @param traces The configured attribute traces
+	 * @return the targets to collect
+	 * @throws IOException Thrown if the connection fails while resolving ObjectNames
+	 */
+	public Collection<Target> getPlan(MBeanServerConnection conn, List<JMXAttributeTrace> traces) throws IOException {
+		if(conn!=connection) attach(conn);
+		if(plan==null || stale || System.currentTimeMillis()-planTimestamp > refreshPeriod) build(traces);
+		return plan.values();
+	}
+
+	/**
+	 * Marks the plan for rebuilding on the next collection, keeping the cached query results.
+	 */
+	public void invalidate() {
+		stale = true;
+	}
+
+	/**
+	 * Removes the registration listener and discards the plan and the cached query results.
+	 */
+	public void detach() {
+		if(connection!=null && listening) {
+			try {
+				connection.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+			} catch (Exception e) {}
+		}
+		connection = null;
+		listening = false;
+		plan = null;
+		queryCache.clear();
+	}
+
+	/**
+	 * Attaches the planner to a new connection and registers the registration listener
+	 * @param conn The MBeanServer connection
+	 */
+	protected void attach(MBeanServerConnection conn) {
+		detach();
+		connection = conn;
+		try {
+			MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+			filter.enableAllObjectNames();
+			conn.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+			listening = true;
+		} catch (Exception e) {
+			log.warn("Failed to register MBean registration listener. Query results will not be cached:" + e);
+		}
+	}
+
+	/**
+	 * Builds the collection plan
+	 * @param traces The configured attribute traces
+	 * @throws IOException Thrown if the connection fails while resolving ObjectNames
+	 */
+	protected void build(List<JMXAttributeTrace> traces) throws IOException {
+		stale = false;
+		long now = System.currentTimeMillis();
+		if(!listening || now-planTimestamp > refreshPeriod) queryCache.clear();
+		Map<ObjectName, Target> newPlan = new LinkedHashMap<ObjectName, Target>();
+		for(JMXAttributeTrace trace: traces) {
+			for(ObjectName on: resolve(trace.getObjectName())) {
+				Target target = newPlan.get(on);
+				if(target==null) {
+					target = new Target(on);
+					newPlan.put(on, target);
+				}
+				target.add(trace);
+			}
+		}
+		plan = newPlan;
+		planTimestamp = now;
+		rebuilds.incrementAndGet();
+	}
+
+	/**
+	 * Resolves the MBeans matching a configured ObjectName from the cache or the connection
+	 * @param objectName The configured ObjectName
+	 * @return the matching ObjectNames
+	 * @throws IOException Thrown if the connection fails
+	 */
+	protected Set<ObjectName> resolve(ObjectName objectName) throws IOException {
+		Set<ObjectName> names = queryCache.get(objectName);
+		if(names==null) {
+			names = Collections.unmodifiableSet(new LinkedHashSet<ObjectName>(connection.queryNames(objectName, null)));
+			queries.incrementAndGet();
+			queryCache.put(objectName, names);
+		}
+		return names;
+	}
+
+	/**
+	 * Drops the cached query results matching a registered or unregistered MBean and marks the plan for rebuilding.
+	 * @param notification The MBeanServer notification
+	 * @param handback Not used
+	 * @see javax.management.NotificationListener#handleNotification(javax.management.Notification, java.lang.Object)
+	 */
+	public void handleNotification(Notification notification, Object handback) {
+		if(!(notification instanceof MBeanServerNotification)) return;
+		ObjectName name = ((MBeanServerNotification)notification).getMBeanName();
+		for(ObjectName pattern: queryCache.keySet()) {
+			if(pattern.apply(name)) {
+				queryCache.remove(pattern);
+				stale = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of MBeans in the current plan
+	 * @return the number of MBeans
+	 */
+	public int getTargetCount() {
+		Map<ObjectName, Target> p = plan;
+		return p==null ? 0 : p.size();
+	}
+
+	/**
+	 * Returns the number of plan builds
+	 * @return the number of rebuilds
+	 */
+	public long getRebuilds() {
+		return rebuilds.get();
+	}
+
+	/**
+	 * Returns the number of queryNames calls issued
+	 * @return the number of queries
+	 */
+	public long getQueries() {
+		return queries.get();
+	}
+
+	/**
+	 * Indicates if query results are being cached under the registration listener
+	 * @return true if the registration listener is registered
+	 */
+	public boolean isListening() {
+		return listening;
+	}
+
+	/**
+	 * Returns the period in ms. after which the plan is rebuilt from fresh queries
+	 * @return the refresh period
+	 */
+	public long getRefreshPeriod() {
+		return refreshPeriod;
+	}
+
+	/**
+	 * Sets the period in ms. after which the plan is rebuilt from fresh queries
+	 * @param refreshPeriod the refresh period
+	 */
+	public void setRefreshPeriod(long refreshPeriod) {
+		this.refreshPeriod = refreshPeriod;
+	}
+}
@@ -1,9 +1,12 @@
 package com.heliosapm.wiex.server.collectors.jmx;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryUsage;
 import java.lang.management.ThreadInfo;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -11,7 +14,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
@@ -33,6 +49,8 @@ import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.server.collectors.BaseCollector;
 import com.heliosapm.wiex.server.collectors.jmx.tracers.GroovyObjectTracer;
 import com.heliosapm.wiex.server.helpers.XMLHelper;
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
+import com.heliosapm.wiex.tracing.tracing.DeltaStore.DeltaKey;
 import com.heliosapm.wiex.tracing.tracing.TracerFactory;
 
 /**
@@ -49,6 +67,30 @@ public class JMXCollector extends BaseCollector {
 	
 	/**	A list of JMX Attributes that are configured to be traced. */
 	protected List<JMXAttributeTrace> attributeTraces = new ArrayList<JMXAttributeTrace>();
+	/** Groups the attribute traces by resolved ObjectName and caches ObjectName queries */
+	protected JMXCollectionPlanner planner = new JMXCollectionPlanner();
+	/** The number of MBeanServer round trips in the last collection */
+	protected int lastRoundTrips = 0;
+	/** Indicates if planned MBeans and MXBeans are collected in parallel across pooled connections */
+	protected boolean parallelCollection = false;
+	/** The number of pooled connections used for parallel collection */
+	protected int connectionPoolSize = 4;
+	/** The time in ms. each planned MBean of a parallel collection has to start being read, and then to complete */
+	protected long collectionTimeout = 10000L;
+	/** The pooled connections used for parallel collection */
+	protected MBeanServerConnectionPool connectionPool = null;
+	/** The running or last MXBean collection in parallel mode */
+	protected Future<Object> mxBeanCollection = null;
+	/** Set while an MXBean collection pass is running, so that only one pass at a time reads or updates the MXBean state */
+	protected final AtomicBoolean mxBeanRunning = new AtomicBoolean(false);
+	/** Set by {@link #resetEnv()} to have the next MXBean collection pass reset the MXBean state before it runs */
+	protected volatile boolean mxBeanReset = true;
+	/** The number of planned MBeans not read before the deadline in the last collection */
+	protected int lastTimedOutMBeans = 0;
+	/** The collection stats compiled segment */
+	protected String collectionSegment = null;
+	/** The executor shared by all JMXCollectors for parallel collection */
+	protected static ExecutorService collectionExecutor = null;
 	/** The target MBeanServer Connection */
 	protected MBeanServerConnection mBeanServerConnection = null;
 	/** The MBeanServerConnectionFactory to get a JMX Connection From */
@@ -79,6 +121,16 @@ public class JMXCollector extends BaseCollector {
 	protected Map<String, ObjectName> gcObjectNames = null;
 	/** A map of GC Collection and Elapsed Times keyed by the gc name */
 	protected Map<String, long[]> gcTimes = new HashMap<String, long[]>();
+	/** The delta key handle of the started thread count */
+	protected DeltaKey threadsStartedKey = null;
+	/** The delta key handles of the deadlocked threads' block count, block time, wait count and wait time */
+	protected DeltaKey[] deadlockKeys = null;
+	/** The delta key handle of the JIT compile time */
+	protected DeltaKey compileTimeKey = null;
+	/** The delta key handles of the class loading counters, indexed like {@link #CLASS_LOADING_STATS} */
+	protected DeltaKey[] classLoadingKeys = new DeltaKey[CLASS_LOADING_STATS.length];
+	/** The delta key handles of each garbage collector's collection time and count, keyed by the gc name */
+	protected Map<String, DeltaKey[]> gcDeltaKeys = new HashMap<String, DeltaKey[]>();
 	/** Indicates if compiler time monitoring is supported in the target VM */
 	protected Boolean supportsCompilerTime = null;
 	/** Indicates if thread contention monitoring is supported in the target VM */
@@ -124,6 +176,10 @@ public class JMXCollector extends BaseCollector {
 	
 	
 	public static final String GROOVY_TYPE = "groovy.tracer.type";
+	/** The property setting the number of threads shared by all JMXCollectors for parallel collection */
+	public static final String COLLECTION_THREADS_PROP = "wiex.jmx.collector.threads";
+	/** The default number of threads shared by all JMXCollectors for parallel collection */
+	public static final int DEFAULT_COLLECTION_THREADS = 20;
 	
 	public static final String[] CLASS_LOADING_STATS = new String[]{"LoadedClassCount", "TotalLoadedClassCount", "UnloadedClassCount"};
 	public static final String[] THREAD_STATS = new String[]{"ThreadCount", "DaemonThreadCount", "TotalStartedThreadCount"};
@@ -160,6 +216,12 @@ public class JMXCollector extends BaseCollector {
 	 */
 	@JMXOperation(description="Stops The Service", expose=true, name="stop")
 	public void stop() {
+		planner.detach();
+		if(mxBeanCollection!=null) mxBeanCollection.cancel(true);
+		if(connectionPool!=null) {
+			connectionPool.close();
+			connectionPool = null;
+		}
 		connectionFactory.close();
 		super.stop();		
 	}
@@ -181,21 +243,34 @@ public class JMXCollector extends BaseCollector {
 	 * The assumption is that on start or reset, the target MXBeans may have changed.
 	 */
 	protected void resetEnv() {
+		mxBeanReset = true;
+		collectionSegment = formatName(tracer.buildSegment(segmentPrefix, false, "Collection"));
+		if(mXBeanSegment==null) {
+			mXBeanSegment = tracer.buildSegment(segmentPrefix, false, "MXBeans");
+		} else {
+			mXBeanSegment = formatName(mXBeanSegment);
+		}
+	}
+	
+	/**
+	 * Resets the MXBean state. Only called by the MXBean collection pass that owns it.
+	 */
+	protected void resetMXBeans() {
 		mxBeanObjectNames.clear();
 		memoryPoolObjectNames= null;
 		gcObjectNames= null;
 		gcTimes = new HashMap<String, long[]>();
+		threadsStartedKey = null;
+		deadlockKeys = null;
+		compileTimeKey = null;
+		classLoadingKeys = new DeltaKey[CLASS_LOADING_STATS.length];
+		gcDeltaKeys = new HashMap<String, DeltaKey[]>();
 		supportsCompilerTime= null;
 		supportsThreadContention= null;
 		traceMXBeans.clear();
 		mbeanQueryAttempted = 0;
 		gCPolledCycles = 0;
 		runtimeCollected = false;
-		if(mXBeanSegment==null) {
-			mXBeanSegment = tracer.buildSegment(segmentPrefix, false, "MXBeans");
-		} else {
-			mXBeanSegment = formatName(mXBeanSegment);
-		}
 	}
 	
 	/**
@@ -263,6 +338,7 @@ public class JMXCollector extends BaseCollector {
 				return;
 			}			 
 			attributeTraces.add(tr);
+			planner.invalidate();
 		} catch (Exception e) {
 			
 		}
@@ -405,6 +481,7 @@ public class JMXCollector extends BaseCollector {
 						tr.setDefaultValue(defaultValue);
 						log.info("Created JMXTrace:" + targetObjectName + " - " + attributeName);
 						attributeTraces.add(tr);
+						planner.invalidate();
 					} catch (Exception e) {
 						if(logErrors) {
 							log.error("Failed to Create JMXTrace", e);
@@ -586,11 +663,9 @@ public class JMXCollector extends BaseCollector {
 	 */
 	@JMXOperation(description="Collects JMX Attributes", expose=true, name="collect")
 	public void collect() {
-		Context ctx = null;
 		tracer = TracerFactory.getInstance();
 		if(log.isDebugEnabled())log.debug(objectName.toString() + ": Collection Executed");
 		long start = System.currentTimeMillis();
-		Object result = null;
 		try {
 			if(mBeanServerConnection==null) {
 				initMBeanServerConnection();
@@ -619,109 +694,555 @@ public class JMXCollector extends BaseCollector {
 				}
 			}
 		}
-		for(JMXAttributeTrace tr: attributeTraces) {
-			String traceName = null;
-			String metricName = null;
+		long queries = planner.getQueries();
+		int roundTrips = 0;
+		Collection<JMXCollectionPlanner.Target> targets = null;
+		try {
+			targets = planner.getPlan(mBeanServerConnection, attributeTraces);
+		} catch (Exception e) {
+			mBeanServerConnection = null;
+			if(logErrors) log.error("Failed to read from MBeanServer:" + e);
+			traceDefaults();
+			targets = Collections.emptyList();
+		}
+		lastTimedOutMBeans = 0;
+		if(parallelCollection && mBeanServerConnection!=null) {
+			roundTrips = collectParallel(targets);
+		} else {
+			roundTrips = collectSerial(targets);
+			if(mXBeans) collectMXBeanStats();
+		}
+		lastRoundTrips = roundTrips + (int)(planner.getQueries()-queries);
+		collectTime = System.currentTimeMillis()-start;
+		if(traceCollectionTime) {
+			TracerFactory.getInstance().recordMetric(MODULE, "Collect Time", collectTime);
+			if(collectionSegment!=null) {
+				tracer.recordMetric(collectionSegment, "Elapsed Time", collectTime);
+				tracer.recordMetric(collectionSegment, "Round Trips", lastRoundTrips);
+				tracer.recordMetric(collectionSegment, "Timed Out MBeans", lastTimedOutMBeans);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the planned MBeans one at a time through the collector's connection and traces the results.
+	 * @param targets The planned MBeans.
+	 * @return The number of MBeanServer round trips.
+	 */
+	protected int collectSerial(Collection<JMXCollectionPlanner.Target> targets) {
+		int roundTrips = 0;
+		boolean failed = false;
+		for(JMXCollectionPlanner.Target target: targets) {
+			if(failed) {
+				traceDefaults(target.getTraces());
+				continue;
+			}
 			try {
-				Iterator mbeans = mBeanServerConnection.queryNames(tr.getObjectName(), null).iterator();
-				while(mbeans.hasNext()) {
-					// Replace tokens on segmentName and metricName
-					ObjectName on = (ObjectName)mbeans.next();
-					result = mBeanServerConnection.getAttribute(on, tr.getAttributeName());
-					if(tr.isMandatory() || tr.isGroovyTracers()) {  
-						// isMandatory=true means there is a simple tracer, or no objectTracers,
-						// so the metricName and tracer type need to be read.
-						traceName = tr.getTraceName();
-						traceName = formatName(traceName);	
-						if(traceName.contains("{TARGET")) {
-							traceName = formatName(traceName, on);
-						}
-						metricName = tr.getMetricName();
-						metricName = formatName(metricName);
-						if(metricName.contains("{TARGET")) {
-							metricName = formatName(metricName, on);
-						}
-						if(tr.getSimpleObjectTracer()!=null) {
-							// if a simple object tracer is configured, trace it
-							recordTrace(traceName, metricName, tr.getSimpleObjectTracer().renderTracingValue(result), tr.getTracerType());
-						} else {
-							// if no simple tracer is defined, only do a plain trace if no object tracers are defined.
-							if(tr.getObjectTracers().size()<1) {
-								recordTrace(traceName, metricName, result.toString(), tr.getTracerType());
-							}
-						}
-					}
-					for(ObjectTracer objectTracer: tr.getObjectTracers()) {
-						try {
-							try { ctx = new InitialContext(); } catch (Exception e) {};
-							List<RenderedTrace> renderedTraces = null;
-							if(objectTracer instanceof GroovyObjectTracer) {
-								objectTracer.renderTracingValue(result, "remoteMBeanServer", mBeanServerConnection, "localMBeanServer", mbeanServer ,"remoteObjectName", on, "localObjectName", objectName, "tracer", tracer, "segmentPrefix", segmentPrefix, "jndi", ctx);
-							} else {
-								objectTracer.renderTracingValue(result);
-							}
-							
-							if(renderedTraces!=null) for(RenderedTrace renderedTrace: renderedTraces) {
-								// Apply the object name property token substitution to the property values.
-								String segment = renderedTrace.getSegment();
-								segment = formatName(segment);																
-								if(renderedTrace.getFrequency() != null && renderedTrace.getTimeUnit() != null) {									
-									recordTrace(tracer.buildSegment(segmentPrefix, false, segment), renderedTrace.getMetric(), renderedTrace.getValue(), renderedTrace.getType(), renderedTrace.getFrequency(), renderedTrace.getTimeUnit());
-								} else {
-									recordTrace(tracer.buildSegment(segmentPrefix, false, segment), renderedTrace.getMetric(), renderedTrace.getValue(), renderedTrace.getType());
-								}
-							}
-						} catch (Exception e) {
-							if(logErrors) {
-								log.error("Failed to process object tracer: " + objectTracer, e);
-							}
-						}
-					}
-				}				
+				roundTrips++;
+				traceTarget(target, mBeanServerConnection.getAttributes(target.getObjectName(), target.getAttributeNames()));
+			} catch (InstanceNotFoundException e) {
+				planner.invalidate();
+				traceDefaults(target.getTraces());
 			} catch (Exception e) {
 				mBeanServerConnection = null;
+				failed = true;
 				if(logErrors) log.error("Failed to read from MBeanServer:" + e);
-				if(tr.getDefaultValue()!=null) {
-					if(tr.getDefaultValue()!=null) {
-						try {
-							recordTrace(tracer.buildSegment(segmentPrefix, false, formatName(tr.getTraceName())), formatName(tr.getMetricName()), tr.getDefaultValue(), tr.getTracerType());
-						} catch (Exception e2) {}
+				traceDefaults(target.getTraces());
+			}
+		}
+		return roundTrips;
+	}
+	
+	/**
+	 * Reads the planned MBeans in parallel across the pooled connections and the MXBean stats alongside them,
+	 * and traces each MBean's result once it is read. One read task per pooled connection takes the planned MBeans from a shared queue.
+	 * Each planned MBean has its own deadline: the collection timeout to start being read and, once started, the collection timeout
+	 * to complete. When an MBean's deadline passes, its defaults are traced and the task reading it is cancelled, so a slow MBean
+	 * only delays itself and the MBeans still queued are read by the other tasks.
+	 * @param targets The planned MBeans.
+	 * @return The number of MBeanServer round trips.
+	 */
+	protected int collectParallel(Collection<JMXCollectionPlanner.Target> targets) {
+		int roundTrips = 0;
+		try {
+			if(connectionPool==null) connectionPool = new MBeanServerConnectionPool(connectionFactoryClass, connectionFactoryProperties, connectionPoolSize);
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to create MBeanServer connection pool. Collecting serially:" + e);
+			roundTrips = collectSerial(targets);
+			if(mXBeans) collectMXBeanStats();
+			return roundTrips;
+		}
+		CompletionService<Object> completion = new ExecutorCompletionService<Object>(getCollectionExecutor());
+		List<CollectionTask> pending = new ArrayList<CollectionTask>();
+		List<TargetRead> unread = new ArrayList<TargetRead>(targets.size());
+		for(JMXCollectionPlanner.Target target: targets) {
+			unread.add(new TargetRead(target));
+		}
+		if(!unread.isEmpty()) {
+			Queue<TargetRead> queue = new ConcurrentLinkedQueue<TargetRead>(unread);
+			// leave a pooled connection for the MXBean collection
+			int connections = connectionPool.getSize() > 1 && mXBeans ? connectionPool.getSize()-1 : connectionPool.getSize();
+			int taskCount = Math.min(connections, unread.size());
+			for(int i = 0; i < taskCount; i++) {
+				ReadTask task = new ReadTask(connectionPool, queue);
+				task.future = completion.submit(task);
+				pending.add(task);
+			}
+		}
+		MXBeanTask mxBeanTask = null;
+		if(mXBeans) {
+			if(!mxBeanRunning.get()) {
+				mxBeanTask = new MXBeanTask(connectionPool);
+				mxBeanTask.future = completion.submit(mxBeanTask);
+				mxBeanCollection = mxBeanTask.future;
+				pending.add(mxBeanTask);
+			} else if(logErrors) {
+				log.warn("Skipping MXBean collection as the prior collection is still running");
+			}
+		}
+		try {
+			while(true) {
+				long now = System.currentTimeMillis();
+				long nextDeadline = Long.MAX_VALUE;
+				boolean reading = false;
+				for(CollectionTask task: pending) {
+					if(task instanceof ReadTask) reading = true;
+				}
+				for(Iterator<TargetRead> iter = unread.iterator(); iter.hasNext();) {
+					TargetRead read = iter.next();
+					if(read.result!=null) {
+						iter.remove();
+						roundTrips += traceTargetRead(read);
+						continue;
+					}
+					long deadline = read.getDeadline();
+					if(deadline > now && reading) {
+						nextDeadline = Math.min(nextDeadline, deadline);
+						continue;
+					}
+					// timed out, or no read task is left to read it
+					iter.remove();
+					roundTrips += traceTargetRead(read);
+					ReadTask reader = read.reader;
+					if(reader!=null && pending.remove(reader)) {
+						reader.abandoned = true;
+						reader.future.cancel(true);
+					}
+				}
+				if(mxBeanTask!=null && pending.contains(mxBeanTask)) {
+					if(mxBeanTask.getDeadline() > now) {
+						nextDeadline = Math.min(nextDeadline, mxBeanTask.getDeadline());
+					} else {
+						// a started MXBean collection is left to finish, and the next collection skips it until it has
+						pending.remove(mxBeanTask);
+						mxBeanTask.abandoned = true;
+						mxBeanTask.future.cancel(false);
+					}
+				}
+				if(unread.isEmpty() && (mxBeanTask==null || !pending.contains(mxBeanTask))) break;
+				Future<Object> done = completion.poll(Math.max(1, nextDeadline - now), TimeUnit.MILLISECONDS);
+				if(done==null) continue;
+				CollectionTask task = null;
+				for(CollectionTask t: pending) {
+					if(t.future==done) task = t;
+				}
+				// a task already abandoned and cancelled
+				if(task==null) continue;
+				pending.remove(task);
+				try {
+					done.get();
+					if(task==mxBeanTask && mxBeanTask.traces!=null) {
+						mxBeanTask.traces.trace(tracer);
 					}
+				} catch (ExecutionException e) {
+					if(logErrors) log.error("Parallel collection task failed", e.getCause());
 				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for(TargetRead read: unread) {
+				roundTrips += traceTargetRead(read);
+			}
+		}
+		for(CollectionTask task: pending) {
+			task.abandoned = true;
+			task.future.cancel(task instanceof ReadTask);
 		}
+		return roundTrips;
+	}
+	
+	/**
+	 * Traces the result of a planned MBean read, or its defaults if it was not read.
+	 * @param read The planned MBean read.
+	 * @return The number of MBeanServer round trips the read completed.
+	 */
+	protected int traceTargetRead(TargetRead read) {
+		Object result = read.result;
+		if(result instanceof AttributeList) {
+			traceTarget(read.target, (AttributeList)result);
+			return 1;
+		}
+		if(result==null) {
+			lastTimedOutMBeans++;
+			traceDefaults(read.target.getTraces());
+			return 0;
+		}
+		if(result instanceof InstanceNotFoundException) planner.invalidate();
+		else if(logErrors) log.error("Failed to read from MBeanServer:" + result);
+		traceDefaults(read.target.getTraces());
+		return 1;
+	}
+	
+	/**
+	 * Traces the attribute values read from a planned MBean, and the defaults of the attributes that were not read.
+	 * @param target The planned MBean.
+	 * @param attrs The attribute values read from the MBean.
+	 */
+	protected void traceTarget(JMXCollectionPlanner.Target target, AttributeList attrs) {
+		ObjectName on = target.getObjectName();
+		Map<String, Object> values = new HashMap<String, Object>(attrs.size()*2);
+		for(Object attr: attrs) {
+			values.put(((Attribute)attr).getName(), ((Attribute)attr).getValue());
+		}
+		for(JMXAttributeTrace tr: target.getTraces()) {
+			Object result = values.get(tr.getAttributeName());
+			if(result==null) {
+				if(log.isDebugEnabled()) log.debug("Attribute Not Read:" + on + "/" + tr.getAttributeName());
+				traceDefault(tr);
+				continue;
+			}
+			try {
+				traceAttribute(tr, on, result);
+			} catch (Exception e) {
+				if(logErrors) log.error("Failed to trace attribute " + on + "/" + tr.getAttributeName() + ":" + e);
+				traceDefault(tr);
+			}
+		}
+	}
+	
+	/**
+	 * Executes the MXBean collection through the collector's connection and traces the results.
+	 */
+	protected void collectMXBeanStats() {
+		if(mBeanServerConnection==null) return;
+		MXBeanTraces traces = readMXBeans(mBeanServerConnection);
+		if(traces!=null) traces.trace(tracer);
+	}
+	
+	/**
+	 * Executes an MXBean collection pass through the passed connection and returns the values read, including the pass's elapsed time.
+	 * The pass owns the MXBean state, so only one pass at a time runs and a reset requested by {@link #resetEnv()} is applied here.
+	 * @param conn The connection to read through.
+	 * @return the values read, or null if another pass is still running.
+	 */
+	protected MXBeanTraces readMXBeans(MBeanServerConnection conn) {
+		if(!mxBeanRunning.compareAndSet(false, true)) {
+			if(logErrors) log.warn("Skipping MXBean collection as the prior collection is still running");
+			return null;
+		}
+		MXBeanTraces traces = new MXBeanTraces();
 		try {
+			if(mxBeanReset) {
+				mxBeanReset = false;
+				resetMXBeans();
+			}
 			long startMX = System.currentTimeMillis();
-			if(mXBeans) {
-				collectMXBeans();
-				tracer.recordMetric(mXBeanSegment, "Collection Elapsed Time", System.currentTimeMillis()-startMX);
-			}			
+			collectMXBeans(conn, traces);
+			traces.recordMetric(mXBeanSegment, "Collection Elapsed Time", System.currentTimeMillis()-startMX);
 		} catch (Exception mxe) {
 			if(logErrors) {
 				log.error("MXBean Collection Error", mxe);
 			}
+		} finally {
+			mxBeanRunning.set(false);
 		}
-		collectTime = System.currentTimeMillis()-start;
-		if(traceCollectionTime) {
-			TracerFactory.getInstance().recordMetric(MODULE, "Collect Time", collectTime);
+		return traces;
+	}
+	
+	/**
+	 * <p>Title: TargetRead</p>
+	 * <p>Description: The read of one planned MBean in a parallel collection. The result is the MBean's AttributeList,
+	 * the exception raised reading it, or null if it has not been read.</p>
+	 */
+	protected class TargetRead {
+		/** The planned MBean */
+		protected final JMXCollectionPlanner.Target target;
+		/** The time the read was queued */
+		protected final long queued = System.currentTimeMillis();
+		/** The time the read started, or 0 if it has not */
+		protected volatile long started = 0;
+		/** The read task reading the MBean */
+		protected volatile ReadTask reader = null;
+		/** The read result */
+		protected volatile Object result = null;
+
+		/**
+		 * Creates a new TargetRead
+		 * @param target The planned MBean
+		 */
+		protected TargetRead(JMXCollectionPlanner.Target target) {
+			this.target = target;
+		}
+
+		/**
+		 * Returns the time the read must start by or, once started, complete by
+		 * @return the read's deadline
+		 */
+		protected long getDeadline() {
+			long s = started;
+			return (s==0 ? queued : s) + collectionTimeout;
 		}
 	}
 	
+	/**
+	 * <p>Title: CollectionTask</p>
+	 * <p>Description: A parallel collection task that reads through one pooled connection,
+	 * which it has the collection timeout to borrow.</p>
+	 */
+	protected abstract class CollectionTask implements Callable<Object> {
+		/** The pooled connections to read through */
+		protected final MBeanServerConnectionPool pool;
+		/** The time the task was created */
+		protected final long submitted = System.currentTimeMillis();
+		/** Set by the collecting thread when it stops waiting for the task */
+		protected volatile boolean abandoned = false;
+		/** The task's future. Only accessed by the collecting thread. */
+		protected Future<Object> future = null;
+
+		/**
+		 * Creates a new CollectionTask
+		 * @param pool The pooled connections to read through
+		 */
+		protected CollectionTask(MBeanServerConnectionPool pool) {
+			this.pool = pool;
+		}
 
+		/**
+		 * Borrows a pooled connection and reads through it
+		 * @return this task
+		 * @throws Exception
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Object call() throws Exception {
+			MBeanServerConnectionFactory factory = pool.borrow(submitted + collectionTimeout - System.currentTimeMillis());
+			if(factory==null) return this;
+			boolean failed = false;
+			try {
+				if(!abandoned) failed = read(factory);
+			} catch (Exception e) {
+				failed = true;
+			} finally {
+				pool.release(factory, failed);
+			}
+			return this;
+		}
+
+		/**
+		 * Reads through the borrowed connection
+		 * @param factory The borrowed connection factory
+		 * @return true if the connection failed
+		 * @throws Exception
+		 */
+		protected abstract boolean read(MBeanServerConnectionFactory factory) throws Exception;
+	}
 	
+	/**
+	 * <p>Title: ReadTask</p>
+	 * <p>Description: Reads planned MBeans from a queue shared with the other read tasks of a collection until the queue is empty,
+	 * the connection fails or the task is abandoned. A queued MBean whose deadline has passed is left unread.</p>
+	 */
+	protected class ReadTask extends CollectionTask {
+		/** The planned MBean reads */
+		protected final Queue<TargetRead> queue;
+
+		/**
+		 * Creates a new ReadTask
+		 * @param pool The pooled connections to read through
+		 * @param queue The planned MBean reads
+		 */
+		protected ReadTask(MBeanServerConnectionPool pool, Queue<TargetRead> queue) {
+			super(pool);
+			this.queue = queue;
+		}
+
+		/**
+		 * Reads the queued MBeans
+		 * @param factory The borrowed connection factory
+		 * @return true if the connection failed
+		 * @throws Exception
+		 */
+		protected boolean read(MBeanServerConnectionFactory factory) throws Exception {
+			MBeanServerConnection conn = factory.getMBeanServerConnection();
+			TargetRead read = null;
+			while(!abandoned && !Thread.currentThread().isInterrupted() && (read = queue.poll())!=null) {
+				if(System.currentTimeMillis() >= read.getDeadline()) continue;
+				read.reader = this;
+				read.started = System.currentTimeMillis();
+				try {
+					read.result = conn.getAttributes(read.target.getObjectName(), read.target.getAttributeNames());
+				} catch (IOException e) {
+					read.result = e;
+					return true;
+				} catch (Exception e) {
+					read.result = e;
+				}
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * <p>Title: MXBeanTask</p>
+	 * <p>Description: Runs the MXBean collection pass, which has the collection timeout to complete once started.
+	 * The values read are held in {@link #traces} for the collecting thread to trace.</p>
+	 */
+	protected class MXBeanTask extends CollectionTask {
+		/** The time the pass started, or 0 if it has not */
+		protected volatile long started = 0;
+		/** The values read, or null if the pass did not run */
+		protected volatile MXBeanTraces traces = null;
+
+		/**
+		 * Creates a new MXBeanTask
+		 * @param pool The pooled connections to read through
+		 */
+		protected MXBeanTask(MBeanServerConnectionPool pool) {
+			super(pool);
+		}
+
+		/**
+		 * Returns the time the pass must start by or, once started, complete by
+		 * @return the pass's deadline
+		 */
+		protected long getDeadline() {
+			long s = started;
+			return (s==0 ? submitted : s) + collectionTimeout;
+		}
+
+		/**
+		 * Runs the MXBean collection pass
+		 * @param factory The borrowed connection factory
+		 * @return false, since the pass handles its own read failures
+		 * @throws Exception
+		 */
+		protected boolean read(MBeanServerConnectionFactory factory) throws Exception {
+			started = System.currentTimeMillis();
+			traces = readMXBeans(factory.getMBeanServerConnection());
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the executor shared by all JMXCollectors for parallel collection, creating it on first use.
+	 * The number of threads is set by the system property or environmental variable <b>wiex.jmx.collector.threads</b>.
+	 * @return the collection executor
+	 */
+	protected static synchronized ExecutorService getCollectionExecutor() {
+		if(collectionExecutor==null) {
+			int threads = ConfigurationHelper.getIntSystemThenEnvProperty(COLLECTION_THREADS_PROP, DEFAULT_COLLECTION_THREADS);
+			final AtomicInteger serial = new AtomicInteger(0);
+			collectionExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "JMXCollectorWorker#" + serial.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return collectionExecutor;
+	}
+	
+
+	
+	
+	/**
+	 * Traces an attribute value read from an MBean through the trace's simple and object tracers.
+	 * @param tr The attribute trace.
+	 * @param on The ObjectName of the MBean the value was read from.
+	 * @param result The attribute value.
+	 * @throws Exception
+	 */
+	protected void traceAttribute(JMXAttributeTrace tr, ObjectName on, Object result) throws Exception {
+		Context ctx = null;
+		String traceName = null;
+		String metricName = null;
+		if(tr.isMandatory() || tr.isGroovyTracers()) {  
+			// isMandatory=true means there is a simple tracer, or no objectTracers,
+			// so the metricName and tracer type need to be read.
+			traceName = tr.getTraceName();
+			traceName = formatName(traceName);	
+			if(traceName.contains("{TARGET")) {
+				traceName = formatName(traceName, on);
+			}
+			metricName = tr.getMetricName();
+			metricName = formatName(metricName);
+			if(metricName.contains("{TARGET")) {
+				metricName = formatName(metricName, on);
+			}
+			if(tr.getSimpleObjectTracer()!=null) {
+				// if a simple object tracer is configured, trace it
+				recordTrace(traceName, metricName, tr.getSimpleObjectTracer().renderTracingValue(result), tr.getTracerType());
+			} else {
+				// if no simple tracer is defined, only do a plain trace if no object tracers are defined.
+				if(tr.getObjectTracers().size()<1) {
+					recordTrace(traceName, metricName, result.toString(), tr.getTracerType());
+				}
+			}
+		}
+		for(ObjectTracer objectTracer: tr.getObjectTracers()) {
+			try {
+				try { ctx = new InitialContext(); } catch (Exception e) {};
+				List<RenderedTrace> renderedTraces = null;
+				if(objectTracer instanceof GroovyObjectTracer) {
+					objectTracer.renderTracingValue(result, "remoteMBeanServer", mBeanServerConnection, "localMBeanServer", mbeanServer ,"remoteObjectName", on, "localObjectName", objectName, "tracer", tracer, "segmentPrefix", segmentPrefix, "jndi", ctx);
+				} else {
+					objectTracer.renderTracingValue(result);
+				}
+				
+				if(renderedTraces!=null) for(RenderedTrace renderedTrace: renderedTraces) {
+					// Apply the object name property token substitution to the property values.
+					String segment = renderedTrace.getSegment();
+					segment = formatName(segment);																
+					if(renderedTrace.getFrequency() != null && renderedTrace.getTimeUnit() != null) {									
+						recordTrace(tracer.buildSegment(segmentPrefix, false, segment), renderedTrace.getMetric(), renderedTrace.getValue(), renderedTrace.getType(), renderedTrace.getFrequency(), renderedTrace.getTimeUnit());
+					} else {
+						recordTrace(tracer.buildSegment(segmentPrefix, false, segment), renderedTrace.getMetric(), renderedTrace.getValue(), renderedTrace.getType());
+					}
+				}
+			} catch (Exception e) {
+				if(logErrors) {
+					log.error("Failed to process object tracer: " + objectTracer, e);
+				}
+			}
+		}
+	}
 	
 	/**
 	 * Iterates through all registered attributes and traces the default, if defined. 
 	 */
 	protected void traceDefaults() {
-		for(JMXAttributeTrace tr: attributeTraces) {
-			if(tr.getDefaultValue()!=null) {
-				try {
-					//recordTrace(tracer.buildSegment(segmentPrefix, false, formatName(tr.getTraceName())), formatName(tr.getMetricName()), tr.getDefaultValue(), tr.getTracerType());
-					recordTrace(formatName(tr.getTraceName()), formatName(tr.getMetricName()), tr.getDefaultValue(), tr.getTracerType());
-				} catch (Exception e) {}
-			}
-			
+		traceDefaults(attributeTraces);
+	}
+	
+	/**
+	 * Iterates through the passed attributes and traces the default, if defined. 
+	 * @param traces The attribute traces to trace the default for.
+	 */
+	protected void traceDefaults(List<JMXAttributeTrace> traces) {
+		for(JMXAttributeTrace tr: traces) {
+			traceDefault(tr);
+		}
+	}
+	
+	/**
+	 * Traces the default of an attribute, if defined.
+	 * @param tr The attribute trace.
+	 */
+	protected void traceDefault(JMXAttributeTrace tr) {
+		if(tr.getDefaultValue()!=null) {
+			try {
+				recordTrace(formatName(tr.getTraceName()), formatName(tr.getMetricName()), tr.getDefaultValue(), tr.getTracerType());
+			} catch (Exception e) {}
 		}
 	}
 	
@@ -729,24 +1250,26 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Executes the default MXBean collection
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 * @throws Exception
 	 */
-	protected void collectMXBeans() throws Exception {
+	protected void collectMXBeans(MBeanServerConnection conn, MXBeanTraces traces) throws Exception {
 		if(!mXBeans) return;
 		// Collect Heap and Non Heap
-		processMemory();
+		processMemory(conn, traces);
 		// Collect Memory Pools
-		processMemoryPools();
+		processMemoryPools(conn, traces);
 		// Collect GC
-		processGCStats();
+		processGCStats(conn, traces);
 		// Collect Class Loading
-		processClassLoading();
+		processClassLoading(conn, traces);
 		// Compile Time
-		processCompiler();
+		processCompiler(conn, traces);
 		// Threads
-		processThreads();
+		processThreads(conn, traces);
 		// Runtime Env
-		processRuntime();
+		processRuntime(conn, traces);
 		
 		if(mbeanQueryAttempted<=mbeanQueryAttempts) {
 			mbeanQueryAttempted++;
@@ -755,8 +1278,10 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * One time collection of runtime MXBean stats
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 */
-	protected void processRuntime() {
+	protected void processRuntime(MBeanServerConnection conn, MXBeanTraces traces) {
 		ObjectName runTimeMXBean = null;
 		try {
 			if(runtimeCollected) return;
@@ -771,15 +1296,15 @@ public class JMXCollector extends BaseCollector {
 				return;			
 			}
 
-			long startTime = (Long)mBeanServerConnection.getAttribute(runTimeMXBean, "StartTime");
-			String[] inputArguments = (String[])mBeanServerConnection.getAttribute(runTimeMXBean, "InputArguments");
+			long startTime = (Long)conn.getAttribute(runTimeMXBean, "StartTime");
+			String[] inputArguments = (String[])conn.getAttribute(runTimeMXBean, "InputArguments");
 			StringBuilder buff = new StringBuilder();
 			for(String s: inputArguments) {
 				buff.append(s).append("\n");
 			}
 			
-			tracer.recordTimeStamp(rootSegment, "Start Time", startTime);
-			tracer.recordMetric(rootSegment, "JVM Input Arguments", buff.toString());
+			traces.recordTimeStamp(rootSegment, "Start Time", startTime);
+			traces.recordMetric(rootSegment, "JVM Input Arguments", buff.toString());
 			runtimeCollected = true;
 		} catch (InstanceNotFoundException ine) {
 			if(logErrors) { log.warn("MXBean Collector (" + objectName + ") Could Not Locate MBean " + runTimeMXBean); }
@@ -794,8 +1319,10 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Collects Thread stats
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 */
-	protected void processThreads() {
+	protected void processThreads(MBeanServerConnection conn, MXBeanTraces traces) {
 		ObjectName threadMXBean = null;
 		try {
 			long totalStartedThreads = 0;
@@ -816,34 +1343,35 @@ public class JMXCollector extends BaseCollector {
 				mxBeanObjectNames.put(ManagementFactory.THREAD_MXBEAN_NAME, threadMXBean);
 			}
 			if(!shouldBeCollected(threadMXBean)) return;
-			AttributeList attrs = mBeanServerConnection.getAttributes(threadMXBean, THREAD_STATS);
+			AttributeList attrs = conn.getAttributes(threadMXBean, THREAD_STATS);
 			//public static final String[] THREAD_STATS = new String[]{"ThreadCount", "DaemonThreadCount", "TotalStartedThreadCount"};
 			activeThreads = (Integer)getValue(attrs, THREAD_STATS[0]);
 			daemonThreads = (Integer)getValue(attrs, THREAD_STATS[1]);
 			totalStartedThreads = (Long)getValue(attrs, THREAD_STATS[2]);
 			nonDaemonThreads = activeThreads - daemonThreads;
 			
-			tracer.recordCounterMetricDelta(rootSegment, "Threads Started", totalStartedThreads);
-			tracer.recordCounterMetric(rootSegment, "Active Threads", activeThreads);
-			tracer.recordCounterMetric(rootSegment, "Daemon Threads", daemonThreads);
-			tracer.recordCounterMetric(rootSegment, "Non Daemon Threads", nonDaemonThreads);
+			if(threadsStartedKey==null) threadsStartedKey = tracer.getDeltaKey(rootSegment, "Threads Started");
+			traces.recordCounterMetricDelta(threadsStartedKey, totalStartedThreads);
+			traces.recordCounterMetric(rootSegment, "Active Threads", activeThreads);
+			traces.recordCounterMetric(rootSegment, "Daemon Threads", daemonThreads);
+			traces.recordCounterMetric(rootSegment, "Non Daemon Threads", nonDaemonThreads);
 			
 			long tmStart = System.currentTimeMillis();
 			long tmElapsed = 0;
 			
 			if(deadLockMonitor) {
-				monitorLockedThreads = (long[])mBeanServerConnection.invoke(threadMXBean, "findMonitorDeadlockedThreads", NULL_ARG, NULL_SIG);
+				monitorLockedThreads = (long[])conn.invoke(threadMXBean, "findMonitorDeadlockedThreads", NULL_ARG, NULL_SIG);
 				if(monitorLockedThreads==null) {
-					tracer.recordCounterMetric(rootSegment, "Monitor Deadlocked Threads", 0);					
+					traces.recordCounterMetric(rootSegment, "Monitor Deadlocked Threads", 0);					
 				} else {
-					tracer.recordCounterMetric(rootSegment, "Monitor Deadlocked Threads", monitorLockedThreads.length);
+					traces.recordCounterMetric(rootSegment, "Monitor Deadlocked Threads", monitorLockedThreads.length);
 					if(supportsThreadContention==null) {					
-						supportsThreadContention = (Boolean)mBeanServerConnection.getAttribute(threadMXBean, "ThreadContentionMonitoringSupported");
+						supportsThreadContention = (Boolean)conn.getAttribute(threadMXBean, "ThreadContentionMonitoringSupported");
 						if(supportsThreadContention) {
-							boolean enabled = (Boolean)mBeanServerConnection.getAttribute(threadMXBean, "ThreadContentionMonitoringEnabled");
+							boolean enabled = (Boolean)conn.getAttribute(threadMXBean, "ThreadContentionMonitoringEnabled");
 							if(!enabled) {
 								try {
-									mBeanServerConnection.setAttribute(threadMXBean, new Attribute("ThreadContentionMonitoringEnabled", true));
+									conn.setAttribute(threadMXBean, new Attribute("ThreadContentionMonitoringEnabled", true));
 								} catch (Exception e) {
 									log.warn("Failed to enable ThreadContentionMonitoring for" + objectName, e);
 									supportsThreadContention = false;
@@ -853,7 +1381,7 @@ public class JMXCollector extends BaseCollector {
 					}
 					if(supportsThreadContention) {
 						rootSegment = tracer.buildSegment(mXBeanSegment, false, "Threads", "Deadlocks");						
-						CompositeData[] infos = (CompositeData[])mBeanServerConnection.invoke(threadMXBean, "getThreadInfo", new Object[]{monitorLockedThreads}, new String[]{"[J"});
+						CompositeData[] infos = (CompositeData[])conn.invoke(threadMXBean, "getThreadInfo", new Object[]{monitorLockedThreads}, new String[]{"[J"});
 						for(CompositeData info: infos) {
 							threadInfo = ThreadInfo.from(info);
 							totalBlockCount += threadInfo.getBlockedCount();
@@ -861,22 +1389,28 @@ public class JMXCollector extends BaseCollector {
 							totalWaitCount += threadInfo.getWaitedCount();
 							totalWaitTime += threadInfo.getWaitedTime();
 						}
-						tracer.recordCounterMetricDelta(rootSegment, "Block Count", totalBlockCount);
-						tracer.recordCounterMetricDelta(rootSegment, "Block Time", totalBlockTime);
-						tracer.recordCounterMetricDelta(rootSegment, "Wait Count", totalWaitCount);
-						tracer.recordCounterMetricDelta(rootSegment, "Wait Time", totalWaitTime);
+						if(deadlockKeys==null) {
+							deadlockKeys = new DeltaKey[]{
+									tracer.getDeltaKey(rootSegment, "Block Count"), tracer.getDeltaKey(rootSegment, "Block Time"),
+									tracer.getDeltaKey(rootSegment, "Wait Count"), tracer.getDeltaKey(rootSegment, "Wait Time")
+							};
+						}
+						traces.recordCounterMetricDelta(deadlockKeys[0], totalBlockCount);
+						traces.recordCounterMetricDelta(deadlockKeys[1], totalBlockTime);
+						traces.recordCounterMetricDelta(deadlockKeys[2], totalWaitCount);
+						traces.recordCounterMetricDelta(deadlockKeys[3], totalWaitTime);
 					}
 				}
 				tmElapsed = System.currentTimeMillis() - tmStart;
-				tracer.recordMetric(mXBeanSegment, "Deadlock Monitor Elapsed Time", tmElapsed);
+				traces.recordMetric(mXBeanSegment, "Deadlock Monitor Elapsed Time", tmElapsed);
 			}
 			if(threadMonitor) {
 				rootSegment = tracer.buildSegment(mXBeanSegment, false, "Threads");
 				tmStart = System.currentTimeMillis();
-				long[] allThreads = (long[])mBeanServerConnection.getAttribute(threadMXBean, "AllThreadIds");
-				CompositeData[] infos = (CompositeData[])mBeanServerConnection.invoke(threadMXBean, "getThreadInfo", new Object[]{allThreads}, new String[]{"[J"});
+				long[] allThreads = (long[])conn.getAttribute(threadMXBean, "AllThreadIds");
+				CompositeData[] infos = (CompositeData[])conn.invoke(threadMXBean, "getThreadInfo", new Object[]{allThreads}, new String[]{"[J"});
 				tmElapsed = System.currentTimeMillis()-tmStart;				
-				tracer.recordMetric(mXBeanSegment, "Thread Monitor Elapsed Time", tmElapsed);
+				traces.recordMetric(mXBeanSegment, "Thread Monitor Elapsed Time", tmElapsed);
 				rootSegment = tracer.buildSegment(mXBeanSegment, false, "Threads", "States");
 				resetThreadStatus();
 				for(CompositeData info: infos) {
@@ -884,7 +1418,7 @@ public class JMXCollector extends BaseCollector {
 					incrementThreadState(threadInfo.getThreadState());
 				}	
 				for(Entry<Thread.State, Integer> entry: threadStates.entrySet()) {
-					tracer.recordCounterMetric(rootSegment, entry.getKey().toString(), entry.getValue());
+					traces.recordCounterMetric(rootSegment, entry.getKey().toString(), entry.getValue());
 				}
 				
 			}
@@ -929,8 +1463,10 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Collects JIT Compiler stats
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 */
-	protected void processCompiler() {
+	protected void processCompiler(MBeanServerConnection conn, MXBeanTraces traces) {
 		ObjectName jitMXBean = null;
 		try {
 			if(supportsCompilerTime != null && !supportsCompilerTime) return;
@@ -942,10 +1478,11 @@ public class JMXCollector extends BaseCollector {
 			}
 			if(!shouldBeCollected(jitMXBean)) return;			
 			if(supportsCompilerTime==null) {
-				supportsCompilerTime = (Boolean)mBeanServerConnection.getAttribute(jitMXBean, "CompilationTimeMonitoringSupported");
+				supportsCompilerTime = (Boolean)conn.getAttribute(jitMXBean, "CompilationTimeMonitoringSupported");
 			}
 			if(!supportsCompilerTime) return;
-			tracer.recordCounterMetricDelta(rootSegment, "Compile Time", (Long)mBeanServerConnection.getAttribute(jitMXBean, "TotalCompilationTime"));
+			if(compileTimeKey==null) compileTimeKey = tracer.getDeltaKey(rootSegment, "Compile Time");
+			traces.recordCounterMetricDelta(compileTimeKey, (Long)conn.getAttribute(jitMXBean, "TotalCompilationTime"));
 		} catch (InstanceNotFoundException ine) {
 			if(logErrors) { log.warn("MXBean Collector (" + objectName + ") Could Not Locate MBean " + jitMXBean); }			
 		} catch (Exception e) {
@@ -957,8 +1494,10 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Collects memory stats
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 */
-	protected void processClassLoading() {
+	protected void processClassLoading(MBeanServerConnection conn, MXBeanTraces traces) {
 		ObjectName clMXBean = null;
 		try {
 			String rootSegment = null;
@@ -970,12 +1509,14 @@ public class JMXCollector extends BaseCollector {
 			}
 			if(!shouldBeCollected(clMXBean)) return;
 			rootSegment = tracer.buildSegment(mXBeanSegment, false, "Class Loading");
-			stats = mBeanServerConnection.getAttributes(clMXBean, CLASS_LOADING_STATS);
+			stats = conn.getAttributes(clMXBean, CLASS_LOADING_STATS);
 			for(Attribute attr: stats.asList()) {
 				if("LoadedClassCount".equals(attr.getName())) {
-					tracer.recordCounterMetric(rootSegment, attr.getName(), (Integer)attr.getValue());
+					traces.recordCounterMetric(rootSegment, attr.getName(), (Integer)attr.getValue());
 				} else {
-					tracer.recordCounterMetricDelta(rootSegment, attr.getName(), (Long)attr.getValue());
+					int index = CLASS_LOADING_STATS[1].equals(attr.getName()) ? 1 : 2;
+					if(classLoadingKeys[index]==null) classLoadingKeys[index] = tracer.getDeltaKey(rootSegment, attr.getName());
+					traces.recordCounterMetricDelta(classLoadingKeys[index], (Long)attr.getValue());
 				}
 			}
 		} catch (InstanceNotFoundException ine) {
@@ -990,8 +1531,10 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Collects memory pool stats
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 */
-	protected void processMemoryPools() {
+	protected void processMemoryPools(MBeanServerConnection conn, MXBeanTraces traces) {
 		try {
 			String rootSegment = null;
 			String poolType = null;
@@ -1001,7 +1544,7 @@ public class JMXCollector extends BaseCollector {
 				try {
 					memoryPoolMXBean = new ObjectName(ManagementFactory.MEMORY_POOL_MXBEAN_DOMAIN_TYPE + ",*");
 					if(!shouldBeCollected(memoryPoolMXBean)) return;
-					Set<ObjectName> memoryPools = (Set<ObjectName>)mBeanServerConnection.queryNames(memoryPoolMXBean, null);
+					Set<ObjectName> memoryPools = (Set<ObjectName>)conn.queryNames(memoryPoolMXBean, null);
 					if(memoryPools.size()==0) {
 						if(mbeanQueryAttempted<mbeanQueryAttempts) {
 							memoryPoolObjectNames=null;
@@ -1025,14 +1568,14 @@ public class JMXCollector extends BaseCollector {
 			if(!shouldBeCollected(memoryPoolMXBean)) return;
 			
 			for(Entry<String, ObjectName> entry: memoryPoolObjectNames.entrySet()) {
-				poolType = (String)mBeanServerConnection.getAttribute(entry.getValue(), "Type");
-				usage = (CompositeDataSupport)mBeanServerConnection.getAttribute(entry.getValue(), "Usage");
+				poolType = (String)conn.getAttribute(entry.getValue(), "Type");
+				usage = (CompositeDataSupport)conn.getAttribute(entry.getValue(), "Usage");
 				rootSegment = tracer.buildSegment(mXBeanSegment, false, "Memory Pools", poolType, entry.getKey());
 				for(String key: (Set<String>)usage.getCompositeType().keySet()) {
-					tracer.recordCounterMetric(rootSegment, key, (Long)usage.get(key));
+					traces.recordCounterMetric(rootSegment, key, (Long)usage.get(key));
 				}
-				getPercentUsedOfCommited(usage, rootSegment);
-				getPercentUsedOfCapacity(usage, rootSegment);
+				getPercentUsedOfCommited(traces, usage, rootSegment);
+				getPercentUsedOfCapacity(traces, usage, rootSegment);
 				
 			}
 		} catch (InstanceNotFoundException ine) {
@@ -1046,8 +1589,10 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Collects garbage collector stats.
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 */
-	protected void processGCStats() {
+	protected void processGCStats(MBeanServerConnection conn, MXBeanTraces traces) {
 		try {
 			String rootSegment = null;
 			CompositeDataSupport  usage = null;			
@@ -1063,7 +1608,7 @@ public class JMXCollector extends BaseCollector {
 				try {
 					gcMXBean = new ObjectName(ManagementFactory.GARBAGE_COLLECTOR_MXBEAN_DOMAIN_TYPE + ",*");
 					if(!shouldBeCollected(gcMXBean)) return;
-					Set<ObjectName> gcs = (Set<ObjectName>)mBeanServerConnection.queryNames(gcMXBean, null);
+					Set<ObjectName> gcs = (Set<ObjectName>)conn.queryNames(gcMXBean, null);
 					if(gcs.size()==0) {
 						if(mbeanQueryAttempted<mbeanQueryAttempts) {
 							gcObjectNames=null;
@@ -1094,11 +1639,16 @@ public class JMXCollector extends BaseCollector {
 			}
 			for(Entry<String, ObjectName> entry: gcObjectNames.entrySet()) {
 				rootSegment = tracer.buildSegment(mXBeanSegment, false, "Garbage Collectors", entry.getKey());
-				collectionCount = (Long)mBeanServerConnection.getAttribute(entry.getValue(), "CollectionCount");
-				collectionTime = (Long)mBeanServerConnection.getAttribute(entry.getValue(), "CollectionTime");
+				collectionCount = (Long)conn.getAttribute(entry.getValue(), "CollectionCount");
+				collectionTime = (Long)conn.getAttribute(entry.getValue(), "CollectionTime");
 				currentTime = System.currentTimeMillis();
-				tracer.recordCounterMetricDelta(rootSegment, "Collection Time", collectionTime);
-				tracer.recordCounterMetricDelta(rootSegment, "Collection Count", collectionCount);
+				DeltaKey[] gcKeys = gcDeltaKeys.get(entry.getKey());
+				if(gcKeys==null) {
+					gcKeys = new DeltaKey[]{tracer.getDeltaKey(rootSegment, "Collection Time"), tracer.getDeltaKey(rootSegment, "Collection Count")};
+					gcDeltaKeys.put(entry.getKey(), gcKeys);
+				}
+				traces.recordCounterMetricDelta(gcKeys[0], collectionTime);
+				traces.recordCounterMetricDelta(gcKeys[1], collectionCount);
 				
 				if(pollGCPercent) {
 					if(gcTimes.containsKey(entry.getKey())) {
@@ -1107,7 +1657,7 @@ public class JMXCollector extends BaseCollector {
 						elapsedGCTime = times[1] - collectionTime;
 						try {
 							percentGCTime = percent(elapsedGCTime, elapsedTime);
-							tracer.recordCounterMetric(rootSegment, "% Time Spent in GC", percentGCTime);
+							traces.recordCounterMetric(rootSegment, "% Time Spent in GC", percentGCTime);
 						} catch (Exception e) {}
 					} 
 					gcTimes.put(entry.getKey(), new long[]{currentTime, collectionTime});					
@@ -1125,8 +1675,10 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Collects memory stats
+	 * @param conn The connection to read through.
+	 * @param traces The values read.
 	 */
-	protected void processMemory() {
+	protected void processMemory(MBeanServerConnection conn, MXBeanTraces traces) {
 		ObjectName memoryMXBean = null;
 		try {
 			String rootSegment = null;
@@ -1137,23 +1689,23 @@ public class JMXCollector extends BaseCollector {
 				mxBeanObjectNames.put(ManagementFactory.MEMORY_MXBEAN_NAME, memoryMXBean);
 			}
 			if(!shouldBeCollected(memoryMXBean)) return;
-			CompositeDataSupport heap = (CompositeDataSupport) mBeanServerConnection.getAttribute(memoryMXBean, "HeapMemoryUsage");
-			CompositeDataSupport nonHeap = (CompositeDataSupport) mBeanServerConnection.getAttribute(memoryMXBean, "NonHeapMemoryUsage");
+			CompositeDataSupport heap = (CompositeDataSupport) conn.getAttribute(memoryMXBean, "HeapMemoryUsage");
+			CompositeDataSupport nonHeap = (CompositeDataSupport) conn.getAttribute(memoryMXBean, "NonHeapMemoryUsage");
 			rootSegment = tracer.buildSegment(mXBeanSegment, false, "Memory", "Heap Memory Usage");
 			for(String key: (Set<String>)heap.getCompositeType().keySet()) {
-				tracer.recordCounterMetric(rootSegment, key, (Long)heap.get(key));
+				traces.recordCounterMetric(rootSegment, key, (Long)heap.get(key));
 			}
-			getPercentUsedOfCommited(heap, rootSegment);
-			getPercentUsedOfCapacity(heap, rootSegment);
+			getPercentUsedOfCommited(traces, heap, rootSegment);
+			getPercentUsedOfCapacity(traces, heap, rootSegment);
 			rootSegment = tracer.buildSegment(mXBeanSegment, false, "Memory", "Non Heap Memory Usage");
 			for(String key: (Set<String>)nonHeap.getCompositeType().keySet()) {
-				tracer.recordCounterMetric(rootSegment, key, (Long)heap.get(key));
+				traces.recordCounterMetric(rootSegment, key, (Long)heap.get(key));
 			}
-			getPercentUsedOfCommited(nonHeap, rootSegment);
-			getPercentUsedOfCapacity(nonHeap, rootSegment);
+			getPercentUsedOfCommited(traces, nonHeap, rootSegment);
+			getPercentUsedOfCapacity(traces, nonHeap, rootSegment);
 			
 			rootSegment = tracer.buildSegment(mXBeanSegment, false, "Memory");
-			tracer.recordCounterMetric(rootSegment, "Objects Pending Finalization", (Integer)mBeanServerConnection.getAttribute(memoryMXBean, "ObjectPendingFinalizationCount"));
+			traces.recordCounterMetric(rootSegment, "Objects Pending Finalization", (Integer)conn.getAttribute(memoryMXBean, "ObjectPendingFinalizationCount"));
 		} catch (InstanceNotFoundException ine) {
 			if(logErrors) { log.warn("MXBean Collector (" + objectName + ") Could Not Locate MBean " + memoryMXBean); }												
 		} catch (Exception e) {
@@ -1165,17 +1717,18 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Calculates the percentage of commited memory in use.
+	 * @param traces The values read.
 	 * @param cd A CompositeDataSupport that can generate a MemoryUsage.
 	 * @param rootSegment The root segment for the tracing. Will not trace if this is zero length.
 	 * @return the percentage of commited memory in use
 	 */
-	protected long getPercentUsedOfCommited(CompositeDataSupport cd, String...rootSegment) {
+	protected long getPercentUsedOfCommited(MXBeanTraces traces, CompositeDataSupport cd, String...rootSegment) {
 		long value = -1;
 		MemoryUsage memoryUsage = MemoryUsage.from(cd);
 		try {
 			value = percent(memoryUsage.getUsed(), memoryUsage.getCommitted());
 			if(rootSegment.length>0) {
-				tracer.recordCounterMetric(rootSegment[0], "Used %", value);
+				traces.recordCounterMetric(rootSegment[0], "Used %", value);
 			}
 		} catch (Exception e) {
 			value = -1;
@@ -1185,17 +1738,18 @@ public class JMXCollector extends BaseCollector {
 	
 	/**
 	 * Calculates the percentage of total capacity memory in use.
+	 * @param traces The values read.
 	 * @param cd A CompositeDataSupport that can generate a MemoryUsage.
 	 * @param rootSegment The root segment for the tracing. Will not trace if this is zero length.
 	 * @return percentage of total capacity memory in use.
 	 */
-	protected long getPercentUsedOfCapacity(CompositeDataSupport cd, String...rootSegment) {
+	protected long getPercentUsedOfCapacity(MXBeanTraces traces, CompositeDataSupport cd, String...rootSegment) {
 		long value = -1;
 		MemoryUsage memoryUsage = MemoryUsage.from(cd);
 		try {
 			value = percent(memoryUsage.getUsed(), memoryUsage.getMax());
 			if(rootSegment.length>0) {
-				tracer.recordCounterMetric(rootSegment[0], "Capacity %", value);
+				traces.recordCounterMetric(rootSegment[0], "Capacity %", value);
 			}
 			
 		} catch (Exception e) {
@@ -1214,6 +1768,123 @@ public class JMXCollector extends BaseCollector {
 		return attributeTraces.size();
 	}
 	
+	/**
+	 * The number of MBeans in the collection plan
+	 * @return The number of MBeans read per collection
+	 */
+	@JMXAttribute(description="The number of MBeans read per collection.", name="PlannedMBeanCount")
+	public int getPlannedMBeanCount() {
+		return planner.getTargetCount();
+	}
+	
+	/**
+	 * The number of collection plan rebuilds
+	 * @return The number of collection plan rebuilds
+	 */
+	@JMXAttribute(description="The number of collection plan rebuilds.", name="PlanRebuilds")
+	public long getPlanRebuilds() {
+		return planner.getRebuilds();
+	}
+	
+	/**
+	 * The number of MBeanServer round trips in the last collection
+	 * @return The number of round trips
+	 */
+	@JMXAttribute(description="The number of MBeanServer round trips in the last collection.", name="LastRoundTrips")
+	public int getLastRoundTrips() {
+		return lastRoundTrips;
+	}
+	
+	/**
+	 * Indicates if ObjectName query results are cached under an MBean registration listener
+	 * @return true if query results are cached
+	 */
+	@JMXAttribute(description="Indicates if ObjectName query results are cached under an MBean registration listener.", name="QueryCaching")
+	public boolean getQueryCaching() {
+		return planner.isListening();
+	}
+	
+	/**
+	 * The period in ms. after which the collection plan is rebuilt from fresh queries
+	 * @return the plan refresh period
+	 */
+	@JMXAttribute(description="The period in ms. after which the collection plan is rebuilt from fresh queries.", name="PlanRefreshPeriod")
+	public long getPlanRefreshPeriod() {
+		return planner.getRefreshPeriod();
+	}
+	
+	/**
+	 * Sets the period in ms. after which the collection plan is rebuilt from fresh queries
+	 * @param planRefreshPeriod the plan refresh period
+	 */
+	public void setPlanRefreshPeriod(long planRefreshPeriod) {
+		planner.setRefreshPeriod(planRefreshPeriod);
+	}
+	
+	/**
+	 * Indicates if planned MBeans and MXBeans are collected in parallel across pooled connections
+	 * @return true if collection is parallel
+	 */
+	@JMXAttribute(description="Indicates if planned MBeans and MXBeans are collected in parallel across pooled connections.", name="ParallelCollection")
+	public boolean getParallelCollection() {
+		return parallelCollection;
+	}
+	
+	/**
+	 * Sets parallel collection across pooled connections
+	 * @param parallelCollection true to collect in parallel
+	 */
+	public void setParallelCollection(boolean parallelCollection) {
+		this.parallelCollection = parallelCollection;
+	}
+	
+	/**
+	 * The number of pooled connections used for parallel collection
+	 * @return the connection pool size
+	 */
+	@JMXAttribute(description="The number of pooled connections used for parallel collection.", name="ConnectionPoolSize")
+	public int getConnectionPoolSize() {
+		return connectionPoolSize;
+	}
+	
+	/**
+	 * Sets the number of pooled connections used for parallel collection. The pool is recreated on the next collection.
+	 * @param connectionPoolSize the connection pool size
+	 */
+	public void setConnectionPoolSize(int connectionPoolSize) {
+		this.connectionPoolSize = connectionPoolSize;
+		if(connectionPool!=null) {
+			connectionPool.close();
+			connectionPool = null;
+		}
+	}
+	
+	/**
+	 * The time in ms. each planned MBean of a parallel collection has to start being read, and then to complete
+	 * @return the collection timeout
+	 */
+	@JMXAttribute(description="The time in ms. each planned MBean of a parallel collection has to start being read, and then to complete.", name="CollectionTimeout")
+	public long getCollectionTimeout() {
+		return collectionTimeout;
+	}
+	
+	/**
+	 * Sets the time in ms. each planned MBean of a parallel collection has to start being read, and then to complete
+	 * @param collectionTimeout the collection timeout
+	 */
+	public void setCollectionTimeout(long collectionTimeout) {
+		this.collectionTimeout = collectionTimeout;
+	}
+	
+	/**
+	 * The number of planned MBeans not read before the deadline in the last collection
+	 * @return the number of timed out MBeans
+	 */
+	@JMXAttribute(description="The number of planned MBeans not read before the deadline in the last collection.", name="LastTimedOutMBeans")
+	public int getLastTimedOutMBeans() {
+		return lastTimedOutMBeans;
+	}
+	
 	/**
 	 * Reports Configured JMX Attributes
 	 * @return A string representing the configured JMX Attributes ot be collected.`
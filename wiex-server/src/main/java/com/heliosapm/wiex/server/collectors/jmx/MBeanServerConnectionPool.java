@@ -0,0 +1,89 @@
+package com.heliosapm.wiex.server.collectors.jmx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: MBeanServerConnectionPool</p>
+ * <p>Description: A bounded pool of {@link MBeanServerConnectionFactory} instances of one factory class and configuration.
+ * Each factory holds its own connection to the target MBeanServer, so a borrower has exclusive use of one connection
+ * until it is released. A factory released after a failure is closed, and reconnects on its next use.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.server.collectors.jmx.MBeanServerConnectionPool</code></p>
+ */
+public class MBeanServerConnectionPool {
+	/** All the pooled factories */
+	protected final List<MBeanServerConnectionFactory> factories;
+	/** The idle factories */
+	protected final BlockingQueue<MBeanServerConnectionFactory> idle;
+
+	/**
+	 * Creates a new MBeanServerConnectionPool. The factories do not connect until first borrowed and used.
+	 * @param factoryClass The MBeanServerConnectionFactory class
+	 * @param properties The factory configuration properties
+	 * @param size The number of pooled factories
+	 * @throws Exception Thrown if a factory cannot be instantiated
+	 */
+	public MBeanServerConnectionPool(Class<?> factoryClass, Properties properties, int size) throws Exception {
+		int poolSize = Math.max(1, size);
+		factories = new ArrayList<MBeanServerConnectionFactory>(poolSize);
+		idle = new ArrayBlockingQueue<MBeanServerConnectionFactory>(poolSize);
+		for(int i = 0; i < poolSize; i++) {
+			MBeanServerConnectionFactory factory = (MBeanServerConnectionFactory)factoryClass.newInstance();
+			factory.setProperties(properties);
+			factories.add(factory);
+			idle.add(factory);
+		}
+	}
+
+	/**
+	 * Borrows a factory, waiting up to the passed timeout for one to become idle
+	 * @param timeout The maximum time to wait in ms.
+	 * @return a factory, or null if none became idle before the timeout
+	 * @throws InterruptedException Thrown if the calling thread is interrupted while waiting
+	 */
+	public MBeanServerConnectionFactory borrow(long timeout) throws InterruptedException {
+		return idle.poll(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns a borrowed factory to the pool
+	 * @param factory The borrowed factory
+	 * @param failed true if the factory's connection failed, in which case it is closed
+	 */
+	public void release(MBeanServerConnectionFactory factory, boolean failed) {
+		if(factory==null) return;
+		if(failed) factory.close();
+		idle.offer(factory);
+	}
+
+	/**
+	 * Closes all the pooled factories
+	 */
+	public void close() {
+		for(MBeanServerConnectionFactory factory: factories) {
+			try { factory.close(); } catch (Exception e) {}
+		}
+	}
+
+	/**
+	 * Returns the number of pooled factories
+	 * @return the pool size
+	 */
+	public int getSize() {
+		return factories.size();
+	}
+
+	/**
+	 * Returns the number of idle factories
+	 * @return the number of idle factories
+	 */
+	public int getIdle() {
+		return idle.size();
+	}
+}
@@ -0,0 +1,167 @@
+package com.heliosapm.wiex.server.collectors.jmx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.heliosapm.wiex.tracing.tracing.ITracer;
+import com.heliosapm.wiex.tracing.tracing.DeltaStore.DeltaKey;
+
+/**
+ * <p>Title: MXBeanTraces</p>
+ * <p>Description: The values read by one MXBean collection pass, held in the order they were read until
+ * {@link #trace(ITracer)} records them. This lets the pass read through a pooled connection on a worker thread
+ * while the tracing stays on the collector thread.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.server.collectors.jmx.MXBeanTraces</code></p>
+ */
+public class MXBeanTraces {
+	/** Trace type for {@link ITracer#recordMetric(String, String, long)} */
+	protected static final int METRIC = 0;
+	/** Trace type for {@link ITracer#recordMetric(String, String, String)} */
+	protected static final int STRING_METRIC = 1;
+	/** Trace type for {@link ITracer#recordTimeStamp(String, String, long)} */
+	protected static final int TIMESTAMP = 2;
+	/** Trace type for {@link ITracer#recordCounterMetric(String, String, long)} */
+	protected static final int COUNTER = 3;
+	/** Trace type for {@link ITracer#recordCounterMetric(String, String, int)} */
+	protected static final int INT_COUNTER = 4;
+	/** Trace type for {@link ITracer#recordCounterMetricDelta(DeltaKey, long)} */
+	protected static final int COUNTER_DELTA = 5;
+
+	/** The pending traces in the order they were read */
+	protected final List<Trace> traces = new ArrayList<Trace>();
+
+	/**
+	 * @param segment
+	 * @param metric
+	 * @param value
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordMetric(java.lang.String, java.lang.String, long)
+	 */
+	public void recordMetric(String segment, String metric, long value) {
+		traces.add(new Trace(METRIC, segment, metric, value, null, null));
+	}
+
+	/**
+	 * @param segment
+	 * @param metric
+	 * @param value
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordMetric(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	public void recordMetric(String segment, String metric, String value) {
+		traces.add(new Trace(STRING_METRIC, segment, metric, 0, value, null));
+	}
+
+	/**
+	 * @param segment
+	 * @param metric
+	 * @param timestamp
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordTimeStamp(java.lang.String, java.lang.String, long)
+	 */
+	public void recordTimeStamp(String segment, String metric, long timestamp) {
+		traces.add(new Trace(TIMESTAMP, segment, metric, timestamp, null, null));
+	}
+
+	/**
+	 * @param segment
+	 * @param metric
+	 * @param value
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordCounterMetric(java.lang.String, java.lang.String, long)
+	 */
+	public void recordCounterMetric(String segment, String metric, long value) {
+		traces.add(new Trace(COUNTER, segment, metric, value, null, null));
+	}
+
+	/**
+	 * @param segment
+	 * @param metric
+	 * @param value
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordCounterMetric(java.lang.String, java.lang.String, int)
+	 */
+	public void recordCounterMetric(String segment, String metric, int value) {
+		traces.add(new Trace(INT_COUNTER, segment, metric, value, null, null));
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @see com.heliosapm.wiex.tracing.tracing.ITracer#recordCounterMetricDelta(com.heliosapm.wiex.tracing.tracing.DeltaStore.DeltaKey, long)
+	 */
+	public void recordCounterMetricDelta(DeltaKey key, long value) {
+		traces.add(new Trace(COUNTER_DELTA, null, null, value, null, key));
+	}
+
+	/**
+	 * Records the pending traces through the passed tracer.
+	 * @param tracer The tracer to record through
+	 */
+	public void trace(ITracer tracer) {
+		for(Trace trace: traces) {
+			switch(trace.type) {
+				case METRIC:
+					tracer.recordMetric(trace.segment, trace.metric, trace.value);
+					break;
+				case STRING_METRIC:
+					tracer.recordMetric(trace.segment, trace.metric, trace.text);
+					break;
+				case TIMESTAMP:
+					tracer.recordTimeStamp(trace.segment, trace.metric, trace.value);
+					break;
+				case COUNTER:
+					tracer.recordCounterMetric(trace.segment, trace.metric, trace.value);
+					break;
+				case INT_COUNTER:
+					tracer.recordCounterMetric(trace.segment, trace.metric, (int)trace.value);
+					break;
+				case COUNTER_DELTA:
+					tracer.recordCounterMetricDelta(trace.key, trace.value);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pending traces
+	 * @return the number of pending traces
+	 */
+	public int size() {
+		return traces.size();
+	}
+
+	/**
+	 * <p>Title: Trace</p>
+	 * <p>Description: One pending trace.</p>
+	 */
+	protected static class Trace {
+		/** The trace type */
+		protected final int type;
+		/** The segment */
+		protected final String segment;
+		/** The metric name */
+		protected final String metric;
+		/** The numeric value */
+		protected final long value;
+		/** The string value */
+		protected final String text;
+		/** The delta key handle */
+		protected final DeltaKey key;
+
+		/**
+		 * Creates a new Trace
+		 * @param type The trace type
+		 * @param segment The segment
+		 * @param metric The metric name
+		 * @param value The numeric value
+		 * @param text The string value
+		 * @param key The delta key handle
+		 */
+		protected Trace(int type, String segment, String metric, long value, String text, DeltaKey key) {
+			this.type = type;
+			this.segment = segment;
+			this.metric = metric;
+			this.value = value;
+			this.text = text;
+			this.key = key;
+		}
+	}
+}
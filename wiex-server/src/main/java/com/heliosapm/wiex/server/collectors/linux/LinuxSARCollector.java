@@ -2,13 +2,32 @@
 package com.heliosapm.wiex.server.collectors.linux;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +35,8 @@ import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.server.collectors.BaseCollector;
+import com.heliosapm.wiex.server.collectors.util.ColumnTokenizer;
+import com.heliosapm.wiex.tracing.tracing.DeltaStore.DeltaKey;
 import com.heliosapm.wiex.tracing.tracing.TracerFactory;
 
 /**
@@ -62,8 +83,44 @@ public class LinuxSARCollector extends BaseCollector {
 	protected Map<String, String> processLocators = new HashMap<String, String>();
 	/** Directory Sizers <code><Description, Directory Name></code> */
 	protected Map<String, String> dirSizers = new HashMap<String, String>();
+	/** The growth delta key handles of the sized directories, keyed by the directory description */
+	protected final Map<String, DeltaKey> growthKeys = new ConcurrentHashMap<String, DeltaKey>();
 	/** Port Testers <code><Description, Address Port></code> */
 	protected Map<String, String> portTesters = new HashMap<String, String>();
+	/** Indicates if stats for the local host are read from /proc rather than from forked commands */
+	protected boolean procEngine = true;
+	/** The /proc reader */
+	protected final ProcFSReader procReader = new ProcFSReader();
+	/** The tokenizer for command output, used on the collecting thread */
+	protected final ColumnTokenizer tokenizer = new ColumnTokenizer();
+	/** Indicates if the sar commands are launched concurrently rather than one after the other */
+	protected boolean concurrentCommands = false;
+	/** The maximum time in ms. to wait for a concurrently launched command */
+	protected long commandTimeout = 10000L;
+	/** The number of commands that timed out in the last concurrent collection */
+	protected int lastTimedOutCommands = 0;
+	/** The shared executor that runs concurrently launched commands */
+	protected static ExecutorService commandExecutor = null;
+	/** The charset command output is decoded with */
+	protected static final Charset COMMAND_CHARSET = Charset.forName("ISO-8859-1");
+	/** Command id for <code>sar -P ALL 1</code> */
+	protected static final int CMD_CPU = 0;
+	/** Command id for <code>sar -q 1</code> */
+	protected static final int CMD_CPU_QUEUE = 1;
+	/** Command id for <code>sar -w 1</code> */
+	protected static final int CMD_CONTEXT_SWITCHES = 2;
+	/** Command id for <code>sar -n DEV 1</code> */
+	protected static final int CMD_NET_DEV = 3;
+	/** Command id for <code>sar -n EDEV 1</code> */
+	protected static final int CMD_NET_EDEV = 4;
+	/** Command id for <code>sar -n SOCK 1</code> */
+	protected static final int CMD_NET_SOCK = 5;
+	/** Command id for <code>sar -r 1</code> */
+	protected static final int CMD_MEMORY = 6;
+	/** Command id for <code>sar -x pid 1</code> */
+	protected static final int CMD_JVM_CPU = 7;
+	/** Command id for <code>df -kT</code> */
+	protected static final int CMD_FILE_SYSTEM = 8;
 	/** Pattern Matcher to diferentiate between address and host names */
 	protected static Pattern ipAddressPattern = Pattern.compile("(([0-2]?[0-5]?[0-5]\\.[0-2]?[0-5]?[0-5]\\.[0-2]?[0-5]?[0-5]\\.[0-2]?[0-5]?[0-5])|((([a-zA-Z0-9\\-]))))");
 	
@@ -90,7 +147,7 @@ public class LinuxSARCollector extends BaseCollector {
 
 	
 	/**
-	 * Collects Linux host performance data from sar.
+	 * Collects Linux host performance data from sar, or from /proc if the proc engine is enabled and the host is local.
 	 * Acquires JVM's PID.
 	 * Collects JVM performance data from sar.
 	 * Collects MXBean stats.
@@ -100,6 +157,14 @@ public class LinuxSARCollector extends BaseCollector {
 	public void collect() {
 		try {			
 			long start = System.currentTimeMillis();
+			if(isProcEngineActive()) {
+				collectProcStats();
+				collectTime = System.currentTimeMillis()-start;
+				if(traceCollectionTime) {
+					tracer.recordMetric(tracer.buildSegment(segmentPrefix, false, MODULE), "Collect Time", collectTime);
+				}
+				return;
+			}
 			if(pid==-1) {
 				try {
 					pid = Integer.parseInt(readPid().trim());
@@ -109,19 +174,24 @@ public class LinuxSARCollector extends BaseCollector {
 				}
 				
 			}
-			processCPUStats(issueOSCommand("sar -P ALL 1"));
-			processCPUQueueStats(issueOSCommand("sar -q 1"));
-			processContextSwitches(issueOSCommand("sar -w 1"));
-			processNetworkDeviceStats(issueOSCommand("sar -n DEV 1"));
-			processNetworkDeviceErrorStats(issueOSCommand("sar -n EDEV 1"));
-			processNetworkSocketStats(issueOSCommand("sar -n SOCK 1"));
-			processMemoryStats(issueOSCommand("sar -r 1"));
-			if(pid!=-1) {
-				processJVMCPUStats(issueOSCommand("sar -x " + pid + " 1"));
+			if(concurrentCommands && isConcurrentCapable()) {
+				issueCommandsConcurrently();
+				readJVMProcStatus();
+			} else {
+				processCPUStats(issueOSCommand("sar -P ALL 1"));
+				processCPUQueueStats(issueOSCommand("sar -q 1"));
+				processContextSwitches(issueOSCommand("sar -w 1"));
+				processNetworkDeviceStats(issueOSCommand("sar -n DEV 1"));
+				processNetworkDeviceErrorStats(issueOSCommand("sar -n EDEV 1"));
+				processNetworkSocketStats(issueOSCommand("sar -n SOCK 1"));
+				processMemoryStats(issueOSCommand("sar -r 1"));
+				if(pid!=-1) {
+					processJVMCPUStats(issueOSCommand("sar -x " + pid + " 1"));
+				}
+				readJVMProcStatus();
+	
+				processFileSystemStats(issueOSCommand("df -kT"));
 			}
-			readJVMProcStatus();
-
-			processFileSystemStats(issueOSCommand("df -kT"));
 			try {
 				processDirSizerList();
 			} catch (Exception e) {}
@@ -145,6 +215,485 @@ public class LinuxSARCollector extends BaseCollector {
 		
 	}
 	
+	/**
+	 * Determines if this collector monitors the host it runs on. Collectors that monitor a remote host return false
+	 * and always collect through OS commands.
+	 * @return true if the collector monitors the local host
+	 */
+	protected boolean isLocalHost() {
+		return true;
+	}
+	
+	/**
+	 * Determines if the next collection will read from /proc.
+	 * @return true if the proc engine is enabled, the host is local and /proc is readable
+	 */
+	protected boolean isProcEngineActive() {
+		return procEngine && isLocalHost() && ProcFSReader.isAvailable();
+	}
+	
+	/**
+	 * Collects the same stats as the sar based collection from /proc without forking any processes.
+	 * Each group of stats is read independently so one unreadable file does not suppress the others.
+	 * @throws IOException Thrown if the sample clock cannot be read
+	 */
+	protected void collectProcStats() throws IOException {
+		procReader.sample();
+		if(pid==-1) {
+			pid = procReader.readSelfPid();
+			if(pid!=-1) TracerFactory.getInstance().recordMetric(segmentPrefix, "JVM PID", "" + pid);
+		}
+		try {
+			traceProcCPUStats(procReader.readCPUStats());
+			contextSwitches = procReader.getContextSwitchRate();
+			tracer.recordCounterMetric(tracer.buildSegment(segmentPrefix,"CPU Summary"), "Context Switches", (int)contextSwitches);
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to read /proc/stat", e);
+		}
+		try {
+			int[] load = procReader.readLoad();
+			String cpuSummary = tracer.buildSegment(segmentPrefix, "CPU Summary");
+			queueSize = load[0];
+			tracer.recordCounterMetric(cpuSummary, "CPU Queue Size", (int)queueSize);
+			processListSize = load[1];
+			tracer.recordCounterMetric(cpuSummary, "Process List Size", (int)processListSize);
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to read /proc/loadavg", e);
+		}
+		try {
+			traceProcNetworkDeviceStats(procReader.readNetworkDeviceStats());
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to read /proc/net/dev", e);
+		}
+		try {
+			int[] sockets = procReader.readSocketStats();
+			String netSegment = tracer.buildSegment(segmentPrefix, "Network Devices");
+			tracer.recordCounterMetric(netSegment, "Total Used Sockets", sockets[0]);
+			tracer.recordCounterMetric(netSegment, "TCP Sockets In Use", sockets[1]);
+			tracer.recordCounterMetric(netSegment, "UDP Sockets In Use", sockets[2]);
+			tracer.recordCounterMetric(netSegment, "Raw Sockets In Use", sockets[3]);
+			tracer.recordCounterMetric(netSegment, "IP Fragments In Use", sockets[4]);
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to read /proc/net/sockstat", e);
+		}
+		try {
+			traceProcMemoryStats(procReader.readMemoryStats());
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to read /proc/meminfo", e);
+		}
+		if(pid!=-1) {
+			try {
+				float[] jvmCPU = procReader.readProcessCPU(pid);
+				String jvmPrefix = tracer.buildSegment(segmentPrefix, false, "JVM");
+				jvmUser = jvmCPU[0];
+				tracer.recordCounterMetric(jvmPrefix, "User CPU", (int)jvmUser);
+				jvmSystem = jvmCPU[1];
+				tracer.recordCounterMetric(jvmPrefix, "System CPU", (int)jvmSystem);
+				jvmSwaps = jvmCPU[2];
+				tracer.recordCounterMetric(jvmPrefix, "Swaps", (int)jvmSwaps);
+			} catch (Exception e) {
+				if(logErrors) log.error("Failed to read /proc/" + pid + "/stat", e);
+			}
+		}
+		readJVMProcStatus();
+		try {
+			traceProcFileSystemStats(procReader.readMounts());
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to read /proc/mounts", e);
+		}
+		for(Entry<String, String> entry: dirSizers.entrySet()) {
+			String category = tracer.buildSegment(segmentPrefix, false, "Directories", entry.getKey());
+			long totalSize = sizeDirectory(new File(entry.getValue()));
+			tracer.recordCounterMetric(category, "Size", totalSize);
+			tracer.recordCounterMetricDelta(getGrowthKey(entry.getKey(), category), totalSize);
+		}
+		for(Entry<String, String> entry: portTesters.entrySet()) {
+			String category = tracer.buildSegment(segmentPrefix, false, "PortChecks", entry.getKey());
+			tracer.recordCounterMetric(category, "Open", testPort(entry.getValue()) ? 1 : 0);
+		}
+		if(!processLocators.isEmpty()) {
+			Map<Long, Integer> tcpStates = procReader.readTCPStates();
+			for(Entry<String, String> entry: processLocators.entrySet()) {
+				traceProcResourcesForPids(procReader.findPids(entry.getValue()), entry.getKey(), tcpStates);
+			}
+		}
+		try {
+			openFiles = procReader.readOpenFiles();
+			tracer.recordCounterMetric(tracer.buildSegment(segmentPrefix, "File System"), "Total Open Files", openFiles);
+		} catch (Exception e) {
+			if(logErrors) log.error("Failed to read /proc/sys/fs/file-nr", e);
+		}
+	}
+	
+	/**
+	 * Traces the CPU stats read from /proc/stat under the same names as {@link #processCPULine(String, float, float, float, float, float)}.
+	 * @param stats The <code>{user, nice, system, iowait, idle}</code> percentages keyed by cpu
+	 */
+	protected void traceProcCPUStats(Map<String, float[]> stats) {
+		for(Entry<String, float[]> entry: stats.entrySet()) {
+			float[] cpu = entry.getValue();
+			processCPULine(entry.getKey(), cpu[0], cpu[1], cpu[2], cpu[3], cpu[4]);
+		}
+	}
+	
+	/**
+	 * Traces the network device rates read from /proc/net/dev under the same names as 
+	 * {@link #processNetworkDeviceStats(String)} and {@link #processNetworkDeviceErrorStats(String)}.
+	 * @param stats The rates keyed by interface
+	 */
+	protected void traceProcNetworkDeviceStats(Map<String, float[]> stats) {
+		for(Entry<String, float[]> entry: stats.entrySet()) {
+			float[] val = entry.getValue();
+			String netInterface = tracer.buildSegment(segmentPrefix, "Network Devices", entry.getKey());
+			tracer.recordCounterMetric(netInterface, "Packets Received/s", (int)val[0]);
+			tracer.recordCounterMetric(netInterface, "Packets Transmitted/s", (int)val[1]);
+			tracer.recordCounterMetric(netInterface, "Bytes Received/s", (int)val[2]);
+			tracer.recordCounterMetric(netInterface, "Bytes Transmitted/s", (int)val[3]);
+			tracer.recordCounterMetric(netInterface, "Compressed Packets Received/s", (int)val[4]);
+			tracer.recordCounterMetric(netInterface, "Compressed Packets Transmitted/s", (int)val[5]);
+			tracer.recordCounterMetric(netInterface, "Multicast Packets Received/s", (int)val[6]);
+			tracer.recordCounterMetric(netInterface, "Bad Packets Received/s", (int)val[7]);
+			tracer.recordCounterMetric(netInterface, "Transmission Errors/s", (int)val[8]);
+			tracer.recordCounterMetric(netInterface, "Transmission Collisions/s", (int)val[9]);
+			tracer.recordCounterMetric(netInterface, "Received Dropped Packets/s", (int)val[10]);
+			tracer.recordCounterMetric(netInterface, "Transmitted Dropped Packets/s", (int)val[11]);
+			tracer.recordCounterMetric(netInterface, "Carrier Errors/s", (int)val[12]);
+			tracer.recordCounterMetric(netInterface, "Frame Alignment Error/s", (int)val[13]);
+			tracer.recordCounterMetric(netInterface, "Receive FIFO Overrun Error/s", (int)val[14]);
+			tracer.recordCounterMetric(netInterface, "Transmit FIFO Overrun Error/s", (int)val[15]);
+		}
+	}
+	
+	/**
+	 * Traces the memory stats read from /proc/meminfo under the same names as {@link #processMemoryStats(String)}.
+	 * @param val The memory stats in <code>sar -r</code> order
+	 */
+	protected void traceProcMemoryStats(long[] val) {
+		String memory = tracer.buildSegment(segmentPrefix, "Memory");
+		tracer.recordCounterMetric(memory, "Free Memory/kb", (int)val[0]);
+		tracer.recordCounterMetric(memory, "Used Memory/kb", (int)val[1]);
+		tracer.recordCounterMetric(memory, "Memory In Use/%", (int)val[2]);
+		tracer.recordCounterMetric(memory, "Kernel Buffers/kb", (int)val[3]);
+		tracer.recordCounterMetric(memory, "Kernel Cache/kb", (int)val[4]);
+		tracer.recordCounterMetric(memory, "Free Swap Space/kb", (int)val[5]);
+		tracer.recordCounterMetric(memory, "Used Swap Space/kb", (int)val[6]);
+		tracer.recordCounterMetric(memory, "Used Swap Space/%", (int)val[7]);
+		tracer.recordCounterMetric(memory, "Cached Swap Memory/kb", (int)val[8]);
+	}
+	
+	/**
+	 * Traces the usage of the mounted file systems under the same names as {@link #processFileSystemStats(String)}.
+	 * File systems with no blocks, such as /proc itself, are skipped as <code>df</code> does.
+	 * @param mounts The mounted file systems from /proc/mounts
+	 */
+	protected void traceProcFileSystemStats(List<String[]> mounts) {
+		for(String[] mount: mounts) {
+			File mountPoint = new File(mount[2]);
+			long total = mountPoint.getTotalSpace()/1024;
+			if(total==0) continue;
+			long used = total - mountPoint.getFreeSpace()/1024;
+			long available = mountPoint.getUsableSpace()/1024;
+			String fileSystem = tracer.buildSegment(segmentPrefix, "File System", mount[0]);
+			tracer.recordMetric(fileSystem, "File System Type", mount[1]);
+			tracer.recordMetric(fileSystem, "Mounted On", mount[2]);
+			tracer.recordCounterMetric(fileSystem, "1K-Blocks", (int)total);
+			tracer.recordCounterMetric(fileSystem, "Used", (int)used);
+			tracer.recordCounterMetric(fileSystem, "Available", (int)available);
+			tracer.recordCounterMetric(fileSystem, "Percentage Used", (int)Math.ceil(used * 100D / Math.max(1, used + available)));
+		}
+	}
+	
+	/**
+	 * Aggregates and traces the /proc stats of a list of pids under the same names as {@link #traceResourcesForPids(List, String)}.
+	 * If the JVM cannot read file descriptor links, the open file states are counted with <code>lsof</code>.
+	 * @param pids The process ids
+	 * @param description The description of the pid list
+	 * @param tcpStates The host's tcp socket states keyed by inode
+	 */
+	protected void traceProcResourcesForPids(List<Integer> pids, String description, Map<Long, Integer> tcpStates) {
+		float cpuUtil = 0F;
+		float memUtil = 0F;
+		long memSharedUtil = 0;
+		long memPrivateUtil = 0;
+		long memMappedUtil = 0;
+		int[] fileCounts = new int[5];
+		int located = 0;
+		for(Integer locatedpid: pids) {
+			try {
+				float[] cpu = procReader.readProcessCPU(locatedpid);
+				long[] mem = procReader.readProcessMemory(locatedpid);
+				int[] files = procReader.readOpenFileStates(locatedpid, tcpStates);
+				if(files[1]==-1) {
+					files[1] = getOpenFiles("" + locatedpid, " | grep LISTEN ");
+					files[2] = getOpenFiles("" + locatedpid, " | grep CLOSE_WAIT ");
+					files[3] = getOpenFiles("" + locatedpid, " | grep ESTABLISHED ");
+					files[4] = getOpenFiles("" + locatedpid, " | grep FIFO ");
+				}
+				cpuUtil = cpuUtil + cpu[0] + cpu[1];
+				memUtil = memUtil + procReader.memoryPercent(mem[3]);
+				memSharedUtil = memSharedUtil + mem[0];
+				memPrivateUtil = memPrivateUtil + mem[1];
+				memMappedUtil = memMappedUtil + mem[2];
+				for(int i = 0; i < fileCounts.length; i++) {
+					fileCounts[i] = fileCounts[i] + files[i];
+				}
+				located++;
+			} catch (Exception e) {
+				// the process exited while it was being read
+			}
+		}
+		if(located > 0) {
+			String category = tracer.buildSegment(segmentPrefix, false, "Processes", description);
+			String openFilesSegment = tracer.buildSegment(category, false, "Open Files");
+			tracer.recordCounterMetric(category, "Percent CPU Utilization", (int)cpuUtil);
+			tracer.recordCounterMetric(category, "Percent Memory Utilization", (int)memUtil);		
+			tracer.recordCounterMetric(category, "Shared Memory Utilization (K)", (int)memSharedUtil);
+			tracer.recordCounterMetric(category, "Private Memory Utilization (K)", (int)memPrivateUtil);
+			tracer.recordCounterMetric(category, "Mapped Memory Utilization (K)", (int)memMappedUtil);
+			tracer.recordCounterMetric(openFilesSegment, "Total", fileCounts[0]);
+			tracer.recordCounterMetric(openFilesSegment, "Listen", fileCounts[1]);
+			tracer.recordCounterMetric(openFilesSegment, "ClosedWaiting", fileCounts[2]);
+			tracer.recordCounterMetric(openFilesSegment, "Established", fileCounts[3]);
+			tracer.recordCounterMetric(openFilesSegment, "FIFO", fileCounts[4]);
+			tracer.recordCounterMetric(category, "Process Count", located);
+		}
+	}
+	
+	/**
+	 * Computes the total size in bytes of a directory tree, the equivalent of <code>du -b</code>. Symbolic links are not followed.
+	 * @param directory The directory
+	 * @return the total size in bytes
+	 */
+	protected long sizeDirectory(File directory) {
+		long size = directory.length();
+		File[] children = directory.listFiles();
+		if(children==null) return size;
+		for(File child: children) {
+			if(child.isDirectory()) {
+				try {
+					if(!child.getCanonicalFile().equals(new File(directory.getCanonicalFile(), child.getName()))) continue;
+				} catch (IOException e) {
+					continue;
+				}
+				size = size + sizeDirectory(child);
+			} else {
+				size = size + child.length();
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Tests if a socket can be connected to, the equivalent of the <code>netcat</code> test in {@link #tracePortTester(String, String)}.
+	 * @param addressPort The host name or IP address and the port, separated by whitespace
+	 * @return true if the socket could be connected to
+	 */
+	protected boolean testPort(String addressPort) {
+		Socket socket = new Socket();
+		try {
+			String[] sp = addressPort.trim().split("\\s+");
+			socket.connect(new InetSocketAddress(sp[0], Integer.parseInt(sp[1])), 2000);
+			return true;
+		} catch (Exception e) {
+			return false;
+		} finally {
+			try { socket.close(); } catch (Exception e) {}
+		}
+	}
+	
+	/**
+	 * Determines if commands can be issued from several threads at once.
+	 * @return true for the local host
+	 */
+	protected boolean isConcurrentCapable() {
+		return isLocalHost();
+	}
+	
+	/**
+	 * Runs a concurrently launched command as a local process and returns its output.
+	 * @param task The command task, which holds the process so it can be destroyed if the command times out
+	 * @return the command output
+	 * @throws Exception Thrown if the command cannot be run or its output cannot be read
+	 */
+	protected String executeCommand(CommandTask task) throws Exception {
+		task.process = Runtime.getRuntime().exec(task.command);
+		try {
+			return readOutput(task.process.getInputStream());
+		} finally {
+			task.destroy();
+		}
+	}
+	
+	/**
+	 * Launches the sar samplers and <code>df</code> at the same time, so the cycle takes about one sample period.
+	 * The output of each command is parsed on the collecting thread as soon as the command completes.
+	 * Commands that have not completed within the command timeout are destroyed and their stats are skipped.
+	 */
+	protected void issueCommandsConcurrently() {
+		long deadline = System.currentTimeMillis() + commandTimeout;
+		List<CommandTask> tasks = new ArrayList<CommandTask>();
+		tasks.add(new CommandTask(CMD_CPU, "sar -P ALL 1"));
+		tasks.add(new CommandTask(CMD_CPU_QUEUE, "sar -q 1"));
+		tasks.add(new CommandTask(CMD_CONTEXT_SWITCHES, "sar -w 1"));
+		tasks.add(new CommandTask(CMD_NET_DEV, "sar -n DEV 1"));
+		tasks.add(new CommandTask(CMD_NET_EDEV, "sar -n EDEV 1"));
+		tasks.add(new CommandTask(CMD_NET_SOCK, "sar -n SOCK 1"));
+		tasks.add(new CommandTask(CMD_MEMORY, "sar -r 1"));
+		if(pid!=-1) {
+			tasks.add(new CommandTask(CMD_JVM_CPU, "sar -x " + pid + " 1"));
+		}
+		tasks.add(new CommandTask(CMD_FILE_SYSTEM, "df -kT"));
+		CompletionService<CommandTask> completion = new ExecutorCompletionService<CommandTask>(getCommandExecutor());
+		List<Future<CommandTask>> futures = new ArrayList<Future<CommandTask>>(tasks.size());
+		for(CommandTask task: tasks) {
+			futures.add(completion.submit(task));
+		}
+		int pending = futures.size();
+		try {
+			while(pending > 0) {
+				long remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0) break;
+				Future<CommandTask> done = completion.poll(remaining, TimeUnit.MILLISECONDS);
+				if(done==null) break;
+				pending--;
+				try {
+					CommandTask task = done.get();
+					task.parsed = true;
+					processCommandOutput(task.id, task.output);
+				} catch (ExecutionException e) {
+					if(logErrors) log.error("Concurrent command failed", e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		lastTimedOutCommands = 0;
+		for(int i = 0; i < tasks.size(); i++) {
+			CommandTask task = tasks.get(i);
+			if(task.parsed) continue;
+			Future<CommandTask> future = futures.get(i);
+			if(future.isDone()) {
+				// completed at the deadline, or failed and already logged
+				if(task.output!=null) processCommandOutput(task.id, task.output);
+			} else {
+				future.cancel(true);
+				task.destroy();
+				lastTimedOutCommands++;
+				if(logErrors) log.warn("Command [" + task.command + "] did not complete within " + commandTimeout + " ms.");
+			}
+		}
+	}
+	
+	/**
+	 * Parses the output of a concurrently launched command
+	 * @param id The command id
+	 * @param output The command output
+	 */
+	protected void processCommandOutput(int id, String output) {
+		switch(id) {
+			case CMD_CPU: processCPUStats(output); break;
+			case CMD_CPU_QUEUE: processCPUQueueStats(output); break;
+			case CMD_CONTEXT_SWITCHES: processContextSwitches(output); break;
+			case CMD_NET_DEV: processNetworkDeviceStats(output); break;
+			case CMD_NET_EDEV: processNetworkDeviceErrorStats(output); break;
+			case CMD_NET_SOCK: processNetworkSocketStats(output); break;
+			case CMD_MEMORY: processMemoryStats(output); break;
+			case CMD_JVM_CPU: processJVMCPUStats(output); break;
+			case CMD_FILE_SYSTEM: processFileSystemStats(output); break;
+		}
+	}
+	
+	/**
+	 * <p>Title: CommandTask</p>
+	 * <p>Description: Runs one OS command through {@link LinuxSARCollector#executeCommand(CommandTask)}</p>
+	 */
+	protected class CommandTask implements Callable<CommandTask> {
+		/** The command id */
+		protected final int id;
+		/** The command */
+		protected final String command;
+		/** The running process */
+		protected volatile Process process = null;
+		/** The command output, null until the command completes */
+		protected volatile String output = null;
+		/** Indicates if the output has been parsed */
+		protected boolean parsed = false;
+		
+		/**
+		 * Creates a new CommandTask
+		 * @param id The command id
+		 * @param command The command
+		 */
+		protected CommandTask(int id, String command) {
+			this.id = id;
+			this.command = command;
+		}
+		
+		/**
+		 * Runs the command and reads its output
+		 * @return this task
+		 * @throws Exception Thrown if the command cannot be run or its output cannot be read
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public CommandTask call() throws Exception {
+			output = executeCommand(this);
+			return this;
+		}
+		
+		/**
+		 * Destroys the command's process, if it runs locally
+		 */
+		protected void destroy() {
+			Process p = process;
+			if(p!=null) {
+				try { p.destroy(); } catch (Exception e) {}
+			}
+		}
+	}
+	
+	/**
+	 * Reads a command's output stream to the end in bulk through a channel and closes it
+	 * @param is The command output stream
+	 * @return the output
+	 * @throws IOException Thrown if the stream cannot be read
+	 */
+	protected static String readOutput(InputStream is) throws IOException {
+		ReadableByteChannel channel = Channels.newChannel(is);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			while(channel.read(buffer) != -1) {
+				if(!buffer.hasRemaining()) {
+					ByteBuffer tmp = ByteBuffer.allocate(buffer.capacity()*2);
+					buffer.flip();
+					tmp.put(buffer);
+					buffer = tmp;
+				}
+			}
+			buffer.flip();
+			return COMMAND_CHARSET.decode(buffer).toString();
+		} finally {
+			try { channel.close(); } catch (Exception e) {}
+		}
+	}
+	
+	/**
+	 * Returns the shared executor that runs concurrently launched commands, creating it on the first call
+	 * @return the command executor
+	 */
+	protected static synchronized ExecutorService getCommandExecutor() {
+		if(commandExecutor==null) {
+			final AtomicInteger serial = new AtomicInteger(0);
+			commandExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "LinuxSARCollectorWorker#" + serial.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return commandExecutor;
+	}
+	
 	/**
 	 * Iterates through the pidLocator list and executes tracing for each one. 
 	 */
@@ -195,7 +744,22 @@ public class LinuxSARCollector extends BaseCollector {
 		}
 		String category = tracer.buildSegment(segmentPrefix, false, "Directories", description);
 		tracer.recordCounterMetric(category, "Size", totalSize);
-		tracer.recordCounterMetricDelta(category, "Growth", totalSize);		
+		tracer.recordCounterMetricDelta(getGrowthKey(description, category), totalSize);		
+	}
+	
+	/**
+	 * Returns the growth delta key handle of the passed directory, resolving it on first use or when the directory's segment changes.
+	 * @param description The description of the directory
+	 * @param category The directory's segment
+	 * @return the growth delta key handle
+	 */
+	protected DeltaKey getGrowthKey(String description, String category) {
+		DeltaKey key = growthKeys.get(description);
+		if(key==null || !key.getSegment().equals(category)) {
+			key = tracer.getDeltaKey(category, "Growth");
+			growthKeys.put(description, key);
+		}
+		return key;
 	}
 	
 	/**
@@ -351,22 +915,11 @@ public class LinuxSARCollector extends BaseCollector {
 	 * @return The standard output of the executed command.
 	 */
 	protected String issueOSCommand(String command) {
-		StringBuilder buff = new StringBuilder();
-		InputStream reader = null;
 		try {
 			Process p = Runtime.getRuntime().exec(command);
-			reader = new BufferedInputStream(p.getInputStream());			
-			for (;;) {
-				int c = reader.read();
-				if (c == -1)
-					break;
-				buff.append((char) c);
-			}
-			return buff.toString();
+			return readOutput(p.getInputStream());
 		} catch (Exception e) {
 			return null;
-		} finally {
-			try { reader.close(); } catch (Exception e) {}
 		}
 	}
 	
@@ -380,71 +933,55 @@ public class LinuxSARCollector extends BaseCollector {
 	 * <li>user
 	 * <li>idle</ul> 
 	 * First line is the summarized CPU stats, with each subsequent line representing one individual CPU.
+	 * The columns are located by the header names, so versions of sar that add columns such as <b>%steal</b> are read correctly.
 	 * @param output The output of the OS command.
 	 */
-    protected void processCPUStats(String output)
-    {
-        if(output == null)
-            return;
-        String lines[] = output.split("\n");
-        String arr$[] = lines;
-        int len$ = arr$.length;
-        for(int i$ = 0; i$ < len$; i$++)
-        {
-            String s = arr$[i$];
-            if(s.contains("Average") && !s.contains("CPU"))
-            {
-                String tmp = (new StringBuilder()).append(s.replaceAll("\\s+", "~")).append("\n").toString();
-                processCPULine(tmp);
-            }
-        }
-    }
+	protected void processCPUStats(String output) {
+		if(output==null) return;
+		ColumnTokenizer t = tokenizer.reset(output);
+		while(t.nextLine()) {
+			if(!t.lineContains("Average")) continue;
+			if(t.lineContains("CPU")) {
+				t.mapHeader();
+				continue;
+			}
+			try {
+				processCPULine(t.column(1), t.floatColumn("%user", 2), t.floatColumn("%nice", 3), 
+						t.floatColumn("%system", 4), t.floatColumn("%iowait", 5), t.floatColumn("%idle", 6));
+			} catch (Exception e) {
+				if(logErrors) log.error("Failed to parse CPU stats [" + t.line() + "]", e);
+			}
+		}
+	}
 
 	
 	/**
-	 * Parse helper for CPU stats.
-	 * @param s A line of text from <code>sar -P ALL 1</code>
-	 */
-    protected void processCPULine(String s)
-    {
-        String cols[] = s.split("~");
-        
-        String segment = tracer.buildSegment(segmentPrefix, "CPU Summary", cols[1]);
-        float _user = 0.0F;
-        float _nice = 0.0F;
-        float _system = 0.0F;
-        float _iowait = 0.0F;
-        float _idle = 0.0F;
-        float _utilized = 0.0F;
-        try
-        {
-            _user = Float.parseFloat(cols[2]);
-            tracer.recordCounterMetric(segment, "User", (int)_user);
-            _nice = Float.parseFloat(cols[3]);
-            tracer.recordCounterMetric(segment, "Nice", (int)_nice);
-            _system = Float.parseFloat(cols[4]);
-            tracer.recordCounterMetric(segment, "System", (int)_system);
-            _iowait = Float.parseFloat(cols[5]);
-            tracer.recordCounterMetric(segment, "IOWait", (int)_iowait);
-            _idle = Float.parseFloat(cols[6]);
-            tracer.recordCounterMetric(segment, "Idle", (int)_idle);
-            _utilized = 100F - _idle;
-            tracer.recordCounterMetric(segment, "Utilization", (int)_utilized);
-            if(cols[1].equalsIgnoreCase("all"))
-            {
-                user = _user;
-                nice = _nice;
-                system = _system;
-                iowait = _iowait;
-                idle = _idle;
-                utilized = _utilized;
-            }
-        }
-        catch(Exception e)
-        {
-            e.printStackTrace();
-        }
-    }
+	 * Traces the stats of one CPU.
+	 * @param cpu The cpu name, <b>all</b> for the summary of all CPUs
+	 * @param _user The user CPU percentage
+	 * @param _nice The nice CPU percentage
+	 * @param _system The system CPU percentage
+	 * @param _iowait The IO wait CPU percentage
+	 * @param _idle The idle CPU percentage
+	 */
+	protected void processCPULine(String cpu, float _user, float _nice, float _system, float _iowait, float _idle) {
+		String segment = tracer.buildSegment(segmentPrefix, "CPU Summary", cpu);
+		tracer.recordCounterMetric(segment, "User", (int)_user);
+		tracer.recordCounterMetric(segment, "Nice", (int)_nice);
+		tracer.recordCounterMetric(segment, "System", (int)_system);
+		tracer.recordCounterMetric(segment, "IOWait", (int)_iowait);
+		tracer.recordCounterMetric(segment, "Idle", (int)_idle);
+		float _utilized = 100F - _idle;
+		tracer.recordCounterMetric(segment, "Utilization", (int)_utilized);
+		if(cpu.equalsIgnoreCase("all")) {
+			user = _user;
+			nice = _nice;
+			system = _system;
+			iowait = _iowait;
+			idle = _idle;
+			utilized = _utilized;
+		}
+	}
 
 	
 	/**
@@ -456,21 +993,16 @@ public class LinuxSARCollector extends BaseCollector {
 	protected void processCPUQueueStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					queueSize = Float.parseFloat(cols[1]);
-					tracer.recordCounterMetric(
-							tracer.buildSegment(segmentPrefix, "CPU Summary"),							 
-							"CPU Queue Size", 
-							(int)queueSize);
-					processListSize = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(
-							tracer.buildSegment(segmentPrefix, "CPU Summary"), 
-							"Process List Size", 
-							(int)processListSize);
+			ColumnTokenizer t = tokenizer.reset(output);
+			while(t.nextLine()) {
+				if(t.lineContains("runq-sz")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					String cpuSummary = tracer.buildSegment(segmentPrefix, "CPU Summary");
+					queueSize = t.floatColumn("runq-sz", 1);
+					tracer.recordCounterMetric(cpuSummary, "CPU Queue Size", (int)queueSize);
+					processListSize = t.floatColumn("plist-sz", 2);
+					tracer.recordCounterMetric(cpuSummary, "Process List Size", (int)processListSize);
 				}
 			}
 		} catch (Exception e) {}
@@ -493,29 +1025,22 @@ public class LinuxSARCollector extends BaseCollector {
 	protected void processNetworkDeviceStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average") && !s.contains("IFACE")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					netInterface = tracer.buildSegment(segmentPrefix, "Network Devices", cols[1]); 
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "Packets Received/s", (int)val);
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "Packets Transmitted/s", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Bytes Received/s", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "Bytes Transmitted/s", (int)val);					
-					val = Float.parseFloat(cols[6]);
-					tracer.recordCounterMetric(netInterface, "Compressed Packets Received/s", (int)val);					
-					val = Float.parseFloat(cols[7]);
-					tracer.recordCounterMetric(netInterface, "Compressed Packets Transmitted/s", (int)val);					
-					val = Float.parseFloat(cols[8]);
-					tracer.recordCounterMetric(netInterface, "Multicast Packets Received/s", (int)val);										
+			while(t.nextLine()) {
+				if(!t.lineContains("Average")) continue;
+				if(t.lineContains("IFACE")) {
+					t.mapHeader();
+					continue;
 				}
+				netInterface = tracer.buildSegment(segmentPrefix, "Network Devices", t.column(1)); 
+				tracer.recordCounterMetric(netInterface, "Packets Received/s", (int)t.floatColumn("rxpck/s", 2));
+				tracer.recordCounterMetric(netInterface, "Packets Transmitted/s", (int)t.floatColumn("txpck/s", 3));					
+				tracer.recordCounterMetric(netInterface, "Bytes Received/s", (int)t.floatColumn("rxbyt/s", 4));					
+				tracer.recordCounterMetric(netInterface, "Bytes Transmitted/s", (int)t.floatColumn("txbyt/s", 5));					
+				tracer.recordCounterMetric(netInterface, "Compressed Packets Received/s", (int)t.floatColumn("rxcmp/s", 6));					
+				tracer.recordCounterMetric(netInterface, "Compressed Packets Transmitted/s", (int)t.floatColumn("txcmp/s", 7));					
+				tracer.recordCounterMetric(netInterface, "Multicast Packets Received/s", (int)t.floatColumn("rxmcst/s", 8));										
 			}
 		} catch (Exception e) {}
 	}
@@ -539,34 +1064,24 @@ public class LinuxSARCollector extends BaseCollector {
 	protected void processNetworkDeviceErrorStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average") && !s.contains("IFACE")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					netInterface = tracer.buildSegment(segmentPrefix, "Network Devices", cols[1]);
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "Bad Packets Received/s", (int)val);
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "Transmission Errors/s", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Transmission Collisions/s", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "Received Dropped Packets/s", (int)val);					
-					val = Float.parseFloat(cols[6]);
-					tracer.recordCounterMetric(netInterface, "Transmitted Dropped Packets/s", (int)val);					
-					val = Float.parseFloat(cols[7]);
-					tracer.recordCounterMetric(netInterface, "Carrier Errors/s", (int)val);					
-					val = Float.parseFloat(cols[8]);
-					tracer.recordCounterMetric(netInterface, "Frame Alignment Error/s", (int)val);
-					val = Float.parseFloat(cols[9]);
-					tracer.recordCounterMetric(netInterface, "Receive FIFO Overrun Error/s", (int)val);										
-					val = Float.parseFloat(cols[10]);
-					tracer.recordCounterMetric(netInterface, "Transmit FIFO Overrun Error/s", (int)val);										
-					
+			while(t.nextLine()) {
+				if(!t.lineContains("Average")) continue;
+				if(t.lineContains("IFACE")) {
+					t.mapHeader();
+					continue;
 				}
+				netInterface = tracer.buildSegment(segmentPrefix, "Network Devices", t.column(1));
+				tracer.recordCounterMetric(netInterface, "Bad Packets Received/s", (int)t.floatColumn("rxerr/s", 2));
+				tracer.recordCounterMetric(netInterface, "Transmission Errors/s", (int)t.floatColumn("txerr/s", 3));					
+				tracer.recordCounterMetric(netInterface, "Transmission Collisions/s", (int)t.floatColumn("coll/s", 4));					
+				tracer.recordCounterMetric(netInterface, "Received Dropped Packets/s", (int)t.floatColumn("rxdrop/s", 5));					
+				tracer.recordCounterMetric(netInterface, "Transmitted Dropped Packets/s", (int)t.floatColumn("txdrop/s", 6));					
+				tracer.recordCounterMetric(netInterface, "Carrier Errors/s", (int)t.floatColumn("txcarr/s", 7));					
+				tracer.recordCounterMetric(netInterface, "Frame Alignment Error/s", (int)t.floatColumn("rxfram/s", 8));
+				tracer.recordCounterMetric(netInterface, "Receive FIFO Overrun Error/s", (int)t.floatColumn("rxfifo/s", 9));										
+				tracer.recordCounterMetric(netInterface, "Transmit FIFO Overrun Error/s", (int)t.floatColumn("txfifo/s", 10));										
 			}
 		} catch (Exception e) {}
 	}		
@@ -586,24 +1101,18 @@ public class LinuxSARCollector extends BaseCollector {
 	protected void processNetworkSocketStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
+			while(t.nextLine()) {
+				if(t.lineContains("totsck")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
 					netInterface = tracer.buildSegment(segmentPrefix, "Network Devices");
-					val = Float.parseFloat(cols[1]);
-					tracer.recordCounterMetric(netInterface, "Total Used Sockets", (int)val);
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "TCP Sockets In Use", (int)val);					
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "UDP Sockets In Use", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Raw Sockets In Use", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "IP Fragments In Use", (int)val);					
+					tracer.recordCounterMetric(netInterface, "Total Used Sockets", (int)t.floatColumn("totsck", 1));
+					tracer.recordCounterMetric(netInterface, "TCP Sockets In Use", (int)t.floatColumn("tcpsck", 2));					
+					tracer.recordCounterMetric(netInterface, "UDP Sockets In Use", (int)t.floatColumn("udpsck", 3));					
+					tracer.recordCounterMetric(netInterface, "Raw Sockets In Use", (int)t.floatColumn("rawsck", 4));					
+					tracer.recordCounterMetric(netInterface, "IP Fragments In Use", (int)t.floatColumn("ip-frag", 5));					
 				}
 			}
 		} catch (Exception e) {}
@@ -627,27 +1136,17 @@ public class LinuxSARCollector extends BaseCollector {
 	protected void processFileSystemStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String fileSystem = null;
-			for(String s: lines) {
-				if(!s.contains("Filesystem")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					
-					fileSystem = tracer.buildSegment(segmentPrefix, "File System", cols[0]);
-					tracer.recordMetric(fileSystem, "File System Type", cols[1]);
-					tracer.recordMetric(fileSystem, "Mounted On", cols[6]);
-					
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(fileSystem, "1K-Blocks", (int)val);				
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(fileSystem, "Used", (int)val);
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(fileSystem, "Available", (int)val);
-					val = Float.parseFloat(cols[5].replace("%", "").trim());
-					tracer.recordCounterMetric(fileSystem, "Percentage Used", (int)val);
-				}
+			while(t.nextLine()) {
+				if(t.lineContains("Filesystem") || t.columnCount()==0) continue;
+				fileSystem = tracer.buildSegment(segmentPrefix, "File System", t.column(0));
+				tracer.recordMetric(fileSystem, "File System Type", t.column(1));
+				tracer.recordMetric(fileSystem, "Mounted On", t.column(6));
+				tracer.recordCounterMetric(fileSystem, "1K-Blocks", (int)t.floatColumn(2));				
+				tracer.recordCounterMetric(fileSystem, "Used", (int)t.floatColumn(3));
+				tracer.recordCounterMetric(fileSystem, "Available", (int)t.floatColumn(4));
+				tracer.recordCounterMetric(fileSystem, "Percentage Used", (int)t.floatColumn(5));
 			}
 		} catch (Exception e) {}
 	}	
@@ -683,33 +1182,22 @@ public class LinuxSARCollector extends BaseCollector {
 	protected void processMemoryStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
-			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					netInterface = tracer.buildSegment(segmentPrefix, "Memory");
-					val = Float.parseFloat(cols[1]);
-					tracer.recordCounterMetric(netInterface, "Free Memory/kb", (int)val);
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "Used Memory/kb", (int)val);					
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "Memory In Use/%", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Kernel Buffers/kb", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "Kernel Cache/kb", (int)val);
-					val = Float.parseFloat(cols[6]);
-					tracer.recordCounterMetric(netInterface, "Free Swap Space/kb", (int)val);
-					val = Float.parseFloat(cols[7]);
-					tracer.recordCounterMetric(netInterface, "Used Swap Space/kb", (int)val);
-					val = Float.parseFloat(cols[8]);
-					tracer.recordCounterMetric(netInterface, "Used Swap Space/%", (int)val);
-					val = Float.parseFloat(cols[9]);
-					tracer.recordCounterMetric(netInterface, "Cached Swap Memory/kb", (int)val);
-					
+			ColumnTokenizer t = tokenizer.reset(output);
+			String memory = null;
+			while(t.nextLine()) {
+				if(t.lineContains("kbmemfree")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					memory = tracer.buildSegment(segmentPrefix, "Memory");
+					tracer.recordCounterMetric(memory, "Free Memory/kb", (int)t.floatColumn("kbmemfree", 1));
+					tracer.recordCounterMetric(memory, "Used Memory/kb", (int)t.floatColumn("kbmemused", 2));					
+					tracer.recordCounterMetric(memory, "Memory In Use/%", (int)t.floatColumn("%memused", 3));					
+					tracer.recordCounterMetric(memory, "Kernel Buffers/kb", (int)t.floatColumn("kbbuffers", 4));					
+					tracer.recordCounterMetric(memory, "Kernel Cache/kb", (int)t.floatColumn("kbcached", 5));
+					tracer.recordCounterMetric(memory, "Free Swap Space/kb", (int)t.floatColumn("kbswpfree", 6));
+					tracer.recordCounterMetric(memory, "Used Swap Space/kb", (int)t.floatColumn("kbswpused", 7));
+					tracer.recordCounterMetric(memory, "Used Swap Space/%", (int)t.floatColumn("%swpused", 8));
+					tracer.recordCounterMetric(memory, "Cached Swap Memory/kb", (int)t.floatColumn("kbswpcad", 9));
 				}
 			}
 		} catch (Exception e) {}
@@ -727,12 +1215,12 @@ public class LinuxSARCollector extends BaseCollector {
 	protected void processContextSwitches(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					contextSwitches = Float.parseFloat(cols[1]);
+			ColumnTokenizer t = tokenizer.reset(output);
+			while(t.nextLine()) {
+				if(t.lineContains("cswch/s")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					contextSwitches = t.floatColumn("cswch/s", 1);
 					tracer.recordCounterMetric(tracer.buildSegment(segmentPrefix,"CPU Summary"), "Context Switches", (int)contextSwitches);
 				}
 			}
@@ -755,16 +1243,16 @@ public class LinuxSARCollector extends BaseCollector {
 		String jvmPrefix = tracer.buildSegment(segmentPrefix, false, "JVM");
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					jvmUser = Float.parseFloat(cols[4]);
+			ColumnTokenizer t = tokenizer.reset(output);
+			while(t.nextLine()) {
+				if(t.lineContains("PID")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					jvmUser = t.floatColumn("%user", 4);
 					tracer.recordCounterMetric(jvmPrefix, "User CPU", (int)jvmUser);
-					jvmSystem = Float.parseFloat(cols[5]);
+					jvmSystem = t.floatColumn("%system", 5);
 					tracer.recordCounterMetric(jvmPrefix, "System CPU", (int)jvmSystem);
-					jvmSwaps = Float.parseFloat(cols[6]);
+					jvmSwaps = t.floatColumn("nswap/s", 6);
 					tracer.recordCounterMetric(jvmPrefix, "Swaps", (int)jvmSwaps);					
 				}
 			}
@@ -791,8 +1279,7 @@ public class LinuxSARCollector extends BaseCollector {
 				if(bytesRead==-1) break;
 				buff.append(new String(bytes, 0, bytesRead));				
 			}
-			String status = new String(bytes);
-			return status;
+			return buff.toString();
 		} finally {
 			try { fis.close(); } catch (Exception e) {}
 			try { bis.close(); } catch (Exception e) {}			
@@ -1221,6 +1708,75 @@ public class LinuxSARCollector extends BaseCollector {
 		return openFiles;
 	}
 
+	/**
+	 * Indicates if stats for the local host are read from /proc rather than from forked commands.
+	 * @return true if the proc engine is enabled
+	 */
+	@JMXAttribute(description="Indicates if local host stats are read from /proc rather than from forked commands", name="ProcEngine")
+	public boolean getProcEngine() {
+		return procEngine;
+	}
+
+	/**
+	 * Enables or disables reading local host stats from /proc.
+	 * @param procEngine true to read from /proc, false to fork sar and the other OS commands
+	 */
+	public void setProcEngine(boolean procEngine) {
+		this.procEngine = procEngine;
+	}
+
+	/**
+	 * Indicates if the sar commands are launched concurrently.
+	 * @return true if commands are launched concurrently
+	 */
+	@JMXAttribute(description="Indicates if the sar commands are launched concurrently", name="ConcurrentCommands")
+	public boolean getConcurrentCommands() {
+		return concurrentCommands;
+	}
+
+	/**
+	 * Sets whether the sar commands are launched concurrently. Applies to the local host only.
+	 * @param concurrentCommands true to launch the commands concurrently
+	 */
+	public void setConcurrentCommands(boolean concurrentCommands) {
+		this.concurrentCommands = concurrentCommands;
+	}
+
+	/**
+	 * The maximum time to wait for a concurrently launched command.
+	 * @return the command timeout in ms.
+	 */
+	@JMXAttribute(description="The maximum time in ms. to wait for a concurrently launched command", name="CommandTimeout")
+	public long getCommandTimeout() {
+		return commandTimeout;
+	}
+
+	/**
+	 * Sets the maximum time to wait for a concurrently launched command.
+	 * @param commandTimeout the command timeout in ms.
+	 */
+	public void setCommandTimeout(long commandTimeout) {
+		this.commandTimeout = commandTimeout;
+	}
+
+	/**
+	 * The number of commands that timed out in the last concurrent collection.
+	 * @return the number of timed out commands
+	 */
+	@JMXAttribute(description="The number of commands that timed out in the last concurrent collection", name="TimedOutCommands")
+	public int getTimedOutCommands() {
+		return lastTimedOutCommands;
+	}
+
+	/**
+	 * Indicates if the next collection will read from /proc.
+	 * @return true if the proc engine is in use
+	 */
+	@JMXAttribute(description="Indicates if the next collection will read from /proc", name="ProcEngineActive")
+	public boolean getProcEngineActive() {
+		return isProcEngineActive();
+	}
+
 	
 	
 
@@ -0,0 +1,645 @@
+package com.heliosapm.wiex.server.collectors.linux;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
+
+/**
+ * <p>Title: ProcFSReader</p>
+ * <p>Description: Reads Linux host and process statistics directly from the <code>/proc</code> file system, so that
+ * {@link LinuxSARCollector} can collect without forking <code>sar</code>, <code>ps</code>, <code>pmap</code> or <code>lsof</code>.
+ * Files are read into one reusable buffer and parsed in place. Rates and CPU percentages are computed from the deltas
+ * between successive samples. The first sample is computed against boot time (or process start time), which makes it
+ * an average since boot, like the first line of a <code>sar</code> report.</p>
+ * <p>Instances keep the previous sample, are not thread safe and should be used by one collector.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.server.collectors.linux.ProcFSReader</code></p>
+ */
+public class ProcFSReader {
+	/** The read buffer */
+	protected byte[] buffer = new byte[8192];
+	/** The number of bytes in the buffer */
+	protected int length = 0;
+	/** The parse position in the buffer */
+	protected int position = 0;
+	/** The uptime of the current sample in 1/100ths of a second */
+	protected long uptime = 0L;
+	/** The uptime of the previous sample in 1/100ths of a second */
+	protected long priorUptime = 0L;
+	/** The previous cpu jiffies keyed by cpu name */
+	protected Map<String, long[]> priorCPU = new HashMap<String, long[]>();
+	/** The previous context switch count */
+	protected long priorContextSwitches = 0L;
+	/** The context switch rate of the current sample */
+	protected float contextSwitchRate = 0F;
+	/** The previous network device counters keyed by interface name */
+	protected Map<String, long[]> priorNetwork = new HashMap<String, long[]>();
+	/** The previous process cpu ticks keyed by pid: <code>{utime, stime, nswap, uptime, start time}</code> */
+	protected Map<Integer, long[]> priorProcess = new HashMap<Integer, long[]>();
+	/** The processes sampled in the current collection */
+	protected Map<Integer, long[]> currentProcess = new HashMap<Integer, long[]>();
+	/** The host's total memory in kb */
+	protected long memTotal = 0L;
+	/** Compiled process locator patterns */
+	protected Map<String, Pattern> locatorPatterns = new HashMap<String, Pattern>();
+	/** The proc file system root read by this reader */
+	protected final String root;
+
+	/** The clock ticks per second property */
+	public static final String HZ_PROP = "wiex.linux.hz";
+	/** The clock ticks per second of the process stat times */
+	public static final int HZ = ConfigurationHelper.getIntSystemThenEnvProperty(HZ_PROP, 100);
+	/** The proc file system root */
+	public static final String PROC = "/proc";
+	/** The order of the <code>/proc/net/dev</code> counters as reported by <code>sar -n DEV</code> and <code>sar -n EDEV</code> */
+	protected static final int[] NET_DEV_ORDER = new int[]{1, 9, 0, 8, 6, 15, 7, 2, 10, 13, 3, 11, 14, 5, 4, 12};
+	/** The tcp state code for ESTABLISHED */
+	public static final int TCP_ESTABLISHED = 0x01;
+	/** The tcp state code for CLOSE_WAIT */
+	public static final int TCP_CLOSE_WAIT = 0x08;
+	/** The tcp state code for LISTEN */
+	public static final int TCP_LISTEN = 0x0A;
+	/** The File.toPath method, null before Java 7 */
+	protected static final Method toPath;
+	/** The Files.readSymbolicLink method, null before Java 7 */
+	protected static final Method readSymbolicLink;
+
+	static {
+		Method tp = null;
+		Method rsl = null;
+		try {
+			tp = File.class.getMethod("toPath");
+			rsl = Class.forName("java.nio.file.Files").getMethod("readSymbolicLink", Class.forName("java.nio.file.Path"));
+		} catch (Throwable e) {
+			tp = null;
+			rsl = null;
+		}
+		toPath = tp;
+		readSymbolicLink = rsl;
+	}
+
+	/**
+	 * Creates a new ProcFSReader that reads the local host's proc file system
+	 */
+	public ProcFSReader() {
+		this(PROC);
+	}
+
+	/**
+	 * Creates a new ProcFSReader that reads a proc file system mounted or copied to the passed root
+	 * @param root The proc file system root directory
+	 */
+	public ProcFSReader(String root) {
+		this.root = root;
+	}
+
+	/**
+	 * Determines if the local host has a readable proc file system
+	 * @return true if <code>/proc/stat</code> can be read
+	 */
+	public static boolean isAvailable() {
+		return new File(PROC, "stat").canRead();
+	}
+
+	/**
+	 * Determines if file descriptor links can be read, which is required to classify open files
+	 * @return true if symbolic links can be read
+	 */
+	public static boolean isLinkReadable() {
+		return readSymbolicLink!=null;
+	}
+
+	/**
+	 * Starts a new sample. Reads the host uptime, which is the clock for the rates of the sample.
+	 * @throws IOException Thrown if <code>/proc/uptime</code> cannot be read
+	 */
+	public void sample() throws IOException {
+		read(root + "/uptime");
+		long up = nextLong() * 100;
+		if(position < length && buffer[position]=='.') {
+			position++;
+			up += nextLong();
+		}
+		priorUptime = uptime;
+		uptime = up;
+		Map<Integer, long[]> tmp = priorProcess;
+		priorProcess = currentProcess;
+		currentProcess = tmp;
+		currentProcess.clear();
+	}
+
+	/**
+	 * Returns the elapsed time since the previous sample in seconds
+	 * @return the elapsed seconds
+	 */
+	protected float elapsed() {
+		long delta = uptime - priorUptime;
+		return delta <= 0 ? 1F : delta / 100F;
+	}
+
+	/**
+	 * Reads <code>/proc/stat</code> and computes the cpu time percentages of each cpu and of all cpus combined,
+	 * and the context switch rate.
+	 * @return a map of <code>{user, nice, system, iowait, idle}</code> percentages keyed by <b>all</b> or the cpu number
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public Map<String, float[]> readCPUStats() throws IOException {
+		Map<String, float[]> stats = new LinkedHashMap<String, float[]>();
+		read(root + "/stat");
+		do {
+			if(startsWith("cpu")) {
+				String name = nextToken();
+				String cpu = name.length()==3 ? "all" : name.substring(3);
+				long[] jiffies = new long[8];
+				for(int i = 0; i < jiffies.length; i++) {
+					jiffies[i] = nextLong();
+				}
+				long[] prior = priorCPU.put(cpu, jiffies);
+				if(prior==null) prior = new long[8];
+				long total = 0;
+				long[] delta = new long[8];
+				for(int i = 0; i < delta.length; i++) {
+					delta[i] = Math.max(0, jiffies[i] - prior[i]);
+					total += delta[i];
+				}
+				if(total==0) total = 1;
+				// user, nice, system + irq + softirq, iowait, idle
+				stats.put(cpu, new float[]{
+						delta[0] * 100F / total,
+						delta[1] * 100F / total,
+						(delta[2] + delta[5] + delta[6]) * 100F / total,
+						delta[4] * 100F / total,
+						delta[3] * 100F / total
+				});
+			} else if(startsWith("ctxt")) {
+				nextToken();
+				long ctxt = nextLong();
+				contextSwitchRate = Math.max(0, ctxt - priorContextSwitches) / elapsed();
+				priorContextSwitches = ctxt;
+			}
+		} while(nextLine());
+		return stats;
+	}
+
+	/**
+	 * Returns the context switch rate computed by the last {@link #readCPUStats()}
+	 * @return the context switches per second
+	 */
+	public float getContextSwitchRate() {
+		return contextSwitchRate;
+	}
+
+	/**
+	 * Reads the run queue size and the process list size from <code>/proc/loadavg</code>
+	 * @return <code>{run queue size, process list size}</code>
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public int[] readLoad() throws IOException {
+		read(root + "/loadavg");
+		nextToken();
+		nextToken();
+		nextToken();
+		return new int[]{(int)nextLong(), (int)nextLong()};
+	}
+
+	/**
+	 * Reads <code>/proc/meminfo</code>
+	 * @return the memory stats in the order reported by <code>sar -r</code>: <code>{kbmemfree, kbmemused, %memused, kbbuffers,
+	 * kbcached, kbswpfree, kbswpused, %swpused, kbswpcad}</code>
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public long[] readMemoryStats() throws IOException {
+		long total = 0, free = 0, buffers = 0, cached = 0, swapTotal = 0, swapFree = 0, swapCached = 0;
+		read(root + "/meminfo");
+		do {
+			String name = nextName();
+			if("MemTotal".equals(name)) total = nextLong();
+			else if("MemFree".equals(name)) free = nextLong();
+			else if("Buffers".equals(name)) buffers = nextLong();
+			else if("Cached".equals(name)) cached = nextLong();
+			else if("SwapCached".equals(name)) swapCached = nextLong();
+			else if("SwapTotal".equals(name)) swapTotal = nextLong();
+			else if("SwapFree".equals(name)) swapFree = nextLong();
+		} while(nextLine());
+		memTotal = total;
+		long used = total - free;
+		long swapUsed = swapTotal - swapFree;
+		return new long[]{
+				free, used, total==0 ? 0 : used * 100 / total, buffers, cached,
+				swapFree, swapUsed, swapTotal==0 ? 0 : swapUsed * 100 / swapTotal, swapCached
+		};
+	}
+
+	/**
+	 * Reads <code>/proc/net/dev</code> and computes the per second rates of each interface's counters
+	 * @return a map of rates keyed by interface name, in the order reported by <code>sar -n DEV</code> followed by <code>sar -n EDEV</code>
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public Map<String, float[]> readNetworkDeviceStats() throws IOException {
+		Map<String, float[]> stats = new LinkedHashMap<String, float[]>();
+		float seconds = elapsed();
+		read(root + "/net/dev");
+		// skip the two header lines
+		nextLine();
+		while(nextLine()) {
+			String iface = nextName();
+			if(iface.length()==0) continue;
+			long[] counters = new long[16];
+			for(int i = 0; i < counters.length; i++) {
+				counters[i] = nextLong();
+			}
+			long[] prior = priorNetwork.put(iface, counters);
+			if(prior==null) prior = new long[16];
+			float[] rates = new float[16];
+			for(int i = 0; i < rates.length; i++) {
+				int c = NET_DEV_ORDER[i];
+				rates[i] = Math.max(0, counters[c] - prior[c]) / seconds;
+			}
+			stats.put(iface, rates);
+		}
+		return stats;
+	}
+
+	/**
+	 * Reads <code>/proc/net/sockstat</code>
+	 * @return the socket stats in the order reported by <code>sar -n SOCK</code>: <code>{totsck, tcpsck, udpsck, rawsck, ip-frag}</code>
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public int[] readSocketStats() throws IOException {
+		int[] stats = new int[5];
+		read(root + "/net/sockstat");
+		do {
+			String name = nextName();
+			if("sockets".equals(name)) stats[0] = (int)nextLong();
+			else if("TCP".equals(name)) stats[1] = (int)nextLong();
+			else if("UDP".equals(name)) stats[2] = (int)nextLong();
+			else if("RAW".equals(name)) stats[3] = (int)nextLong();
+			else if("FRAG".equals(name)) stats[4] = (int)nextLong();
+		} while(nextLine());
+		return stats;
+	}
+
+	/**
+	 * Reads the number of allocated file handles from <code>/proc/sys/fs/file-nr</code>
+	 * @return the number of open files on the host
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public int readOpenFiles() throws IOException {
+		read(root + "/sys/fs/file-nr");
+		return (int)nextLong();
+	}
+
+	/**
+	 * Reads the mounted file systems from <code>/proc/mounts</code>
+	 * @return a list of <code>{device, file system type, mount point}</code>
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public List<String[]> readMounts() throws IOException {
+		List<String[]> mounts = new ArrayList<String[]>();
+		read(root + "/mounts");
+		do {
+			String device = nextToken();
+			String mountPoint = nextToken().replace("\\040", " ");
+			String type = nextToken();
+			if(device.length()>0) mounts.add(new String[]{device, type, mountPoint});
+		} while(nextLine());
+		return mounts;
+	}
+
+	/**
+	 * Returns the pid of this JVM from the <code>/proc/self</code> link
+	 * @return the pid, or -1 if it cannot be determined
+	 */
+	public int readSelfPid() {
+		try {
+			return Integer.parseInt(new File(root, "self").getCanonicalFile().getName());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads <code>/proc/&lt;pid&gt;/stat</code> and computes the process' cpu utilization since the previous sample,
+	 * or since the process started if it was not in the previous sample.
+	 * @param pid The process id
+	 * @return <code>{%user, %system, nswap/s}</code>
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public float[] readProcessCPU(int pid) throws IOException {
+		Integer key = pid;
+		long[] current = currentProcess.get(key);
+		long[] prior = priorProcess.get(key);
+		if(current==null) {
+			read(root + "/" + pid + "/stat");
+			// the command may contain spaces and parentheses, so fields are counted from the last ')'
+			for(int i = length-1; i >= 0; i--) {
+				if(buffer[i]==')') {
+					position = i + 1;
+					break;
+				}
+			}
+			nextToken();
+			long[] fields = new long[37];
+			for(int i = 4; i < fields.length; i++) {
+				fields[i] = nextLong();
+			}
+			current = new long[]{fields[14], fields[15], fields[36], uptime, fields[22] * 100 / HZ};
+			currentProcess.put(key, current);
+		}
+		// a process not in the previous sample is measured from its start time
+		if(prior==null) prior = new long[]{0, 0, 0, current[4]};
+		long delta = current[3] - prior[3];
+		float seconds = delta <= 0 ? 1F : delta / 100F;
+		return new float[]{
+				Math.max(0, current[0] - prior[0]) * 100F / HZ / seconds,
+				Math.max(0, current[1] - prior[1]) * 100F / HZ / seconds,
+				Math.max(0, current[2] - prior[2]) / seconds
+		};
+	}
+
+	/**
+	 * Reads the <code>name: value</code> pairs of <code>/proc/&lt;pid&gt;/status</code>
+	 * @param pid The process id
+	 * @return a map of the first numeric value of each line keyed by name
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	public Map<String, Long> readProcessStatus(int pid) throws IOException {
+		Map<String, Long> status = new HashMap<String, Long>();
+		read(root + "/" + pid + "/status");
+		do {
+			String name = nextName();
+			if(name.length()>0) status.put(name, nextLong());
+		} while(nextLine());
+		return status;
+	}
+
+	/**
+	 * Reads a process' memory utilization from <code>/proc/&lt;pid&gt;/smaps_rollup</code>, or from
+	 * <code>/proc/&lt;pid&gt;/status</code> on kernels that do not have it.
+	 * @param pid The process id
+	 * @return <code>{shared kb, private kb, mapped kb, resident kb}</code>
+	 * @throws IOException Thrown if the files cannot be read
+	 */
+	public long[] readProcessMemory(int pid) throws IOException {
+		Map<String, Long> status = readProcessStatus(pid);
+		long mapped = value(status, "VmSize");
+		long rss = value(status, "VmRSS");
+		File rollup = new File(root + "/" + pid + "/smaps_rollup");
+		if(rollup.canRead()) {
+			long shared = 0, priv = 0;
+			read(rollup.getPath());
+			do {
+				String name = nextName();
+				if(name.startsWith("Shared_")) shared += nextLong();
+				else if(name.startsWith("Private_")) priv += nextLong();
+			} while(nextLine());
+			return new long[]{shared, priv, mapped, rss};
+		}
+		return new long[]{value(status, "RssFile") + value(status, "RssShmem"), value(status, "RssAnon"), mapped, rss};
+	}
+
+	/**
+	 * Returns the memory percentage of the passed resident size, based on the total memory read by the last {@link #readMemoryStats()}
+	 * @param rss The resident size in kb
+	 * @return the percentage of the host's memory
+	 * @throws IOException Thrown if the total memory has not been read and <code>/proc/meminfo</code> cannot be read
+	 */
+	public float memoryPercent(long rss) throws IOException {
+		if(memTotal==0) readMemoryStats();
+		return memTotal==0 ? 0F : rss * 100F / memTotal;
+	}
+
+	/**
+	 * Reads the states of the host's tcp sockets from <code>/proc/net/tcp</code> and <code>/proc/net/tcp6</code>
+	 * @return a map of tcp state codes keyed by socket inode
+	 */
+	public Map<Long, Integer> readTCPStates() {
+		Map<Long, Integer> states = new HashMap<Long, Integer>();
+		readTCPStates(root + "/net/tcp", states);
+		readTCPStates(root + "/net/tcp6", states);
+		return states;
+	}
+
+	/**
+	 * Reads the socket states of one tcp table
+	 * @param path The table file
+	 * @param states The map to add the states to
+	 */
+	protected void readTCPStates(String path, Map<Long, Integer> states) {
+		try {
+			read(path);
+		} catch (IOException e) {
+			return;
+		}
+		while(nextLine()) {
+			// sl local_address rem_address st tx_queue:rx_queue tr:tm->when retrnsmt uid timeout inode
+			nextToken();
+			nextToken();
+			nextToken();
+			String st = nextToken();
+			for(int i = 0; i < 5; i++) nextToken();
+			long inode = nextLong();
+			try {
+				states.put(inode, Integer.parseInt(st, 16));
+			} catch (NumberFormatException e) {}
+		}
+	}
+
+	/**
+	 * Classifies a process' open file descriptors from the links in <code>/proc/&lt;pid&gt;/fd</code>
+	 * @param pid The process id
+	 * @param tcpStates The host's tcp socket states from {@link #readTCPStates()}
+	 * @return <code>{total, listen, close wait, established, fifo}</code>, where all but the total are -1 if links cannot be read
+	 */
+	public int[] readOpenFileStates(int pid, Map<Long, Integer> tcpStates) {
+		int[] counts = new int[]{0, -1, -1, -1, -1};
+		File dir = new File(root + "/" + pid + "/fd");
+		String[] fds = dir.list();
+		if(fds==null) return counts;
+		counts[0] = fds.length;
+		if(!isLinkReadable()) return counts;
+		counts[1] = 0; counts[2] = 0; counts[3] = 0; counts[4] = 0;
+		for(String fd: fds) {
+			String target = readLink(new File(dir, fd));
+			if(target==null) continue;
+			if(target.startsWith("pipe:")) {
+				counts[4]++;
+			} else if(target.startsWith("socket:[")) {
+				try {
+					Integer state = tcpStates.get(Long.parseLong(target.substring(8, target.length()-1)));
+					if(state==null) continue;
+					if(state==TCP_LISTEN) counts[1]++;
+					else if(state==TCP_CLOSE_WAIT) counts[2]++;
+					else if(state==TCP_ESTABLISHED) counts[3]++;
+				} catch (NumberFormatException e) {}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Finds the processes whose command line matches the passed locator, the equivalent of <code>ps -ef | grep locator</code>
+	 * @param locator A regular expression, or a literal if it is not a valid expression
+	 * @return the matching pids
+	 */
+	public List<Integer> findPids(String locator) {
+		List<Integer> pids = new ArrayList<Integer>();
+		Pattern pattern = locatorPatterns.get(locator);
+		if(pattern==null) {
+			try {
+				pattern = Pattern.compile(locator);
+			} catch (Exception e) {
+				pattern = Pattern.compile(locator, Pattern.LITERAL);
+			}
+			locatorPatterns.put(locator, pattern);
+		}
+		String[] entries = new File(root).list();
+		if(entries==null) return pids;
+		for(String entry: entries) {
+			if(entry.length()==0 || !Character.isDigit(entry.charAt(0))) continue;
+			try {
+				read(root + "/" + entry + "/cmdline");
+			} catch (IOException e) {
+				// the process has exited
+				continue;
+			}
+			if(length==0) continue;
+			for(int i = 0; i < length; i++) {
+				if(buffer[i]==0) buffer[i] = ' ';
+			}
+			if(pattern.matcher(new String(buffer, 0, length)).find()) {
+				try {
+					pids.add(Integer.parseInt(entry));
+				} catch (NumberFormatException e) {}
+			}
+		}
+		return pids;
+	}
+
+	/**
+	 * Reads the target of a symbolic link
+	 * @param link The link
+	 * @return the link target, or null if it cannot be read
+	 */
+	protected static String readLink(File link) {
+		try {
+			return readSymbolicLink.invoke(null, toPath.invoke(link)).toString();
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a value from a status map
+	 * @param status The status map
+	 * @param name The value name
+	 * @return the value, or 0 if it is not present
+	 */
+	protected static long value(Map<String, Long> status, String name) {
+		Long value = status.get(name);
+		return value==null ? 0L : value.longValue();
+	}
+
+	/**
+	 * Reads a file into the buffer, growing the buffer if the file does not fit
+	 * @param path The file name
+	 * @throws IOException Thrown if the file cannot be read
+	 */
+	protected void read(String path) throws IOException {
+		FileInputStream fis = new FileInputStream(path);
+		try {
+			length = 0;
+			position = 0;
+			while(true) {
+				if(length==buffer.length) {
+					byte[] tmp = new byte[buffer.length*2];
+					System.arraycopy(buffer, 0, tmp, 0, length);
+					buffer = tmp;
+				}
+				int bytesRead = fis.read(buffer, length, buffer.length-length);
+				if(bytesRead==-1) break;
+				length += bytesRead;
+			}
+		} finally {
+			try { fis.close(); } catch (Exception e) {}
+		}
+	}
+
+	/**
+	 * Advances the position to the start of the next line
+	 * @return true if there is another line
+	 */
+	protected boolean nextLine() {
+		while(position < length && buffer[position]!='\n') position++;
+		position++;
+		return position < length;
+	}
+
+	/**
+	 * Determines if the line at the current position starts with the passed prefix
+	 * @param prefix The prefix
+	 * @return true if the line starts with the prefix
+	 */
+	protected boolean startsWith(String prefix) {
+		if(position + prefix.length() > length) return false;
+		for(int i = 0; i < prefix.length(); i++) {
+			if(buffer[position+i]!=prefix.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the next whitespace delimited token in the current line
+	 * @return the token, which is empty at the end of the line
+	 */
+	protected String nextToken() {
+		skipBlanks();
+		int start = position;
+		while(position < length && buffer[position] > ' ') position++;
+		return new String(buffer, start, position-start);
+	}
+
+	/**
+	 * Returns the next name in the current line, which is terminated by a colon or whitespace. The colon is consumed.
+	 * @return the name, which is empty at the end of the line
+	 */
+	protected String nextName() {
+		skipBlanks();
+		int start = position;
+		while(position < length && buffer[position] > ' ' && buffer[position]!=':') position++;
+		String name = new String(buffer, start, position-start);
+		if(position < length && buffer[position]==':') position++;
+		return name;
+	}
+
+	/**
+	 * Parses the next unsigned number in the current line, skipping any preceding non digit characters
+	 * @return the number, or 0 if there are no more digits in the line
+	 */
+	protected long nextLong() {
+		while(position < length && buffer[position]!='\n' && (buffer[position] < '0' || buffer[position] > '9')) position++;
+		long value = 0;
+		while(position < length && buffer[position] >= '0' && buffer[position] <= '9') {
+			value = value * 10 + (buffer[position] - '0');
+			position++;
+		}
+		return value;
+	}
+
+	/**
+	 * Skips spaces and tabs in the current line
+	 */
+	protected void skipBlanks() {
+		while(position < length && (buffer[position]==' ' || buffer[position]=='\t')) position++;
+	}
+}
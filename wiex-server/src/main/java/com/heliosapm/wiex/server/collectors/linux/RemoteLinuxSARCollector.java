@@ -1,19 +1,17 @@
 
 package com.heliosapm.wiex.server.collectors.linux;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 
 import org.apache.log4j.BasicConfigurator;
-import org.helios.jcraft.jsch.ChannelExec;
-import org.helios.jcraft.jsch.JSch;
-import org.helios.jcraft.jsch.Session;
 import org.helios.jcraft.jsch.UserInfo;
 
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperationParameter;
+import com.heliosapm.wiex.server.collectors.ssh.SSHHostSessions;
+import com.heliosapm.wiex.server.collectors.ssh.SSHSessionManager;
 
 /**
  * <p>Title: RemoteLinuxSARCollector</p>
@@ -41,12 +39,10 @@ public class RemoteLinuxSARCollector extends LinuxSARCollector implements UserIn
 	protected String userName = null;
 	/**	The pass phrase for the private key */
 	protected String passPhrase = null;
-	/** The JSch SSH Provider */
-	protected JSch jsch = new JSch();
 	/** The shell command to locate the target JVM Process Id */
 	protected String pIDLocator = null;
-	/** The currnt thread's SSH Session */
-	protected ThreadLocal<Session> threadSession = new ThreadLocal<Session>();
+	/** The shared SSH sessions to the host */
+	protected SSHHostSessions hostSessions = null;
 	
 	
 
@@ -119,21 +115,28 @@ public class RemoteLinuxSARCollector extends LinuxSARCollector implements UserIn
 	}
 	
 	/**
-	 * Initializes the SSH constructs and calls super.
+	 * Acquires the shared SSH sessions to the host and calls super.
 	 * @throws Exception
 	 */
 	@JMXOperation(description="Starts The Service", expose=true, name="start")
 	public void start() throws Exception {
-		jsch.setKnownHosts(knownHostsFile);
-		jsch.addIdentity(privateKeyFile, passPhrase);
-		threadSession.set(connectSSH());
+		hostSessions = SSHSessionManager.acquire(hostName, port, userName, privateKeyFile, passPhrase, knownHostsFile, this, timeOut);
 		super.start();
 	}
 	
+	/**
+	 * Stops the collector and releases the shared SSH sessions to the host.
+	 */
+	@JMXOperation(description="Stops The Service", expose=true, name="stop")
+	public void stop() {
+		super.stop();
+		SSHSessionManager.release(hostSessions);
+		hostSessions = null;
+	}
+	
 	
 	/**
-	 * Collects Linux host performance data from sar through a remote SSH connection.
-	 * Synchronized to avoid thread safety issues with the SSH connection.
+	 * Collects Linux host performance data from sar through the shared SSH sessions to the host.
 	 * Acquires JVM's PID.
 	 * Collects JVM performance data from sar.
 	 * Collects MXBean stats.
@@ -141,37 +144,41 @@ public class RemoteLinuxSARCollector extends LinuxSARCollector implements UserIn
 	 */
 	@JMXOperation(description="Collects Remote SAR Stats", expose=true, name="collect")
 	public void collect() {
-		try {
-			if(log.isDebugEnabled())log.debug("[" + objectName + "]Collecting......");
-			threadSession.set(connectSSH());
-			super.collect();
-		} catch (Exception e) {
-			log.error("Failed To Collect On SSH Connection", e);
-		} finally {
-			try { 
-				threadSession.get().disconnect();
-				threadSession.set(null);
-			} catch (Exception e) {}
+		if(log.isDebugEnabled())log.debug("[" + objectName + "]Collecting......");
+		if(hostSessions==null) {
+			if(logErrors) log.error("Failed To Collect: the collector has not been started");
+			return;
 		}
+		super.collect();
 	}
 	
+	/**
+	 * Commands run on their own channels of the shared SSH sessions, so they can be issued concurrently.
+	 * @return true if the collector has been started
+	 * @see com.heliosapm.wiex.server.collectors.linux.LinuxSARCollector#isConcurrentCapable()
+	 */
+	protected boolean isConcurrentCapable() {
+		return hostSessions!=null;
+	}
 	
 	/**
-	 * Connects to the SSH Server.
-	 * @throws Exception
+	 * Runs a concurrently launched command on a channel of the shared SSH sessions.
+	 * @param task The command task
+	 * @return the command output
+	 * @throws Exception Thrown if the command fails or times out
+	 * @see com.heliosapm.wiex.server.collectors.linux.LinuxSARCollector#executeCommand(com.heliosapm.wiex.server.collectors.linux.LinuxSARCollector.CommandTask)
 	 */
-	protected Session connectSSH() throws Exception {
-		try {
-		Session session=jsch.getSession(userName, hostName, port);
-		session.setUserInfo(this);
-		session.connect(timeOut);
-		return session;
-		} catch (Exception e) {
-			if(logErrors) {
-				log.error("Failed to connect to server", e);
-			}
-			throw e;			
-		}
+	protected String executeCommand(CommandTask task) throws Exception {
+		return hostSessions.execute(task.command, commandTimeout);
+	}
+	
+	/**
+	 * The monitored host is remote, so stats are always collected through OS commands over SSH.
+	 * @return false
+	 * @see com.heliosapm.wiex.server.collectors.linux.LinuxSARCollector#isLocalHost()
+	 */
+	protected boolean isLocalHost() {
+		return false;
 	}
 	
 	/**
@@ -180,44 +187,20 @@ public class RemoteLinuxSARCollector extends LinuxSARCollector implements UserIn
 	 * @return The standard output of the executed command.
 	 */
 	protected String issueOSCommand(String command) {	
-		try {			
-			final ChannelExec exec = (ChannelExec)threadSession.get().openChannel("exec");
-	        ByteArrayOutputStream out = new ByteArrayOutputStream();
-	        String escapedCommand = "/bin/bash -c \"\"" + command + "\"\"";
-            exec.setCommand(command);
-            exec.setOutputStream(out);
-            exec.setExtOutputStream(out);
-            exec.connect();
-			final Thread thread = new Thread() {
-                public void run()  {
-                    while(!exec.isEOF()) {                        
-                        try { Thread.sleep(500L); }
-                        catch(Exception e) { 
-                        	e.printStackTrace();
-                        }
-                    }
-                }
-            };
-            thread.setDaemon(true);
-            thread.start();
-            thread.join(timeOut);     
-            thread.interrupt();
-            if(thread.isAlive()) {
-            	throw new Exception("Time Out Error");
-            } else {
-            	try { exec.disconnect(); } catch (Exception e) {}
-            	return out.toString();
-            }
-		} catch (Throwable e) {
-			e.printStackTrace();
-			return e.getMessage();
+		try {
+			return hostSessions.execute(command, timeOut);
+		} catch (Exception e) {
+			if(logErrors) {
+				log.error("Failed to issue command [" + command + "]", e);
+			}
+			return null;
 		}
 	}
 	
 
 	
 	/**
-	 * One off shell command. Connects to the SSH server, issues the command and disconnects.
+	 * One off shell command, issued on the shared SSH sessions to the host.
 	 * @param command The shell command.
 	 * @return The output of the shell command.
 	 * @throws Exception
@@ -226,13 +209,8 @@ public class RemoteLinuxSARCollector extends LinuxSARCollector implements UserIn
 	public String shellCommand(
 			@JMXOperationParameter(description="The Shell Command to Execute", name="ShellCommand")String command) 
 	throws Exception {
-		Session session = null;
-		try {
-			session = connectSSH();
-			return issueOSCommand(command);
-		} finally {
-			try { session.disconnect(); } catch (Exception e) {}		
-		}
+		if(hostSessions==null) throw new Exception("The collector has not been started");
+		return hostSessions.execute(command, timeOut);
 	}
 	
 	/**
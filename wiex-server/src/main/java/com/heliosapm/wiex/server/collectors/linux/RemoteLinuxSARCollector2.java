@@ -148,6 +148,15 @@ public class RemoteLinuxSARCollector2 extends LinuxSARCollector {
 	}
 	
 	
+	/**
+	 * The monitored host is remote, so stats are always collected through OS commands over SSH.
+	 * @return false
+	 * @see com.heliosapm.wiex.server.collectors.linux.LinuxSARCollector#isLocalHost()
+	 */
+	protected boolean isLocalHost() {
+		return false;
+	}
+	
 	/**
 	 * Issues the given string as an OS command and returns the standard output of the command.
 	 * @param command An arbitrary OS shell command.
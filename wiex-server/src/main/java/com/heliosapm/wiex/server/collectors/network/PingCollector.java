@@ -9,6 +9,7 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
@@ -19,6 +20,10 @@ import com.heliosapm.wiex.server.collectors.BaseCollector;
  * <p>Title: PingCollector</p>
  * <p>Description: Ping Time Collector.</p>
  * <p>Configuration is IP Address|HostName 
+ * <p>By default each server is pinged by forking the OS ping command. Setting the ProbeMode to <b>icmp</b> or <b>tcp</b>
+ * probes the servers in-process with the {@link ReachabilityProber} instead, all at once, and traces the same metrics.
+ * In <b>tcp</b> mode a server is probed on the configured ProbePorts, or on the ports listed after its name as
+ * IP Address|HostName|port,port.</p>
  * <p>Copyright: Copyright (c) 2006</p>
  * <p>Company: Helios Development Group</p>
  * @author Whitehead
@@ -37,6 +42,23 @@ public class PingCollector extends BaseCollector {
 	protected int packetCount = 2;
 	/** The timeout in seconds for each request. Defaults to 5 */
 	protected int timeout = 5;
+	/** The probe mode, one of native, icmp or tcp. Defaults to native */
+	protected String probeMode = NATIVE_MODE;
+	/** The default TCP ports to probe */
+	protected int[] probePorts = new int[]{22, 80, 443};
+	/** The maximum number of servers with a TCP probe in flight. Defaults to 256 */
+	protected int maxInFlight = 256;
+	/** The in-process probe targets, built on the first in-process collection */
+	protected List<PingTarget> targets = null;
+	
+	/** Forks the OS ping command */
+	public static final String NATIVE_MODE = "native";
+	/** Probes in-process with <code>InetAddress.isReachable</code> */
+	public static final String ICMP_MODE = "icmp";
+	/** Probes in-process with TCP connects */
+	public static final String TCP_MODE = "tcp";
+	/** The port list delimiter pattern */
+	protected static final Pattern PORT_DELIM = Pattern.compile("[,\\s]+");
 	
 	
 	
@@ -188,23 +210,27 @@ public class PingCollector extends BaseCollector {
 	@JMXOperation(description="Collects and traces Ping Data", expose=true, name="collect")
 	public void collect() {
 		long start = System.currentTimeMillis();
-		for(String s: servers) {
-			String[] fragment = s.split("\\|");
-			String ip = fragment[0];
-			String name = fragment[1];
-			try {
-				String output = ping(ip);
-				if(isWindows) {
-					processWindowsPing(output, name);
-				} else {
-					processLinuxPing(output, name);
-				}
-			} catch (Exception e) {
-				if(logErrors) {
-					log.error("Ping Processing Exception", e);
+		if(!NATIVE_MODE.equals(probeMode)) {
+			collectProbes();
+		} else {
+			for(String s: servers) {
+				String[] fragment = s.split("\\|");
+				String ip = fragment[0];
+				String name = fragment[1];
+				try {
+					String output = ping(ip);
+					if(isWindows) {
+						processWindowsPing(output, name);
+					} else {
+						processLinuxPing(output, name);
+					}
+				} catch (Exception e) {
+					if(logErrors) {
+						log.error("Ping Processing Exception", e);
+					}
 				}
-			}
 			
+			}
 		}
 		collectTime = System.currentTimeMillis()-start;
 		if(traceCollectionTime) {
@@ -212,6 +238,74 @@ public class PingCollector extends BaseCollector {
 		}
 	}
 	
+	/**
+	 * Probes all the servers in-process and traces the same metrics as the OS ping.
+	 */
+	protected void collectProbes() {
+		List<PingTarget> probeTargets = getTargets();
+		try {
+			if(TCP_MODE.equals(probeMode)) {
+				ReachabilityProber.probeTcp(probeTargets, packetCount, timeout*1000, maxInFlight);
+			} else {
+				ReachabilityProber.probeIcmp(probeTargets, packetCount, timeout*1000);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (Exception e) {
+			if(logErrors) {
+				log.error("Ping Probe Exception", e);
+			}
+			return;
+		}
+		for(PingTarget target: probeTargets) {
+			String segment = tracer.buildSegment(segmentPrefix, false, target.getName());
+			tracer.recordCounterMetric(segment, "Minimum", target.getMinimum());
+			tracer.recordCounterMetric(segment, "Average", target.getAverage());
+			tracer.recordCounterMetric(segment, "Maximum", target.getMaximum());
+			tracer.recordCounterMetric(segment, "Packet Loss", target.getPacketLoss());
+		}
+	}
+	
+	/**
+	 * Returns the in-process probe targets, building them from the configured servers if they have changed.
+	 * @return the probe targets
+	 */
+	protected synchronized List<PingTarget> getTargets() {
+		if(targets==null) {
+			List<PingTarget> list = new ArrayList<PingTarget>(servers.size());
+			for(String s: servers) {
+				String[] fragment = s.split("\\|");
+				int[] ports = probePorts;
+				if(fragment.length > 2) {
+					try {
+						ports = parsePorts(fragment[2]);
+					} catch (Exception e) {
+						if(logErrors) log.warn("Invalid ports for server [" + s + "]. Using " + getProbePorts());
+					}
+				}
+				list.add(new PingTarget(fragment[0].trim(), fragment[1].trim(), ports));
+			}
+			targets = list;
+		}
+		return targets;
+	}
+	
+	/**
+	 * Parses a comma separated list of ports.
+	 * @param ports The port list
+	 * @return the ports
+	 */
+	protected static int[] parsePorts(String ports) {
+		String[] values = PORT_DELIM.split(ports.trim());
+		int[] parsed = new int[values.length];
+		for(int i = 0; i < values.length; i++) {
+			parsed[i] = Integer.parseInt(values[i]);
+		}
+		if(parsed.length==0) throw new IllegalArgumentException("No ports in [" + ports + "]");
+		return parsed;
+	}
+	
 	
 	public static void log(Object message) {
 		System.out.println(message);
@@ -247,8 +341,9 @@ public class PingCollector extends BaseCollector {
      * Pattern is IP Address | Host Name
 	 * @param s
 	 */
-	public void setServer(String s) {
+	public synchronized void setServer(String s) {
 		servers.add(s);
+		targets = null;
 	}
 	
 	/**
@@ -324,6 +419,68 @@ public class PingCollector extends BaseCollector {
 		this.timeout = timeout;
 	}
 	
+	/**
+	 * The probe mode.
+	 * @return the probe mode
+	 */
+	@JMXAttribute(description="The probe mode: native forks the OS ping, icmp and tcp probe in-process.", name="ProbeMode")
+	public String getProbeMode() {
+		return probeMode;
+	}
+	
+	/**
+	 * Sets the probe mode. Unrecognized modes are ignored.
+	 * @param probeMode One of native, icmp or tcp
+	 */
+	public void setProbeMode(String probeMode) {
+		String mode = probeMode==null ? "" : probeMode.trim().toLowerCase();
+		if(NATIVE_MODE.equals(mode) || ICMP_MODE.equals(mode) || TCP_MODE.equals(mode)) {
+			this.probeMode = mode;
+		} else if(logErrors) {
+			log.warn("Unrecognized probe mode [" + probeMode + "]. Keeping " + this.probeMode);
+		}
+	}
+	
+	/**
+	 * The default TCP ports to probe.
+	 * @return a comma separated list of ports
+	 */
+	@JMXAttribute(description="The default TCP ports to probe in tcp mode.", name="ProbePorts")
+	public String getProbePorts() {
+		StringBuilder buff = new StringBuilder();
+		for(int port: probePorts) {
+			if(buff.length() > 0) buff.append(",");
+			buff.append(port);
+		}
+		return buff.toString();
+	}
+	
+	/**
+	 * Sets the default TCP ports to probe.
+	 * @param probePorts a comma separated list of ports
+	 */
+	public synchronized void setProbePorts(String probePorts) {
+		this.probePorts = parsePorts(probePorts);
+		targets = null;
+	}
+	
+	/**
+	 * The maximum number of servers with a TCP probe in flight.
+	 * @return the maximum number of servers in flight
+	 */
+	@JMXAttribute(description="The maximum number of servers with a TCP probe in flight.", name="MaxInFlight")
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+	
+	/**
+	 * Sets the maximum number of servers with a TCP probe in flight.
+	 * @param maxInFlight the maximum number of servers in flight
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+	
 	
 
 }
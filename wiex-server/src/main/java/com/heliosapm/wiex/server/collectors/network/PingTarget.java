@@ -0,0 +1,160 @@
+/**
+ *
+ */
+package com.heliosapm.wiex.server.collectors.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * <p>Title: PingTarget</p>
+ * <p>Description: A host probed by the {@link ReachabilityProber}, with the ports to probe it on and
+ * the round trip statistics of its last probe.</p>
+ * <p>Copyright: Copyright (c) 2007</p>
+ * <p>Company: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+public class PingTarget {
+	/** The IP address or host name */
+	protected final String address;
+	/** The name the statistics are traced under */
+	protected final String name;
+	/** The TCP ports to probe */
+	protected final int[] ports;
+	/** The address resolved for the current probe, or null if it could not be resolved */
+	protected volatile InetAddress resolvedAddress = null;
+	/** The number of probes sent */
+	protected int sent = 0;
+	/** The number of probes answered */
+	protected int received = 0;
+	/** The total round trip time of the answered probes in nanos */
+	protected long totalRtt = 0;
+	/** The minimum round trip time in nanos */
+	protected long minRtt = Long.MAX_VALUE;
+	/** The maximum round trip time in nanos */
+	protected long maxRtt = 0;
+
+	/**
+	 * Creates a new PingTarget
+	 * @param address The IP address or host name
+	 * @param name The name the statistics are traced under
+	 * @param ports The TCP ports to probe
+	 */
+	public PingTarget(String address, String name, int[] ports) {
+		this.address = address;
+		this.name = name;
+		this.ports = ports;
+	}
+
+	/**
+	 * Resolves the target's address and keeps it for the current probe.
+	 * @return the resolved address
+	 * @throws IOException Thrown if the address cannot be resolved
+	 */
+	public InetAddress resolve() throws IOException {
+		resolvedAddress = null;
+		resolvedAddress = InetAddress.getByName(address);
+		return resolvedAddress;
+	}
+
+	/**
+	 * @return the address resolved for the current probe, or null if it could not be resolved
+	 */
+	public InetAddress getResolvedAddress() {
+		return resolvedAddress;
+	}
+
+	/**
+	 * Clears the statistics before a new probe.
+	 */
+	public void reset() {
+		sent = 0;
+		received = 0;
+		totalRtt = 0;
+		minRtt = Long.MAX_VALUE;
+		maxRtt = 0;
+	}
+
+	/**
+	 * Records an answered probe.
+	 * @param rtt The round trip time in nanos
+	 */
+	public void reply(long rtt) {
+		sent++;
+		received++;
+		totalRtt += rtt;
+		if(rtt < minRtt) minRtt = rtt;
+		if(rtt > maxRtt) maxRtt = rtt;
+	}
+
+	/**
+	 * Records an unanswered probe.
+	 */
+	public void lost() {
+		sent++;
+	}
+
+	/**
+	 * @return the IP address or host name
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return the name the statistics are traced under
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the TCP ports to probe
+	 */
+	public int[] getPorts() {
+		return ports;
+	}
+
+	/**
+	 * @return the number of probes sent
+	 */
+	public int getSent() {
+		return sent;
+	}
+
+	/**
+	 * @return the number of probes answered
+	 */
+	public int getReceived() {
+		return received;
+	}
+
+	/**
+	 * @return the minimum round trip time in ms. or -1 if no probe was answered
+	 */
+	public long getMinimum() {
+		return received==0 ? -1 : minRtt / 1000000L;
+	}
+
+	/**
+	 * @return the average round trip time in ms. or -1 if no probe was answered
+	 */
+	public long getAverage() {
+		return received==0 ? -1 : totalRtt / received / 1000000L;
+	}
+
+	/**
+	 * @return the maximum round trip time in ms. or -1 if no probe was answered
+	 */
+	public long getMaximum() {
+		return received==0 ? -1 : maxRtt / 1000000L;
+	}
+
+	/**
+	 * @return the percentage of probes that were not answered
+	 */
+	public int getPacketLoss() {
+		return sent==0 ? 100 : (sent - received) * 100 / sent;
+	}
+}
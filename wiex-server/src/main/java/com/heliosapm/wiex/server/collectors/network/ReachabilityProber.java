@@ -0,0 +1,321 @@
+/**
+ *
+ */
+package com.heliosapm.wiex.server.collectors.network;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
+
+/**
+ * <p>Title: ReachabilityProber</p>
+ * <p>Description: In-process reachability prober that computes round trip time and loss statistics for {@link PingTarget}s
+ * without forking a ping process per host.</p>
+ * <p>TCP probes attempt a non-blocking connect to each of a target's ports at once, and the first port to either accept or refuse
+ * the connection answers the attempt, since a refusal also comes back from the host. The attempts of all targets are multiplexed on
+ * a single selector, with at most a configured number of targets in flight at a time. The targets' names are resolved once per probe
+ * before the selector loop starts, so a slow lookup does not hold up the attempts of other targets.</p>
+ * <p>ICMP probes use <code>InetAddress.isReachable</code>, which sends an ICMP echo when the JVM is permitted to and otherwise
+ * falls back to a TCP connect to the echo port. Since it blocks, the ICMP probes of different targets run concurrently on a shared
+ * executor whose thread count defaults to the system property <b>wiex.ping.prober.threads</b> (32). The name lookups of TCP probes
+ * run concurrently on the same executor.</p>
+ * <p>Copyright: Copyright (c) 2007</p>
+ * <p>Company: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+public class ReachabilityProber {
+	/** The logger */
+	protected static final Logger log = Logger.getLogger(ReachabilityProber.class);
+	/** The executor shared by ICMP probes and name lookups */
+	protected static ExecutorService probeExecutor = null;
+	/** The property defining the number of threads in the shared ICMP probe executor */
+	public static final String PROBE_THREADS_PROP = "wiex.ping.prober.threads";
+	/** The default number of threads in the shared ICMP probe executor */
+	public static final int DEFAULT_PROBE_THREADS = 32;
+
+	/**
+	 * Probes each target with TCP connects on its ports.
+	 * @param targets The targets to probe
+	 * @param count The number of attempts per target
+	 * @param timeout The timeout of each attempt in ms.
+	 * @param maxInFlight The maximum number of targets with an attempt in flight
+	 * @throws IOException Thrown if the selector cannot be opened
+	 * @throws InterruptedException Thrown if the calling thread is interrupted while waiting for the name lookups
+	 */
+	public static void probeTcp(List<PingTarget> targets, int count, int timeout, int maxInFlight) throws IOException, InterruptedException {
+		resolve(targets);
+		LinkedList<PingTarget> waiting = new LinkedList<PingTarget>();
+		for(PingTarget target: targets) {
+			target.reset();
+			if(count <= 0) continue;
+			if(target.getResolvedAddress()==null) {
+				// every attempt to a name that does not resolve is lost
+				for(int i = 0; i < count; i++) {
+					target.lost();
+				}
+			} else {
+				waiting.add(target);
+			}
+		}
+		List<TcpAttempt> inFlight = new ArrayList<TcpAttempt>();
+		long timeoutNanos = timeout * 1000000L;
+		Selector selector = Selector.open();
+		try {
+			while(!waiting.isEmpty() || !inFlight.isEmpty()) {
+				while(!waiting.isEmpty() && inFlight.size() < Math.max(1, maxInFlight)) {
+					PingTarget target = waiting.removeFirst();
+					TcpAttempt attempt = new TcpAttempt(target, timeoutNanos);
+					attempt.start(selector);
+					if(attempt.done) {
+						finish(attempt, count, waiting);
+					} else {
+						inFlight.add(attempt);
+					}
+				}
+				if(inFlight.isEmpty()) continue;
+				long now = System.nanoTime();
+				long nextDeadline = Long.MAX_VALUE;
+				for(TcpAttempt attempt: inFlight) {
+					nextDeadline = Math.min(nextDeadline, attempt.deadline);
+				}
+				long wait = (nextDeadline - now) / 1000000L;
+				if(wait > 0) {
+					selector.select(wait);
+				} else {
+					selector.selectNow();
+				}
+				now = System.nanoTime();
+				for(Iterator<SelectionKey> iter = selector.selectedKeys().iterator(); iter.hasNext();) {
+					SelectionKey key = iter.next();
+					iter.remove();
+					((TcpAttempt)key.attachment()).connected(key, now);
+				}
+				for(Iterator<TcpAttempt> iter = inFlight.iterator(); iter.hasNext();) {
+					TcpAttempt attempt = iter.next();
+					if(!attempt.done && attempt.deadline - now > 0) continue;
+					iter.remove();
+					finish(attempt, count, waiting);
+				}
+			}
+		} finally {
+			for(TcpAttempt attempt: inFlight) {
+				attempt.close();
+			}
+			try { selector.close(); } catch (Exception e) {}
+		}
+	}
+
+	/**
+	 * Records a finished attempt and queues the target's next attempt if it has one.
+	 * @param attempt The finished attempt
+	 * @param count The number of attempts per target
+	 * @param waiting The targets waiting to start an attempt
+	 */
+	protected static void finish(TcpAttempt attempt, int count, LinkedList<PingTarget> waiting) {
+		attempt.close();
+		if(attempt.rtt >= 0) {
+			attempt.target.reply(attempt.rtt);
+		} else {
+			attempt.target.lost();
+		}
+		if(attempt.target.getSent() < count) {
+			waiting.addLast(attempt.target);
+		}
+	}
+
+	/**
+	 * Resolves the targets' addresses concurrently on the shared probe executor. 
+	 * A target whose address cannot be resolved is left without a resolved address.
+	 * @param targets The targets to resolve
+	 * @throws InterruptedException Thrown if the calling thread is interrupted while waiting for the lookups
+	 */
+	protected static void resolve(List<PingTarget> targets) throws InterruptedException {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(targets.size());
+		for(final PingTarget target: targets) {
+			tasks.add(new Callable<Object>() {
+				public Object call() throws Exception {
+					try {
+						target.resolve();
+					} catch (IOException e) {
+						if(log.isDebugEnabled()) log.debug("Failed to resolve [" + target.getAddress() + "]:" + e);
+					}
+					return null;
+				}
+			});
+		}
+		getProbeExecutor().invokeAll(tasks);
+	}
+
+	/**
+	 * Probes the targets concurrently with <code>InetAddress.isReachable</code>.
+	 * @param targets The targets to probe
+	 * @param count The number of attempts per target
+	 * @param timeout The timeout of each attempt in ms.
+	 * @throws InterruptedException Thrown if the calling thread is interrupted while waiting for the probes
+	 */
+	public static void probeIcmp(List<PingTarget> targets, final int count, final int timeout) throws InterruptedException {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(targets.size());
+		for(final PingTarget target: targets) {
+			target.reset();
+			tasks.add(new Callable<Object>() {
+				public Object call() throws Exception {
+					InetAddress address = InetAddress.getByName(target.getAddress());
+					for(int i = 0; i < count; i++) {
+						long start = System.nanoTime();
+						if(address.isReachable(timeout)) {
+							target.reply(System.nanoTime() - start);
+						} else {
+							target.lost();
+						}
+					}
+					return null;
+				}
+			});
+		}
+		getProbeExecutor().invokeAll(tasks);
+	}
+
+	/**
+	 * Returns the executor shared by ICMP probes, creating it on first use.
+	 * @return the probe executor
+	 */
+	protected static synchronized ExecutorService getProbeExecutor() {
+		if(probeExecutor==null) {
+			int threads = ConfigurationHelper.getIntSystemThenEnvProperty(PROBE_THREADS_PROP, DEFAULT_PROBE_THREADS);
+			final AtomicInteger serial = new AtomicInteger(0);
+			probeExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "ReachabilityProberWorker#" + serial.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return probeExecutor;
+	}
+
+	/**
+	 * <p>Title: TcpAttempt</p>
+	 * <p>Description: One TCP probe of a target, connecting to all its ports at once.</p>
+	 */
+	protected static class TcpAttempt {
+		/** The target */
+		protected final PingTarget target;
+		/** The channels connecting to the target's ports */
+		protected final List<SocketChannel> channels = new ArrayList<SocketChannel>();
+		/** The start time in nanos */
+		protected long start = 0;
+		/** The deadline in nanos */
+		protected final long deadline;
+		/** The round trip time in nanos, or -1 if the target has not answered */
+		protected long rtt = -1;
+		/** Indicates if the attempt is finished */
+		protected boolean done = false;
+		/** The number of channels still connecting */
+		protected int pending = 0;
+
+		/**
+		 * Creates a new TcpAttempt
+		 * @param target The target
+		 * @param timeoutNanos The timeout in nanos
+		 */
+		protected TcpAttempt(PingTarget target, long timeoutNanos) {
+			this.target = target;
+			start = System.nanoTime();
+			deadline = start + timeoutNanos;
+		}
+
+		/**
+		 * Starts connecting to each of the target's ports at the address resolved for the current probe.
+		 * @param selector The selector to register the connecting channels with
+		 */
+		protected void start(Selector selector) {
+			InetAddress address = target.getResolvedAddress();
+			if(address==null) {
+				done = true;
+				return;
+			}
+			start = System.nanoTime();
+			for(int port: target.getPorts()) {
+				SocketChannel channel = null;
+				try {
+					channel = SocketChannel.open();
+					channel.configureBlocking(false);
+					channels.add(channel);
+					if(channel.connect(new InetSocketAddress(address, port))) {
+						answered(System.nanoTime());
+						return;
+					}
+					channel.register(selector, SelectionKey.OP_CONNECT, this);
+					pending++;
+				} catch (ConnectException e) {
+					answered(System.nanoTime());
+					return;
+				} catch (IOException e) {
+					// this port cannot answer
+				}
+			}
+			if(pending==0) done = true;
+		}
+
+		/**
+		 * Completes the connect of a selected channel.
+		 * @param key The selected key
+		 * @param selected The time in nanos the key was selected
+		 */
+		protected void connected(SelectionKey key, long selected) {
+			if(done) return;
+			SocketChannel channel = (SocketChannel)key.channel();
+			key.cancel();
+			pending--;
+			try {
+				if(channel.finishConnect()) {
+					answered(selected);
+				}
+			} catch (ConnectException e) {
+				// refused, so the host answered
+				answered(selected);
+			} catch (IOException e) {
+				// unreachable through this port
+			}
+			if(!done && pending==0) done = true;
+		}
+
+		/**
+		 * Marks the attempt as answered by the target.
+		 * @param answered The time in nanos the answer was seen
+		 */
+		protected void answered(long answered) {
+			rtt = answered - start;
+			done = true;
+		}
+
+		/**
+		 * Closes the attempt's channels.
+		 */
+		protected void close() {
+			for(SocketChannel channel: channels) {
+				try { channel.close(); } catch (Exception e) {}
+			}
+			channels.clear();
+		}
+	}
+}
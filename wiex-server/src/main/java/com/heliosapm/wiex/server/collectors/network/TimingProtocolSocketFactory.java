@@ -0,0 +1,199 @@
+/**
+ *
+ */
+package com.heliosapm.wiex.server.collectors.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.commons.httpclient.ConnectTimeoutException;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory;
+
+/**
+ * <p>Title: TimingProtocolSocketFactory</p>
+ * <p>Description: An httpclient socket factory that times the connects it makes for the calling thread.
+ * A thread calls {@link #begin(int)} before executing a method and {@link #end()} afterwards. The timings array returned by
+ * <code>begin</code> receives the time taken to open a new connection, including name resolution and, for https, the SSL handshake,
+ * which stays -1 if a pooled connection was reused, and the time the connection was acquired from the pool when the connection
+ * manager calls {@link #acquired()}. The connect timeout passed to <code>begin</code> overrides the connection manager's.</p>
+ * <p>The https variant layers over the JVM's default https socket factory and, like {@link NonValidatingSSLHostNameVerifier},
+ * does not verify the certificate host name.</p>
+ * <p>Copyright: Copyright (c) 2007</p>
+ * <p>Company: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+public class TimingProtocolSocketFactory implements ProtocolSocketFactory {
+	/** The timings of the calling thread's current method */
+	protected static final ThreadLocal<long[]> connectState = new ThreadLocal<long[]>();
+	/** The index of the connect timeout in the timings */
+	public static final int CONNECT_TIMEOUT = 0;
+	/** The index of the connect time in the timings */
+	public static final int CONNECT_TIME = 1;
+	/** The index of the connection acquisition timestamp in the timings */
+	public static final int ACQUIRED = 2;
+	/** The timing http protocol */
+	public static final Protocol HTTP = new Protocol("http", new TimingProtocolSocketFactory(), 80);
+	/** The timing https protocol, using the non deprecated constructor, which marks the protocol secure since the factory is a <code>SecureProtocolSocketFactory</code> */
+	public static final Protocol HTTPS = new Protocol("https", (ProtocolSocketFactory)new Secure(), 443);
+
+	/**
+	 * Starts timing connects made by the calling thread.
+	 * @param connectTimeout The connect timeout in ms. or 0 to use the connection manager's.
+	 * @return the timings, indexed by {@link #CONNECT_TIMEOUT}, {@link #CONNECT_TIME} and {@link #ACQUIRED}.
+	 */
+	public static long[] begin(int connectTimeout) {
+		long[] state = new long[]{connectTimeout, -1, 0};
+		connectState.set(state);
+		return state;
+	}
+
+	/**
+	 * Marks the time the calling thread acquired a connection from the pool.
+	 */
+	public static void acquired() {
+		long[] state = connectState.get();
+		if(state!=null) {
+			state[ACQUIRED] = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Stops timing connects made by the calling thread.
+	 */
+	public static void end() {
+		connectState.remove();
+	}
+
+	/**
+	 * Returns the protocol for the passed URL scheme.
+	 * @param scheme The URL scheme
+	 * @return the timing protocol or null if the scheme is not http or https.
+	 */
+	public static Protocol getProtocol(String scheme) {
+		if("http".equalsIgnoreCase(scheme)) return HTTP;
+		if("https".equalsIgnoreCase(scheme)) return HTTPS;
+		return null;
+	}
+
+	/**
+	 * @param host
+	 * @param port
+	 * @param localAddress
+	 * @param localPort
+	 * @param params
+	 * @return a connected socket
+	 * @throws IOException
+	 * @throws UnknownHostException
+	 * @throws ConnectTimeoutException
+	 * @see org.apache.commons.httpclient.protocol.ProtocolSocketFactory#createSocket(java.lang.String, int, java.net.InetAddress, int, org.apache.commons.httpclient.params.HttpConnectionParams)
+	 */
+	public Socket createSocket(String host, int port, InetAddress localAddress, int localPort, HttpConnectionParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+		long[] state = connectState.get();
+		int timeout = (state!=null && state[CONNECT_TIMEOUT] > 0) ? (int)state[CONNECT_TIMEOUT] : (params==null ? 0 : params.getConnectionTimeout());
+		long start = System.currentTimeMillis();
+		Socket socket = new Socket();
+		try {
+			if(localAddress!=null) {
+				socket.bind(new InetSocketAddress(localAddress, localPort));
+			}
+			socket.connect(new InetSocketAddress(host, port), timeout);
+			socket.setSoTimeout(timeout);
+			socket = layer(socket, host, port);
+		} catch (SocketTimeoutException e) {
+			try { socket.close(); } catch (Exception ex) {}
+			throw new ConnectTimeoutException("Connect to " + host + ":" + port + " timed out after " + timeout + " ms.");
+		} catch (IOException e) {
+			try { socket.close(); } catch (Exception ex) {}
+			throw e;
+		}
+		if(state!=null) {
+			state[CONNECT_TIME] = System.currentTimeMillis() - start;
+		}
+		return socket;
+	}
+
+	/**
+	 * @param host
+	 * @param port
+	 * @param localAddress
+	 * @param localPort
+	 * @return a connected socket
+	 * @throws IOException
+	 * @throws UnknownHostException
+	 * @see org.apache.commons.httpclient.protocol.ProtocolSocketFactory#createSocket(java.lang.String, int, java.net.InetAddress, int)
+	 */
+	public Socket createSocket(String host, int port, InetAddress localAddress, int localPort) throws IOException, UnknownHostException {
+		return createSocket(host, port, localAddress, localPort, null);
+	}
+
+	/**
+	 * @param host
+	 * @param port
+	 * @return a connected socket
+	 * @throws IOException
+	 * @throws UnknownHostException
+	 * @see org.apache.commons.httpclient.protocol.ProtocolSocketFactory#createSocket(java.lang.String, int)
+	 */
+	public Socket createSocket(String host, int port) throws IOException, UnknownHostException {
+		return createSocket(host, port, null, 0, null);
+	}
+
+	/**
+	 * Layers the connected socket before it is handed to httpclient. The plain factory returns it as is.
+	 * @param socket The connected socket
+	 * @param host The host
+	 * @param port The port
+	 * @return the socket to use
+	 * @throws IOException
+	 */
+	protected Socket layer(Socket socket, String host, int port) throws IOException {
+		return socket;
+	}
+
+	/**
+	 * <p>Title: Secure</p>
+	 * <p>Description: The https variant, which completes the SSL handshake as part of the timed connect.</p>
+	 */
+	public static class Secure extends TimingProtocolSocketFactory implements SecureProtocolSocketFactory {
+
+		/**
+		 * @param socket
+		 * @param host
+		 * @param port
+		 * @param autoClose
+		 * @return an SSL socket layered over the passed socket
+		 * @throws IOException
+		 * @throws UnknownHostException
+		 * @see org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory#createSocket(java.net.Socket, java.lang.String, int, boolean)
+		 */
+		public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException, UnknownHostException {
+			return HttpsURLConnection.getDefaultSSLSocketFactory().createSocket(socket, host, port, autoClose);
+		}
+
+		/**
+		 * Layers SSL over the connected socket and completes the handshake.
+		 * @param socket The connected socket
+		 * @param host The host
+		 * @param port The port
+		 * @return the SSL socket
+		 * @throws IOException
+		 */
+		@Override
+		protected Socket layer(Socket socket, String host, int port) throws IOException {
+			SSLSocket sslSocket = (SSLSocket)createSocket(socket, host, port, true);
+			sslSocket.startHandshake();
+			return sslSocket;
+		}
+	}
+}
@@ -3,16 +3,42 @@
  */
 package com.heliosapm.wiex.server.collectors.network;
 
-import java.io.BufferedReader;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.Reader;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.protocol.Protocol;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -21,10 +47,18 @@ import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.server.collectors.BaseCollector;
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
 
 /**
  * <p>Title: URLCheckCollector</p>
  * <p>Description: Checks URL end points and traces availability.</p> 
+ * <p>All the checks of a collection are fired concurrently on an executor shared by all URLCheckCollectors, over a pool of
+ * keep-alive connections held by each collector. Response content is matched against the content check pattern chunk by chunk
+ * as it streams in, and the check stops reading as soon as the pattern is found. The connect time of new connections, the time
+ * to the first byte of the response and the total response time are traced separately. The time to first byte and the response time
+ * are measured from when the check acquires a connection, so they do not include time spent waiting for a pooled connection.</p>
+ * <p>A check's timeout bounds the connect, each read and the check as a whole. The number of threads in the shared executor
+ * defaults to the system property <b>wiex.urlcheck.collector.threads</b> (20).</p>
  * <p>Copyright: Copyright (c) 2007</p>
  * <p>Company: Helios Development Group</p>
  * @author Whitehead
@@ -35,6 +69,24 @@ public class URLCheckCollector extends BaseCollector {
 	
 	
 	protected List<URLCheck> urlCheckList = new ArrayList<URLCheck>();
+	/** The probes of the configured URL checks, built on the first collection */
+	protected List<URLProbe> probes = null;
+	/** The pooling connection manager */
+	protected MultiThreadedHttpConnectionManager connectionManager = null;
+	/** The http client */
+	protected HttpClient httpClient = null;
+	/** The maximum number of pooled connections per host */
+	protected int maxConnectionsPerHost = 4;
+	/** The maximum number of pooled connections */
+	protected int maxConnections = 50;
+	/** The number of checks that timed out in the last collection */
+	protected int lastTimedOutChecks = 0;
+	/** The executor shared by all URLCheckCollectors */
+	protected static ExecutorService probeExecutor = null;
+	/** The property defining the number of threads in the shared probe executor */
+	public static final String PROBE_THREADS_PROP = "wiex.urlcheck.collector.threads";
+	/** The default number of threads in the shared probe executor */
+	public static final int DEFAULT_PROBE_THREADS = 20;
 	
 	static {
 		// Set the default HostName verifier 
@@ -49,76 +101,432 @@ public class URLCheckCollector extends BaseCollector {
 	}
 
 	/**
-	 * Accesses each of the configured end-point URLs and traces the availability.
+	 * Accesses each of the configured end-point URLs concurrently and traces the availability.
+	 * Results are traced on the collector thread as each check finishes. A check still running when its timeout
+	 * expires is aborted and traced as unavailable, as is a check whose prior run is still executing, which an aborted run can be
+	 * after its future has been cancelled.
 	 * @see com.heliosapm.wiex.server.collectors.BaseCollector#collect()
 	 */
 	@Override
 	@JMXOperation(description="Collects URL Stats", expose=true, name="collect")
 	public void collect() {
 		long startTime = System.currentTimeMillis();
-		for(URLCheck urlCheck: urlCheckList) {
-			long size = 0;
-			URL url = urlCheck.getUrl();
-			BufferedReader bin = null;
-			long start = System.currentTimeMillis();
-			Date currentDate = new Date(start);
-			int responseCode = -1;
-			try {
-				HttpURLConnection conn = (HttpURLConnection)url.openConnection();
-				conn.setConnectTimeout(urlCheck.getTimeout());
-				conn.setReadTimeout(urlCheck.getTimeout());
-				conn.connect();
-				responseCode = conn.getResponseCode();
-				if(responseCode != HttpURLConnection.HTTP_OK) {
-					tracer.recordMetric(tracer.buildSegment(segmentPrefix, false, urlCheck.getName()), "Response Code " + responseCode, 1);
-					throw new Exception(urlCheck.getName() + " Returned Failure Response Code:" + responseCode);
-				}
-				bin = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-				char[] sizeBuffer = new char[urlCheck.getBufferSize()];
-				StringBuilder buffer = new StringBuilder();
-				while (true) {
-					int bytesRead = bin.read(sizeBuffer);
-					if(bytesRead==-1) break;
-					buffer.append(sizeBuffer, 0, bytesRead);
-					size += bytesRead;
+		HttpClient client = getHttpClient();
+		CompletionService<URLProbe> completion = new ExecutorCompletionService<URLProbe>(getProbeExecutor());
+		Map<Future<URLProbe>, URLProbe> running = new HashMap<Future<URLProbe>, URLProbe>();
+		int timedOut = 0;
+		for(URLProbe probe: getProbes()) {
+			if(probe.running.get()) {
+				timeout(probe, new Exception("Prior check of " + probe.urlCheck.getName() + " is still running"));
+				timedOut++;
+				continue;
+			}
+			probe.client = client;
+			probe.started = 0;
+			probe.future = completion.submit(probe);
+			running.put(probe.future, probe);
+		}
+		try {
+			while(!running.isEmpty()) {
+				long now = System.currentTimeMillis();
+				long nextDeadline = Long.MAX_VALUE;
+				for(URLProbe probe: running.values()) {
+					nextDeadline = Math.min(nextDeadline, probe.getDeadline(now));
 				}
-				bin.close();
-				Pattern pattern = urlCheck.getContentCheckPattern();
-				if(pattern!=null) {
-					Matcher m = pattern.matcher(buffer.toString());
-					if(!m.find()) {
-						tracer.recordMetric(tracer.buildSegment(segmentPrefix, false, urlCheck.getName()), "Content Match Failure", 1);
-						throw new Exception("Pattern \"" + urlCheck.getContentCheck() + "\" not located in returned content");
+				Future<URLProbe> done = nextDeadline > now ? completion.poll(nextDeadline - now, TimeUnit.MILLISECONDS) : null;
+				if(done!=null) {
+					URLProbe probe = running.remove(done);
+					if(probe!=null) complete(probe, done);
+				} else {
+					now = System.currentTimeMillis();
+					for(Iterator<URLProbe> iter = running.values().iterator(); iter.hasNext();) {
+						URLProbe probe = iter.next();
+						if(probe.getDeadline(now) > now) continue;
+						iter.remove();
+						if(probe.future.isDone()) {
+							complete(probe, probe.future);
+						} else {
+							probe.abort();
+							timeout(probe, new Exception(probe.urlCheck.getName() + " Timed Out After " + probe.urlCheck.getTimeout() + " ms."));
+							timedOut++;
+						}
 					}
 				}
-				long end = System.currentTimeMillis() - start;				
-				tracer.recordCounterMetric(tracer.buildSegment(segmentPrefix, false, urlCheck.getName()), "Availability", 1);					
-				tracer.recordCounterMetric(tracer.buildSegment(segmentPrefix, false, urlCheck.getName()), "Response Time", end);
-				urlCheck.setAvailable(true);				
-				urlCheck.setLastElapsedTime(end);
-				urlCheck.setLastGoodCheckTime(currentDate);
-				urlCheck.incrementGoodCheckCount();
-			} catch (Exception e) {
-				urlCheck.setAvailable(false);
-				urlCheck.setLastBadCheckTime(currentDate);
-				urlCheck.incrementBadCheckCount();
-				tracer.recordCounterMetric(tracer.buildSegment(segmentPrefix, false, urlCheck.getName()), "Availability", 0);
-				if(logErrors) {
-					log.error("Exception Testing URL[" + url + "]", e);
-				}
-			} finally {
-				try { bin.close(); } catch (Exception e) {}
-				urlCheck.setCheckCount(urlCheck.getCheckCount()+1);
-				urlCheck.setLastCheckTime(currentDate);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for(URLProbe probe: running.values()) {
+				probe.abort();
 			}
 		}
-		
+		lastTimedOutChecks = timedOut;
 		collectTime = System.currentTimeMillis() - startTime;
 		if(traceCollectionTime) {
 			tracer.recordMetric(segmentPrefix, "URLChecker Collection Time", collectTime); 
 		}
 	}
 	
+	/**
+	 * Traces the outcome of a finished check.
+	 * @param probe The probe of the check
+	 * @param future The probe's future
+	 */
+	protected void complete(URLProbe probe, Future<URLProbe> future) {
+		URLCheck urlCheck = probe.urlCheck;
+		String segment = tracer.buildSegment(segmentPrefix, false, urlCheck.getName());
+		Date currentDate = new Date(probe.started);
+		try {
+			future.get();
+			if(probe.connectTime >= 0) {
+				tracer.recordCounterMetric(segment, "Connect Time", probe.connectTime);
+			}
+			if(probe.responseCode != HttpStatus.SC_OK) {
+				tracer.recordMetric(segment, "Response Code " + probe.responseCode, 1);
+				throw new Exception(urlCheck.getName() + " Returned Failure Response Code:" + probe.responseCode);
+			}
+			tracer.recordCounterMetric(segment, "Time To First Byte", probe.firstByteTime);
+			if(urlCheck.getContentCheckPattern()!=null && !probe.contentMatched) {
+				tracer.recordMetric(segment, "Content Match Failure", 1);
+				throw new Exception("Pattern \"" + urlCheck.getContentCheck() + "\" not located in returned content");
+			}
+			tracer.recordCounterMetric(segment, "Availability", 1);					
+			tracer.recordCounterMetric(segment, "Response Time", probe.elapsed);
+			urlCheck.setAvailable(true);				
+			urlCheck.setLastElapsedTime(probe.elapsed);
+			urlCheck.setLastGoodCheckTime(currentDate);
+			urlCheck.incrementGoodCheckCount();
+			urlCheck.setCheckCount(urlCheck.getCheckCount()+1);
+			urlCheck.setLastCheckTime(currentDate);
+		} catch (ExecutionException e) {
+			failed(urlCheck, currentDate, e.getCause());
+		} catch (Exception e) {
+			failed(urlCheck, currentDate, e);
+		}
+	}
+	
+	/**
+	 * Traces a check that timed out or could not be started.
+	 * @param probe The probe of the check
+	 * @param cause The reason for the failure
+	 */
+	protected void timeout(URLProbe probe, Throwable cause) {
+		long started = probe.started;
+		failed(probe.urlCheck, new Date(started > 0 ? started : System.currentTimeMillis()), cause);
+	}
+	
+	/**
+	 * Traces a failed check.
+	 * @param urlCheck The URL check
+	 * @param currentDate The time of the check
+	 * @param cause The reason for the failure
+	 */
+	protected void failed(URLCheck urlCheck, Date currentDate, Throwable cause) {
+		urlCheck.setAvailable(false);
+		urlCheck.setLastBadCheckTime(currentDate);
+		urlCheck.incrementBadCheckCount();
+		urlCheck.setCheckCount(urlCheck.getCheckCount()+1);
+		urlCheck.setLastCheckTime(currentDate);
+		tracer.recordCounterMetric(tracer.buildSegment(segmentPrefix, false, urlCheck.getName()), "Availability", 0);
+		if(logErrors) {
+			log.error("Exception Testing URL[" + urlCheck.getUrl() + "]", cause);
+		}
+	}
+	
+	/**
+	 * Returns the probes of the configured URL checks, building them if the checks have changed.
+	 * @return the probes
+	 */
+	protected synchronized List<URLProbe> getProbes() {
+		if(probes==null) {
+			List<URLProbe> list = new ArrayList<URLProbe>(urlCheckList.size());
+			for(URLCheck urlCheck: urlCheckList) {
+				list.add(new URLProbe(urlCheck));
+			}
+			probes = list;
+		}
+		return probes;
+	}
+	
+	/**
+	 * Returns the http client, creating it and its pooling connection manager on first use.
+	 * @return the http client
+	 */
+	protected synchronized HttpClient getHttpClient() {
+		if(httpClient==null) {
+			connectionManager = new MultiThreadedHttpConnectionManager() {
+				@Override
+				public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout) throws ConnectionPoolTimeoutException {
+					HttpConnection conn = super.getConnectionWithTimeout(hostConfiguration, timeout);
+					TimingProtocolSocketFactory.acquired();
+					return conn;
+				}
+			};
+			HttpConnectionManagerParams params = connectionManager.getParams();
+			params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+			params.setMaxTotalConnections(maxConnections);
+			params.setStaleCheckingEnabled(true);
+			httpClient = new HttpClient(connectionManager);
+		}
+		return httpClient;
+	}
+	
+	/**
+	 * Returns the executor shared by all URLCheckCollectors, creating it on first use.
+	 * @return the probe executor
+	 */
+	protected static synchronized ExecutorService getProbeExecutor() {
+		if(probeExecutor==null) {
+			int threads = ConfigurationHelper.getIntSystemThenEnvProperty(PROBE_THREADS_PROP, DEFAULT_PROBE_THREADS);
+			final AtomicInteger serial = new AtomicInteger(0);
+			probeExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "URLCheckCollectorWorker#" + serial.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return probeExecutor;
+	}
+	
+	/**
+	 * Stops the collector and closes its pooled connections.
+	 * @see com.heliosapm.wiex.server.collectors.BaseCollector#stop()
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		resetConnections();
+	}
+	
+	/**
+	 * Closes the pooled connections. New connections are opened on the next collection.
+	 */
+	@JMXOperation(description="Closes the pooled connections", expose=true, name="resetConnections")
+	public synchronized void resetConnections() {
+		if(connectionManager!=null) {
+			connectionManager.shutdown();
+			connectionManager = null;
+			httpClient = null;
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of pooled connections per host.
+	 * @return the maximum number of connections per host
+	 */
+	@JMXAttribute(description="The maximum number of pooled connections per host", expose=true, name="MaxConnectionsPerHost")
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+	
+	/**
+	 * Sets the maximum number of pooled connections per host.
+	 * @param maxConnectionsPerHost the maximum number of connections per host
+	 */
+	public synchronized void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		if(connectionManager!=null) {
+			connectionManager.getParams().setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of pooled connections.
+	 * @return the maximum number of connections
+	 */
+	@JMXAttribute(description="The maximum number of pooled connections", expose=true, name="MaxConnections")
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+	
+	/**
+	 * Sets the maximum number of pooled connections.
+	 * @param maxConnections the maximum number of connections
+	 */
+	public synchronized void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+		if(connectionManager!=null) {
+			connectionManager.getParams().setMaxTotalConnections(maxConnections);
+		}
+	}
+	
+	/**
+	 * Returns the number of pooled connections.
+	 * @return the number of pooled connections
+	 */
+	@JMXAttribute(description="The number of pooled connections", expose=true, name="PooledConnections")
+	public synchronized int getPooledConnections() {
+		return connectionManager==null ? 0 : connectionManager.getConnectionsInPool();
+	}
+	
+	/**
+	 * Returns the number of checks that timed out in the last collection.
+	 * @return the number of timed out checks
+	 */
+	@JMXAttribute(description="The number of checks that timed out in the last collection", expose=true, name="LastTimedOutChecks")
+	public int getLastTimedOutChecks() {
+		return lastTimedOutChecks;
+	}
+	
+	/**
+	 * <p>Title: URLProbe</p>
+	 * <p>Description: Executes one URL check on the probe executor and records its timings for the collector thread to trace.</p>
+	 */
+	protected static class URLProbe implements Callable<URLProbe> {
+		/** The URL check */
+		protected final URLCheck urlCheck;
+		/** The path and query to request */
+		protected final String path;
+		/** The host to request from, or null if the URL is not http or https */
+		protected final HostConfiguration hostConfiguration;
+		/** The http client to use */
+		protected HttpClient client = null;
+		/** The future of the current run */
+		protected Future<URLProbe> future = null;
+		/** Indicates if a run is executing, which an aborted run still can be while its future reports done */
+		protected final AtomicBoolean running = new AtomicBoolean(false);
+		/** The time the current run started, or 0 if it has not started */
+		protected volatile long started = 0;
+		/** The method being executed */
+		protected volatile HttpMethod method = null;
+		/** The response code */
+		protected int responseCode = -1;
+		/** The time taken to open a new connection or -1 if a pooled connection was reused */
+		protected long connectTime = -1;
+		/** The time from acquiring a connection to the first byte of the response */
+		protected long firstByteTime = -1;
+		/** The time from acquiring a connection to the end of the response */
+		protected long elapsed = 0;
+		/** Indicates if the content check pattern was found */
+		protected boolean contentMatched = false;
+		
+		/**
+		 * Creates a new URLProbe
+		 * @param urlCheck The URL check
+		 */
+		protected URLProbe(URLCheck urlCheck) {
+			this.urlCheck = urlCheck;
+			URL url = urlCheck.getUrl();
+			String file = url.getFile();
+			path = (file==null || file.length()==0) ? "/" : file;
+			Protocol protocol = TimingProtocolSocketFactory.getProtocol(url.getProtocol());
+			if(protocol==null) {
+				hostConfiguration = null;
+			} else {
+				hostConfiguration = new HostConfiguration();
+				hostConfiguration.setHost(url.getHost(), url.getPort()==-1 ? protocol.getDefaultPort() : url.getPort(), protocol);
+			}
+		}
+		
+		/**
+		 * Returns the time by which the current run must finish.
+		 * @param now The current time
+		 * @return the deadline
+		 */
+		protected long getDeadline(long now) {
+			int timeout = urlCheck.getTimeout();
+			if(timeout <= 0) return Long.MAX_VALUE;
+			long start = started;
+			return (start > 0 ? start : now) + timeout;
+		}
+		
+		/**
+		 * Aborts the current run, closing its connection.
+		 */
+		protected void abort() {
+			HttpMethod m = method;
+			if(m!=null) {
+				try { m.abort(); } catch (Exception e) {}
+			}
+			future.cancel(true);
+		}
+		
+		/**
+		 * Executes the check, flagging the probe as running until the check returns.
+		 * @return this probe
+		 * @throws Exception
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public URLProbe call() throws Exception {
+			running.set(true);
+			try {
+				return execute();
+			} finally {
+				running.set(false);
+			}
+		}
+		
+		/**
+		 * Executes the check. The response content is decoded and matched chunk by chunk, 
+		 * and the connection is closed as soon as the content check pattern is found. 
+		 * Matches of up to the check's buffer size are found across chunk boundaries.
+		 * @return this probe
+		 * @throws Exception
+		 */
+		protected URLProbe execute() throws Exception {
+			started = System.currentTimeMillis();
+			responseCode = -1;
+			connectTime = -1;
+			firstByteTime = -1;
+			elapsed = 0;
+			contentMatched = false;
+			if(hostConfiguration==null) {
+				throw new Exception("Unsupported protocol for URL [" + urlCheck.getUrl() + "]");
+			}
+			int timeout = urlCheck.getTimeout();
+			GetMethod get = new GetMethod(path);
+			get.getParams().setSoTimeout(timeout);
+			get.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(1, false));
+			method = get;
+			long[] timings = TimingProtocolSocketFactory.begin(timeout);
+			long acquired = started;
+			try {
+				responseCode = client.executeMethod(hostConfiguration, get);
+				if(timings[TimingProtocolSocketFactory.ACQUIRED] > 0) {
+					acquired = timings[TimingProtocolSocketFactory.ACQUIRED];
+				}
+				firstByteTime = System.currentTimeMillis() - acquired;
+				if(responseCode != HttpStatus.SC_OK) return this;
+				InputStream is = get.getResponseBodyAsStream();
+				if(is!=null) {
+					Reader reader = new InputStreamReader(is, get.getResponseCharSet());
+					char[] buffer = new char[urlCheck.getBufferSize()];
+					Pattern pattern = urlCheck.getContentCheckPattern();
+					StringBuilder window = new StringBuilder(buffer.length * 2);
+					Matcher matcher = pattern==null ? null : pattern.matcher(window);
+					int read = 0;
+					while((read = reader.read(buffer)) != -1) {
+						if(matcher==null) continue;
+						window.append(buffer, 0, read);
+						matcher.reset();
+						if(matcher.find()) {
+							contentMatched = true;
+							break;
+						}
+						if(!matcher.hitEnd()) {
+							// no match can start in the window
+							window.setLength(0);
+						} else if(window.length() > buffer.length) {
+							window.delete(0, window.length() - buffer.length);
+						}
+					}
+					if(read != -1) {
+						// stop reading the rest of the content
+						get.abort();
+					}
+				}
+				elapsed = System.currentTimeMillis() - acquired;
+				return this;
+			} finally {
+				connectTime = timings[TimingProtocolSocketFactory.CONNECT_TIME];
+				TimingProtocolSocketFactory.end();
+				get.releaseConnection();
+				method = null;
+			}
+		}
+	}
+	
 
 
 
@@ -153,6 +561,7 @@ public class URLCheckCollector extends BaseCollector {
 			String name = url.getHost() + "-" + url.getPath();
 			URLCheck urlCheck = new URLCheck(5000, url, name);
 			urlCheckList.add(urlCheck);
+			probes = null;
 		} catch (Exception e) {
 			if(logErrors) {
 				log.error("Exception adding URL " + urlStr, e);
@@ -207,6 +616,7 @@ public class URLCheckCollector extends BaseCollector {
 						}
 					}					
 					urlCheckList.add(urlCheck);
+					probes = null;
 				} catch (Exception e) {
 					if(logErrors) {
 						log.error("Failed to process URLCheck parse", e);
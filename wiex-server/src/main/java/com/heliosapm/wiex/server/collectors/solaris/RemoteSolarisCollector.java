@@ -2,12 +2,7 @@ package com.heliosapm.wiex.server.collectors.solaris;
 
 
 
-import java.io.ByteArrayOutputStream;
-
 import org.apache.log4j.BasicConfigurator;
-import org.helios.jcraft.jsch.ChannelExec;
-import org.helios.jcraft.jsch.JSch;
-import org.helios.jcraft.jsch.Session;
 import org.helios.jcraft.jsch.UserInfo;
 
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
@@ -15,6 +10,8 @@ import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperationParameter;
 import com.heliosapm.wiex.server.collectors.SmartTracer;
+import com.heliosapm.wiex.server.collectors.ssh.SSHHostSessions;
+import com.heliosapm.wiex.server.collectors.ssh.SSHSessionManager;
 
 /**
  * <p>Title: RemoteSolarisCollector</p>
@@ -42,12 +39,10 @@ public class RemoteSolarisCollector extends SolarisCollector implements UserInfo
 	protected String userName = null;
 	/**	The pass phrase for the private key */
 	protected String passPhrase = null;
-	/** The JSch SSH Provider */
-	protected JSch jsch = new JSch();
 	/** The shell command to locate the target JVM Process Id */
 	protected String pIDLocator = null;
-	/** The currnt thread's SSH Session */
-	protected ThreadLocal<Session> threadSession = new ThreadLocal<Session>();
+	/** The shared SSH sessions to the host */
+	protected SSHHostSessions hostSessions = null;
 	
 	
 
@@ -107,7 +102,7 @@ MBeanServerFactory.findMBeanServer(null).each() { agent ->
 				collector.setTimeOut(25000);				
 				collector.setUserName("whitehen");
 				collector.setPassPhrase("Hello World");
-				collector.localInit();
+				collector.start();
 				for(int i = 0; i < 10; i++) {
 					long start = System.currentTimeMillis();
 					//collector.start();
@@ -123,12 +118,6 @@ MBeanServerFactory.findMBeanServer(null).each() { agent ->
 		
 	}
 	
-	protected void localInit() throws Exception {
-		jsch.setKnownHosts(knownHostsFile);
-		jsch.addIdentity(privateKeyFile, passPhrase);
-		
-	}
-	
 	/**
 	 * Command line tester logger.
 	 * @param message
@@ -138,20 +127,28 @@ MBeanServerFactory.findMBeanServer(null).each() { agent ->
 	}
 	
 	/**
-	 * Initializes the SSH constructs and calls super.
+	 * Acquires the shared SSH sessions to the host and calls super.
 	 * @throws Exception
 	 */
 	@JMXOperation(description="Starts The Service", expose=true, name="start")
 	public void start() throws Exception {
-		jsch.setKnownHosts(knownHostsFile);
-		jsch.addIdentity(privateKeyFile, passPhrase);
+		hostSessions = SSHSessionManager.acquire(hostName, port, userName, privateKeyFile, passPhrase, knownHostsFile, this, timeOut);
 		super.start();
 	}
 	
+	/**
+	 * Stops the collector and releases the shared SSH sessions to the host.
+	 */
+	@JMXOperation(description="Stops The Service", expose=true, name="stop")
+	public void stop() {
+		super.stop();
+		SSHSessionManager.release(hostSessions);
+		hostSessions = null;
+	}
+	
 	
 	/**
-	 * Collects Solaris host performance data from sar through a remote SSH connection.
-	 * Synchronized to avoid thread safety issues with the SSH connection.
+	 * Collects Solaris host performance data from sar through the shared SSH sessions to the host.
 	 * Acquires JVM's PID.
 	 * Collects JVM performance data from sar.
 	 * Collects MXBean stats.
@@ -159,75 +156,34 @@ MBeanServerFactory.findMBeanServer(null).each() { agent ->
 	 */
 	@JMXOperation(description="Collects Remote SAR Stats", expose=true, name="collect")
 	public void collect() {
-		try {
-			log.info("Collecting......");
-			threadSession.set(connectSSH());
-			super.collect();
-		} catch (Exception e) {
-			log.error("Failed To Collect On SSH Connection", e);
-		} finally {
-			try { 
-				threadSession.get().disconnect();
-				threadSession.set(null);
-			} catch (Exception e) {}
+		if(log.isDebugEnabled())log.debug("[" + objectName + "]Collecting......");
+		if(hostSessions==null) {
+			if(logErrors) log.error("Failed To Collect: the collector has not been started");
+			return;
 		}
+		super.collect();
 	}
 	
-	
 	/**
-	 * Connects to the SSH Server.
-	 * @throws Exception
-	 */
-	protected Session connectSSH() throws Exception {		
-		Session session=jsch.getSession(userName, hostName, port);
-		session.setUserInfo(this);
-		session.connect(timeOut);
-		return session;
-	}
-	
-	/**s
 	 * Issues the given string as an OS command and returns the standard output of the command.
 	 * @param command An arbitrary OS shell command.
 	 * @return The standard output of the executed command.
 	 */
 	protected String issueOSCommand(String command) {	
-		try {			
-			final ChannelExec exec = (ChannelExec)threadSession.get().openChannel("exec");
-	        ByteArrayOutputStream out = new ByteArrayOutputStream();
-            exec.setCommand(command);
-            exec.setOutputStream(out);
-            exec.setExtOutputStream(out);
-            exec.connect();
-			final Thread thread = new Thread() {
-                public void run()  {
-                    while(!exec.isEOF()) {                        
-                        try { Thread.sleep(500L); }
-                        catch(Exception e) { 
-                        	e.printStackTrace();
-                        }
-                    }
-                }
-            };
-            thread.setDaemon(true);
-            thread.start();
-            thread.join(timeOut);     
-            thread.interrupt();
-            if(thread.isAlive()) {
-            	throw new Exception("Time Out Error");
-            } else {
-            	try { exec.disconnect(); } catch (Exception e) {}
-            	return out.toString();
-            }
-		} catch (Throwable e) {
-			e.printStackTrace();
-			return e.getMessage();
+		try {
+			return hostSessions.execute(command, timeOut);
+		} catch (Exception e) {
+			if(logErrors) {
+				log.error("Failed to issue command [" + command + "]", e);
+			}
+			return null;
 		}
 	}
 	
 
 	
 	/**
-	 * One off shell command. Connects to the SSH server, issues the command and disconnects.
+	 * One off shell command, issued on the shared SSH sessions to the host.
 	 * @param command The shell command.
 	 * @return The output of the shell command.
 	 * @throws Exception
@@ -236,13 +192,8 @@ MBeanServerFactory.findMBeanServer(null).each() { agent ->
 	public String shellCommand(
 			@JMXOperationParameter(description="The Shell Command to Execute", name="ShellCommand")String command) 
 	throws Exception {
-		Session session = null;
-		try {
-			session = connectSSH();
-			return issueOSCommand(command);
-		} finally {
-			try { session.disconnect(); } catch (Exception e) {}		
-		}
+		if(hostSessions==null) throw new Exception("The collector has not been started");
+		return hostSessions.execute(command, timeOut);
 	}
 	
 	/**
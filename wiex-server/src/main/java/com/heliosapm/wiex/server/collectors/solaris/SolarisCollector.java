@@ -2,6 +2,7 @@ package com.heliosapm.wiex.server.collectors.solaris;
 
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -18,6 +19,7 @@ import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
 import com.heliosapm.wiex.server.collectors.BaseCollector;
 import com.heliosapm.wiex.server.collectors.SmartTracer;
+import com.heliosapm.wiex.server.collectors.util.ColumnTokenizer;
 import com.heliosapm.wiex.tracing.tracing.ITracer;
 import com.heliosapm.wiex.tracing.tracing.TracerFactory;
 
@@ -65,6 +67,8 @@ public class SolarisCollector extends BaseCollector {
 	protected Map<Integer, String[]> VM_STAT_DECODE_SEGMENT = new HashMap<Integer, String[]>(22);
 	/** Indicates if Disk Segment Headers are Set */
 	protected boolean diskHeadersSet = false;
+	/** The tokenizer for command output */
+	protected final ColumnTokenizer tokenizer = new ColumnTokenizer();
 	/** Compiled Include Patterns and Type */
 	protected Map<Pattern, String> compiledPatterns = new ConcurrentHashMap<Pattern, String>();
 	/** Accepted Kernel Entries and Type */
@@ -207,18 +211,17 @@ public class SolarisCollector extends BaseCollector {
 	 * @return The standard output of the executed command.
 	 */
 	protected String issueOSCommand(String command) {
-		StringBuilder buff = new StringBuilder();
 		InputStream reader = null;
 		try {
 			Process p = Runtime.getRuntime().exec(command);
-			reader = new BufferedInputStream(p.getInputStream());			
-			for (;;) {
-				int c = reader.read();
-				if (c == -1)
-					break;
-				buff.append((char) c);
+			reader = p.getInputStream();
+			ByteArrayOutputStream buff = new ByteArrayOutputStream(8192);
+			byte[] bytes = new byte[8192];
+			int bytesRead = 0;
+			while((bytesRead = reader.read(bytes))!=-1) {
+				buff.write(bytes, 0, bytesRead);
 			}
-			return buff.toString();
+			return buff.toString("ISO-8859-1");
 		} catch (Exception e) {
 			return null;
 		} finally {
@@ -240,20 +243,19 @@ public class SolarisCollector extends BaseCollector {
 	 */
 	protected void processCPUStats(String output) {
 		if(output==null) return;
-		String[] lines = output.split("\n");
-		boolean isSummary = true;
-		for(String s: lines) {
-			if(!s.contains("SunOS") && !s.contains("usr") && s.contains(":") && s.trim().length() > 1) {
-				String tmp = s.replaceAll("\\s+", "~") + "\n";
-				if(isSummary) {
-					processCPULine(tmp, "all");
-					isSummary=false;
-				} else {
-					//String[] cols = s.split("~");
-					//processCPULine(tmp, cols[0]);
-				}
-				                	                              
+		ColumnTokenizer t = tokenizer.reset(output);
+		while(t.nextLine()) {
+			if(t.lineContains("SunOS") || !t.lineContains(":") || t.columnCount()==0) continue;
+			if(t.lineContains("usr")) {
+				t.mapHeader();
+				continue;
+			}
+			try {
+				processCPULine("all", t.floatColumn("%usr", 1), t.floatColumn("%sys", 2), t.floatColumn("%wio", 3), t.floatColumn("%idle", 4));
+			} catch (Exception e) {
+				if(logErrors) log.error("Failed to parse CPU stats [" + t.line() + "]", e);
 			}
+			break;
 		}
 	}
 	
@@ -273,73 +275,72 @@ public class SolarisCollector extends BaseCollector {
 	protected void processVmstat(String output) {
 		
 		if(output==null) return;
-		String[] lines = output.split("\n");
-		String[] headers = lines[1].trim().split("\\s+");
-		String line = lines[lines.length-1].trim();
-		String[] values = line.split("\\s+");
+		ColumnTokenizer t = tokenizer.reset(output);
+		if(!t.nextLine() || !t.nextLine()) return;
 		if(!diskHeadersSet) {
-			int i = 12;
-			VM_STAT_DECODE_SEGMENT.get(i)[1] = headers[i]; i++;
-			VM_STAT_DECODE_SEGMENT.get(i)[1] = headers[i]; i++;
-			VM_STAT_DECODE_SEGMENT.get(i)[1] = headers[i]; i++;
-			VM_STAT_DECODE_SEGMENT.get(i)[1] = headers[i];
+			for(int i = 12; i < 16; i++) {
+				VM_STAT_DECODE_SEGMENT.get(i)[1] = t.column(i);
+			}
 			// Prepend baseSegment
 			for(String[] names: VM_STAT_DECODE_SEGMENT.values()) {
 				names[0] = tracer.buildSegment(baseSegment, names[0]); 
 			}
 			diskHeadersSet=true;
 		}
+		if(!t.lastLine()) return;
 		String seg = null;
 		String metric = null;
-		long lval = 0L;
-		int i = 0;
-		for(String val: values) {
+		int count = t.columnCount();
+		for(int i = 0; i < count; i++) {
 			try {
 				seg = VM_STAT_DECODE_SEGMENT.get(i)[0];
 				metric = VM_STAT_DECODE_SEGMENT.get(i)[1];
-				lval = Long.parseLong(val);
-				tracer.recordCounterMetric(seg, metric, lval);
+				tracer.recordCounterMetric(seg, metric, t.longColumn(i));
 			} catch (Exception e) {
 				if(logErrors) {
-					log.error("Failed to trace value [" + val + "] for [" + seg + "/" + metric + "]", e);
+					log.error("Failed to trace value [" + t.column(i) + "] for [" + seg + "/" + metric + "]", e);
 				}
 			}
-			i++;
 		}
 	}
 	
+	/**
+	 * Traces the included statistics of the output of <code>kstat -p</code>.
+	 * Each line is a <code>module:instance:name:statistic</code> key followed by the value. 
+	 * Only the key is read as a string until the key is found to be included.
+	 * @param output The output of the command <code>kstat -p</code>.
+	 */
 	protected void processKstat(String output) {
-		String[] fragment = null;
+		if(output==null) return;
+		ColumnTokenizer t = tokenizer.reset(output);
 		String kMetricName = null;
-		String[] nameVal = null;
-		String lastVal = null;
 		String metricType = null;
-		float f = 0F;
-		long l = 0L;
-		String[] lines = output.split("\n");
-		
-		for(String line: lines) {
+		String name = null;
+		String value = null;
+		while(t.nextLine()) {
 			try {
-				fragment = line.split(":");
-				kMetricName = line.split("\\s+")[0];
+				if(t.columnCount() < 2) continue;
+				kMetricName = t.column(0);
 				metricType = isIncluded(kMetricName);
 				if(metricType==null) continue;
-				nameVal = fragment[3].replaceAll("\\s+", ":").split(":");
-				if(line.endsWith("vmem")) continue;
-				if(nameVal.length > 2) {
-					lastVal = nameVal[nameVal.length-1];
-					nameVal[1] = lastVal;
-					nameVal[0] = fragment[3].split(lastVal)[0].trim();
+				if(t.lineEndsWith("vmem")) continue;
+				int module = kMetricName.indexOf(':');
+				int instance = kMetricName.indexOf(':', module + 1);
+				int kname = kMetricName.indexOf(':', instance + 1);
+				int last = t.columnCount() - 1;
+				name = kMetricName.substring(kname + 1);
+				if(last > 1) {
+					name = name + " " + t.columns(1, last - 1);
 				}
-				
-				if(nameVal[1].contains(".")) {
-					f = Float.parseFloat(nameVal[1]);
-					l = (long)f;
-					nameVal[1] = "" + l;
+				value = t.column(last);
+				if(value.indexOf('.')!=-1) {
+					value = "" + t.longColumn(last);
 				}
-				SmartTracer.recordTrace(tracer.buildSegment(baseSegment, "kstats", fragment[0], fragment[1], fragment[2]), nameVal[0], nameVal[1], metricType);				
+				SmartTracer.recordTrace(tracer.buildSegment(baseSegment, "kstats", 
+						kMetricName.substring(0, module), kMetricName.substring(module + 1, instance), kMetricName.substring(instance + 1, kname)), 
+						name, value, metricType);				
 			} catch (Exception e) {
-				//log.error("kstat failed:[" + line + "]", e);
+				//log.error("kstat failed:[" + t.line() + "]", e);
 			}
 		}
 	}
@@ -364,39 +365,27 @@ public class SolarisCollector extends BaseCollector {
 	}
 	
 	/**
-	 * Parse helper for CPU stats.
-	 * @param s A line of text from <code>sar -u 1 1</code>
+	 * Traces the stats of one CPU.
 	 * @param cpuName The name of the CPU for which stats are being read.
+	 * @param _user The user CPU percentage
+	 * @param _system The system CPU percentage
+	 * @param _iowait The IO wait CPU percentage
+	 * @param _idle The idle CPU percentage
 	 */
-	protected void processCPULine(String s, String cpuName) {
-		String[] cols = s.split("~");
+	protected void processCPULine(String cpuName, float _user, float _system, float _iowait, float _idle) {
 		String segment = tracer.buildSegment(baseSegment,"CPU Summary",cpuName);
-		float _user = 0F;
-		float _system = 0F;
-		float _iowait = 0F;
-		float _idle = 0F;
-		float _utilized = 0;
-		
-		try {
-			_user = Float.parseFloat(cols[1]);
-			tracer.recordCounterMetric(segment, "User", (int)_user);
-			_system = Float.parseFloat(cols[2]);
-			tracer.recordCounterMetric(segment, "System", (int)_system);
-			_iowait = Float.parseFloat(cols[3]);
-			tracer.recordCounterMetric(segment, "Wait", (int)_iowait);
-			_idle = Float.parseFloat(cols[4]);
-			tracer.recordCounterMetric(segment, "Idle", (int)_idle);
-			_utilized = 100F-_idle;
-			tracer.recordCounterMetric(segment, "Utilization", (int)_utilized);
-			if(cpuName.equalsIgnoreCase("all")) {
-				user = _user;
-				system = _system;
-				iowait = _iowait;
-				idle = _idle;
-				utilized = _utilized;
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		tracer.recordCounterMetric(segment, "User", (int)_user);
+		tracer.recordCounterMetric(segment, "System", (int)_system);
+		tracer.recordCounterMetric(segment, "Wait", (int)_iowait);
+		tracer.recordCounterMetric(segment, "Idle", (int)_idle);
+		float _utilized = 100F-_idle;
+		tracer.recordCounterMetric(segment, "Utilization", (int)_utilized);
+		if(cpuName.equalsIgnoreCase("all")) {
+			user = _user;
+			system = _system;
+			iowait = _iowait;
+			idle = _idle;
+			utilized = _utilized;
 		}
 	}	
 	
@@ -409,21 +398,16 @@ public class SolarisCollector extends BaseCollector {
 	protected void processCPUQueueStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					queueSize = Float.parseFloat(cols[1]);
-					tracer.recordCounterMetric(
-							tracer.buildSegment(baseSegment, "CPU Summary"),							 
-							"CPU Queue Size", 
-							(int)queueSize);
-					processListSize = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(
-							tracer.buildSegment(baseSegment, "CPU Summary"), 
-							"Process List Size", 
-							(int)processListSize);
+			ColumnTokenizer t = tokenizer.reset(output);
+			while(t.nextLine()) {
+				if(t.lineContains("runq-sz")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					String cpuSummary = tracer.buildSegment(baseSegment, "CPU Summary");
+					queueSize = t.floatColumn("runq-sz", 1);
+					tracer.recordCounterMetric(cpuSummary, "CPU Queue Size", (int)queueSize);
+					processListSize = t.floatColumn("plist-sz", 2);
+					tracer.recordCounterMetric(cpuSummary, "Process List Size", (int)processListSize);
 				}
 			}
 		} catch (Exception e) {}
@@ -446,29 +430,22 @@ public class SolarisCollector extends BaseCollector {
 	protected void processNetworkDeviceStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average") && !s.contains("IFACE")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					netInterface = tracer.buildSegment(baseSegment, "Network Devices", cols[1]); 
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "Packets Received/s", (int)val);
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "Packets Transmitted/s", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Bytes Received/s", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "Bytes Transmitted/s", (int)val);					
-					val = Float.parseFloat(cols[6]);
-					tracer.recordCounterMetric(netInterface, "Compressed Packets Received/s", (int)val);					
-					val = Float.parseFloat(cols[7]);
-					tracer.recordCounterMetric(netInterface, "Compressed Packets Transmitted/s", (int)val);					
-					val = Float.parseFloat(cols[8]);
-					tracer.recordCounterMetric(netInterface, "Multicast Packets Received/s", (int)val);										
+			while(t.nextLine()) {
+				if(!t.lineContains("Average")) continue;
+				if(t.lineContains("IFACE")) {
+					t.mapHeader();
+					continue;
 				}
+				netInterface = tracer.buildSegment(baseSegment, "Network Devices", t.column(1)); 
+				tracer.recordCounterMetric(netInterface, "Packets Received/s", (int)t.floatColumn("rxpck/s", 2));
+				tracer.recordCounterMetric(netInterface, "Packets Transmitted/s", (int)t.floatColumn("txpck/s", 3));					
+				tracer.recordCounterMetric(netInterface, "Bytes Received/s", (int)t.floatColumn("rxbyt/s", 4));					
+				tracer.recordCounterMetric(netInterface, "Bytes Transmitted/s", (int)t.floatColumn("txbyt/s", 5));					
+				tracer.recordCounterMetric(netInterface, "Compressed Packets Received/s", (int)t.floatColumn("rxcmp/s", 6));					
+				tracer.recordCounterMetric(netInterface, "Compressed Packets Transmitted/s", (int)t.floatColumn("txcmp/s", 7));					
+				tracer.recordCounterMetric(netInterface, "Multicast Packets Received/s", (int)t.floatColumn("rxmcst/s", 8));										
 			}
 		} catch (Exception e) {}
 	}
@@ -492,34 +469,24 @@ public class SolarisCollector extends BaseCollector {
 	protected void processNetworkDeviceErrorStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average") && !s.contains("IFACE")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					netInterface = tracer.buildSegment(baseSegment, "Network Devices", cols[1]);
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "Bad Packets Received/s", (int)val);
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "Transmission Errors/s", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Transmission Collisions/s", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "Received Dropped Packets/s", (int)val);					
-					val = Float.parseFloat(cols[6]);
-					tracer.recordCounterMetric(netInterface, "Transmitted Dropped Packets/s", (int)val);					
-					val = Float.parseFloat(cols[7]);
-					tracer.recordCounterMetric(netInterface, "Carrier Errors/s", (int)val);					
-					val = Float.parseFloat(cols[8]);
-					tracer.recordCounterMetric(netInterface, "Frame Alignment Error/s", (int)val);
-					val = Float.parseFloat(cols[9]);
-					tracer.recordCounterMetric(netInterface, "Receive FIFO Overrun Error/s", (int)val);										
-					val = Float.parseFloat(cols[10]);
-					tracer.recordCounterMetric(netInterface, "Transmit FIFO Overrun Error/s", (int)val);										
-					
+			while(t.nextLine()) {
+				if(!t.lineContains("Average")) continue;
+				if(t.lineContains("IFACE")) {
+					t.mapHeader();
+					continue;
 				}
+				netInterface = tracer.buildSegment(baseSegment, "Network Devices", t.column(1));
+				tracer.recordCounterMetric(netInterface, "Bad Packets Received/s", (int)t.floatColumn("rxerr/s", 2));
+				tracer.recordCounterMetric(netInterface, "Transmission Errors/s", (int)t.floatColumn("txerr/s", 3));					
+				tracer.recordCounterMetric(netInterface, "Transmission Collisions/s", (int)t.floatColumn("coll/s", 4));					
+				tracer.recordCounterMetric(netInterface, "Received Dropped Packets/s", (int)t.floatColumn("rxdrop/s", 5));					
+				tracer.recordCounterMetric(netInterface, "Transmitted Dropped Packets/s", (int)t.floatColumn("txdrop/s", 6));					
+				tracer.recordCounterMetric(netInterface, "Carrier Errors/s", (int)t.floatColumn("txcarr/s", 7));					
+				tracer.recordCounterMetric(netInterface, "Frame Alignment Error/s", (int)t.floatColumn("rxfram/s", 8));
+				tracer.recordCounterMetric(netInterface, "Receive FIFO Overrun Error/s", (int)t.floatColumn("rxfifo/s", 9));										
+				tracer.recordCounterMetric(netInterface, "Transmit FIFO Overrun Error/s", (int)t.floatColumn("txfifo/s", 10));										
 			}
 		} catch (Exception e) {}
 	}		
@@ -539,24 +506,18 @@ public class SolarisCollector extends BaseCollector {
 	protected void processNetworkSocketStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
+			while(t.nextLine()) {
+				if(t.lineContains("totsck")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
 					netInterface = tracer.buildSegment(baseSegment, "Network Devices");
-					val = Float.parseFloat(cols[1]);
-					tracer.recordCounterMetric(netInterface, "Total Used Sockets", (int)val);
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "TCP Sockets In Use", (int)val);					
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "UDP Sockets In Use", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Raw Sockets In Use", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "IP Fragments In Use", (int)val);					
+					tracer.recordCounterMetric(netInterface, "Total Used Sockets", (int)t.floatColumn("totsck", 1));
+					tracer.recordCounterMetric(netInterface, "TCP Sockets In Use", (int)t.floatColumn("tcpsck", 2));					
+					tracer.recordCounterMetric(netInterface, "UDP Sockets In Use", (int)t.floatColumn("udpsck", 3));					
+					tracer.recordCounterMetric(netInterface, "Raw Sockets In Use", (int)t.floatColumn("rawsck", 4));					
+					tracer.recordCounterMetric(netInterface, "IP Fragments In Use", (int)t.floatColumn("ip-frag", 5));					
 				}
 			}
 		} catch (Exception e) {}
@@ -580,27 +541,17 @@ public class SolarisCollector extends BaseCollector {
 	protected void processFileSystemStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
+			ColumnTokenizer t = tokenizer.reset(output);
 			String fileSystem = null;
-			for(String s: lines) {
-				if(!s.contains("Filesystem")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					
-					fileSystem = tracer.buildSegment(baseSegment, "File System", cols[0]);
-					tracer.recordMetric(fileSystem, "File System Type", cols[1]);
-					tracer.recordMetric(fileSystem, "Mounted On", cols[6]);
-					
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(fileSystem, "1K-Blocks", (int)val);				
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(fileSystem, "Used", (int)val);
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(fileSystem, "Available", (int)val);
-					val = Float.parseFloat(cols[5].replace("%", "").trim());
-					tracer.recordCounterMetric(fileSystem, "Percentage Used", (int)val);
-				}
+			while(t.nextLine()) {
+				if(t.lineContains("Filesystem") || t.columnCount()==0) continue;
+				fileSystem = tracer.buildSegment(baseSegment, "File System", t.column(0));
+				tracer.recordMetric(fileSystem, "File System Type", t.column(1));
+				tracer.recordMetric(fileSystem, "Mounted On", t.column(6));
+				tracer.recordCounterMetric(fileSystem, "1K-Blocks", (int)t.floatColumn(2));				
+				tracer.recordCounterMetric(fileSystem, "Used", (int)t.floatColumn(3));
+				tracer.recordCounterMetric(fileSystem, "Available", (int)t.floatColumn(4));
+				tracer.recordCounterMetric(fileSystem, "Percentage Used", (int)t.floatColumn(5));
 			}
 		} catch (Exception e) {}
 	}	
@@ -623,33 +574,22 @@ public class SolarisCollector extends BaseCollector {
 	protected void processMemoryStats(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			float val = 0F;
-			String netInterface = null;
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					netInterface = tracer.buildSegment(baseSegment, "Memory");
-					val = Float.parseFloat(cols[1]);
-					tracer.recordCounterMetric(netInterface, "Free Memory/kb", (int)val);
-					val = Float.parseFloat(cols[2]);
-					tracer.recordCounterMetric(netInterface, "Used Memory/kb", (int)val);					
-					val = Float.parseFloat(cols[3]);
-					tracer.recordCounterMetric(netInterface, "Memory In Use/%", (int)val);					
-					val = Float.parseFloat(cols[4]);
-					tracer.recordCounterMetric(netInterface, "Kernel Buffers/kb", (int)val);					
-					val = Float.parseFloat(cols[5]);
-					tracer.recordCounterMetric(netInterface, "Kernel Cache/kb", (int)val);
-					val = Float.parseFloat(cols[6]);
-					tracer.recordCounterMetric(netInterface, "Free Swap Space/kb", (int)val);
-					val = Float.parseFloat(cols[7]);
-					tracer.recordCounterMetric(netInterface, "Used Swap Space/kb", (int)val);
-					val = Float.parseFloat(cols[8]);
-					tracer.recordCounterMetric(netInterface, "Used Swap Space/%", (int)val);
-					val = Float.parseFloat(cols[9]);
-					tracer.recordCounterMetric(netInterface, "Cached Swap Memory/kb", (int)val);
-					
+			ColumnTokenizer t = tokenizer.reset(output);
+			String memory = null;
+			while(t.nextLine()) {
+				if(t.lineContains("kbmemfree")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					memory = tracer.buildSegment(baseSegment, "Memory");
+					tracer.recordCounterMetric(memory, "Free Memory/kb", (int)t.floatColumn("kbmemfree", 1));
+					tracer.recordCounterMetric(memory, "Used Memory/kb", (int)t.floatColumn("kbmemused", 2));					
+					tracer.recordCounterMetric(memory, "Memory In Use/%", (int)t.floatColumn("%memused", 3));					
+					tracer.recordCounterMetric(memory, "Kernel Buffers/kb", (int)t.floatColumn("kbbuffers", 4));					
+					tracer.recordCounterMetric(memory, "Kernel Cache/kb", (int)t.floatColumn("kbcached", 5));
+					tracer.recordCounterMetric(memory, "Free Swap Space/kb", (int)t.floatColumn("kbswpfree", 6));
+					tracer.recordCounterMetric(memory, "Used Swap Space/kb", (int)t.floatColumn("kbswpused", 7));
+					tracer.recordCounterMetric(memory, "Used Swap Space/%", (int)t.floatColumn("%swpused", 8));
+					tracer.recordCounterMetric(memory, "Cached Swap Memory/kb", (int)t.floatColumn("kbswpcad", 9));
 				}
 			}
 		} catch (Exception e) {}
@@ -667,12 +607,12 @@ public class SolarisCollector extends BaseCollector {
 	protected void processContextSwitches(String output) {
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					contextSwitches = Float.parseFloat(cols[1]);
+			ColumnTokenizer t = tokenizer.reset(output);
+			while(t.nextLine()) {
+				if(t.lineContains("cswch/s")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					contextSwitches = t.floatColumn("cswch/s", 1);
 					tracer.recordCounterMetric(tracer.buildSegment(baseSegment,"CPU Summary"), "Context Switches", (int)contextSwitches);
 				}
 			}
@@ -695,16 +635,16 @@ public class SolarisCollector extends BaseCollector {
 		String jvmPrefix = tracer.buildSegment(baseSegment, false, "JVM");
 		if(output==null) return;
 		try {
-			String[] lines = output.split("\n");
-			for(String s: lines) {
-				if(s.contains("Average")) {
-					String tmp = s.replaceAll("\\s+", "~") + "\n";
-					String[] cols = tmp.split("~");
-					jvmUser = Float.parseFloat(cols[4]);
+			ColumnTokenizer t = tokenizer.reset(output);
+			while(t.nextLine()) {
+				if(t.lineContains("PID")) {
+					t.mapHeader();
+				} else if(t.lineContains("Average")) {
+					jvmUser = t.floatColumn("%user", 4);
 					tracer.recordCounterMetric(jvmPrefix, "User CPU", (int)jvmUser);
-					jvmSystem = Float.parseFloat(cols[5]);
+					jvmSystem = t.floatColumn("%system", 5);
 					tracer.recordCounterMetric(jvmPrefix, "System CPU", (int)jvmSystem);
-					jvmSwaps = Float.parseFloat(cols[6]);
+					jvmSwaps = t.floatColumn("nswap/s", 6);
 					tracer.recordCounterMetric(jvmPrefix, "Swaps", (int)jvmSwaps);					
 				}
 			}
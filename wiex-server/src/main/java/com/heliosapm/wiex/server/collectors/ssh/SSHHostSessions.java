@@ -0,0 +1,529 @@
+package com.heliosapm.wiex.server.collectors.ssh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.helios.jcraft.jsch.ChannelExec;
+import org.helios.jcraft.jsch.JSch;
+import org.helios.jcraft.jsch.Session;
+import org.helios.jcraft.jsch.UserInfo;
+
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
+import com.heliosapm.wiex.jmx.dynamic.annotation.JMXOperation;
+
+/**
+ * <p>Title: SSHHostSessions</p>
+ * <p>Description: The persistent SSH sessions to one host, user and key, shared by every collector that monitors the host.
+ * Commands run on their own exec channels, and up to {@link #getMaxChannelsPerSession()} channels run concurrently over
+ * one session. Additional sessions are opened, up to {@link #getMaxSessions()}, when all the sessions are saturated.</p>
+ * <p>Command completion is signalled by the SSH session thread when the server closes the channel, after the output and the
+ * exit status have been received, so no thread polls for the end of a command.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.server.collectors.ssh.SSHHostSessions</code></p>
+ */
+@JMXManagedObject(annotated=true, declared=true)
+public class SSHHostSessions {
+	/** The logger */
+	protected final Logger log = Logger.getLogger(getClass());
+	/** The session key */
+	protected final String key;
+	/** The host name */
+	protected final String hostName;
+	/** The port */
+	protected final int port;
+	/** The user name */
+	protected final String userName;
+	/** The user info that supplies the pass phrase */
+	protected final UserInfo userInfo;
+	/** The connection timeout in ms. */
+	protected final int connectTimeout;
+	/** The JSch instance holding the host's identity and known hosts */
+	protected final JSch jsch = new JSch();
+	/** The open sessions */
+	protected final List<PooledSession> sessions = new ArrayList<PooledSession>();
+	/** The number of sessions being connected, which count against the maximum */
+	protected int connecting = 0;
+	/** The maximum number of concurrent channels per session */
+	protected int maxChannelsPerSession;
+	/** The maximum number of sessions */
+	protected int maxSessions;
+	/** The JMX ObjectName the sessions are registered under */
+	protected ObjectName objectName = null;
+	/** The number of collectors using the sessions */
+	protected final AtomicInteger references = new AtomicInteger(0);
+	/** The number of sessions opened */
+	protected final AtomicLong sessionsOpened = new AtomicLong(0);
+	/** The number of failed session connections */
+	protected final AtomicLong sessionFailures = new AtomicLong(0);
+	/** The number of channels opened */
+	protected final AtomicLong channelsOpened = new AtomicLong(0);
+	/** The number of completed commands */
+	protected final AtomicLong commandsCompleted = new AtomicLong(0);
+	/** The number of completed commands with a non zero exit status */
+	protected final AtomicLong nonZeroExits = new AtomicLong(0);
+	/** The number of failed commands */
+	protected final AtomicLong commandFailures = new AtomicLong(0);
+	/** The number of timed out commands */
+	protected final AtomicLong commandTimeouts = new AtomicLong(0);
+	/** The total elapsed time of completed commands in ms. */
+	protected final AtomicLong commandTime = new AtomicLong(0);
+	/** The maximum elapsed time of a completed command in ms. */
+	protected final AtomicLong maxCommandTime = new AtomicLong(0);
+
+	/**
+	 * <p>Title: PooledSession</p>
+	 * <p>Description: An open session and the number of channels running over it</p>
+	 */
+	protected static class PooledSession {
+		/** The session */
+		protected final Session session;
+		/** The number of running channels */
+		protected int channels = 0;
+
+		/**
+		 * Creates a new PooledSession
+		 * @param session The connected session
+		 */
+		protected PooledSession(Session session) {
+			this.session = session;
+		}
+	}
+
+	/**
+	 * <p>Title: CommandOutput</p>
+	 * <p>Description: Collects the standard output and standard error of an exec channel and signals when the channel closes.
+	 * JSch closes the standard output stream on the remote EOF and the error stream when the channel is closed, which is
+	 * after the exit status has been received.</p>
+	 */
+	protected static class CommandOutput {
+		/** The combined output */
+		protected final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+		/** Released when the channel is closed */
+		protected final CountDownLatch closed = new CountDownLatch(1);
+		/** The standard output stream */
+		protected final OutputStream out = new Stream(false);
+		/** The standard error stream */
+		protected final OutputStream err = new Stream(true);
+
+		/**
+		 * <p>Title: Stream</p>
+		 * <p>Description: One of the channel's output streams</p>
+		 */
+		protected class Stream extends OutputStream {
+			/** Indicates if closing this stream signals the close of the channel */
+			protected final boolean signal;
+
+			/**
+			 * Creates a new Stream
+			 * @param signal true if closing this stream signals the close of the channel
+			 */
+			protected Stream(boolean signal) {
+				this.signal = signal;
+			}
+
+			/**
+			 * @see java.io.OutputStream#write(int)
+			 */
+			public void write(int b) {
+				buffer.write(b);
+			}
+
+			/**
+			 * @see java.io.OutputStream#write(byte[], int, int)
+			 */
+			public void write(byte[] b, int off, int len) {
+				buffer.write(b, off, len);
+			}
+
+			/**
+			 * @see java.io.OutputStream#close()
+			 */
+			public void close() {
+				if(signal) closed.countDown();
+			}
+		}
+
+		/**
+		 * Waits for the channel to close
+		 * @param timeout The maximum time to wait in ms.
+		 * @return true if the channel closed, false if the timeout elapsed
+		 * @throws InterruptedException Thrown if the calling thread is interrupted
+		 */
+		protected boolean await(long timeout) throws InterruptedException {
+			return closed.await(timeout, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Returns the output
+		 * @return the output
+		 */
+		public String toString() {
+			return buffer.toString();
+		}
+	}
+
+	/**
+	 * Creates a new SSHHostSessions. No session is opened until the first command is executed.
+	 * @param key The session key
+	 * @param hostName The host name
+	 * @param port The port
+	 * @param userName The user name
+	 * @param privateKeyFile The private key file, or null
+	 * @param passPhrase The private key pass phrase
+	 * @param knownHostsFile The known hosts file, or null
+	 * @param userInfo The user info
+	 * @param connectTimeout The connection timeout in ms.
+	 * @param maxChannelsPerSession The maximum number of concurrent channels per session
+	 * @param maxSessions The maximum number of sessions
+	 * @throws Exception Thrown if the identity or known hosts cannot be loaded
+	 */
+	protected SSHHostSessions(String key, String hostName, int port, String userName, String privateKeyFile, String passPhrase, String knownHostsFile, UserInfo userInfo, int connectTimeout, int maxChannelsPerSession, int maxSessions) throws Exception {
+		this.key = key;
+		this.hostName = hostName;
+		this.port = port;
+		this.userName = userName;
+		this.userInfo = userInfo;
+		this.connectTimeout = connectTimeout;
+		this.maxChannelsPerSession = Math.max(1, maxChannelsPerSession);
+		this.maxSessions = Math.max(1, maxSessions);
+		if(knownHostsFile!=null) jsch.setKnownHosts(knownHostsFile);
+		if(privateKeyFile!=null) jsch.addIdentity(privateKeyFile, passPhrase);
+	}
+
+	/**
+	 * Executes a command on its own exec channel and returns its standard output and standard error.
+	 * @param command The command
+	 * @param timeout The maximum time in ms. to wait for a session and for the command to complete
+	 * @return the command output
+	 * @throws TimeoutException Thrown if the command did not complete in time
+	 * @throws Exception Thrown if no session could be opened or the channel failed
+	 */
+	public String execute(String command, long timeout) throws Exception {
+		long start = System.currentTimeMillis();
+		long deadline = start + timeout;
+		PooledSession pooled = acquire(deadline);
+		ChannelExec exec = null;
+		boolean failed = true;
+		try {
+			exec = (ChannelExec)pooled.session.openChannel("exec");
+			CommandOutput output = new CommandOutput();
+			exec.setCommand(command);
+			exec.setOutputStream(output.out);
+			exec.setExtOutputStream(output.err);
+			exec.connect();
+			channelsOpened.incrementAndGet();
+			if(!output.await(Math.max(1, deadline - System.currentTimeMillis()))) {
+				commandTimeouts.incrementAndGet();
+				failed = false;
+				throw new TimeoutException("Command [" + command + "] on [" + key + "] did not complete within " + timeout + " ms.");
+			}
+			failed = false;
+			long elapsed = System.currentTimeMillis() - start;
+			commandsCompleted.incrementAndGet();
+			commandTime.addAndGet(elapsed);
+			if(elapsed > maxCommandTime.get()) maxCommandTime.set(elapsed);
+			if(exec.getExitStatus()!=0) nonZeroExits.incrementAndGet();
+			return output.toString();
+		} catch (TimeoutException e) {
+			throw e;
+		} catch (Exception e) {
+			commandFailures.incrementAndGet();
+			throw e;
+		} finally {
+			if(exec!=null) {
+				try { exec.disconnect(); } catch (Exception e) {}
+			}
+			release(pooled, failed);
+		}
+	}
+
+	/**
+	 * Acquires a session with a free channel, opening a new session if all are saturated and the maximum has not been reached.
+	 * A new session is reserved under the lock and connected outside it, so other commands can use the open sessions meanwhile.
+	 * @param deadline The time by which a session must be acquired
+	 * @return the session
+	 * @throws Exception Thrown if a session could not be opened or acquired before the deadline
+	 */
+	protected PooledSession acquire(long deadline) throws Exception {
+		synchronized(this) {
+			while(true) {
+				PooledSession best = null;
+				for(int i = sessions.size()-1; i >= 0; i--) {
+					PooledSession ps = sessions.get(i);
+					if(!ps.session.isConnected()) {
+						if(ps.channels==0) sessions.remove(i);
+						continue;
+					}
+					if(ps.channels < maxChannelsPerSession && (best==null || ps.channels < best.channels)) best = ps;
+				}
+				if(best!=null) {
+					best.channels++;
+					return best;
+				}
+				if(sessions.size() + connecting < maxSessions) {
+					connecting++;
+					break;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0) {
+					commandTimeouts.incrementAndGet();
+					throw new TimeoutException("No SSH channel available on [" + key + "]");
+				}
+				wait(remaining);
+			}
+		}
+		PooledSession opened = null;
+		try {
+			opened = connect(deadline);
+		} finally {
+			synchronized(this) {
+				connecting--;
+				if(opened!=null) {
+					opened.channels++;
+					sessions.add(opened);
+				}
+				notifyAll();
+			}
+		}
+		return opened;
+	}
+
+	/**
+	 * Releases a channel of a session
+	 * @param pooled The session
+	 * @param failed true if the channel failed, in which case a disconnected session is discarded
+	 */
+	protected synchronized void release(PooledSession pooled, boolean failed) {
+		pooled.channels--;
+		if(failed && !pooled.session.isConnected()) {
+			sessions.remove(pooled);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Opens a new session. Called without holding the lock.
+	 * @param deadline The time by which the session must be connected
+	 * @return the session
+	 * @throws Exception Thrown if the session cannot be connected before the connection timeout or the deadline
+	 */
+	protected PooledSession connect(long deadline) throws Exception {
+		try {
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0) throw new TimeoutException("No time left to open an SSH session to [" + key + "]");
+			Session session = jsch.getSession(userName, hostName, port);
+			session.setUserInfo(userInfo);
+			session.connect((int)(connectTimeout > 0 ? Math.min(connectTimeout, remaining) : remaining));
+			sessionsOpened.incrementAndGet();
+			if(log.isDebugEnabled()) log.debug("Opened SSH session #" + sessionsOpened.get() + " to [" + key + "]");
+			return new PooledSession(session);
+		} catch (Exception e) {
+			sessionFailures.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * Disconnects all the sessions. New sessions are opened on the next command.
+	 */
+	@JMXOperation(description="Disconnects all the sessions", expose=true, name="closeSessions")
+	public synchronized void closeSessions() {
+		for(PooledSession ps: sessions) {
+			try { ps.session.disconnect(); } catch (Exception e) {}
+		}
+		sessions.clear();
+		notifyAll();
+	}
+
+	/**
+	 * The host name.
+	 * @return the host name
+	 */
+	@JMXAttribute(description="The host name", name="HostName")
+	public String getHostName() {
+		return hostName;
+	}
+
+	/**
+	 * The port.
+	 * @return the port
+	 */
+	@JMXAttribute(description="The port", name="Port")
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * The user name.
+	 * @return the user name
+	 */
+	@JMXAttribute(description="The user name", name="UserName")
+	public String getUserName() {
+		return userName;
+	}
+
+	/**
+	 * The number of connected sessions.
+	 * @return the number of connected sessions
+	 */
+	@JMXAttribute(description="The number of connected sessions", name="OpenSessions")
+	public synchronized int getOpenSessions() {
+		int open = 0;
+		for(PooledSession ps: sessions) {
+			if(ps.session.isConnected()) open++;
+		}
+		return open;
+	}
+
+	/**
+	 * The number of running channels.
+	 * @return the number of running channels
+	 */
+	@JMXAttribute(description="The number of running channels", name="ActiveChannels")
+	public synchronized int getActiveChannels() {
+		int active = 0;
+		for(PooledSession ps: sessions) {
+			active += ps.channels;
+		}
+		return active;
+	}
+
+	/**
+	 * The number of collectors using the sessions.
+	 * @return the number of collectors
+	 */
+	@JMXAttribute(description="The number of collectors using the sessions", name="References")
+	public int getReferences() {
+		return references.get();
+	}
+
+	/**
+	 * The number of sessions opened.
+	 * @return the number of sessions opened
+	 */
+	@JMXAttribute(description="The number of sessions opened", name="SessionsOpened")
+	public long getSessionsOpened() {
+		return sessionsOpened.get();
+	}
+
+	/**
+	 * The number of failed session connections.
+	 * @return the number of failed session connections
+	 */
+	@JMXAttribute(description="The number of failed session connections", name="SessionFailures")
+	public long getSessionFailures() {
+		return sessionFailures.get();
+	}
+
+	/**
+	 * The number of exec channels opened.
+	 * @return the number of channels opened
+	 */
+	@JMXAttribute(description="The number of exec channels opened", name="ChannelsOpened")
+	public long getChannelsOpened() {
+		return channelsOpened.get();
+	}
+
+	/**
+	 * The number of completed commands.
+	 * @return the number of completed commands
+	 */
+	@JMXAttribute(description="The number of completed commands", name="CommandsCompleted")
+	public long getCommandsCompleted() {
+		return commandsCompleted.get();
+	}
+
+	/**
+	 * The number of completed commands with a non zero exit status.
+	 * @return the number of non zero exits
+	 */
+	@JMXAttribute(description="The number of completed commands with a non zero exit status", name="NonZeroExits")
+	public long getNonZeroExits() {
+		return nonZeroExits.get();
+	}
+
+	/**
+	 * The number of failed commands.
+	 * @return the number of failed commands
+	 */
+	@JMXAttribute(description="The number of failed commands", name="CommandFailures")
+	public long getCommandFailures() {
+		return commandFailures.get();
+	}
+
+	/**
+	 * The number of timed out commands.
+	 * @return the number of timed out commands
+	 */
+	@JMXAttribute(description="The number of timed out commands", name="CommandTimeouts")
+	public long getCommandTimeouts() {
+		return commandTimeouts.get();
+	}
+
+	/**
+	 * The average elapsed time of a completed command.
+	 * @return the average command time in ms.
+	 */
+	@JMXAttribute(description="The average elapsed time of a completed command (ms.)", name="AverageCommandTime")
+	public long getAverageCommandTime() {
+		long completed = commandsCompleted.get();
+		return completed==0 ? 0 : commandTime.get()/completed;
+	}
+
+	/**
+	 * The maximum elapsed time of a completed command.
+	 * @return the maximum command time in ms.
+	 */
+	@JMXAttribute(description="The maximum elapsed time of a completed command (ms.)", name="MaxCommandTime")
+	public long getMaxCommandTime() {
+		return maxCommandTime.get();
+	}
+
+	/**
+	 * The maximum number of concurrent channels per session.
+	 * @return the maximum number of channels per session
+	 */
+	@JMXAttribute(description="The maximum number of concurrent channels per session", name="MaxChannelsPerSession")
+	public int getMaxChannelsPerSession() {
+		return maxChannelsPerSession;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent channels per session.
+	 * @param maxChannelsPerSession the maximum number of channels per session
+	 */
+	public synchronized void setMaxChannelsPerSession(int maxChannelsPerSession) {
+		this.maxChannelsPerSession = Math.max(1, maxChannelsPerSession);
+		notifyAll();
+	}
+
+	/**
+	 * The maximum number of sessions.
+	 * @return the maximum number of sessions
+	 */
+	@JMXAttribute(description="The maximum number of sessions", name="MaxSessions")
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	/**
+	 * Sets the maximum number of sessions.
+	 * @param maxSessions the maximum number of sessions
+	 */
+	public synchronized void setMaxSessions(int maxSessions) {
+		this.maxSessions = Math.max(1, maxSessions);
+		notifyAll();
+	}
+}
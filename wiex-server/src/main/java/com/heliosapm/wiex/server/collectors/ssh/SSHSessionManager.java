@@ -0,0 +1,119 @@
+package com.heliosapm.wiex.server.collectors.ssh;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.helios.jcraft.jsch.UserInfo;
+
+import com.heliosapm.wiex.jmx.dynamic.ManagedObjectDynamicMBean;
+import com.heliosapm.wiex.jmx.util.MBeanServerHelper;
+import com.heliosapm.wiex.tracing.helpers.ConfigurationHelper;
+
+/**
+ * <p>Title: SSHSessionManager</p>
+ * <p>Description: Shares persistent {@link SSHHostSessions} between all the collectors that monitor a host over SSH.
+ * Sessions are keyed by user, host, port and private key. Each {@link SSHHostSessions} is registered as an MBean under
+ * <code>com.heliosapm.wiex.server.collectors.ssh:service=SSHSessions,host=&lt;host&gt;,port=&lt;port&gt;,user=&lt;user&gt;,key=&lt;key hash&gt;</code>
+ * and its sessions are closed and unregistered when the last collector using it releases it.</p>
+ * <p>The channels per session and the sessions per host default to the system properties <b>wiex.ssh.channels.per.session</b>
+ * (8) and <b>wiex.ssh.sessions.per.host</b> (2).</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.server.collectors.ssh.SSHSessionManager</code></p>
+ */
+public class SSHSessionManager {
+	/** The logger */
+	protected static final Logger log = Logger.getLogger(SSHSessionManager.class);
+	/** The host sessions keyed by session key */
+	protected static final Map<String, SSHHostSessions> hosts = new ConcurrentHashMap<String, SSHHostSessions>();
+
+	/** The channels per session property */
+	public static final String CHANNELS_PER_SESSION_PROP = "wiex.ssh.channels.per.session";
+	/** The default maximum number of concurrent channels per session */
+	public static final int DEFAULT_CHANNELS_PER_SESSION = 8;
+	/** The sessions per host property */
+	public static final String SESSIONS_PER_HOST_PROP = "wiex.ssh.sessions.per.host";
+	/** The default maximum number of sessions per host */
+	public static final int DEFAULT_SESSIONS_PER_HOST = 2;
+	/** The JMX domain the host sessions are registered in */
+	public static final String JMX_DOMAIN = "com.heliosapm.wiex.server.collectors.ssh";
+
+	/**
+	 * Returns the shared sessions for the passed host, user and key, creating them if this is the first collector to use them.
+	 * Each call must be matched by a call to {@link #release(SSHHostSessions)}.
+	 * @param hostName The host name
+	 * @param port The port
+	 * @param userName The user name
+	 * @param privateKeyFile The private key file
+	 * @param passPhrase The private key pass phrase
+	 * @param knownHostsFile The known hosts file
+	 * @param userInfo The user info
+	 * @param connectTimeout The connection timeout in ms.
+	 * @return the host sessions
+	 * @throws Exception Thrown if the identity or known hosts cannot be loaded
+	 */
+	public static SSHHostSessions acquire(String hostName, int port, String userName, String privateKeyFile, String passPhrase, String knownHostsFile, UserInfo userInfo, int connectTimeout) throws Exception {
+		String key = key(hostName, port, userName, privateKeyFile);
+		synchronized(hosts) {
+			SSHHostSessions hostSessions = hosts.get(key);
+			if(hostSessions==null) {
+				hostSessions = new SSHHostSessions(key, hostName, port, userName, privateKeyFile, passPhrase, knownHostsFile, userInfo, connectTimeout,
+						ConfigurationHelper.getIntSystemThenEnvProperty(CHANNELS_PER_SESSION_PROP, DEFAULT_CHANNELS_PER_SESSION),
+						ConfigurationHelper.getIntSystemThenEnvProperty(SESSIONS_PER_HOST_PROP, DEFAULT_SESSIONS_PER_HOST));
+				register(hostSessions);
+				hosts.put(key, hostSessions);
+			}
+			hostSessions.references.incrementAndGet();
+			return hostSessions;
+		}
+	}
+
+	/**
+	 * Releases host sessions acquired by a collector. The sessions are closed when no collector is using them.
+	 * @param hostSessions The host sessions
+	 */
+	public static void release(SSHHostSessions hostSessions) {
+		if(hostSessions==null) return;
+		synchronized(hosts) {
+			if(hostSessions.references.decrementAndGet() > 0) return;
+			hosts.remove(hostSessions.key);
+			hostSessions.closeSessions();
+			if(hostSessions.objectName!=null) {
+				try {
+					MBeanServerHelper.getMBeanServer().unregisterMBean(hostSessions.objectName);
+				} catch (Exception e) {}
+			}
+		}
+	}
+
+	/**
+	 * Builds the session key
+	 * @param hostName The host name
+	 * @param port The port
+	 * @param userName The user name
+	 * @param privateKeyFile The private key file
+	 * @return the session key
+	 */
+	public static String key(String hostName, int port, String userName, String privateKeyFile) {
+		return userName + "@" + hostName + ":" + port + (privateKeyFile==null ? "" : "[" + privateKeyFile + "]");
+	}
+
+	/**
+	 * Registers the JMX interface of host sessions
+	 * @param hostSessions The host sessions
+	 */
+	protected static void register(SSHHostSessions hostSessions) {
+		try {
+			ObjectName on = new ObjectName(JMX_DOMAIN + ":service=SSHSessions,host=" + ObjectName.quote(hostSessions.hostName)
+					+ ",port=" + hostSessions.port + ",user=" + ObjectName.quote(hostSessions.userName)
+					+ ",key=" + Integer.toHexString(hostSessions.key.hashCode()));
+			MBeanServerHelper.getMBeanServer().registerMBean(new ManagedObjectDynamicMBean(hostSessions), on);
+			hostSessions.objectName = on;
+		} catch (Exception e) {
+			log.warn("Failed to register JMX Interface for SSH sessions [" + hostSessions.key + "]:" + e);
+		}
+	}
+}
@@ -3,25 +3,26 @@
  */
 package com.heliosapm.wiex.server.collectors.tomcat;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
-import java.net.URLConnection;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.Notification;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.SimpleHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
 
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXAttribute;
 import com.heliosapm.wiex.jmx.dynamic.annotation.JMXManagedObject;
@@ -140,15 +141,17 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 	protected int ajpThreadStatusK = 0;
 	/** The root tracer segment */
 	protected String rootSegment = null;
-	/**	An instance of an XPath */
-	protected XPath xpath = null;	
-	/**	The XPath expression that extracts the Tomcat connectors from the status XML document */
-	protected XPathExpression xpathExpression = null;
+	/**	The StAX factory that creates the status XML document readers */
+	protected XMLInputFactory xmlInputFactory = null;
+	/** The connection manager holding the keep-alive connection to the status page */
+	protected SimpleHttpConnectionManager connectionManager = null;
+	/** The http client */
+	protected HttpClient httpClient = null;
 	/** Indicated if the startup notification from the tomcat web server has been received */
 	protected boolean isNotified = false;
 	/** The ObjectName of the WebServer */
 	protected ObjectName webServerObjectName = null;
-	/** The last XML Document Parsed */
+	/** The last XML Document Parsed, only retained when debug logging is enabled */
 	protected String lastXMLDoc = null;
 	/** Indicates if static config data has been read for HTTP*/
 	protected boolean isHttpConfigRead = false;
@@ -160,19 +163,21 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 	public static final String THREAD_INFO = "threadInfo"; 
 	public static final String REQUEST_INFO = "requestInfo";
 	public static final String WORKERS = "workers";
+	public static final String CONNECTOR = "connector";
+	/** The worker stages, in the order they are counted */
+	public static final String STAGES = "PSFRK";
 	public final String TOMCAT_CONNECTORS_STARTED  = "jboss.tomcat.connectors.started";
 		
 	
 	/**
 	 * Instantiates a new TomcatThreadStatusCollector.
-	 * @throws XPathExpressionException 
 	 * @throws NullPointerException 
 	 * @throws MalformedObjectNameException 
 	 */
-	public TomcatThreadStatusCollector() throws XPathExpressionException, MalformedObjectNameException, NullPointerException {
+	public TomcatThreadStatusCollector() throws MalformedObjectNameException, NullPointerException {
 		super();
-		xpath = XPathFactory.newInstance().newXPath();
-		xpathExpression = xpath.compile("/status/connector");
+		xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
 		webServerObjectName = new ObjectName("jboss.web:service=WebServer");
 	}
 	
@@ -215,6 +220,13 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 		} catch (Exception e) {
 			
 		}
+		synchronized(this) {
+			if(connectionManager!=null) {
+				connectionManager.shutdown();
+				connectionManager = null;
+				httpClient = null;
+			}
+		}
 	}			
 	
 	/**
@@ -260,77 +272,114 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 			}
 		}
 		long start = System.currentTimeMillis();
-		InputStream is = null;
-		InputSource insource = null;
-		boolean isHttp = false;
 		try {
-			insource = new InputSource(getStream());
-			NodeList  nodelist = (NodeList) xpathExpression.evaluate(insource, XPathConstants.NODESET);
-			for(int i = 0; i < nodelist.getLength(); i++) {
-				String connectorName = nodelist.item(i).getAttributes().getNamedItem("name").getNodeValue();
-				if(connectorName.endsWith("" + httpPort)) {
-					httpConnectorName = connectorName;
-					isHttp = true;
-				}
-				if(connectorName.endsWith("" + ajpPort)) {
-					ajpConnectorName = connectorName;
-					isHttp = false;
-				}
-				NodeList connectorNodes = nodelist.item(i).getChildNodes();
-				for(int x = 0; x < connectorNodes.getLength(); x++) {
-					
-					String nodeType = connectorNodes.item(x).getNodeName();
-					if(nodeType.equals(THREAD_INFO)) {
-						processThreadInfo(connectorNodes.item(x), isHttp);
-						if(isHttp) {
-							if(!isHttpConfigRead) processThreadInfoConfig(connectorNodes.item(x), isHttp);
-						} else {
-							if(!isAjpConfigRead) processThreadInfoConfig(connectorNodes.item(x), isHttp);
-						}						
-					} else if (nodeType.equals(REQUEST_INFO)) {
-						processRequestInfo(connectorNodes.item(x), isHttp);
-					} else if (nodeType.equals(WORKERS)) {
-						processWorkers(connectorNodes.item(x), isHttp);
-					} else {
-						// Noop
-					}
-				}
-			}
+			readStatus();
 			collectTime = System.currentTimeMillis()-start;
 		} catch (Exception e) {
 			if(logErrors) log.warn("Tomcat Collection Failure:" + e);
-		} finally {
-			try { is.close(); } catch (Exception e) {}
 		}
-		
-
 	}
 	
-
+	/**
+	 * Requests the Tomcat XML Status Page over the collector's keep-alive connection and processes it as it streams in.
+	 * The raw document is only retained for {@link #displayLastXMLDoc()} when debug logging is enabled.
+	 * @throws Exception
+	 */
+	protected void readStatus() throws Exception {
+		GetMethod get = new GetMethod(new URL("http", hostName, httpPort, "/status?XML=true").toString());
+		try {
+			int responseCode = getHttpClient().executeMethod(get);
+			if(responseCode != HttpStatus.SC_OK) {
+				throw new Exception("Status Page Returned Response Code:" + responseCode);
+			}
+			InputStream is = get.getResponseBodyAsStream();
+			ByteArrayOutputStream copy = null;
+			if(log.isDebugEnabled()) {
+				copy = new ByteArrayOutputStream();
+				is = new CopyingInputStream(is, copy);
+			} else {
+				lastXMLDoc = null;
+			}
+			processStatus(is);
+			if(copy!=null) {
+				lastXMLDoc = copy.toString();
+			}
+		} finally {
+			// reads any remaining content so the connection can be reused
+			get.releaseConnection();
+		}
+	}
 	
+	/**
+	 * Returns the http client, creating it with a single keep-alive connection on first use.
+	 * @return the http client
+	 */
+	protected synchronized HttpClient getHttpClient() {
+		if(httpClient==null) {
+			connectionManager = new SimpleHttpConnectionManager();
+			httpClient = new HttpClient(connectionManager);
+		}
+		return httpClient;
+	}
 	
-	  
 	/**
-	 * Opens an input stream from the Tomcat XML Status Page.
-	 * @return An XML Input Stream.
-	 * @throws Exception
+	 * Processes the Tomcat XML Status Page in a single pass, updating the connector counters as each element arrives.
+	 * @param is The status page input stream
+	 * @throws XMLStreamException
 	 */
-	protected InputStream getStream() throws Exception {
-		URL url=new URL( "http", hostName, httpPort, "/status?XML=true");
-		URLConnection urlc=url.openConnection();
-		InputStream inputstream=urlc.getInputStream();
-		ByteArrayOutputStream baos = new  ByteArrayOutputStream();
-		byte[] buffer = new byte[8192];
-		int bytesRead = 0;
-		while(true) {
-			bytesRead = inputstream.read(buffer);
-			if(bytesRead==-1) break;
-			baos.write(buffer, 0, bytesRead);
-		}		
-		byte[] documentBytes = baos.toByteArray();
-		ByteArrayInputStream bis = new ByteArrayInputStream(documentBytes);
-		lastXMLDoc = new String(documentBytes);		
-		return bis;
+	protected void processStatus(InputStream is) throws XMLStreamException {
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(is);
+		try {
+			boolean isHttp = false;
+			int depth = 0;
+			int[] stages = null;
+			while(reader.hasNext()) {
+				int event = reader.next();
+				if(event==XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					String nodeType = reader.getLocalName();
+					if(depth==2) {
+						if(!nodeType.equals(CONNECTOR)) continue;
+						String connectorName = reader.getAttributeValue(null, "name");
+						if(connectorName.endsWith("" + httpPort)) {
+							httpConnectorName = connectorName;
+							isHttp = true;
+						}
+						if(connectorName.endsWith("" + ajpPort)) {
+							ajpConnectorName = connectorName;
+							isHttp = false;
+						}
+					} else if(depth==3) {
+						if(nodeType.equals(THREAD_INFO)) {
+							processThreadInfo(reader, isHttp);
+							if(isHttp) {
+								if(!isHttpConfigRead) processThreadInfoConfig(reader, isHttp);
+							} else {
+								if(!isAjpConfigRead) processThreadInfoConfig(reader, isHttp);
+							}						
+						} else if (nodeType.equals(REQUEST_INFO)) {
+							processRequestInfo(reader, isHttp);
+						} else if (nodeType.equals(WORKERS)) {
+							stages = new int[STAGES.length()];
+						} else {
+							// Noop
+						}
+					} else if(depth==4 && stages!=null) {
+						String stage = reader.getAttributeValue(null, "stage");
+						int index = (stage==null || stage.length()!=1) ? -1 : STAGES.indexOf(stage.charAt(0));
+						if(index!=-1) stages[index]++;
+					}
+				} else if(event==XMLStreamConstants.END_ELEMENT) {
+					if(depth==3 && stages!=null) {
+						processWorkers(stages, isHttp);
+						stages = null;
+					}
+					depth--;
+				}
+			}
+		} finally {
+			try { reader.close(); } catch (Exception e) {}
+		}
 	}
 	
 	/**
@@ -341,109 +390,55 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 	 * <li>The AJP Port
 	 * </ol>
 	 * @param args
-	 * @throws XPathExpressionException
 	 * @throws NullPointerException 
 	 * @throws MalformedObjectNameException 
 	 */
-	public static void main(String[] args) throws XPathExpressionException, MalformedObjectNameException, NullPointerException {
+	public static void main(String[] args) throws MalformedObjectNameException, NullPointerException {
 		TomcatThreadStatusCollector collector = new TomcatThreadStatusCollector();
 		collector.setAjpPort(Integer.parseInt(args[2]));		
 		collector.setHttpPort(Integer.parseInt(args[1]));
 		collector.setHostName(args[0]);
-		InputStream is = null;
-		InputSource insource = null;
-		boolean isHttp = false;
-		XPath xpath = XPathFactory.newInstance().newXPath();
-		XPathExpression xpathExpression = xpath.compile("/status/connector");
 		long start = System.currentTimeMillis();
 		try {
-			insource = new InputSource(collector.getStream());
-			NodeList  nodelist = (NodeList) xpathExpression.evaluate(insource, XPathConstants.NODESET);
-			log("Located " + nodelist.getLength() + " Connectors");
-			for(int i = 0; i < nodelist.getLength(); i++) {
-				log("Connector:" + i);
-				String connectorName = nodelist.item(i).getAttributes().getNamedItem("name").getNodeValue();
-				log("Connector Name:" + connectorName);
-				if(connectorName.endsWith("" + collector.httpPort)) {
-					collector.httpConnectorName = connectorName;
-					isHttp = true;
-				}
-				if(connectorName.endsWith("" + collector.ajpPort)) {
-					collector.ajpConnectorName = connectorName;
-					isHttp = false;
-				}
-				NodeList connectorNodes = nodelist.item(i).getChildNodes();
-				for(int x = 0; x < connectorNodes.getLength(); x++) {
-					
-					String nodeType = connectorNodes.item(x).getNodeName();
-					if(nodeType.equals(THREAD_INFO)) {
-						collector.processThreadInfo(connectorNodes.item(x), isHttp);
-					} else if (nodeType.equals(REQUEST_INFO)) {
-						collector.processRequestInfo(connectorNodes.item(x), isHttp);
-					} else if (nodeType.equals(WORKERS)) {
-						collector.processWorkers(connectorNodes.item(x), isHttp);
-					} else {
-						// Noop
-					}
-				}
-			}
+			collector.readStatus();
 			collector.collectTime = System.currentTimeMillis()-start;
 			log(collector);
-			
-			
 		} catch (Exception e) {
 			e.printStackTrace();
-		} finally {
-			try { is.close(); } catch (Exception e) {}
 		}
 		
 	}
 	
 	/**
-	 * Returns the value of the named attribute in the passed node as an int.
-	 * @param node The node to look for the attribute in.
+	 * Returns the value of the named attribute of the current element as an int.
+	 * @param reader The reader positioned on the element.
 	 * @param name The name of the attribute.
 	 * @return The int value of the attribute
 	 */
-	protected int getNodeAttributeInt(Node node, String name) {
-		return Integer.parseInt(node.getAttributes().getNamedItem(name).getNodeValue());
+	protected int getAttributeInt(XMLStreamReader reader, String name) {
+		return Integer.parseInt(reader.getAttributeValue(null, name));
 	}
 	
 	/**
-	 * Returns the value of the named attribute in the passed node as a long.
-	 * @param node The node to look for the attribute in.
+	 * Returns the value of the named attribute of the current element as a long.
+	 * @param reader The reader positioned on the element.
 	 * @param name The name of the attribute.
 	 * @return The long value of the attribute
 	 */
-	protected  long getNodeAttributeLong(Node node, String name) {
-		return Long.parseLong(node.getAttributes().getNamedItem(name).getNodeValue());
-	}
-	
-	/**
-	 * Counts the number of nodes in the node list with the named attribute equal to the passed value.
-	 * @param nodeList The node list to count from.
-	 * @param name The name of the attribute.
-	 * @param value The value of the attribute to match.
-	 * @return The number of matching nodes.
-	 */
-	protected int countNodesWithAttributeValue(NodeList nodeList, String name, String value) {
-		int cnt = 0;
-		for(int i = 0; i < nodeList.getLength(); i++) {
-			if(nodeList.item(i).getAttributes().getNamedItem(name).getNodeValue().equals(value)) cnt++;
-		}
-		return cnt;
+	protected  long getAttributeLong(XMLStreamReader reader, String name) {
+		return Long.parseLong(reader.getAttributeValue(null, name));
 	}
 	
 	
 	/**
 	 * Processes ThreadInfo for the connector.
-	 * @param node The node representing the ThreadInfo element for the current connector.
+	 * @param reader The reader positioned on the ThreadInfo element for the current connector.
 	 * @param isHttp true if connector is HTTP, false if it is AJP
 	 */
-	protected void processThreadInfo(Node node, boolean isHttp) {
+	protected void processThreadInfo(XMLStreamReader reader, boolean isHttp) {
 		try {
-			setCurrentThreadCount(getNodeAttributeInt(node, "currentThreadCount"), isHttp);
-			setCurrentThreadsBusy(getNodeAttributeInt(node, "currentThreadsBusy"), isHttp);
+			setCurrentThreadCount(getAttributeInt(reader, "currentThreadCount"), isHttp);
+			setCurrentThreadsBusy(getAttributeInt(reader, "currentThreadsBusy"), isHttp);
 		} catch (Exception e) {
 			if(logErrors) log.error("processRequestInfo Failed:", e);
 		}
@@ -452,14 +447,14 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 	/**
 	 * Processes static thread pool configuration.
 	 * Only runs once per collector start.
-	 * @param node The node representing the ThreadInfo element for the current connector.
+	 * @param reader The reader positioned on the ThreadInfo element for the current connector.
 	 * @param isHttp true if connector is HTTP, false if it is AJP
 	 */
-	protected void processThreadInfoConfig(Node node, boolean isHttp) {
+	protected void processThreadInfoConfig(XMLStreamReader reader, boolean isHttp) {
 		try {
-			setMaxThreads(getNodeAttributeInt(node, "maxThreads"), isHttp);
-			setMinSpareThreads(getNodeAttributeInt(node, "minSpareThreads"), isHttp);
-			setMaxSpareThreads(getNodeAttributeInt(node, "maxSpareThreads"), isHttp);
+			setMaxThreads(getAttributeInt(reader, "maxThreads"), isHttp);
+			setMinSpareThreads(getAttributeInt(reader, "minSpareThreads"), isHttp);
+			setMaxSpareThreads(getAttributeInt(reader, "maxSpareThreads"), isHttp);
 			if(isHttp) isHttpConfigRead=true;
 			else isAjpConfigRead=true;			
 		} catch (Exception e) {
@@ -471,36 +466,36 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 	
 	/**
 	 * Processes RequestInfo for the connector
-	 * @param node The node representing the RequestInfo element for the current connector.
+	 * @param reader The reader positioned on the RequestInfo element for the current connector.
 	 * @param isHttp true if connector is HTTP, false if it is AJP
 	 */
-	protected void processRequestInfo(Node node, boolean isHttp) {
+	protected void processRequestInfo(XMLStreamReader reader, boolean isHttp) {
 		try {
 			if(log.isDebugEnabled())log.debug("Processing Request Info. HTTP?:" + isHttp);
 			long tmp = 0L;
 			long dtmp = 0L;
-			setMaxTime(getNodeAttributeLong(node, "maxTime"), isHttp);
-			tmp = getNodeAttributeLong(node, "processingTime");
+			setMaxTime(getAttributeLong(reader, "maxTime"), isHttp);
+			tmp = getAttributeLong(reader, "processingTime");
 			dtmp = tmp - ((isHttp) ? getHttpProcessingTime() : getAjpProcessingTime());
 			setProcessingTime(tmp, isHttp);
 			setProcessingTimeDelta(dtmp, isHttp);
 			
-			tmp = getNodeAttributeLong(node, "requestCount");
+			tmp = getAttributeLong(reader, "requestCount");
 			dtmp = tmp - ((isHttp) ? getHttpRequestCount() : getAjpRequestCount());
 			setRequestCount(tmp, isHttp);
 			setRequestCountDelta(dtmp, isHttp);
 			
-			tmp = getNodeAttributeLong(node, "errorCount");
+			tmp = getAttributeLong(reader, "errorCount");
 			dtmp = tmp - ((isHttp) ? getHttpErrorCount() : getAjpErrorCount());
 			setErrorCount(tmp, isHttp);
 			setErrorCountDelta(dtmp, isHttp);
 			
-			tmp = getNodeAttributeLong(node, "bytesReceived");
+			tmp = getAttributeLong(reader, "bytesReceived");
 			dtmp = tmp - ((isHttp) ? getHttpBytesReceived() : getAjpBytesReceived());
 			setBytesReceived(tmp, isHttp);
 			setBytesReceivedDelta(dtmp, isHttp);
 			
-			tmp = getNodeAttributeLong(node, "bytesSent");
+			tmp = getAttributeLong(reader, "bytesSent");
 			dtmp = tmp - ((isHttp) ? getHttpBytesSent() : getAjpBytesSent());
 			setBytesSent(tmp, isHttp);
 			setBytesSentDelta(dtmp, isHttp);
@@ -526,19 +521,18 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 	}
 	
 	/**
-	 * Counts the number of threads in the pool in each state.
-	 * @param node The workers node.
+	 * Sets the number of threads in the pool in each state.
+	 * @param stages The number of workers in each of the stages P, S, F, R and K.
 	 * @param isHttp true if connector is HTTP, false if it is AJP
 	 */
-	protected void processWorkers(Node node, boolean isHttp) {
+	protected void processWorkers(int[] stages, boolean isHttp) {
 		try {
 			if(log.isDebugEnabled())log.debug("Processing Workers. HTTP?:" + isHttp);
-			NodeList nodeList = node.getChildNodes();
-			setThreadStatusP(countNodesWithAttributeValue(nodeList, "stage", "P"), isHttp);
-			setThreadStatusS(countNodesWithAttributeValue(nodeList, "stage", "S"), isHttp);
-			setThreadStatusF(countNodesWithAttributeValue(nodeList, "stage", "F"), isHttp);
-			setThreadStatusR(countNodesWithAttributeValue(nodeList, "stage", "R"), isHttp);
-			setThreadStatusK(countNodesWithAttributeValue(nodeList, "stage", "K"), isHttp);
+			setThreadStatusP(stages[0], isHttp);
+			setThreadStatusS(stages[1], isHttp);
+			setThreadStatusF(stages[2], isHttp);
+			setThreadStatusR(stages[3], isHttp);
+			setThreadStatusK(stages[4], isHttp);
 		} catch (Exception e) {
 			if(logErrors) log.error("processWorkers Failed:", e);
 			if(logErrors) log("processWorkers Error:" + e);
@@ -1321,13 +1315,52 @@ public class TomcatThreadStatusCollector extends BaseCollector implements Notifi
 	}
 
 	/**
-	 * The last XML Document Parsed.
+	 * The last XML Document Parsed. Only retained when debug logging is enabled.
 	 * @return the lastXMLDoc
 	 */
-	@JMXOperation(description="Displays the last XML Document Parsed.", expose=true, name="LastXMLDoc")
+	@JMXOperation(description="Displays the last XML Document Parsed. Only retained when debug logging is enabled.", expose=true, name="LastXMLDoc")
 	public String displayLastXMLDoc() {
 		return lastXMLDoc;
 	}
+	
+	/**
+	 * <p>Title: CopyingInputStream</p>
+	 * <p>Description: Input stream that copies the bytes read through it to an output stream.</p>
+	 */
+	protected static class CopyingInputStream extends FilterInputStream {
+		/** The output stream bytes are copied to */
+		protected final OutputStream copy;
+		
+		/**
+		 * Creates a new CopyingInputStream
+		 * @param in The input stream to read from
+		 * @param copy The output stream to copy to
+		 */
+		protected CopyingInputStream(InputStream in, OutputStream copy) {
+			super(in);
+			this.copy = copy;
+		}
+		
+		/**
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b!=-1) copy.write(b);
+			return b;
+		}
+		
+		/**
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int bytesRead = super.read(b, off, len);
+			if(bytesRead > 0) copy.write(b, off, bytesRead);
+			return bytesRead;
+		}
+	}
 
 
 }
@@ -0,0 +1,444 @@
+package com.heliosapm.wiex.server.collectors.util;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Title: ColumnTokenizer</p>
+ * <p>Description: A reusable line and column tokenizer for the tabular output of OS commands such as <code>sar</code>,
+ * <code>vmstat</code> and <code>kstat</code>. Input is copied into one reusable character buffer, either all at once with
+ * {@link #reset(CharSequence)} or incrementally as it arrives with {@link #append(ByteBuffer)} and {@link #append(CharSequence)}.
+ * Lines are split into whitespace delimited columns by recording their offsets, and numeric columns are parsed in place,
+ * so no strings are created unless a column's text is requested with {@link #column(int)}.</p>
+ * <p>A header line can be mapped with {@link #mapHeader()}, after which columns can be located by name. Header columns are
+ * matched to data columns from the right, since the time stamp in the first columns of <code>sar</code> output varies in width
+ * (<code>12:00:01 AM</code>, <code>12:00:01</code> or <code>Average:</code>) while the trailing columns line up.</p>
+ * <p>Instances are not thread safe.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>com.heliosapm.wiex.server.collectors.util.ColumnTokenizer</code></p>
+ */
+public class ColumnTokenizer {
+	/** The character buffer */
+	protected char[] chars = new char[4096];
+	/** The number of characters in the buffer */
+	protected int length = 0;
+	/** The offset of the next unread line */
+	protected int next = 0;
+	/** The offset of the current line */
+	protected int lineStart = 0;
+	/** The end offset (exclusive) of the current line */
+	protected int lineEnd = 0;
+	/** Indicates if all the input has been appended */
+	protected boolean complete = false;
+	/** The start offsets of the current line's columns */
+	protected int[] starts = new int[32];
+	/** The end offsets (exclusive) of the current line's columns */
+	protected int[] ends = new int[32];
+	/** The number of columns in the current line, or -1 if the line has not been split yet */
+	protected int count = -1;
+	/** The mapped header column positions, counted from the right, keyed by name */
+	protected final Map<String, Integer> header = new HashMap<String, Integer>();
+	/** The text of the mapped header line */
+	protected char[] headerLine = new char[0];
+
+	/**
+	 * Replaces the input with the passed text, which is complete
+	 * @param text The text to tokenize
+	 * @return this tokenizer
+	 */
+	public ColumnTokenizer reset(CharSequence text) {
+		clear();
+		if(text!=null) append(text);
+		complete = true;
+		return this;
+	}
+
+	/**
+	 * Discards the input and the mapped header, and prepares for incremental input
+	 * @return this tokenizer
+	 */
+	public ColumnTokenizer clear() {
+		length = 0;
+		next = 0;
+		lineStart = 0;
+		lineEnd = 0;
+		count = -1;
+		complete = false;
+		header.clear();
+		headerLine = new char[0];
+		return this;
+	}
+
+	/**
+	 * Appends text to the input
+	 * @param text The text
+	 * @return this tokenizer
+	 */
+	public ColumnTokenizer append(CharSequence text) {
+		int len = text.length();
+		ensureCapacity(len);
+		if(text instanceof String) {
+			((String)text).getChars(0, len, chars, length);
+		} else {
+			for(int i = 0; i < len; i++) {
+				chars[length+i] = text.charAt(i);
+			}
+		}
+		length += len;
+		return this;
+	}
+
+	/**
+	 * Appends the remaining single byte (ASCII or ISO-8859-1) characters of the passed buffer to the input
+	 * @param bytes The bytes, which are consumed
+	 * @return this tokenizer
+	 */
+	public ColumnTokenizer append(ByteBuffer bytes) {
+		int len = bytes.remaining();
+		ensureCapacity(len);
+		for(int i = 0; i < len; i++) {
+			chars[length++] = (char)(bytes.get() & 0xFF);
+		}
+		return this;
+	}
+
+	/**
+	 * Marks the input as complete, so the last line is returned by {@link #nextLine()} even if it has no line terminator
+	 * @return this tokenizer
+	 */
+	public ColumnTokenizer finish() {
+		complete = true;
+		return this;
+	}
+
+	/**
+	 * Makes room for the passed number of characters, discarding the lines that have been read
+	 * @param len The number of characters to be appended
+	 */
+	protected void ensureCapacity(int len) {
+		if(next > 0 && length + len > chars.length) {
+			System.arraycopy(chars, next, chars, 0, length - next);
+			length -= next;
+			lineStart = Math.max(0, lineStart - next);
+			lineEnd = Math.max(0, lineEnd - next);
+			if(count > 0) {
+				for(int i = 0; i < count; i++) {
+					starts[i] = Math.max(0, starts[i] - next);
+					ends[i] = Math.max(0, ends[i] - next);
+				}
+			}
+			next = 0;
+		}
+		if(length + len > chars.length) {
+			char[] tmp = new char[Math.max(chars.length*2, length + len)];
+			System.arraycopy(chars, 0, tmp, 0, length);
+			chars = tmp;
+		}
+	}
+
+	/**
+	 * Advances to the next complete line. Once the input is complete, a trailing line without a terminator is also returned.
+	 * @return true if a line is available, false if the input is exhausted or more input is needed
+	 */
+	public boolean nextLine() {
+		if(next >= length) return false;
+		int i = next;
+		while(i < length && chars[i]!='\n') i++;
+		if(i==length && !complete) return false;
+		lineStart = next;
+		lineEnd = i;
+		if(lineEnd > lineStart && chars[lineEnd-1]=='\r') lineEnd--;
+		next = i + 1;
+		count = -1;
+		return true;
+	}
+
+	/**
+	 * Advances to the last line that is not blank
+	 * @return true if there is such a line
+	 */
+	public boolean lastLine() {
+		int lastStart = -1, lastEnd = -1;
+		while(nextLine()) {
+			if(columnCount() > 0) {
+				lastStart = lineStart;
+				lastEnd = lineEnd;
+			}
+		}
+		if(lastStart==-1) return false;
+		lineStart = lastStart;
+		lineEnd = lastEnd;
+		count = -1;
+		return true;
+	}
+
+	/**
+	 * Determines if the current line contains the passed text
+	 * @param text The text
+	 * @return true if the line contains the text
+	 */
+	public boolean lineContains(String text) {
+		int len = text.length();
+		for(int i = lineStart; i <= lineEnd - len; i++) {
+			if(regionMatches(i, text)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if the current line starts with the passed text
+	 * @param text The text
+	 * @return true if the line starts with the text
+	 */
+	public boolean lineStartsWith(String text) {
+		return lineEnd - lineStart >= text.length() && regionMatches(lineStart, text);
+	}
+
+	/**
+	 * Determines if the current line ends with the passed text
+	 * @param text The text
+	 * @return true if the line ends with the text
+	 */
+	public boolean lineEndsWith(String text) {
+		return lineEnd - lineStart >= text.length() && regionMatches(lineEnd - text.length(), text);
+	}
+
+	/**
+	 * Returns the text of the current line
+	 * @return the line
+	 */
+	public String line() {
+		return new String(chars, lineStart, lineEnd - lineStart);
+	}
+
+	/**
+	 * Returns the number of whitespace delimited columns in the current line
+	 * @return the number of columns
+	 */
+	public int columnCount() {
+		if(count==-1) split();
+		return count;
+	}
+
+	/**
+	 * Splits the current line into columns
+	 */
+	protected void split() {
+		count = 0;
+		int i = lineStart;
+		while(true) {
+			while(i < lineEnd && chars[i] <= ' ') i++;
+			if(i >= lineEnd) break;
+			if(count==starts.length) {
+				int[] s = new int[count*2];
+				int[] e = new int[count*2];
+				System.arraycopy(starts, 0, s, 0, count);
+				System.arraycopy(ends, 0, e, 0, count);
+				starts = s;
+				ends = e;
+			}
+			starts[count] = i;
+			while(i < lineEnd && chars[i] > ' ') i++;
+			ends[count] = i;
+			count++;
+		}
+	}
+
+	/**
+	 * Returns the text of a column of the current line
+	 * @param index The column index
+	 * @return the column text
+	 */
+	public String column(int index) {
+		checkColumn(index);
+		return new String(chars, starts[index], ends[index] - starts[index]);
+	}
+
+	/**
+	 * Returns the text of a range of columns of the current line, including the whitespace between them
+	 * @param first The index of the first column
+	 * @param last The index of the last column
+	 * @return the text of the columns
+	 */
+	public String columns(int first, int last) {
+		checkColumn(first);
+		checkColumn(last);
+		return new String(chars, starts[first], ends[last] - starts[first]);
+	}
+
+	/**
+	 * Determines if a column of the current line is the passed text
+	 * @param index The column index
+	 * @param text The text
+	 * @return true if the column is the text
+	 */
+	public boolean columnEquals(int index, String text) {
+		if(index < 0 || index >= columnCount()) return false;
+		return ends[index] - starts[index]==text.length() && regionMatches(starts[index], text);
+	}
+
+	/**
+	 * Parses a numeric column of the current line as a float
+	 * @param index The column index
+	 * @return the value
+	 * @throws NumberFormatException Thrown if the column does not exist or is not numeric
+	 */
+	public float floatColumn(int index) {
+		return (float)doubleColumn(index);
+	}
+
+	/**
+	 * Parses a numeric column of the current line as a double. A comma is accepted as the decimal separator
+	 * and a trailing <code>%</code> is ignored.
+	 * @param index The column index
+	 * @return the value
+	 * @throws NumberFormatException Thrown if the column does not exist or is not numeric
+	 */
+	public double doubleColumn(int index) {
+		checkColumn(index);
+		int i = starts[index];
+		int end = ends[index];
+		if(end > i && chars[end-1]=='%') end--;
+		boolean negative = false;
+		if(i < end && (chars[i]=='-' || chars[i]=='+')) {
+			negative = chars[i]=='-';
+			i++;
+		}
+		long mantissa = 0;
+		int scale = 0;
+		boolean digits = false;
+		boolean fraction = false;
+		for(; i < end; i++) {
+			char c = chars[i];
+			if(c >= '0' && c <= '9') {
+				digits = true;
+				if(mantissa < 100000000000000000L) {
+					mantissa = mantissa * 10 + (c - '0');
+					if(fraction) scale++;
+				} else if(!fraction) {
+					scale--;
+				}
+			} else if((c=='.' || c==',') && !fraction) {
+				fraction = true;
+			} else {
+				throw new NumberFormatException("Column " + index + " is not numeric [" + column(index) + "]");
+			}
+		}
+		if(!digits) throw new NumberFormatException("Column " + index + " is not numeric [" + column(index) + "]");
+		double value = scale >= 0 ? mantissa / Math.pow(10, scale) : mantissa * Math.pow(10, -scale);
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a numeric column of the current line as a long, truncating any fraction
+	 * @param index The column index
+	 * @return the value
+	 * @throws NumberFormatException Thrown if the column does not exist or is not numeric
+	 */
+	public long longColumn(int index) {
+		checkColumn(index);
+		int i = starts[index];
+		int end = ends[index];
+		boolean negative = false;
+		if(i < end && (chars[i]=='-' || chars[i]=='+')) {
+			negative = chars[i]=='-';
+			i++;
+		}
+		long value = 0;
+		boolean digits = false;
+		for(; i < end; i++) {
+			char c = chars[i];
+			if(c >= '0' && c <= '9') {
+				digits = true;
+				value = value * 10 + (c - '0');
+			} else if(c=='.' || c==',') {
+				return (long)doubleColumn(index);
+			} else {
+				break;
+			}
+		}
+		if(!digits || (i < end && chars[i]!='%')) throw new NumberFormatException("Column " + index + " is not numeric [" + column(index) + "]");
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Maps the columns of the current line as the header. Mapping the same header line again has no effect.
+	 * @return this tokenizer
+	 */
+	public ColumnTokenizer mapHeader() {
+		int len = lineEnd - lineStart;
+		if(len==headerLine.length) {
+			boolean same = true;
+			for(int i = 0; i < len; i++) {
+				if(headerLine[i]!=chars[lineStart+i]) {
+					same = false;
+					break;
+				}
+			}
+			if(same) return this;
+		}
+		headerLine = new char[len];
+		System.arraycopy(chars, lineStart, headerLine, 0, len);
+		header.clear();
+		int cols = columnCount();
+		for(int i = 0; i < cols; i++) {
+			header.put(column(i), cols - i);
+		}
+		return this;
+	}
+
+	/**
+	 * Determines if a header has been mapped
+	 * @return true if a header has been mapped
+	 */
+	public boolean hasHeader() {
+		return !header.isEmpty();
+	}
+
+	/**
+	 * Locates a named column in the current line using the mapped header
+	 * @param name The header name of the column
+	 * @param defaultIndex The index to return if the name is not mapped
+	 * @return the column index
+	 */
+	public int columnIndex(String name, int defaultIndex) {
+		Integer fromRight = header.get(name);
+		if(fromRight==null) return defaultIndex;
+		int index = columnCount() - fromRight.intValue();
+		return index < 0 ? defaultIndex : index;
+	}
+
+	/**
+	 * Parses a named numeric column of the current line as a float
+	 * @param name The header name of the column
+	 * @param defaultIndex The index to use if the name is not mapped
+	 * @return the value
+	 * @throws NumberFormatException Thrown if the column does not exist or is not numeric
+	 */
+	public float floatColumn(String name, int defaultIndex) {
+		return floatColumn(columnIndex(name, defaultIndex));
+	}
+
+	/**
+	 * Validates a column index
+	 * @param index The column index
+	 */
+	protected void checkColumn(int index) {
+		if(index < 0 || index >= columnCount()) throw new NumberFormatException("No column " + index + " in [" + line() + "]");
+	}
+
+	/**
+	 * Determines if the buffer matches the passed text at the passed offset
+	 * @param offset The buffer offset
+	 * @param text The text
+	 * @return true if the text matches
+	 */
+	protected boolean regionMatches(int offset, String text) {
+		for(int j = 0; j < text.length(); j++) {
+			if(chars[offset+j]!=text.charAt(j)) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package com.heliosapm.wiex.server.collectors.linux;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * <p>Title: ProcFSReaderTest</p>
+ * <p>Description: Checks the ProcFSReader parsing against two captured samples of the proc files under <code>procfs/</code>.
+ * Each sample is copied into a temporary proc root before it is read, so the reader sees the second sample as a later read of the same files.</p>
+ * <p>Copyright: Copyright (c) 2007</p>
+ * <p>Organization: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+
+public class ProcFSReaderTest {
+
+	static final float DELTA = 0.001F;
+	static final int PID = 4242;
+	static final String[] FILES = new String[]{"uptime", "stat", PID + "/stat", "net/tcp", "net/tcp6"};
+
+	@Rule
+	public TemporaryFolder root = new TemporaryFolder();
+
+	ProcFSReader reader = null;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		reader = new ProcFSReader(root.getRoot().getPath());
+	}
+
+	@Test
+	public void testFirstSampleIsAverageSinceBoot() throws Exception {
+		load("sample1");
+		reader.sample();
+		Map<String, float[]> cpu = reader.readCPUStats();
+		assertArrayEquals(new float[]{10F, 1F, 7F, 2F, 80F}, cpu.get("all"), DELTA);
+		// 500000 switches over 1000 seconds of uptime
+		assertEquals(500F, reader.getContextSwitchRate(), DELTA);
+	}
+
+	@Test
+	public void testCPUJiffyDeltas() throws Exception {
+		load("sample1");
+		reader.sample();
+		reader.readCPUStats();
+		load("sample2");
+		reader.sample();
+		Map<String, float[]> cpu = reader.readCPUStats();
+		assertEquals(3, cpu.size());
+		// user, nice, system + irq + softirq, iowait, idle
+		assertArrayEquals(new float[]{30F, 0F, 15F, 5F, 50F}, cpu.get("all"), DELTA);
+		assertArrayEquals(new float[]{40F, 0F, 10F, 10F, 40F}, cpu.get("0"), DELTA);
+		assertArrayEquals(new float[]{20F, 0F, 20F, 0F, 60F}, cpu.get("1"), DELTA);
+		// 20000 switches over 10 seconds
+		assertEquals(2000F, reader.getContextSwitchRate(), DELTA);
+	}
+
+	@Test
+	public void testProcessStatCountsFieldsAfterLastParenthesis() throws Exception {
+		load("sample1");
+		reader.sample();
+		// 2000 user and 500 system ticks over the 500 seconds since the process started
+		assertArrayEquals(new float[]{4F, 1F, 0F}, reader.readProcessCPU(PID), DELTA);
+		load("sample2");
+		reader.sample();
+		// 500 user ticks, 100 system ticks and 30 swaps over 10 seconds
+		assertArrayEquals(new float[]{50F, 10F, 3F}, reader.readProcessCPU(PID), DELTA);
+	}
+
+	@Test
+	public void testProcessStatIsReadOncePerSample() throws Exception {
+		load("sample1");
+		reader.sample();
+		float[] first = reader.readProcessCPU(PID);
+		new File(root.getRoot(), PID + "/stat").delete();
+		assertArrayEquals(first, reader.readProcessCPU(PID), DELTA);
+	}
+
+	@Test
+	public void testTCPInodes() throws Exception {
+		load("sample1");
+		Map<Long, Integer> states = reader.readTCPStates();
+		assertEquals(5, states.size());
+		assertEquals(ProcFSReader.TCP_LISTEN, states.get(12345L).intValue());
+		assertEquals(ProcFSReader.TCP_ESTABLISHED, states.get(12346L).intValue());
+		assertEquals(ProcFSReader.TCP_CLOSE_WAIT, states.get(12347L).intValue());
+		// TIME_WAIT sockets have no inode
+		assertEquals(0x06, states.get(0L).intValue());
+		assertEquals(ProcFSReader.TCP_LISTEN, states.get(22222L).intValue());
+	}
+
+	@Test
+	public void testMissingTCPTableIsSkipped() throws Exception {
+		load("sample1");
+		new File(root.getRoot(), "net/tcp6").delete();
+		Map<Long, Integer> states = reader.readTCPStates();
+		assertEquals(4, states.size());
+		assertNull(states.get(22222L));
+	}
+
+	/**
+	 * Copies a captured sample's files into the temporary proc root
+	 * @param sample The sample directory under <code>procfs/</code>
+	 * @throws IOException
+	 */
+	void load(String sample) throws IOException {
+		for(String name: FILES) {
+			InputStream is = getClass().getClassLoader().getResourceAsStream("procfs/" + sample + "/" + name);
+			if(is==null) continue;
+			File file = new File(root.getRoot(), name);
+			file.getParentFile().mkdirs();
+			FileOutputStream fos = new FileOutputStream(file);
+			try {
+				byte[] buff = new byte[1024];
+				int bytesRead = 0;
+				while((bytesRead = is.read(buff))!=-1) {
+					fos.write(buff, 0, bytesRead);
+				}
+			} finally {
+				try { is.close(); } catch (Exception e) {}
+				try { fos.close(); } catch (Exception e) {}
+			}
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ *
+ */
+package com.heliosapm.wiex.server.collectors.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Title: ColumnTokenizerTest</p>
+ * <p>Description: Checks the ColumnTokenizer against captured <code>sar</code>, <code>vmstat</code> and <code>kstat</code> output under <code>tokenizer/</code>.</p>
+ * <p>Copyright: Copyright (c) 2007</p>
+ * <p>Organization: Helios Development Group</p>
+ * @author Whitehead
+ * @version $Revision: 1.1 $
+ */
+
+public class ColumnTokenizerTest {
+
+	static final float DELTA = 0.001F;
+
+	ColumnTokenizer t = null;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		t = new ColumnTokenizer();
+	}
+
+	@Test
+	public void testLinuxSarHeaderMatchedFromTheRight() throws Exception {
+		t.reset(load("sar-u-linux.txt"));
+		int averages = 0;
+		while(t.nextLine()) {
+			if(!t.lineContains("Average")) continue;
+			if(t.lineContains("CPU")) {
+				t.mapHeader();
+				continue;
+			}
+			averages++;
+			assertEquals(8, t.columnCount());
+			// %steal moves %idle past the default index of older sar versions
+			assertEquals(7, t.columnIndex("%idle", 6));
+			if(t.columnEquals(1, "all")) {
+				assertEquals(12.5F, t.floatColumn("%user", 2), DELTA);
+				assertEquals(3.25F, t.floatColumn("%system", 4), DELTA);
+				assertEquals(1.25F, t.floatColumn("%iowait", 5), DELTA);
+				assertEquals(83F, t.floatColumn("%idle", 6), DELTA);
+			} else if(t.columnEquals(1, "1")) {
+				assertEquals(5F, t.floatColumn("%user", 2), DELTA);
+				assertEquals(93F, t.floatColumn("%idle", 6), DELTA);
+			}
+		}
+		assertEquals(3, averages);
+	}
+
+	@Test
+	public void testHeaderLocatesColumnsOfWiderTimeStamps() throws Exception {
+		String[] lines = load("sar-u-linux.txt").split("\n");
+		// the "Average:" header followed by a line time stamped "10:15:02 AM", which is one column wider
+		t.reset(lines[7] + "\n" + lines[3] + "\n");
+		assertTrue(t.nextLine());
+		assertEquals(8, t.columnCount());
+		t.mapHeader();
+		assertTrue(t.nextLine());
+		assertEquals(9, t.columnCount());
+		assertEquals("all", t.column(t.columnIndex("CPU", 1)));
+		assertEquals(12.5F, t.floatColumn("%user", 2), DELTA);
+		assertEquals(83F, t.floatColumn("%idle", 6), DELTA);
+		assertEquals(-1, t.columnIndex("%guest", -1));
+	}
+
+	@Test
+	public void testSolarisSar() throws Exception {
+		t.reset(load("sar-u-solaris.txt"));
+		float[] cpu = null;
+		while(t.nextLine()) {
+			if(t.lineContains("SunOS") || !t.lineContains(":") || t.columnCount()==0) continue;
+			if(t.lineContains("usr")) {
+				t.mapHeader();
+				continue;
+			}
+			cpu = new float[]{t.floatColumn("%usr", 1), t.floatColumn("%sys", 2), t.floatColumn("%wio", 3), t.floatColumn("%idle", 4)};
+			break;
+		}
+		assertTrue(t.hasHeader());
+		assertArrayEquals(new float[]{7F, 3F, 1F, 89F}, cpu, DELTA);
+	}
+
+	@Test
+	public void testVmstatLastLine() throws Exception {
+		t.reset(load("vmstat-solaris.txt"));
+		assertTrue(t.nextLine());
+		assertTrue(t.nextLine());
+		assertEquals(22, t.columnCount());
+		assertEquals("s6", t.column(12));
+		assertEquals("s8", t.column(15));
+		assertTrue(t.lastLine());
+		assertEquals(22, t.columnCount());
+		assertEquals(21254552L, t.longColumn(3));
+		assertEquals(13543840L, t.longColumn(4));
+		assertEquals(1416L, t.longColumn(17));
+		assertEquals(99L, t.longColumn(21));
+		assertFalse(t.nextLine());
+	}
+
+	@Test
+	public void testKstatKeysAndValues() throws Exception {
+		t.reset(load("kstat-solaris.txt"));
+		assertTrue(t.nextLine());
+		assertEquals("cpu_stat:0:cpu_stat0:idle", t.column(0));
+		assertEquals(123456789L, t.longColumn(1));
+		assertTrue(t.nextLine());
+		assertTrue(t.nextLine());
+		// fractional values are truncated
+		assertEquals(97L, t.longColumn(1));
+		assertEquals(97.123456789D, t.doubleColumn(1), 0.000000001D);
+		assertTrue(t.nextLine());
+		assertTrue(t.nextLine());
+		assertEquals(2212593471488L, t.longColumn(1));
+		assertTrue(t.nextLine());
+		assertEquals(3, t.columnCount());
+		assertEquals("ST373207LSUN72G Rev", t.columns(1, 2));
+		assertTrue(t.lineStartsWith("sderr:"));
+		assertTrue(t.nextLine());
+		assertTrue(t.lineEndsWith("misc"));
+		try {
+			t.longColumn(1);
+			fail("Expected a NumberFormatException");
+		} catch (NumberFormatException e) {}
+		assertFalse(t.nextLine());
+	}
+
+	@Test
+	public void testIncrementalBytesAcrossLineBoundaries() throws Exception {
+		String text = load("vmstat-solaris.txt");
+		t.clear();
+		// a small initial buffer forces the read lines to be discarded and the buffer to grow
+		t.chars = new char[16];
+		int lines = 0;
+		byte[] bytes = text.getBytes("ISO-8859-1");
+		for(int i = 0; i < bytes.length; i += 7) {
+			t.append(ByteBuffer.wrap(bytes, i, Math.min(7, bytes.length - i)));
+			while(t.nextLine()) {
+				lines++;
+				assertEquals(lines==1 ? 6 : 22, t.columnCount());
+			}
+		}
+		t.finish();
+		assertFalse(t.nextLine());
+		assertEquals(4, lines);
+		assertEquals(99L, t.longColumn(21));
+	}
+
+	@Test
+	public void testUnterminatedLastLineNeedsFinish() throws Exception {
+		t.clear().append("a b\r\nc d");
+		assertTrue(t.nextLine());
+		assertEquals("a b", t.line());
+		assertFalse(t.nextLine());
+		t.finish();
+		assertTrue(t.nextLine());
+		assertEquals("d", t.column(1));
+	}
+
+	@Test
+	public void testNumericFormats() throws Exception {
+		t.reset("12,5 -3.75 42% x7 +8");
+		assertTrue(t.nextLine());
+		assertEquals(12.5D, t.doubleColumn(0), DELTA);
+		assertEquals(-3.75D, t.doubleColumn(1), DELTA);
+		assertEquals(42L, t.longColumn(2));
+		assertEquals(42F, t.floatColumn(2), DELTA);
+		assertEquals(8L, t.longColumn(4));
+		try {
+			t.doubleColumn(3);
+			fail("Expected a NumberFormatException");
+		} catch (NumberFormatException e) {}
+		try {
+			t.column(5);
+			fail("Expected a NumberFormatException");
+		} catch (NumberFormatException e) {}
+	}
+
+	/**
+	 * Reads a captured sample under <code>tokenizer/</code>
+	 * @param name The sample file name
+	 * @return the sample text
+	 * @throws IOException
+	 */
+	String load(String name) throws IOException {
+		InputStream is = getClass().getClassLoader().getResourceAsStream("tokenizer/" + name);
+		assertNotNull("Missing sample " + name, is);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			byte[] buff = new byte[1024];
+			int bytesRead = 0;
+			while((bytesRead = is.read(buff))!=-1) {
+				baos.write(buff, 0, bytesRead);
+			}
+		} finally {
+			try { is.close(); } catch (Exception e) {}
+		}
+		return baos.toString("ISO-8859-1");
+	}
+}